@@ -33,6 +33,9 @@ package com.google.protobuf;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
 import java.util.ArrayList;
 import java.util.List;
 
@@ -68,6 +71,35 @@ public final class CodedInputStream {
     return new CodedInputStream(raf);
   }
 
+  /**
+   * Maps the whole file read-only into memory split into chunks of {@code chunkSize} bytes.
+   * Chunks could be shared between several streams, see {@link #newInstance(ByteBuffer[], int)}.
+   */
+  public static MappedByteBuffer[] mapFile(RandomAccessFile raf, int chunkSize) throws IOException {
+    if (chunkSize <= 0) {
+      throw new IllegalArgumentException("Chunk size should be positive: " + chunkSize);
+    }
+    FileChannel channel = raf.getChannel();
+    long length = channel.size();
+    int chunks = (int) ((length + chunkSize - 1) / chunkSize);
+    MappedByteBuffer[] res = new MappedByteBuffer[chunks];
+    for (int i = 0; i < chunks; i++) {
+      long start = (long) i * chunkSize;
+      res[i] = channel.map(FileChannel.MapMode.READ_ONLY, start, Math.min(chunkSize, length - start));
+    }
+    return res;
+  }
+
+  /**
+   * Create a new CodedInputStream reading directly from memory mapped chunks of the file
+   * (all chunks except the last one should have exactly {@code chunkSize} bytes).
+   * Bytes are decoded straight from the mapped memory without intermediate buffer,
+   * the stream keeps its own cursor so the same chunks could be used by several streams.
+   */
+  public static CodedInputStream newInstance(ByteBuffer[] chunks, int chunkSize) {
+    return new CodedInputStream(chunks, chunkSize);
+  }
+
   /**
    * Create a new CodedInputStream wrapping the given byte array slice.
    */
@@ -222,7 +254,7 @@ public final class CodedInputStream {
   /** Read a {@code string} field value from the stream. */
   public String readString() throws IOException {
     final int size = readRawVarint32();
-    if (size <= (bufferSize - bufferPos) && size > 0) {
+    if (mappedChunks == null && size <= (bufferSize - bufferPos) && size > 0) {
       // Fast path:  We already have the bytes in a contiguous buffer, so
       //   just copy directly from it.
       final String result = new String(buffer, bufferPos, size, "UTF-8");
@@ -324,7 +356,7 @@ public final class CodedInputStream {
     final int size = readRawVarint32();
     if (size == 0) {
       return ByteString.EMPTY;
-    } else if (size <= (bufferSize - bufferPos) && size > 0) {
+    } else if (mappedChunks == null && size <= (bufferSize - bufferPos) && size > 0) {
       // Fast path:  We already have the bytes in a contiguous buffer, so
       //   just copy directly from it.
       final ByteString result = ByteString.copyFrom(buffer, bufferPos, size);
@@ -539,11 +571,17 @@ public final class CodedInputStream {
 
   private final byte[] buffer;
   private RandomAccessFile raf;
+  // osmand change: memory mapped mode, current chunk plays role of the buffer
+  private ByteBuffer[] mappedChunks;
+  private int mappedChunkSize;
+  private ByteBuffer mapped;
   private int bufferSize;
   private int bufferSizeAfterLimit;
   private int bufferPos;
   private final InputStream input;
   private int lastTag;
+  // osmand change: bytes loaded from file or stream into buffers
+  private long bytesLoaded;
 
   /**
    * The total number of bytes read before the current buffer.  The total
@@ -586,6 +624,20 @@ public final class CodedInputStream {
 		input = null;
 	}
 
+	private CodedInputStream(final ByteBuffer[] chunks, final int chunkSize) {
+		buffer = null;
+		mappedChunks = new ByteBuffer[chunks.length];
+		for (int i = 0; i < chunks.length; i++) {
+			// duplicate to have independent position per stream
+			mappedChunks[i] = chunks[i].duplicate();
+		}
+		mappedChunkSize = chunkSize;
+		this.bufferSize = 0;
+		bufferPos = 0;
+		totalBytesRetired = 0;
+		input = null;
+	}
+
   private CodedInputStream(final InputStream input) {
     buffer = new byte[BUFFER_SIZE];
     bufferSize = 0;
@@ -726,6 +778,14 @@ public final class CodedInputStream {
       return totalBytesRetired + bufferPos;
   }
 
+  /**
+   * osmand change: number of bytes loaded from file (or input stream) since creation,
+   * including bytes loaded again after seek. Memory mapped chunks are not counted.
+   */
+  public long getBytesLoaded() {
+      return bytesLoaded;
+  }
+
   /**
    * Called with {@code this.buffer} is empty to read more bytes from the
    * input.  If {@code mustSucceed} is true, refillBuffer() guarantees that
@@ -751,18 +811,33 @@ public final class CodedInputStream {
     totalBytesRetired += bufferSize;
 
     bufferPos = 0;
-    if (raf != null) {
+    if (mappedChunks != null) {
+    	// osmand change
+    	int chunk = totalBytesRetired / mappedChunkSize;
+    	if (chunk < mappedChunks.length) {
+    		mapped = mappedChunks[chunk];
+    		bufferPos = totalBytesRetired - chunk * mappedChunkSize;
+    		totalBytesRetired = chunk * mappedChunkSize;
+    		bufferSize = mapped.limit() > bufferPos ? mapped.limit() : -1;
+    	} else {
+    		bufferSize = -1;
+    	}
+    } else if (raf != null) {
     	// osmand change
      totalBytesRetired = (int) raf.getFilePointer();
     	long remain = raf.length() - raf.getFilePointer();
     	bufferSize = (int) Math.min(remain, buffer.length);
     	if(bufferSize > 0) {
     		raf.readFully(buffer, 0, bufferSize);
+    		bytesLoaded += bufferSize;
     	} else {
     		bufferSize = -1;
     	}
     } else {
     	bufferSize = (input == null) ? -1 : input.read(buffer);
+    	if (bufferSize > 0) {
+    		bytesLoaded += bufferSize;
+    	}
     }
     if (bufferSize == 0 || bufferSize < -1) {
       throw new IllegalStateException(
@@ -797,6 +872,9 @@ public final class CodedInputStream {
     if (bufferPos == bufferSize) {
       refillBuffer(true);
     }
+    if (mappedChunks != null) {
+      return mapped.get(bufferPos++);
+    }
     return buffer[bufferPos++];
   }
 
@@ -818,7 +896,24 @@ public final class CodedInputStream {
       throw InvalidProtocolBufferException.truncatedMessage();
     }
 
-    if (size <= bufferSize - bufferPos) {
+    if (mappedChunks != null) {
+      // osmand change: copy straight from mapped chunks
+      final byte[] bytes = new byte[size];
+      int pos = 0;
+      while (true) {
+        int n = Math.min(size - pos, bufferSize - bufferPos);
+        if (n > 0) {
+          mapped.position(bufferPos);
+          mapped.get(bytes, pos, n);
+          bufferPos += n;
+          pos += n;
+        }
+        if (pos == size) {
+          return bytes;
+        }
+        refillBuffer(true);
+      }
+    } else if (size <= bufferSize - bufferPos) {
       // We have all the bytes we need already.
       final byte[] bytes = new byte[size];
       System.arraycopy(buffer, bufferPos, bytes, 0, size);
@@ -890,6 +985,7 @@ public final class CodedInputStream {
             throw InvalidProtocolBufferException.truncatedMessage();
           }
           totalBytesRetired += n;
+          bytesLoaded += n;
           pos += n;
         }
         sizeLeft -= chunk.length;
@@ -941,7 +1037,9 @@ public final class CodedInputStream {
       bufferPos = bufferSize;
 
       // osmand change
-      if(raf != null) {
+      if (mappedChunks != null) {
+        selectMappedChunk(totalBytesRetired + bufferPos + size - pos);
+      } else if(raf != null) {
          bufferPos = 0;
          bufferSize = 0;
       	 int n = raf.skipBytes(size - pos);
@@ -972,6 +1070,8 @@ public final class CodedInputStream {
 			  throw InvalidProtocolBufferException.truncatedMessage();
 		  }
 		  bufferPos = (int) (pointer - totalBytesRetired);
+	  } else if (mappedChunks != null) {
+		  selectMappedChunk((int) pointer);
 	  } else {
 		  totalBytesRetired = (int) pointer;
 		  bufferSizeAfterLimit = 0;
@@ -980,4 +1080,28 @@ public final class CodedInputStream {
 		  bufferSize = 0;
 	  }
   }
+
+  // osmand change
+  private void selectMappedChunk(int pointer) {
+	  int chunk = pointer / mappedChunkSize;
+	  bufferSizeAfterLimit = 0;
+	  if (chunk < mappedChunks.length) {
+		  mapped = mappedChunks[chunk];
+		  totalBytesRetired = chunk * mappedChunkSize;
+		  bufferPos = pointer - totalBytesRetired;
+		  bufferSize = mapped.limit();
+		  recomputeBufferSizeAfterLimit();
+	  } else {
+		  totalBytesRetired = pointer;
+		  bufferPos = 0;
+		  bufferSize = 0;
+	  }
+  }
+
+  /**
+   * Returns true if stream reads from memory mapped chunks.
+   */
+  public boolean isMemoryMapped() {
+	  return mappedChunks != null;
+  }
 }
@@ -0,0 +1,233 @@
+package net.osmand;
+
+import java.text.CollationElementIterator;
+import java.text.RuleBasedCollator;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.Map;
+
+/**
+ * Cache of primary collation keys (see {@link NameKey}) of candidate names.
+ * Keys are cached by string identity, so the same name objects matched again during one search session
+ * (cached cities, streets, refiltered results) are normalized only once. Cache is cleared when it grows
+ * over the limit.
+ * <p>
+ * Keys are built char by char, so they can replace collator only if its rules have no contractions
+ * (e.g. Danish "aa" or Spanish "n" with combining tilde), otherwise cache is not supported.
+ */
+public class CollationKeyCache {
+
+	public static final int DEFAULT_MAX_SIZE = 50000;
+	private static final int CHAR_KEYS_SIZE = 0x3000;
+	// rules of checked collators -> has contractions
+	private static final Map<String, Boolean> CONTRACTIONS = new HashMap<String, Boolean>();
+
+	private final IdentityHashMap<String, NameKey> keys = new IdentityHashMap<String, NameKey>();
+	private final int maxSize;
+	// null if collator doesn't provide collation elements or has contractions, then names are matched by collator
+	private final RuleBasedCollator collator;
+	private final String[] charKeys = new String[CHAR_KEYS_SIZE];
+	private int hits;
+	private int misses;
+
+	/**
+	 * Primary key of the name as {@link CollatorStringMatcher} matches it: primary collation elements of every
+	 * char of lower cased name (ß replaced by ss). Ignorable chars (e.g. punctuation) have no elements
+	 * and expanding chars (e.g. æ) have several, so offsets of chars in the key are kept to compare the
+	 * same substrings as collator does.
+	 */
+	public static class NameKey {
+		// lower cased name
+		public final String text;
+		public final String key;
+		// offset of every char of text in key (and key length at the end), null if every char has one element
+		private final int[] offsets;
+
+		NameKey(String text, String key, int[] offsets) {
+			this.text = text;
+			this.key = key;
+			this.offsets = offsets;
+		}
+
+		public int offset(int ind) {
+			return offsets == null ? ind : offsets[ind];
+		}
+
+		/**
+		 * Checks that substring [start, end) of text has the given key.
+		 */
+		public boolean regionEquals(int start, int end, String k) {
+			int s = offset(start);
+			return offset(end) - s == k.length() && key.startsWith(k, s);
+		}
+	}
+
+	public CollationKeyCache() {
+		this(DEFAULT_MAX_SIZE);
+	}
+
+	public CollationKeyCache(int maxSize) {
+		this(maxSize, OsmAndCollator.primaryJavaCollator());
+	}
+
+	CollationKeyCache(int maxSize, java.text.Collator c) {
+		this.maxSize = maxSize;
+		this.collator = c instanceof RuleBasedCollator && !hasContractions((RuleBasedCollator) c) ?
+				(RuleBasedCollator) c : null;
+	}
+
+	/**
+	 * Checks whether some multi-char sequence of rules has other primary elements than its chars one by one.
+	 */
+	static boolean hasContractions(RuleBasedCollator c) {
+		String rules = c.getRules();
+		synchronized (CONTRACTIONS) {
+			Boolean res = CONTRACTIONS.get(rules);
+			if (res != null) {
+				return res;
+			}
+		}
+		boolean res = false;
+		for (String t : rules.split("[<;,=&@!|\\s]+")) {
+			// expansion "x / y" is defined for x
+			int exp = t.indexOf('/');
+			if (exp >= 0) {
+				t = t.substring(0, exp);
+			}
+			t = t.replace("'", "");
+			if (t.length() < 2) {
+				continue;
+			}
+			StringBuilder chars = new StringBuilder();
+			for (int i = 0; i < t.length(); i++) {
+				chars.append(primaryElements(c, String.valueOf(t.charAt(i))));
+			}
+			if (!chars.toString().equals(primaryElements(c, t))) {
+				res = true;
+				break;
+			}
+		}
+		synchronized (CONTRACTIONS) {
+			CONTRACTIONS.put(rules, res);
+		}
+		return res;
+	}
+
+	private static String primaryElements(RuleBasedCollator c, String s) {
+		CollationElementIterator it;
+		synchronized (c) {
+			it = c.getCollationElementIterator(s);
+		}
+		StringBuilder sb = new StringBuilder(s.length());
+		int order;
+		while ((order = it.next()) != CollationElementIterator.NULLORDER) {
+			int primary = CollationElementIterator.primaryOrder(order);
+			if (primary != 0) {
+				sb.append((char) primary);
+			}
+		}
+		return sb.toString();
+	}
+
+	/**
+	 * @return false if keys can't be built and names should be matched by collator
+	 */
+	public boolean isSupported() {
+		return collator != null;
+	}
+
+	/**
+	 * Identifies collation rules, keys built with different rules are not comparable.
+	 */
+	public int getRulesHash() {
+		return collator == null ? 0 : collator.getRules().hashCode();
+	}
+
+	public NameKey getKey(String name) {
+		synchronized (keys) {
+			NameKey key = keys.get(name);
+			if (key != null) {
+				hits++;
+				return key;
+			}
+			misses++;
+		}
+		NameKey key = createKey(name);
+		synchronized (keys) {
+			if (keys.size() >= maxSize) {
+				keys.clear();
+			}
+			keys.put(name, key);
+		}
+		return key;
+	}
+
+	/**
+	 * Builds key of the name without caching it.
+	 */
+	public NameKey createKey(String name) {
+		String text = CollatorStringMatcher.simplifyStringAndAlignChars(name);
+		StringBuilder key = new StringBuilder(text.length());
+		int[] offsets = null;
+		for (int i = 0; i < text.length(); i++) {
+			String ck = getCharKey(text.charAt(i));
+			if (offsets == null && (ck.length() != 1 || key.length() != i)) {
+				offsets = new int[text.length() + 1];
+				for (int j = 0; j < i; j++) {
+					offsets[j] = j;
+				}
+			}
+			if (offsets != null) {
+				offsets[i] = key.length();
+			}
+			key.append(ck);
+		}
+		if (offsets != null) {
+			offsets[text.length()] = key.length();
+		}
+		return new NameKey(text, key.toString(), offsets);
+	}
+
+	private String getCharKey(char c) {
+		String k = c < CHAR_KEYS_SIZE ? charKeys[c] : null;
+		if (k != null) {
+			return k;
+		}
+		if (collator == null) {
+			// keys are lower cased names
+			return String.valueOf(c);
+		}
+		k = primaryElements(collator, String.valueOf(c));
+		if (c < CHAR_KEYS_SIZE) {
+			// strings are immutable, so racing writes of the same key are harmless
+			charKeys[c] = k;
+		}
+		return k;
+	}
+
+	public void clear() {
+		synchronized (keys) {
+			keys.clear();
+			hits = 0;
+			misses = 0;
+		}
+	}
+
+	public int size() {
+		synchronized (keys) {
+			return keys.size();
+		}
+	}
+
+	public int getHits() {
+		synchronized (keys) {
+			return hits;
+		}
+	}
+
+	public int getMisses() {
+		synchronized (keys) {
+			return misses;
+		}
+	}
+}
@@ -2,6 +2,8 @@ package net.osmand;
 
 import java.util.Locale;
 
+import net.osmand.CollationKeyCache.NameKey;
+
 
 
 /**
@@ -15,6 +17,8 @@ public class CollatorStringMatcher implements StringMatcher {
 	private final Collator collator;
 	private final StringMatcherMode mode;
 	private final String part;
+	private final CollationKeyCache keyCache;
+	private final NameKey partKey;
 	
 	public static enum StringMatcherMode {
 		// tests only first word as base starts with part
@@ -32,6 +36,15 @@ public class CollatorStringMatcher implements StringMatcher {
 	}
 
 	public CollatorStringMatcher(String part, StringMatcherMode mode) {
+		this(part, mode, null);
+	}
+
+	/**
+	 * Matcher comparing primary keys of the same collator instead of calling collator for every substring.
+	 * Keys of matched names are taken from the given cache. If cache is not supported (collator has contractions)
+	 * and for {@link StringMatcherMode#CHECK_CONTAINS} names are matched by collator.
+	 */
+	public CollatorStringMatcher(String part, StringMatcherMode mode, CollationKeyCache keyCache) {
 		this.collator = OsmAndCollator.primaryCollator();
 		part = simplifyStringAndAlignChars(part);
 		if (part.length() > 0 && part.charAt(part.length() - 1) == '.') {
@@ -44,7 +57,8 @@ public class CollatorStringMatcher implements StringMatcher {
 		}
 		this.part = part;
 		this.mode = mode;
-		
+		this.keyCache = keyCache == null || !keyCache.isSupported() ? null : keyCache;
+		this.partKey = this.keyCache == null ? null : this.keyCache.createKey(part);
 	}
 
 	public Collator getCollator() {
@@ -53,6 +67,10 @@ public class CollatorStringMatcher implements StringMatcher {
 	
 	@Override
 	public boolean matches(String name) {
+		// contains compares substrings of not simplified name, so it's matched by collator
+		if (keyCache != null && mode != StringMatcherMode.CHECK_CONTAINS) {
+			return kmatches(keyCache.getKey(name), partKey, mode);
+		}
 		return cmatches(collator, name, part, mode);
 	}
 	
@@ -180,7 +198,61 @@ public class CollatorStringMatcher implements StringMatcher {
 		return false;
 	}
 	
-	private static String simplifyStringAndAlignChars(String fullText) {
+	/**
+	 * Same as {@link #cmatches(Collator, String, String, StringMatcherMode)} (except
+	 * {@link StringMatcherMode#CHECK_CONTAINS}) but compares primary keys of name and part substrings.
+	 */
+	public static boolean kmatches(NameKey name, NameKey part, StringMatcherMode mode) {
+		switch (mode) {
+		case CHECK_EQUALS_FROM_SPACE:
+			return kstartsWith(name, part, true, true, true);
+		case CHECK_STARTS_FROM_SPACE:
+			return kstartsWith(name, part, true, true, false);
+		case CHECK_STARTS_FROM_SPACE_NOT_BEGINNING:
+			return kstartsWith(name, part, false, true, false);
+		case CHECK_ONLY_STARTS_WITH:
+			return kstartsWith(name, part, true, false, false);
+		case CHECK_EQUALS:
+			return kstartsWith(name, part, false, false, true);
+		default:
+			throw new IllegalArgumentException("Mode is not supported by keys " + mode);
+		}
+	}
+
+	// same as cstartsWith: substrings of the same length as part are compared
+	private static boolean kstartsWith(NameKey name, NameKey part, boolean checkBeginning,
+			boolean checkSpaces, boolean equals) {
+		String searchIn = name.text;
+		int searchInLength = searchIn.length();
+		int startLength = part.text.length();
+		if (startLength == 0) {
+			return true;
+		}
+		if (startLength > searchInLength) {
+			return false;
+		}
+		if (checkBeginning && name.regionEquals(0, startLength, part.key)) {
+			if (!equals || startLength == searchInLength || isSpace(searchIn.charAt(startLength))) {
+				return true;
+			}
+		}
+		if (checkSpaces) {
+			for (int i = 1; i <= searchInLength - startLength; i++) {
+				if (isSpace(searchIn.charAt(i - 1)) && !isSpace(searchIn.charAt(i))
+						&& name.regionEquals(i, i + startLength, part.key)) {
+					if (!equals || i + startLength == searchInLength || isSpace(searchIn.charAt(i + startLength))) {
+						return true;
+					}
+				}
+			}
+		}
+		if (!checkBeginning && !checkSpaces && equals) {
+			return name.key.equals(part.key);
+		}
+		return false;
+	}
+
+	static String simplifyStringAndAlignChars(String fullText) {
 		int i;
 		fullText = fullText.toLowerCase(Locale.getDefault());
 		while( (i = fullText.indexOf('ß') ) != -1 ) {
@@ -8,12 +8,15 @@ import net.osmand.binary.StringBundleXmlWriter;
 import net.osmand.data.QuadRect;
 import net.osmand.util.Algorithms;
 
+import gnu.trove.map.hash.TIntObjectHashMap;
+
 import org.apache.commons.logging.Log;
 import org.xmlpull.v1.XmlPullParser;
 import org.xmlpull.v1.XmlPullParserException;
 import org.xmlpull.v1.XmlSerializer;
 
 import java.io.BufferedInputStream;
+import java.io.Closeable;
 import java.io.File;
 import java.io.FileInputStream;
 import java.io.FileOutputStream;
@@ -30,6 +33,8 @@ import java.text.NumberFormat;
 import java.text.ParseException;
 import java.text.SimpleDateFormat;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.Date;
@@ -379,6 +384,68 @@ public class GPXUtilities {
 
 		public Object renderer;
 
+		private TrkSegmentColumns columns;
+
+		public boolean isPacked() {
+			return columns != null;
+		}
+
+		/**
+		 * @return compact points of packed segment or null
+		 */
+		public TrkSegmentColumns getColumns() {
+			return columns;
+		}
+
+		public int getPointsCount() {
+			return columns != null ? columns.size() : points.size();
+		}
+
+		/**
+		 * @return i-th point, new point object for packed segment
+		 */
+		public WptPt getPoint(int i) {
+			return columns != null ? columns.getPoint(i) : points.get(i);
+		}
+
+		/**
+		 * Moves points to compact columns, points list stays empty till {@link #unpack()}.
+		 * Analysis, split and writing work with packed segment directly, methods of {@link GPXFile} use
+		 * {@link #getPointsCount()} and {@link #getPoint(int)}. Point distance is not kept (it is set again by
+		 * analysis of unpacked segment).
+		 */
+		public void pack() {
+			if (columns == null) {
+				columns = new TrkSegmentColumns(points.size());
+				for (WptPt p : points) {
+					columns.add(p);
+				}
+				columns.generalSegment = generalSegment;
+				points = new ArrayList<>();
+			}
+		}
+
+		/**
+		 * Packs already compact points (e.g. read by {@link GPXStreamReader}) into the empty segment.
+		 */
+		public void pack(TrkSegmentColumns columns) {
+			if (!points.isEmpty() || this.columns != null) {
+				throw new IllegalStateException("Segment already has points");
+			}
+			columns.generalSegment = generalSegment;
+			this.columns = columns;
+		}
+
+		public void unpack() {
+			if (columns != null) {
+				List<WptPt> pts = new ArrayList<>(columns.size());
+				for (int i = 0; i < columns.size(); i++) {
+					pts.add(columns.getPoint(i));
+				}
+				points = pts;
+				columns = null;
+			}
+		}
 
 		public List<GPXTrackAnalysis> splitByDistance(double meters, boolean joinSegments) {
 			return split(getDistanceMetric(), getTimeSplit(), meters, joinSegments);
@@ -396,6 +463,196 @@ public class GPXUtilities {
 
 	}
 
+	/**
+	 * Track points stored in parallel primitive arrays. Elevation, speed, hdop and heading have float precision
+	 * (as parsed from gpx), rare attributes (names, descriptions, colors, extensions, first / last point flags)
+	 * are kept in a sparse table by point index. Single speed extension of a point is only marked and restored
+	 * from speed column by {@link #getPoint(int)}.
+	 */
+	public static class TrkSegmentColumns {
+		private static final WptPt EMPTY_ATTRIBUTES = new WptPt();
+
+		private double[] lat;
+		private double[] lon;
+		private long[] time;
+		private float[] ele;
+		private float[] speed;
+		private float[] hdop;
+		private float[] heading;
+		private int size;
+		private boolean generalSegment;
+		private TIntObjectHashMap<WptPt> attributes;
+		// points with single speed extension
+		private BitSet speedExtensions;
+
+		public TrkSegmentColumns() {
+			this(16);
+		}
+
+		public TrkSegmentColumns(int capacity) {
+			capacity = Math.max(capacity, 1);
+			lat = new double[capacity];
+			lon = new double[capacity];
+			time = new long[capacity];
+			ele = new float[capacity];
+			speed = new float[capacity];
+			hdop = new float[capacity];
+			heading = new float[capacity];
+		}
+
+		public int size() {
+			return size;
+		}
+
+		public double getLatitude(int i) {
+			return lat[i];
+		}
+
+		public double getLongitude(int i) {
+			return lon[i];
+		}
+
+		public long getTime(int i) {
+			return time[i];
+		}
+
+		public double getElevation(int i) {
+			return ele[i];
+		}
+
+		public double getSpeed(int i) {
+			return speed[i];
+		}
+
+		public double getHdop(int i) {
+			return hdop[i];
+		}
+
+		public float getHeading(int i) {
+			return heading[i];
+		}
+
+		public boolean hasAttributes(int i) {
+			return attributes != null && attributes.containsKey(i);
+		}
+
+		public void add(double lat, double lon, long time, double ele, double speed, double hdop) {
+			ensureCapacity(size + 1);
+			this.lat[size] = lat;
+			this.lon[size] = lon;
+			this.time[size] = time;
+			this.ele[size] = (float) ele;
+			this.speed[size] = (float) speed;
+			this.hdop[size] = (float) hdop;
+			this.heading[size] = Float.NaN;
+			size++;
+		}
+
+		public void add(WptPt p) {
+			add(p.lat, p.lon, p.time, p.ele, p.speed, p.hdop);
+			heading[size - 1] = p.heading;
+			Map<String, String> extensions = p.getExtensionsToRead();
+			// speed extension of parsed point is written again from speed column
+			boolean onlySpeedExtension = extensions.size() == 1 && extensions.containsKey("speed") && p.speed > 0;
+			if (p.name != null || p.link != null || p.category != null || p.desc != null || p.comment != null
+					|| p.deleted || p.colourARGB != 0 || p.firstPoint || p.lastPoint || p.extensionsWriter != null
+					|| (!extensions.isEmpty() && !onlySpeedExtension)) {
+				WptPt attrs = new WptPt();
+				copyAttributes(p, attrs);
+				if (!onlySpeedExtension) {
+					attrs.copyExtensions(p);
+				}
+				if (attributes == null) {
+					attributes = new TIntObjectHashMap<>();
+				}
+				attributes.put(size - 1, attrs);
+			} else if (onlySpeedExtension) {
+				if (speedExtensions == null) {
+					speedExtensions = new BitSet();
+				}
+				speedExtensions.set(size - 1);
+			}
+		}
+
+		public void add(GPXStreamReader.PointsBatch batch) {
+			ensureCapacity(size + batch.size);
+			for (int i = 0; i < batch.size; i++) {
+				add(batch.lat[i], batch.lon[i], batch.time[i], batch.ele[i], batch.speed[i], batch.hdop[i]);
+			}
+		}
+
+		public WptPt getPoint(int i) {
+			WptPt p = getPoint(i, new WptPt());
+			if (speedExtensions != null && speedExtensions.get(i)) {
+				p.getExtensionsToWrite().put("speed", String.valueOf(speed[i]));
+			}
+			return p;
+		}
+
+		/**
+		 * Fills reused point (all previous values are cleared) with values of i-th point. Single speed extension is
+		 * not restored, it is written from speed anyway.
+		 */
+		public WptPt getPoint(int i, WptPt p) {
+			p.lat = lat[i];
+			p.lon = lon[i];
+			p.time = time[i];
+			p.ele = ele[i];
+			p.speed = speed[i];
+			p.hdop = hdop[i];
+			p.heading = heading[i];
+			p.distance = 0;
+			p.extensions = null;
+			WptPt attrs = attributes == null ? null : attributes.get(i);
+			if (attrs != null) {
+				copyAttributes(attrs, p);
+				p.copyExtensions(attrs);
+			} else {
+				copyAttributes(EMPTY_ATTRIBUTES, p);
+			}
+			return p;
+		}
+
+		public void trimToSize() {
+			if (lat.length > size) {
+				int capacity = Math.max(size, 1);
+				lat = Arrays.copyOf(lat, capacity);
+				lon = Arrays.copyOf(lon, capacity);
+				time = Arrays.copyOf(time, capacity);
+				ele = Arrays.copyOf(ele, capacity);
+				speed = Arrays.copyOf(speed, capacity);
+				hdop = Arrays.copyOf(hdop, capacity);
+				heading = Arrays.copyOf(heading, capacity);
+			}
+		}
+
+		private void ensureCapacity(int capacity) {
+			if (lat.length < capacity) {
+				int newCapacity = Math.max(capacity, lat.length * 2);
+				lat = Arrays.copyOf(lat, newCapacity);
+				lon = Arrays.copyOf(lon, newCapacity);
+				time = Arrays.copyOf(time, newCapacity);
+				ele = Arrays.copyOf(ele, newCapacity);
+				speed = Arrays.copyOf(speed, newCapacity);
+				hdop = Arrays.copyOf(hdop, newCapacity);
+				heading = Arrays.copyOf(heading, newCapacity);
+			}
+		}
+
+		private static void copyAttributes(WptPt from, WptPt to) {
+			to.name = from.name;
+			to.link = from.link;
+			to.category = from.category;
+			to.desc = from.desc;
+			to.comment = from.comment;
+			to.deleted = from.deleted;
+			to.colourARGB = from.colourARGB;
+			to.firstPoint = from.firstPoint;
+			to.lastPoint = from.lastPoint;
+			to.extensionsWriter = from.extensionsWriter;
+		}
+	}
+
 	public static class Track extends GPXExtensions {
 		public String name = null;
 		public String desc = null;
@@ -577,6 +834,8 @@ public class GPXUtilities {
 		public boolean hasSpeedData;
 		public boolean hasSpeedInTrack = false;
 
+		private AnalysisState state;
+
 		public boolean isSpeedSpecified() {
 			return avgSpeed > 0;
 		}
@@ -587,268 +846,322 @@ public class GPXUtilities {
 		}
 
 		public GPXTrackAnalysis prepareInformation(long filestamp, SplitSegment... splitSegments) {
-			float[] calculations = new float[1];
-
-			long startTimeOfSingleSegment = 0;
-			long endTimeOfSingleSegment = 0;
-
-			float distanceOfSingleSegment = 0;
-			float distanceMovingOfSingleSegment = 0;
-			long timeMovingOfSingleSegment = 0;
-
-			float totalElevation = 0;
-			int elevationPoints = 0;
-			int speedCount = 0;
-			int timeDiff = 0;
-			double totalSpeedSum = 0;
-			points = 0;
-
-			double channelThresMin = 10;           // Minimum oscillation amplitude considered as relevant or as above noise for accumulated Ascent/Descent analysis
-			double channelThres = channelThresMin; // Actual oscillation amplitude considered as above noise (dynamic channel adjustment, accomodates depedency on current VDOP/getAccuracy if desired)
-			double channelBase;
-			double channelTop;
-			double channelBottom;
-			boolean climb = false;
-
-			elevationData = new ArrayList<>();
-			speedData = new ArrayList<>();
-
+			startAnalysis(true);
 			for (SplitSegment s : splitSegments) {
+				startSegment(s.segment.generalSegment, s.metricEnd, s.secondaryMetricEnd);
 				final int numberOfPoints = s.getNumberOfPoints();
-
-				channelBase = 99999;
-				channelTop = channelBase;
-				channelBottom = channelBase;
-				//channelThres = channelThresMin; //only for dynamic channel adjustment
-
-				float segmentDistance = 0f;
-				metricEnd += s.metricEnd;
-				secondaryMetricEnd += s.secondaryMetricEnd;
-				points += numberOfPoints;
+				final boolean packed = s.segment.isPacked();
 				for (int j = 0; j < numberOfPoints; j++) {
 					WptPt point = s.get(j);
-					if (j == 0 && locationStart == null) {
-						locationStart = point;
-					}
-					if (j == numberOfPoints - 1) {
-						locationEnd = point;
-					}
-					long time = point.time;
-					if (time != 0) {
-						if (s.metricEnd == 0) {
-							if (s.segment.generalSegment) {
-								if (point.firstPoint) {
-									startTimeOfSingleSegment = time;
-								} else if (point.lastPoint) {
-									endTimeOfSingleSegment = time;
-								}
-								if (startTimeOfSingleSegment != 0 && endTimeOfSingleSegment != 0) {
-									timeSpanWithoutGaps += endTimeOfSingleSegment - startTimeOfSingleSegment;
-									startTimeOfSingleSegment = 0;
-									endTimeOfSingleSegment = 0;
-								}
-							}
-						}
-						startTime = Math.min(startTime, time);
-						endTime = Math.max(endTime, time);
-					}
-
-					if (left == 0 && right == 0) {
-						left = point.getLongitude();
-						right = point.getLongitude();
-						top = point.getLatitude();
-						bottom = point.getLatitude();
-					} else {
-						left = Math.min(left, point.getLongitude());
-						right = Math.max(right, point.getLongitude());
-						top = Math.max(top, point.getLatitude());
-						bottom = Math.min(bottom, point.getLatitude());
-					}
-
-					double elevation = point.ele;
-					Elevation elevation1 = new Elevation();
-					if (!Double.isNaN(elevation)) {
-						totalElevation += elevation;
-						elevationPoints++;
-						minElevation = Math.min(elevation, minElevation);
-						maxElevation = Math.max(elevation, maxElevation);
-
-						elevation1.elevation = (float) elevation;
-					} else {
-						elevation1.elevation = Float.NaN;
-					}
-
-					float speed = (float) point.speed;
-					if (speed > 0) {
-						hasSpeedInTrack = true;
+					if (packed && (j == 0 || j == numberOfPoints - 1)) {
+						// points of packed segment are reused, so copy the ones kept as start / end location
+						WptPt copy = new WptPt(point);
+						copy.firstPoint = point.firstPoint;
+						copy.lastPoint = point.lastPoint;
+						point = copy;
 					}
+					addPoint(point);
+				}
+				endSegment();
+			}
+			return finishAnalysis(filestamp);
+		}
 
-					// Trend channel analysis for elevation gain/loss, Hardy 2015-09-22, LPF filtering added 2017-10-26:
-					// - Detect the consecutive elevation trend channels: Only use the net elevation changes of each trend channel (i.e. between the turnarounds) to accumulate the Ascent/Descent values.
-					// - Perform the channel evaluation on Low Pass Filter (LPF) smoothed ele data instead of on the raw ele data
-					// Parameters:
-					// - channelThresMin (in meters): defines the channel turnaround detection, i.e. oscillations smaller than this are ignored as irrelevant or noise.
-					// - smoothWindow (number of points): is the LPF window
-					// NOW REMOVED, as no relevant examples found: Dynamic channel adjustment: To suppress unreliable measurement points, could relax the turnaround detection from the constant channelThresMin to channelThres which is e.g. based on the maximum VDOP of any point which contributed to the current trend. (Good assumption is VDOP=2*HDOP, which accounts for invisibility of lower hemisphere satellites.)
-
-					// LPF smooting of ele data, usually smooth over odd number of values like 5
-					final int smoothWindow = 5;
-					double eleSmoothed = Double.NaN;
-					int j2 = 0;
-					for (int j1 = - smoothWindow + 1; j1 <= 0; j1++) {
-						if ((j + j1 >= 0) && !Double.isNaN(s.get(j + j1).ele)) {
-							j2++;
-							if (!Double.isNaN(eleSmoothed)) {
-								eleSmoothed = eleSmoothed + s.get(j + j1).ele;
-							} else {
-								eleSmoothed = s.get(j + j1).ele;
-							}
-						}
-					}
-					if (!Double.isNaN(eleSmoothed)) {
-						eleSmoothed = eleSmoothed / j2;
-					}
+		/**
+		 * Starts incremental analysis, points are passed with {@link #startSegment}, {@link #addPoint} and
+		 * {@link #endSegment} and results are ready after {@link #finishAnalysis}.
+		 * Without collectData elevationData and speedData stay empty, so memory doesn't depend on track size.
+		 */
+		public void startAnalysis(boolean collectData) {
+			state = new AnalysisState();
+			state.collectData = collectData;
+			points = 0;
+			elevationData = new ArrayList<>();
+			speedData = new ArrayList<>();
+		}
 
-					if (!Double.isNaN(eleSmoothed)) {
-						// Init channel
-						if (channelBase == 99999) {
-							channelBase = eleSmoothed;
-							channelTop = channelBase;
-							channelBottom = channelBase;
-							//channelThres = channelThresMin; //only for dynamic channel adjustment
-						}
-						// Channel maintenance
-						if (eleSmoothed > channelTop) {
-							channelTop = eleSmoothed;
-							//if (!Double.isNaN(point.hdop)) {
-							//	channelThres = Math.max(channelThres, 2.0 * point.hdop); //only for dynamic channel adjustment
-							//}
-						} else if (eleSmoothed < channelBottom) {
-							channelBottom = eleSmoothed;
-							//if (!Double.isNaN(point.hdop)) {
-							//	channelThres = Math.max(channelThres, 2.0 * point.hdop); //only for dynamic channel adjustment
-							//}
-						}
-						// Turnaround (breakout) detection
-						if ((eleSmoothed <= (channelTop - channelThres)) && (climb == true)) {
-							if ((channelTop - channelBase) >= channelThres) {
-								diffElevationUp += channelTop - channelBase;
-							}
-							channelBase = channelTop;
-							channelBottom = eleSmoothed;
-							climb = false;
-							//channelThres = channelThresMin; //only for dynamic channel adjustment
-						} else if ((eleSmoothed >= (channelBottom + channelThres)) && (climb == false)) {
-							if ((channelBase - channelBottom) >= channelThres) {
-								diffElevationDown += channelBase - channelBottom;
-							}
-							channelBase = channelBottom;
-							channelTop = eleSmoothed;
-							climb = true;
-							//channelThres = channelThresMin; //only for dynamic channel adjustment
+		public void startSegment(boolean generalSegment, double segmentMetricEnd, double segmentSecondaryMetricEnd) {
+			AnalysisState st = state;
+			st.channelBase = 99999;
+			st.channelTop = st.channelBase;
+			st.channelBottom = st.channelBase;
+			//channelThres = channelThresMin; //only for dynamic channel adjustment
+
+			st.generalSegment = generalSegment;
+			st.segmentMetricEnd = segmentMetricEnd;
+			st.segmentDistance = 0f;
+			st.segmentPoints = 0;
+			st.last = null;
+			st.channelEnd = false;
+			st.lastElevation = null;
+			st.lastSpeed = null;
+			metricEnd += segmentMetricEnd;
+			secondaryMetricEnd += segmentSecondaryMetricEnd;
+		}
+
+		/**
+		 * Only first and last points of segments are kept (as locationStart and locationEnd).
+		 */
+		public void addPoint(WptPt point) {
+			AnalysisState st = state;
+			float[] calculations = st.calculations;
+			int j = st.segmentPoints;
+			points++;
+			if (j == 0 && locationStart == null) {
+				locationStart = point;
+			}
+			long time = point.time;
+			if (time != 0) {
+				if (st.segmentMetricEnd == 0) {
+					if (st.generalSegment) {
+						if (point.firstPoint) {
+							st.startTimeOfSingleSegment = time;
+						} else if (point.lastPoint) {
+							st.endTimeOfSingleSegment = time;
 						}
-						// End detection without breakout
-						if (j == (numberOfPoints - 1)) {
-							if ((channelTop - channelBase) >= channelThres) {
-								diffElevationUp += channelTop - channelBase;
-							}
-							if ((channelBase - channelBottom) >= channelThres) {
-								diffElevationDown += channelBase - channelBottom;
-							}
+						if (st.startTimeOfSingleSegment != 0 && st.endTimeOfSingleSegment != 0) {
+							timeSpanWithoutGaps += st.endTimeOfSingleSegment - st.startTimeOfSingleSegment;
+							st.startTimeOfSingleSegment = 0;
+							st.endTimeOfSingleSegment = 0;
 						}
 					}
+				}
+				startTime = Math.min(startTime, time);
+				endTime = Math.max(endTime, time);
+			}
 
-					if (j > 0) {
-						WptPt prev = s.get(j - 1);
-
-						// Old complete summation approach for elevation gain/loss
-						//if (!Double.isNaN(point.ele) && !Double.isNaN(prev.ele)) {
-						//	double diff = point.ele - prev.ele;
-						//	if (diff > 0) {
-						//		diffElevationUp += diff;
-						//	} else {
-						//		diffElevationDown -= diff;
-						//	}
-						//}
-
-						// totalDistance += MapUtils.getDistance(prev.lat, prev.lon, point.lat, point.lon);
-						// using ellipsoidal 'distanceBetween' instead of spherical haversine (MapUtils.getDistance) is
-						// a little more exact, also seems slightly faster:
-						net.osmand.Location.distanceBetween(prev.lat, prev.lon, point.lat, point.lon, calculations);
-						totalDistance += calculations[0];
-						segmentDistance += calculations[0];
-						point.distance = segmentDistance;
-						timeDiff = (int)((point.time - prev.time) / 1000);
-
-						//Last resort: Derive speed values from displacement if track does not originally contain speed
-						if (!hasSpeedInTrack && speed == 0 && timeDiff > 0) {
-							speed = calculations[0] / timeDiff;
-						}
+			if (left == 0 && right == 0) {
+				left = point.getLongitude();
+				right = point.getLongitude();
+				top = point.getLatitude();
+				bottom = point.getLatitude();
+			} else {
+				left = Math.min(left, point.getLongitude());
+				right = Math.max(right, point.getLongitude());
+				top = Math.max(top, point.getLatitude());
+				bottom = Math.min(bottom, point.getLatitude());
+			}
 
-						// Motion detection:
-						//   speed > 0  uses GPS chipset's motion detection
-						//   calculations[0] > minDisplacment * time  is heuristic needed because tracks may be filtered at recording time, so points at rest may not be present in file at all
-						if ((speed > 0) && (calculations[0] > 0.1 / 1000f * (point.time - prev.time)) && point.time != 0 && prev.time != 0) {
-							timeMoving = timeMoving + (point.time - prev.time);
-							totalDistanceMoving += calculations[0];
-							if (s.segment.generalSegment && !point.firstPoint) {
-								timeMovingOfSingleSegment += point.time - prev.time;
-								distanceMovingOfSingleSegment += calculations[0];
-							}
-						}
+			double elevation = point.ele;
+			float elevationValue;
+			if (!Double.isNaN(elevation)) {
+				st.totalElevation += elevation;
+				st.elevationPoints++;
+				minElevation = Math.min(elevation, minElevation);
+				maxElevation = Math.max(elevation, maxElevation);
 
-						//Next few lines for Issue 3222 heuristic testing only
-						//	if (speed > 0 && point.time != 0 && prev.time != 0) {
-						//		timeMoving0 = timeMoving0 + (point.time - prev.time);
-						//		totalDistanceMoving0 += calculations[0];
-						//	}
+				elevationValue = (float) elevation;
+			} else {
+				elevationValue = Float.NaN;
+			}
+
+			float speed = (float) point.speed;
+			if (speed > 0) {
+				hasSpeedInTrack = true;
+			}
+
+			// Trend channel analysis for elevation gain/loss, Hardy 2015-09-22, LPF filtering added 2017-10-26:
+			// - Detect the consecutive elevation trend channels: Only use the net elevation changes of each trend channel (i.e. between the turnarounds) to accumulate the Ascent/Descent values.
+			// - Perform the channel evaluation on Low Pass Filter (LPF) smoothed ele data instead of on the raw ele data
+			// Parameters:
+			// - channelThresMin (in meters): defines the channel turnaround detection, i.e. oscillations smaller than this are ignored as irrelevant or noise.
+			// - smoothWindow (number of points): is the LPF window
+			// NOW REMOVED, as no relevant examples found: Dynamic channel adjustment: To suppress unreliable measurement points, could relax the turnaround detection from the constant channelThresMin to channelThres which is e.g. based on the maximum VDOP of any point which contributed to the current trend. (Good assumption is VDOP=2*HDOP, which accounts for invisibility of lower hemisphere satellites.)
+
+			// LPF smooting of ele data, usually smooth over odd number of values like 5
+			final int smoothWindow = AnalysisState.SMOOTH_WINDOW;
+			st.eleWindow[j % smoothWindow] = elevation;
+			double eleSmoothed = Double.NaN;
+			int j2 = 0;
+			for (int j1 = - smoothWindow + 1; j1 <= 0; j1++) {
+				if ((j + j1 >= 0) && !Double.isNaN(st.eleWindow[(j + j1) % smoothWindow])) {
+					j2++;
+					if (!Double.isNaN(eleSmoothed)) {
+						eleSmoothed = eleSmoothed + st.eleWindow[(j + j1) % smoothWindow];
+					} else {
+						eleSmoothed = st.eleWindow[(j + j1) % smoothWindow];
 					}
+				}
+			}
+			if (!Double.isNaN(eleSmoothed)) {
+				eleSmoothed = eleSmoothed / j2;
+			}
 
-					elevation1.time = timeDiff;
-					elevation1.distance = (j > 0) ? calculations[0] : 0;
-					elevationData.add(elevation1);
-					if (!hasElevationData && !Float.isNaN(elevation1.elevation) && totalDistance > 0) {
-						hasElevationData = true;
+			double channelThres = st.channelThres;
+			st.channelEnd = !Double.isNaN(eleSmoothed);
+			if (!Double.isNaN(eleSmoothed)) {
+				// Init channel
+				if (st.channelBase == 99999) {
+					st.channelBase = eleSmoothed;
+					st.channelTop = st.channelBase;
+					st.channelBottom = st.channelBase;
+					//channelThres = channelThresMin; //only for dynamic channel adjustment
+				}
+				// Channel maintenance
+				if (eleSmoothed > st.channelTop) {
+					st.channelTop = eleSmoothed;
+					//if (!Double.isNaN(point.hdop)) {
+					//	channelThres = Math.max(channelThres, 2.0 * point.hdop); //only for dynamic channel adjustment
+					//}
+				} else if (eleSmoothed < st.channelBottom) {
+					st.channelBottom = eleSmoothed;
+					//if (!Double.isNaN(point.hdop)) {
+					//	channelThres = Math.max(channelThres, 2.0 * point.hdop); //only for dynamic channel adjustment
+					//}
+				}
+				// Turnaround (breakout) detection
+				if ((eleSmoothed <= (st.channelTop - channelThres)) && (st.climb == true)) {
+					if ((st.channelTop - st.channelBase) >= channelThres) {
+						diffElevationUp += st.channelTop - st.channelBase;
+					}
+					st.channelBase = st.channelTop;
+					st.channelBottom = eleSmoothed;
+					st.climb = false;
+					//channelThres = channelThresMin; //only for dynamic channel adjustment
+				} else if ((eleSmoothed >= (st.channelBottom + channelThres)) && (st.climb == false)) {
+					if ((st.channelBase - st.channelBottom) >= channelThres) {
+						diffElevationDown += st.channelBase - st.channelBottom;
 					}
+					st.channelBase = st.channelBottom;
+					st.channelTop = eleSmoothed;
+					st.climb = true;
+					//channelThres = channelThresMin; //only for dynamic channel adjustment
+				}
+				// End detection without breakout is done in endSegment for the last point
+			}
+
+			if (j > 0) {
+				WptPt prev = st.prev;
+
+				// Old complete summation approach for elevation gain/loss
+				//if (!Double.isNaN(point.ele) && !Double.isNaN(prev.ele)) {
+				//	double diff = point.ele - prev.ele;
+				//	if (diff > 0) {
+				//		diffElevationUp += diff;
+				//	} else {
+				//		diffElevationDown -= diff;
+				//	}
+				//}
+
+				// totalDistance += MapUtils.getDistance(prev.lat, prev.lon, point.lat, point.lon);
+				// using ellipsoidal 'distanceBetween' instead of spherical haversine (MapUtils.getDistance) is
+				// a little more exact, also seems slightly faster:
+				net.osmand.Location.distanceBetween(prev.lat, prev.lon, point.lat, point.lon, calculations);
+				totalDistance += calculations[0];
+				st.segmentDistance += calculations[0];
+				point.distance = st.segmentDistance;
+				st.timeDiff = (int)((point.time - prev.time) / 1000);
+
+				//Last resort: Derive speed values from displacement if track does not originally contain speed
+				if (!hasSpeedInTrack && speed == 0 && st.timeDiff > 0) {
+					speed = calculations[0] / st.timeDiff;
+				}
 
-					minSpeed = Math.min(speed, minSpeed);
-					if (speed > 0) {
-						totalSpeedSum += speed;
-						maxSpeed = Math.max(speed, maxSpeed);
-						speedCount++;
+				// Motion detection:
+				//   speed > 0  uses GPS chipset's motion detection
+				//   calculations[0] > minDisplacment * time  is heuristic needed because tracks may be filtered at recording time, so points at rest may not be present in file at all
+				if ((speed > 0) && (calculations[0] > 0.1 / 1000f * (point.time - prev.time)) && point.time != 0 && prev.time != 0) {
+					timeMoving = timeMoving + (point.time - prev.time);
+					totalDistanceMoving += calculations[0];
+					if (st.generalSegment && !point.firstPoint) {
+						st.timeMovingOfSingleSegment += point.time - prev.time;
+						st.distanceMovingOfSingleSegment += calculations[0];
 					}
+				}
 
-					Speed speed1 = new Speed();
-					speed1.speed = speed;
-					speed1.time = timeDiff;
-					speed1.distance = elevation1.distance;
-					speedData.add(speed1);
-					if (!hasSpeedData && speed1.speed > 0 && totalDistance > 0) {
-						hasSpeedData = true;
+				//Next few lines for Issue 3222 heuristic testing only
+				//	if (speed > 0 && point.time != 0 && prev.time != 0) {
+				//		timeMoving0 = timeMoving0 + (point.time - prev.time);
+				//		totalDistanceMoving0 += calculations[0];
+				//	}
+			}
+
+			float pointDistance = (j > 0) ? calculations[0] : 0;
+			Elevation elevation1 = null;
+			if (st.collectData) {
+				elevation1 = new Elevation();
+				elevation1.elevation = elevationValue;
+				elevation1.time = st.timeDiff;
+				elevation1.distance = pointDistance;
+				elevationData.add(elevation1);
+			}
+			if (!hasElevationData && !Float.isNaN(elevationValue) && totalDistance > 0) {
+				hasElevationData = true;
+			}
+
+			minSpeed = Math.min(speed, minSpeed);
+			if (speed > 0) {
+				st.totalSpeedSum += speed;
+				maxSpeed = Math.max(speed, maxSpeed);
+				st.speedCount++;
+			}
+
+			Speed speed1 = null;
+			if (st.collectData) {
+				speed1 = new Speed();
+				speed1.speed = speed;
+				speed1.time = st.timeDiff;
+				speed1.distance = pointDistance;
+				speedData.add(speed1);
+			}
+			if (!hasSpeedData && speed > 0 && totalDistance > 0) {
+				hasSpeedData = true;
+			}
+			if (st.generalSegment) {
+				st.distanceOfSingleSegment += calculations[0];
+				if (point.firstPoint) {
+					st.distanceOfSingleSegment = 0;
+					st.timeMovingOfSingleSegment = 0;
+					st.distanceMovingOfSingleSegment = 0;
+					if (j > 0 && st.collectData) {
+						elevation1.firstPoint = true;
+						speed1.firstPoint = true;
 					}
-					if (s.segment.generalSegment) {
-						distanceOfSingleSegment += calculations[0];
-						if (point.firstPoint) {
-							distanceOfSingleSegment = 0;
-							timeMovingOfSingleSegment = 0;
-							distanceMovingOfSingleSegment = 0;
-							if (j > 0) {
-								elevation1.firstPoint = true;
-								speed1.firstPoint = true;
-							}
-						}
-						if (point.lastPoint) {
-							totalDistanceWithoutGaps += distanceOfSingleSegment;
-							timeMovingWithoutGaps += timeMovingOfSingleSegment;
-							totalDistanceMovingWithoutGaps += distanceMovingOfSingleSegment;
-							if (j < numberOfPoints - 1) {
-								elevation1.lastPoint = true;
-								speed1.lastPoint = true;
-							}
-						}
+				}
+				if (point.lastPoint) {
+					totalDistanceWithoutGaps += st.distanceOfSingleSegment;
+					timeMovingWithoutGaps += st.timeMovingOfSingleSegment;
+					totalDistanceMovingWithoutGaps += st.distanceMovingOfSingleSegment;
+					// reset in endSegment if it is the last point of segment
+					if (st.collectData) {
+						elevation1.lastPoint = true;
+						speed1.lastPoint = true;
 					}
 				}
 			}
+			st.lastElevation = elevation1;
+			st.lastSpeed = speed1;
+			st.prev.lat = point.lat;
+			st.prev.lon = point.lon;
+			st.prev.time = point.time;
+			st.last = point;
+			st.segmentPoints++;
+		}
+
+		public void endSegment() {
+			AnalysisState st = state;
+			if (st.segmentPoints == 0) {
+				return;
+			}
+			locationEnd = st.last;
+			// End detection without breakout
+			if (st.channelEnd) {
+				if ((st.channelTop - st.channelBase) >= st.channelThres) {
+					diffElevationUp += st.channelTop - st.channelBase;
+				}
+				if ((st.channelBase - st.channelBottom) >= st.channelThres) {
+					diffElevationDown += st.channelBase - st.channelBottom;
+				}
+			}
+			if (st.lastElevation != null) {
+				st.lastElevation.lastPoint = false;
+				st.lastSpeed.lastPoint = false;
+			}
+		}
+
+		public GPXTrackAnalysis finishAnalysis(long filestamp) {
+			AnalysisState st = state;
+			state = null;
 			if (totalDistance < 0) {
 				hasElevationData = false;
 				hasSpeedData = false;
@@ -867,18 +1180,18 @@ public class GPXUtilities {
 
 			// 3. Time moving, if any
 			// 4. Elevation, eleUp, eleDown, if recorded
-			if (elevationPoints > 0) {
-				avgElevation = totalElevation / elevationPoints;
+			if (st.elevationPoints > 0) {
+				avgElevation = st.totalElevation / st.elevationPoints;
 			}
 
 
 			// 5. Max speed and Average speed, if any. Average speed is NOT overall (effective) speed, but only calculated for "moving" periods.
 			//    Averaging speed values is less precise than totalDistanceMoving/timeMoving
-			if (speedCount > 0) {
+			if (st.speedCount > 0) {
 				if (timeMoving > 0) {
 					avgSpeed = (float) totalDistanceMoving / (float) timeMoving * 1000f;
 				} else {
-					avgSpeed = (float) totalSpeedSum / (float) speedCount;
+					avgSpeed = (float) st.totalSpeedSum / (float) st.speedCount;
 				}
 			} else {
 				avgSpeed = -1;
@@ -886,6 +1199,46 @@ public class GPXUtilities {
 			return this;
 		}
 
+		private static class AnalysisState {
+			// LPF smooting window
+			static final int SMOOTH_WINDOW = 5;
+
+			boolean collectData;
+			float[] calculations = new float[1];
+
+			long startTimeOfSingleSegment = 0;
+			long endTimeOfSingleSegment = 0;
+
+			float distanceOfSingleSegment = 0;
+			float distanceMovingOfSingleSegment = 0;
+			long timeMovingOfSingleSegment = 0;
+
+			float totalElevation = 0;
+			int elevationPoints = 0;
+			int speedCount = 0;
+			int timeDiff = 0;
+			double totalSpeedSum = 0;
+
+			double channelThresMin = 10;           // Minimum oscillation amplitude considered as relevant or as above noise for accumulated Ascent/Descent analysis
+			double channelThres = channelThresMin; // Actual oscillation amplitude considered as above noise (dynamic channel adjustment, accomodates depedency on current VDOP/getAccuracy if desired)
+			double channelBase;
+			double channelTop;
+			double channelBottom;
+			boolean climb = false;
+			// last point of segment had smoothed elevation
+			boolean channelEnd;
+
+			boolean generalSegment;
+			double segmentMetricEnd;
+			float segmentDistance;
+			int segmentPoints;
+			double[] eleWindow = new double[SMOOTH_WINDOW];
+			// copy of previous point, so caller could reuse point objects
+			WptPt prev = new WptPt();
+			WptPt last;
+			Elevation lastElevation;
+			Speed lastSpeed;
+		}
 	}
 
 	private static class SplitSegment {
@@ -896,11 +1249,13 @@ public class GPXUtilities {
 		int endPointInd;
 		double metricEnd;
 		double secondaryMetricEnd;
+		// points reused to read packed segment
+		private WptPt[] tmp;
 
 		public SplitSegment(TrkSegment s) {
 			startPointInd = 0;
 			startCoeff = 0;
-			endPointInd = s.points.size() - 2;
+			endPointInd = s.getPointsCount() - 2;
 			endCoeff = 1;
 			this.segment = s;
 		}
@@ -920,17 +1275,31 @@ public class GPXUtilities {
 			final int ind = j + startPointInd;
 			if (j == 0) {
 				if (startCoeff == 0) {
-					return segment.points.get(ind);
+					return getPoint(ind, 0);
 				}
-				return approx(segment.points.get(ind), segment.points.get(ind + 1), startCoeff);
+				return approx(getPoint(ind, 0), getPoint(ind + 1, 1), startCoeff);
 			}
 			if (j == getNumberOfPoints() - 1) {
 				if (endCoeff == 1) {
-					return segment.points.get(ind);
+					return getPoint(ind, 0);
 				}
-				return approx(segment.points.get(ind - 1), segment.points.get(ind), endCoeff);
+				return approx(getPoint(ind - 1, 0), getPoint(ind, 1), endCoeff);
+			}
+			return getPoint(ind, 0);
+		}
+
+		/**
+		 * Point of packed segment stays valid till the next call with the same slot (0 or 1).
+		 */
+		public WptPt getPoint(int ind, int slot) {
+			TrkSegmentColumns columns = segment.getColumns();
+			if (columns == null) {
+				return segment.points.get(ind);
+			}
+			if (tmp == null) {
+				tmp = new WptPt[] { new WptPt(), new WptPt() };
 			}
-			return segment.points.get(ind);
+			return columns.getPoint(ind, tmp[slot]);
 		}
 
 
@@ -1011,8 +1380,9 @@ public class GPXUtilities {
 		SplitSegment sp = new SplitSegment(segment, 0, 0);
 		double total = 0;
 		WptPt prev = null;
-		for (int k = 0; k < segment.points.size(); k++) {
-			WptPt point = segment.points.get(k);
+		int pointsCount = segment.getPointsCount();
+		for (int k = 0; k < pointsCount; k++) {
+			WptPt point = sp.getPoint(k, k % 2);
 			if (k > 0) {
 				double currentSegment = 0;
 				if (!(segment.generalSegment && !joinSegments && point.firstPoint)) {
@@ -1034,11 +1404,11 @@ public class GPXUtilities {
 			}
 			prev = point;
 		}
-		if (segment.points.size() > 0
-				&& !(sp.endPointInd == segment.points.size() - 1 && sp.startCoeff == 1)) {
+		if (pointsCount > 0
+				&& !(sp.endPointInd == pointsCount - 1 && sp.startCoeff == 1)) {
 			sp.metricEnd = total;
 			sp.secondaryMetricEnd = secondaryMetricEnd;
-			sp.setLastPoint(segment.points.size() - 2, 1);
+			sp.setLastPoint(pointsCount - 2, 1);
 			splitSegments.add(sp);
 		}
 	}
@@ -1195,12 +1565,15 @@ public class GPXUtilities {
 
 		private void buildGeneralSegment() {
 			TrkSegment segment = new TrkSegment();
+			boolean packed = true;
 			for (Track track : tracks) {
 				for (TrkSegment s : track.segments) {
-					if (s.points.size() > 0) {
-						List<WptPt> waypoints = new ArrayList<>(s.points.size());
-						for (WptPt wptPt : s.points) {
-							waypoints.add(new WptPt(wptPt));
+					int count = s.getPointsCount();
+					if (count > 0) {
+						packed &= s.isPacked();
+						List<WptPt> waypoints = new ArrayList<>(count);
+						for (int i = 0; i < count; i++) {
+							waypoints.add(s.isPacked() ? s.getPoint(i) : new WptPt(s.points.get(i)));
 						}
 						waypoints.get(0).firstPoint = true;
 						waypoints.get(waypoints.size() - 1).lastPoint = true;
@@ -1210,6 +1583,10 @@ public class GPXUtilities {
 			}
 			if (segment.points.size() > 0) {
 				segment.generalSegment = true;
+				// general segment of packed segments is packed too
+				if (packed) {
+					segment.pack();
+				}
 				generalSegment = segment;
 			}
 		}
@@ -1224,7 +1601,7 @@ public class GPXUtilities {
 				for (TrkSegment segment : subtrack.segments) {
 					if (!segment.generalSegment) {
 						g.totalTracks++;
-						if (segment.points.size() > 1) {
+						if (segment.getPointsCount() > 1) {
 							splitSegments.add(new SplitSegment(segment));
 						}
 					}
@@ -1259,7 +1636,7 @@ public class GPXUtilities {
 		public boolean hasTrkPt() {
 			for (Track t : tracks) {
 				for (TrkSegment ts : t.segments) {
-					if (ts.points.size() > 0) {
+					if (ts.getPointsCount() > 0) {
 						return true;
 					}
 				}
@@ -1321,7 +1698,7 @@ public class GPXUtilities {
 		public TrkSegment getNonEmptyTrkSegment() {
 			for (GPXUtilities.Track t : tracks) {
 				for (TrkSegment s : t.segments) {
-					if (s.points.size() > 0) {
+					if (s.getPointsCount() > 0) {
 						return s;
 					}
 				}
@@ -1477,10 +1854,16 @@ public class GPXUtilities {
 			for (Track t : tracks) {
 				int trackColor = t.getColor(getColor(0));
 				for (TrkSegment ts : t.segments) {
-					if (!ts.generalSegment && ts.points.size() > 0) {
+					if (!ts.generalSegment && ts.getPointsCount() > 0) {
 						TrkSegment sgmt = new TrkSegment();
 						tpoints.add(sgmt);
-						sgmt.points.addAll(ts.points);
+						if (ts.isPacked()) {
+							for (int i = 0; i < ts.getPointsCount(); i++) {
+								sgmt.points.add(ts.getPoint(i));
+							}
+						} else {
+							sgmt.points.addAll(ts.points);
+						}
 						sgmt.setColor(trackColor);
 					}
 				}
@@ -1493,8 +1876,8 @@ public class GPXUtilities {
 				Track tk = tracks.get(tracks.size() - 1);
 				if (tk.segments.size() > 0) {
 					TrkSegment ts = tk.segments.get(tk.segments.size() - 1);
-					if (ts.points.size() > 0) {
-						return ts.points.get(ts.points.size() - 1);
+					if (ts.getPointsCount() > 0) {
+						return ts.getPoint(ts.getPointsCount() - 1);
 					}
 				}
 			}
@@ -1504,8 +1887,8 @@ public class GPXUtilities {
 		public WptPt findPointToShow() {
 			for (Track t : tracks) {
 				for (TrkSegment s : t.segments) {
-					if (s.points.size() > 0) {
-						return s.points.get(0);
+					if (s.getPointsCount() > 0) {
+						return s.getPoint(0);
 					}
 				}
 			}
@@ -1524,7 +1907,7 @@ public class GPXUtilities {
 			for (Track t : tracks) {
 				if (t.segments != null) {
 					for (TrkSegment s : t.segments) {
-						boolean tracksEmpty = s.points.isEmpty();
+						boolean tracksEmpty = s.getPointsCount() == 0;
 						if (!tracksEmpty) {
 							return false;
 						}
@@ -1538,7 +1921,7 @@ public class GPXUtilities {
 			int count = 0;
 			for (Track t : tracks) {
 				for (TrkSegment s : t.segments) {
-					if (s.points.size() > 0) {
+					if (s.getPointsCount() > 0) {
 						count++;
 					}
 				}
@@ -1580,17 +1963,21 @@ public class GPXUtilities {
 			double top = 0, bottom = 0;
 			for (Track track : tracks) {
 				for (TrkSegment segment : track.segments) {
-					for (WptPt p : segment.points) {
+					TrkSegmentColumns columns = segment.getColumns();
+					int count = segment.getPointsCount();
+					for (int i = 0; i < count; i++) {
+						double lat = columns != null ? columns.getLatitude(i) : segment.points.get(i).getLatitude();
+						double lon = columns != null ? columns.getLongitude(i) : segment.points.get(i).getLongitude();
 						if (left == 0 && right == 0) {
-							left = p.getLongitude();
-							right = p.getLongitude();
-							top = p.getLatitude();
-							bottom = p.getLatitude();
+							left = lon;
+							right = lon;
+							top = lat;
+							bottom = lat;
 						} else {
-							left = Math.min(left, p.getLongitude());
-							right = Math.max(right, p.getLongitude());
-							top = Math.max(top, p.getLatitude());
-							bottom = Math.min(bottom, p.getLatitude());
+							left = Math.min(left, lon);
+							right = Math.max(right, lon);
+							top = Math.max(top, lat);
+							bottom = Math.min(bottom, lat);
 						}
 					}
 				}
@@ -1802,6 +2189,15 @@ public class GPXUtilities {
 					writeNotNullText(serializer, "desc", track.desc);
 					for (TrkSegment segment : track.segments) {
 						serializer.startTag(null, "trkseg"); //$NON-NLS-1$
+						TrkSegmentColumns columns = segment.getColumns();
+						if (columns != null) {
+							WptPt p = new WptPt();
+							for (int i = 0; i < columns.size(); i++) {
+								serializer.startTag(null, "trkpt"); //$NON-NLS-1$
+								writeWpt(format, serializer, columns.getPoint(i, p));
+								serializer.endTag(null, "trkpt"); //$NON-NLS-1$
+							}
+						}
 						for (WptPt p : segment.points) {
 							serializer.startTag(null, "trkpt"); //$NON-NLS-1$
 							writeWpt(format, serializer, p);
@@ -2507,6 +2903,463 @@ public class GPXUtilities {
 		return bounds;
 	}
 	
+	/**
+	 * Reads track points of gpx one by one (or in batches of primitive arrays) without building {@link GPXFile},
+	 * so big recorded tracks could be analyzed or imported in constant memory. Metadata and waypoints are passed to
+	 * optional {@link GPXStreamListener}, routes and csv attributes are skipped. Points of route point extensions
+	 * are returned after all tracks as a separate track of one segment, as {@link #loadGPXFile(InputStream)} adds them.
+	 */
+	public static class GPXStreamReader implements Closeable {
+
+		public interface GPXStreamListener {
+
+			void onMetadata(Metadata metadata);
+
+			void onWptPoint(WptPt point);
+		}
+
+		public static class PointsBatch {
+			public final double[] lat;
+			public final double[] lon;
+			public final double[] ele;
+			public final double[] speed;
+			public final double[] hdop;
+			public final long[] time;
+			public int size;
+			public int trackIndex;
+			public int segmentIndex;
+
+			public PointsBatch(int capacity) {
+				lat = new double[capacity];
+				lon = new double[capacity];
+				ele = new double[capacity];
+				speed = new double[capacity];
+				hdop = new double[capacity];
+				time = new long[capacity];
+			}
+
+			public int getCapacity() {
+				return lat.length;
+			}
+		}
+
+		private final Reader reader;
+		private final XmlPullParser parser;
+		private final SimpleDateFormat format;
+		private final SimpleDateFormat formatMillis;
+		private GPXStreamListener listener;
+
+		private String creator;
+		private String trackName;
+		private int tracksCount;
+		private int segmentsCount;
+		private boolean segmentInTrack;
+		private int trackIndex = -1;
+		private int segmentIndex = -1;
+		private boolean finished;
+		// points of route point extensions (only coordinates are read), returned when the document is finished
+		private final List<WptPt> routePoints = new ArrayList<>();
+		private int routePointIndex;
+
+		// first point of next segment read by readPoints
+		private WptPt pending;
+		private int pendingTrackIndex;
+		private int pendingSegmentIndex;
+
+		public GPXStreamReader(InputStream is) throws IOException, XmlPullParserException {
+			reader = getUTF8Reader(is);
+			parser = PlatformUtil.newXMLPullParser();
+			parser.setInput(reader);
+			format = new SimpleDateFormat(GPX_TIME_FORMAT, Locale.US);
+			format.setTimeZone(TimeZone.getTimeZone("UTC"));
+			formatMillis = new SimpleDateFormat(GPX_TIME_FORMAT_MILLIS, Locale.US);
+			formatMillis.setTimeZone(TimeZone.getTimeZone("UTC"));
+		}
+
+		public void setListener(GPXStreamListener listener) {
+			this.listener = listener;
+		}
+
+		public String getCreator() {
+			return creator;
+		}
+
+		public String getTrackName() {
+			return trackName;
+		}
+
+		/**
+		 * @return track of the last point returned by {@link #nextPoint()}
+		 */
+		public int getTrackIndex() {
+			return trackIndex;
+		}
+
+		/**
+		 * @return segment of the last point returned by {@link #nextPoint()}, segments are numbered through all tracks
+		 */
+		public int getSegmentIndex() {
+			return segmentIndex;
+		}
+
+		/**
+		 * @return number of segments (including empty) read so far
+		 */
+		public int getSegmentsCount() {
+			return segmentsCount;
+		}
+
+		/**
+		 * @return next track point or null when the document is finished
+		 */
+		public WptPt nextPoint() throws XmlPullParserException, IOException {
+			if (pending != null) {
+				WptPt pt = pending;
+				pending = null;
+				trackIndex = pendingTrackIndex;
+				segmentIndex = pendingSegmentIndex;
+				return pt;
+			}
+			WptPt pt = readNextPoint();
+			if (pt != null) {
+				trackIndex = tracksCount - 1;
+				segmentIndex = segmentsCount - 1;
+			}
+			return pt;
+		}
+
+		/**
+		 * Fills batch with next points of one segment.
+		 * @return number of points in batch, 0 when the document is finished
+		 */
+		public int readPoints(PointsBatch batch) throws XmlPullParserException, IOException {
+			batch.size = 0;
+			WptPt pt;
+			while (batch.size < batch.getCapacity() && (pt = nextPoint()) != null) {
+				if (batch.size == 0) {
+					batch.trackIndex = trackIndex;
+					batch.segmentIndex = segmentIndex;
+				} else if (segmentIndex != batch.segmentIndex) {
+					pending = pt;
+					pendingTrackIndex = trackIndex;
+					pendingSegmentIndex = segmentIndex;
+					trackIndex = batch.trackIndex;
+					segmentIndex = batch.segmentIndex;
+					break;
+				}
+				int i = batch.size++;
+				batch.lat[i] = pt.lat;
+				batch.lon[i] = pt.lon;
+				batch.ele[i] = pt.ele;
+				batch.speed[i] = pt.speed;
+				batch.hdop[i] = pt.hdop;
+				batch.time[i] = pt.time;
+			}
+			return batch.size;
+		}
+
+		/**
+		 * Reads the rest of the stream and calculates analysis the same way as {@link GPXFile#getAnalysis(long)}
+		 * without elevation and speed data.
+		 */
+		public GPXTrackAnalysis getAnalysis(long fileTimestamp) throws XmlPullParserException, IOException {
+			final GPXTrackAnalysis g = new GPXTrackAnalysis();
+			final Set<String> categories = new HashSet<>();
+			final GPXStreamListener l = listener;
+			listener = new GPXStreamListener() {
+
+				@Override
+				public void onMetadata(Metadata metadata) {
+					if (l != null) {
+						l.onMetadata(metadata);
+					}
+				}
+
+				@Override
+				public void onWptPoint(WptPt point) {
+					g.wptPoints++;
+					categories.add(point.category == null ? "" : point.category);
+					if (l != null) {
+						l.onWptPoint(point);
+					}
+				}
+			};
+			try {
+				g.startAnalysis(false);
+				// segments with single point are not analyzed
+				WptPt first = null;
+				int segment = -1;
+				boolean started = false;
+				WptPt pt;
+				while ((pt = nextPoint()) != null) {
+					if (segmentIndex != segment) {
+						if (started) {
+							g.endSegment();
+						}
+						started = false;
+						segment = segmentIndex;
+						first = pt;
+					} else {
+						if (!started) {
+							g.startSegment(false, 0, 0);
+							g.addPoint(first);
+							started = true;
+						}
+						g.addPoint(pt);
+					}
+				}
+				if (started) {
+					g.endSegment();
+				}
+			} finally {
+				listener = l;
+			}
+			g.totalTracks = segmentsCount;
+			g.wptCategoryNames = categories;
+			return g.finishAnalysis(fileTimestamp);
+		}
+
+		private WptPt readNextPoint() throws XmlPullParserException, IOException {
+			if (finished) {
+				return nextRoutePoint();
+			}
+			int tok;
+			while ((tok = parser.next()) != XmlPullParser.END_DOCUMENT) {
+				if (tok != XmlPullParser.START_TAG) {
+					continue;
+				}
+				String tag = parser.getName();
+				if (tag.equals("gpx")) {
+					creator = parser.getAttributeValue("", "creator");
+				} else if (tag.equals("metadata")) {
+					Metadata metadata = readMetadata();
+					if (listener != null) {
+						listener.onMetadata(metadata);
+					}
+				} else if (tag.equals("wpt")) {
+					WptPt wpt = readPoint(tag, true);
+					if (listener != null) {
+						listener.onWptPoint(wpt);
+					}
+				} else if (tag.equals("trk")) {
+					tracksCount++;
+					trackName = null;
+					segmentInTrack = false;
+				} else if (tag.equals("name") && tracksCount > 0) {
+					trackName = readText(parser, "name");
+				} else if (tag.equals("trkseg")) {
+					segmentsCount++;
+					segmentInTrack = true;
+				} else if (tag.equals("trkpt")) {
+					if (!segmentInTrack) {
+						// points without segment are added to the single segment of track
+						segmentsCount++;
+						segmentInTrack = true;
+					}
+					return readPoint(tag, false);
+				} else if (tag.equals("rte") || tag.equals("extensions")) {
+					skip(tag);
+				}
+			}
+			finished = true;
+			if (!routePoints.isEmpty()) {
+				tracksCount++;
+				segmentsCount++;
+				trackName = null;
+			}
+			return nextRoutePoint();
+		}
+
+		private WptPt nextRoutePoint() {
+			return routePointIndex < routePoints.size() ? routePoints.get(routePointIndex++) : null;
+		}
+
+		private void readRoutePoints() throws XmlPullParserException, IOException {
+			int tok;
+			while ((tok = parser.next()) != XmlPullParser.END_DOCUMENT) {
+				if (tok == XmlPullParser.END_TAG && parser.getName().equalsIgnoreCase("routepointextension")) {
+					break;
+				} else if (tok == XmlPullParser.START_TAG && parser.getName().equals("rpt")) {
+					routePoints.add(parseWptAttributes(parser));
+				}
+			}
+		}
+
+		private WptPt readPoint(String pointTag, boolean keepExtensions) throws XmlPullParserException, IOException {
+			WptPt pt = parseWptAttributes(parser);
+			int tok;
+			while ((tok = parser.next()) != XmlPullParser.END_DOCUMENT) {
+				if (tok == XmlPullParser.END_TAG && parser.getName().equals(pointTag)) {
+					break;
+				} else if (tok != XmlPullParser.START_TAG) {
+					continue;
+				}
+				String tag = parser.getName();
+				if (tag.equals("name")) {
+					pt.name = readText(parser, "name");
+				} else if (tag.equals("desc")) {
+					pt.desc = readText(parser, "desc");
+				} else if (tag.equals("cmt")) {
+					pt.comment = readText(parser, "cmt");
+				} else if (tag.equals("link")) {
+					pt.link = parser.getAttributeValue("", "href");
+				} else if (tag.equals("category")) {
+					pt.category = readText(parser, "category");
+				} else if (tag.equals("type")) {
+					String text = readText(parser, "type");
+					if (pt.category == null) {
+						pt.category = text;
+					}
+				} else if (tag.equals("ele")) {
+					pt.ele = parseFloat(readText(parser, "ele"), pt.ele);
+				} else if (tag.equals("hdop")) {
+					pt.hdop = parseFloat(readText(parser, "hdop"), pt.hdop);
+				} else if (tag.equals("speed")) {
+					pt.speed = parseFloat(readText(parser, "speed"), pt.speed);
+				} else if (tag.equals("time")) {
+					pt.time = parseTime(readText(parser, "time"), format, formatMillis);
+				} else if (tag.equals("extensions")) {
+					readPointExtensions(pt, keepExtensions);
+				}
+			}
+			return pt;
+		}
+
+		private void readPointExtensions(WptPt pt, boolean keepExtensions) throws XmlPullParserException, IOException {
+			int tok;
+			while ((tok = parser.next()) != XmlPullParser.END_DOCUMENT) {
+				if (tok == XmlPullParser.END_TAG && parser.getName().equals("extensions")) {
+					break;
+				} else if (tok == XmlPullParser.START_TAG) {
+					String tag = parser.getName();
+					if (tag.equalsIgnoreCase("routepointextension")) {
+						if (keepExtensions) {
+							pt.getExtensionsToWrite().put("offset", routePoints.size() + "");
+						}
+						readRoutePoints();
+						continue;
+					}
+					Map<String, String> values = readTextMap(parser, tag);
+					for (Entry<String, String> entry : values.entrySet()) {
+						if (keepExtensions) {
+							pt.getExtensionsToWrite().put(entry.getKey().toLowerCase(), entry.getValue());
+						}
+						if (tag.equals("speed")) {
+							pt.speed = parseFloat(entry.getValue(), pt.speed);
+						}
+					}
+				}
+			}
+		}
+
+		private Metadata readMetadata() throws XmlPullParserException, IOException {
+			Metadata metadata = new Metadata();
+			GPXExtensions parent = metadata;
+			int tok;
+			while ((tok = parser.next()) != XmlPullParser.END_DOCUMENT) {
+				if (tok == XmlPullParser.END_TAG) {
+					String tag = parser.getName();
+					if (tag.equals("metadata")) {
+						break;
+					} else if (tag.equals("author") || tag.equals("copyright")) {
+						parent = metadata;
+					}
+					continue;
+				} else if (tok != XmlPullParser.START_TAG) {
+					continue;
+				}
+				String tag = parser.getName();
+				if (parent instanceof Author) {
+					Author author = (Author) parent;
+					if (tag.equals("name")) {
+						author.name = readText(parser, "name");
+					} else if (tag.equals("email")) {
+						String id = parser.getAttributeValue("", "id");
+						String domain = parser.getAttributeValue("", "domain");
+						if (!Algorithms.isEmpty(id) && !Algorithms.isEmpty(domain)) {
+							author.email = id + "@" + domain;
+						}
+					} else if (tag.equals("link")) {
+						author.link = parser.getAttributeValue("", "href");
+					}
+				} else if (parent instanceof Copyright) {
+					Copyright copyright = (Copyright) parent;
+					if (tag.equals("year")) {
+						copyright.year = readText(parser, "year");
+					} else if (tag.equals("license")) {
+						copyright.license = readText(parser, "license");
+					}
+				} else if (tag.equals("name")) {
+					metadata.name = readText(parser, "name");
+				} else if (tag.equals("desc")) {
+					metadata.desc = readText(parser, "desc");
+				} else if (tag.equals("link")) {
+					metadata.link = parser.getAttributeValue("", "href");
+				} else if (tag.equals("time")) {
+					metadata.time = parseTime(readText(parser, "time"), format, formatMillis);
+				} else if (tag.equals("keywords")) {
+					metadata.keywords = readText(parser, "keywords");
+				} else if (tag.equals("bounds")) {
+					metadata.bounds = parseBoundsAttributes(parser);
+				} else if (tag.equals("author")) {
+					metadata.author = new Author();
+					parent = metadata.author;
+				} else if (tag.equals("copyright")) {
+					metadata.copyright = new Copyright();
+					metadata.copyright.author = parser.getAttributeValue("", "author");
+					parent = metadata.copyright;
+				} else if (tag.equals("extensions")) {
+					skip(tag);
+				}
+			}
+			return metadata;
+		}
+
+		// skips element except route point extensions inside extensions
+		private void skip(String tag) throws XmlPullParserException, IOException {
+			int depth = 1;
+			int extensionsDepth = tag.equals("extensions") ? 1 : 0;
+			int tok;
+			while (depth > 0 && (tok = parser.next()) != XmlPullParser.END_DOCUMENT) {
+				if (tok == XmlPullParser.START_TAG) {
+					String name = parser.getName();
+					if (name.equals(tag)) {
+						depth++;
+					}
+					if (name.equals("extensions")) {
+						extensionsDepth++;
+					} else if (extensionsDepth > 0 && name.equalsIgnoreCase("routepointextension")) {
+						readRoutePoints();
+					}
+				} else if (tok == XmlPullParser.END_TAG) {
+					String name = parser.getName();
+					if (name.equals(tag)) {
+						depth--;
+					}
+					if (name.equals("extensions")) {
+						extensionsDepth--;
+					}
+				}
+			}
+		}
+
+		private static double parseFloat(String text, double defValue) {
+			if (!Algorithms.isEmpty(text)) {
+				try {
+					return Float.parseFloat(text);
+				} catch (NumberFormatException e) {
+					log.debug(e.getMessage(), e);
+				}
+			}
+			return defValue;
+		}
+
+		@Override
+		public void close() throws IOException {
+			reader.close();
+		}
+	}
+
 	public static void mergeGPXFileInto(GPXFile to, GPXFile from) {
 		if (from == null) {
 			return;
@@ -1,5 +1,6 @@
 package net.osmand;
 
+import net.osmand.GPXUtilities.TrkSegmentColumns;
 import net.osmand.GPXUtilities.WptPt;
 import net.osmand.data.LatLon;
 import net.osmand.util.Algorithms;
@@ -13,10 +14,12 @@ public class LocationsHolder {
 	private static final int LOCATION_TYPE_LATLON = 0;
 	private static final int LOCATION_TYPE_LOCATION = 1;
 	private static final int LOCATION_TYPE_WPTPT = 2;
+	private static final int LOCATION_TYPE_COLUMNS = 3;
 
 	private List<LatLon> latLonList;
 	private List<Location> locationList;
 	private List<WptPt> wptPtList;
+	private TrkSegmentColumns columns;
 	private int locationType;
 	private int size;
 
@@ -39,6 +42,15 @@ public class LocationsHolder {
 		}
 	}
 
+	/**
+	 * Wraps compact points of packed segment without copying.
+	 */
+	public LocationsHolder(TrkSegmentColumns columns) {
+		this.locationType = LOCATION_TYPE_COLUMNS;
+		this.columns = columns;
+		this.size = columns.size();
+	}
+
 	private int resolveLocationType(List<?> locations) {
 		if (!Algorithms.isEmpty(locations)) {
 			Object locationObj = locations.get(0);
@@ -63,6 +75,8 @@ public class LocationsHolder {
 				return locationList.get(index).getLatitude();
 			case LOCATION_TYPE_WPTPT:
 				return wptPtList.get(index).getLatitude();
+			case LOCATION_TYPE_COLUMNS:
+				return columns.getLatitude(index);
 			default:
 				return 0;
 		}
@@ -76,6 +90,8 @@ public class LocationsHolder {
 				return locationList.get(index).getLongitude();
 			case LOCATION_TYPE_WPTPT:
 				return wptPtList.get(index).getLongitude();
+			case LOCATION_TYPE_COLUMNS:
+				return columns.getLongitude(index);
 			default:
 				return 0;
 		}
@@ -141,6 +157,8 @@ public class LocationsHolder {
 	public WptPt getWptPt(int index) {
 		if (this.locationType == LOCATION_TYPE_WPTPT) {
 			return wptPtList.get(index);
+		} else if (this.locationType == LOCATION_TYPE_COLUMNS) {
+			return columns.getPoint(index);
 		} else {
 			WptPt wptPt = new WptPt();
 			wptPt.lat = getLatitude(index);
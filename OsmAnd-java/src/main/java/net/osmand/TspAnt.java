@@ -113,21 +113,51 @@ public class TspAnt {
         if (keepEndPoint) {
             l.add(end);
         }
-        n = l.size() ;
+        int sz = l.size();
+        double[][] costs = new double[sz][sz];
+        for (int i = 0; i < sz; i++) {
+            for (int j = 1; j < sz; j++) {
+                costs[i][j] = Math.rint(MapUtils.getDistance(l.get(i), l.get(j)));
+            }
+        }
+        return readGraph(costs, keepEndPoint);
+    }
+
+    // Read graph from cost matrix (for example road time or distance from RouteMatrixCalculator).
+    // Point 0 is start, last point is end if keepEndPoint. Infinite costs (not reachable) are replaced with big weight.
+    public TspAnt readGraph(float[][] costs, boolean keepEndPoint) {
+        double[][] c = new double[costs.length][costs.length];
+        for (int i = 0; i < costs.length; i++) {
+            for (int j = 0; j < costs.length; j++) {
+                c[i][j] = costs[i][j];
+            }
+        }
+        return readGraph(c, keepEndPoint);
+    }
+
+    private TspAnt readGraph(double[][] costs, boolean keepEndPoint) {
+        n = costs.length;
 //        System.out.println("Cost");
         graph = new double[n][n];
         double maxSum = 0;
 		for (int i = 0; i < n ; i++) {
 			double maxIWeight = 0;
 			for (int j = 1; j < n ; j++) {
-				double d = Math.rint(MapUtils.getDistance(l.get(i), l.get(j))) + 0.1;
-				maxIWeight = Math.max(d, maxIWeight);
+				double d = costs[i][j] + 0.1;
+				if (!Double.isInfinite(d)) {
+					maxIWeight = Math.max(d, maxIWeight);
+				}
 				graph[i][j] = d;
 			}
 			maxSum += maxIWeight;
 		}
 		maxSum = Math.rint(maxSum) + 1;
 		for (int i = 0; i < n; i++) {
+			for (int j = 1; j < n; j++) {
+				if (Double.isInfinite(graph[i][j]) || Double.isNaN(graph[i][j])) {
+					graph[i][j] = maxSum;
+				}
+			}
 			if (keepEndPoint && i == n - 1) {
 				graph[i][0] = 0.1;
 			} else {
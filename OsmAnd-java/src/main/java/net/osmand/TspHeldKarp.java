@@ -25,7 +25,29 @@ public class TspHeldKarp {
 
   /// OSMAND Modification
 	public TspHeldKarp readInput(List<LatLon> ls, boolean returnToInitialPoint) {
-		n = ls.size();
+		int sz = ls.size();
+		double[][] costs = new double[sz][sz];
+		for (int i = 0; i < sz; i++) {
+			for (int j = 0; j < sz; j++) {
+				costs[i][j] = MapUtils.getDistance(ls.get(i), ls.get(j));
+			}
+		}
+		return readInput(costs, returnToInitialPoint);
+	}
+
+	// cost matrix could be road time or distance (RouteMatrixCalculator), not reachable points have infinite cost
+	public TspHeldKarp readInput(float[][] costs, boolean returnToInitialPoint) {
+		double[][] c = new double[costs.length][costs.length];
+		for (int i = 0; i < costs.length; i++) {
+			for (int j = 0; j < costs.length; j++) {
+				c[i][j] = costs[i][j];
+			}
+		}
+		return readInput(c, returnToInitialPoint);
+	}
+
+	private TspHeldKarp readInput(double[][] costs, boolean returnToInitialPoint) {
+		n = costs.length;
 		order = new int[n];
 		cost = new double[n][n];
 		// TSPLIB distances are rounded to the nearest integer to avoid the sum of square roots problem
@@ -34,8 +56,11 @@ public class TspHeldKarp {
 			for (int j = 0; j < n; j++) {
 				if (!returnToInitialPoint && (j == 0)) {
 					cost[i][j] = 0;
+				} else if (Double.isInfinite(costs[i][j])) {
+					// not Double.MAX_VALUE as it is used for excluded edges
+					cost[i][j] = Float.MAX_VALUE;
 				} else {
-					cost[i][j] = Math.rint(MapUtils.getDistance(ls.get(i), ls.get(j)));
+					cost[i][j] = Math.rint(costs[i][j]);
 				}
 			}
 			System.out.println(Arrays.toString(cost[i]));
@@ -12,6 +12,7 @@ import java.util.LinkedList;
 import java.util.List;
 
 import net.osmand.CollatorStringMatcher;
+import net.osmand.OsmAndCollator;
 import net.osmand.PlatformUtil;
 import net.osmand.StringMatcher;
 import net.osmand.binary.BinaryMapIndexReader.SearchRequest;
@@ -602,15 +603,6 @@ public class BinaryMapAddressReaderAdapter {
 	public void searchAddressDataByName(AddressRegion reg, SearchRequest<MapObject> req, List<Integer> typeFilter) throws IOException {
 		TIntArrayList loffsets = new TIntArrayList();
 		CollatorStringMatcher stringMatcher = new CollatorStringMatcher(req.nameQuery, req.matcherMode);
-		String postcode = Postcode.normalize(req.nameQuery, map.getCountryName());
-		final CityMatcher postcodeMatcher = new DefaultCityMatcher(new CollatorStringMatcher(postcode, req.matcherMode));
-		final CityMatcher cityMatcher = new DefaultCityMatcher(stringMatcher);
-		final CityMatcher cityPostcodeMatcher = new CityMatcher() {
-			@Override
-			public boolean matches(City city) {
-				return city.isPostcode() ? postcodeMatcher.matches(city) : cityMatcher.matches(city);
-			}
-		};
 		long time = System.currentTimeMillis();
 		int indexOffset = 0;
 		while (true) {
@@ -634,12 +626,8 @@ public class BinaryMapAddressReaderAdapter {
 				// also offsets can be randomly skipped by limit
 				loffsets.sort();
 				
-				TIntArrayList[] refs = new TIntArrayList[5];
-				TIntArrayList[] refsContainer = new TIntArrayList[5];
-				for (int i = 0; i < refs.length; i++) {
-					refs[i] = new TIntArrayList();
-					refsContainer[i] = new TIntArrayList();
-				}
+				TIntArrayList[] refs = newRefsArray();
+				TIntArrayList[] refsContainer = newRefsArray();
 
 				LOG.info("Searched address structure in " + (System.currentTimeMillis() - time) + "ms. Found " + loffsets.size()
 						+ " subtress");
@@ -667,89 +655,248 @@ public class BinaryMapAddressReaderAdapter {
 						return;
 					}
 				}
-				if (typeFilter == null) {
-					typeFilter = TYPES;
-				}
-				for (int i = 0; i < typeFilter.size() && !req.isCancelled(); i++) {
-					TIntArrayList list = refs[typeFilter.get(i)];
-					TIntArrayList listContainer = refsContainer[typeFilter.get(i)];
-					
-					if (typeFilter.get(i) == STREET_TYPE) {
-						TIntLongHashMap mp = new TIntLongHashMap();
-						for (int j = 0; j < list.size(); j++) {
-							mp.put(list.get(j), listContainer.get(j));
-						}
-						list.sort();
-						for (int j = 0; j < list.size() && !req.isCancelled(); j ++) {
-							int offset = list.get(j);
-							if (j > 0 &&  offset == list.get(j - 1)) {
-								continue;
-							}
-							City obj;
-							{
-								int contOffset = (int) mp.get(offset);
-								codedIS.seek(contOffset);
-								int len = codedIS.readRawVarint32();
-								int old = codedIS.pushLimit(len);
-								obj = readCityHeader(req, null, contOffset, reg.attributeTagsTable);
-								codedIS.popLimit(old);
-							}
-							if (obj != null) {
-								codedIS.seek(offset);
-								int len = codedIS.readRawVarint32();
-								int old = codedIS.pushLimit(len);
-								LatLon l = obj.getLocation();
-								Street s = new Street(obj);
-								s.setFileOffset(offset);
-								readStreet(s, null, false, MapUtils.get31TileNumberX(l.getLongitude()) >> 7,
-										MapUtils.get31TileNumberY(l.getLatitude()) >> 7, obj.isPostcode() ? obj.getName() : null,
-										reg.attributeTagsTable);
-								publishRawData(req, s);
-								boolean matches = stringMatcher.matches(s.getName());
-								if (!matches) {
-									for (String n : s.getAllNames()) {
-										matches = stringMatcher.matches(n);
-										if (matches) {
-											break;
-										}
-									}
-								}
+				readAddressNameIndexObjects(reg, req, typeFilter, refs, refsContainer, stringMatcher);
+				LOG.info("Whole address search by name is done in " + (System.currentTimeMillis() - time) + "ms. Found "
+						+ req.getSearchResults().size());
+				return;
+			default:
+				skipUnknownField(t);
+				break;
+			}
+		}
+
+	}
+
+	private void readAddressNameIndexObjects(AddressRegion reg, SearchRequest<MapObject> req, List<Integer> typeFilter,
+			TIntArrayList[] refs, TIntArrayList[] refsContainer, CollatorStringMatcher stringMatcher) throws IOException {
+		String postcode = Postcode.normalize(req.nameQuery, map.getCountryName());
+		final CityMatcher postcodeMatcher = new DefaultCityMatcher(new CollatorStringMatcher(postcode, req.matcherMode));
+		final CityMatcher cityMatcher = new DefaultCityMatcher(stringMatcher);
+		final CityMatcher cityPostcodeMatcher = new CityMatcher() {
+			@Override
+			public boolean matches(City city) {
+				return city.isPostcode() ? postcodeMatcher.matches(city) : cityMatcher.matches(city);
+			}
+		};
+		if (typeFilter == null) {
+			typeFilter = TYPES;
+		}
+		for (int i = 0; i < typeFilter.size() && !req.isCancelled(); i++) {
+			TIntArrayList list = refs[typeFilter.get(i)];
+			TIntArrayList listContainer = refsContainer[typeFilter.get(i)];
+			
+			if (typeFilter.get(i) == STREET_TYPE) {
+				TIntLongHashMap mp = new TIntLongHashMap();
+				for (int j = 0; j < list.size(); j++) {
+					mp.put(list.get(j), listContainer.get(j));
+				}
+				list.sort();
+				for (int j = 0; j < list.size() && !req.isCancelled(); j ++) {
+					int offset = list.get(j);
+					if (j > 0 &&  offset == list.get(j - 1)) {
+						continue;
+					}
+					City obj;
+					{
+						int contOffset = (int) mp.get(offset);
+						codedIS.seek(contOffset);
+						int len = codedIS.readRawVarint32();
+						int old = codedIS.pushLimit(len);
+						obj = readCityHeader(req, null, contOffset, reg.attributeTagsTable);
+						codedIS.popLimit(old);
+					}
+					if (obj != null) {
+						codedIS.seek(offset);
+						int len = codedIS.readRawVarint32();
+						int old = codedIS.pushLimit(len);
+						LatLon l = obj.getLocation();
+						Street s = new Street(obj);
+						s.setFileOffset(offset);
+						readStreet(s, null, false, MapUtils.get31TileNumberX(l.getLongitude()) >> 7,
+								MapUtils.get31TileNumberY(l.getLatitude()) >> 7, obj.isPostcode() ? obj.getName() : null,
+								reg.attributeTagsTable);
+						publishRawData(req, s);
+						boolean matches = stringMatcher.matches(s.getName());
+						if (!matches) {
+							for (String n : s.getAllNames()) {
+								matches = stringMatcher.matches(n);
 								if (matches) {
-									req.publish(s);
+									break;
 								}
-								codedIS.popLimit(old);
 							}
 						}
-					} else {
-						list.sort();
-						TIntSet published = new TIntHashSet();
-						for (int j = 0; j < list.size() && !req.isCancelled(); j++) {
-							int offset = list.get(j);
-							if (j > 0 && offset == list.get(j - 1)) {
-								continue;
-							}
-							codedIS.seek(offset);
-							int len = codedIS.readRawVarint32();
-							int old = codedIS.pushLimit(len);
-							City obj = readCityHeader(req, cityPostcodeMatcher, list.get(j), reg.attributeTagsTable);
-							publishRawData(req, obj);
-							if (obj != null && !published.contains(offset)) {
-								req.publish(obj);
-								published.add(offset);
-							}
-							codedIS.popLimit(old);
+						if (matches) {
+							req.publish(s);
 						}
+						codedIS.popLimit(old);
 					}
 				}
-				LOG.info("Whole address search by name is done in " + (System.currentTimeMillis() - time) + "ms. Found "
-						+ req.getSearchResults().size());
+			} else {
+				list.sort();
+				TIntSet published = new TIntHashSet();
+				for (int j = 0; j < list.size() && !req.isCancelled(); j++) {
+					int offset = list.get(j);
+					if (j > 0 && offset == list.get(j - 1)) {
+						continue;
+					}
+					codedIS.seek(offset);
+					int len = codedIS.readRawVarint32();
+					int old = codedIS.pushLimit(len);
+					City obj = readCityHeader(req, cityPostcodeMatcher, list.get(j), reg.attributeTagsTable);
+					publishRawData(req, obj);
+					if (obj != null && !published.contains(offset)) {
+						req.publish(obj);
+						published.add(offset);
+					}
+					codedIS.popLimit(old);
+				}
+			}
+		}
+	}
+
+	private static TIntArrayList[] newRefsArray() {
+		TIntArrayList[] refs = new TIntArrayList[5];
+		for (int i = 0; i < refs.length; i++) {
+			refs[i] = new TIntArrayList();
+		}
+		return refs;
+	}
+
+	/**
+	 * Searches address objects by name with references found by sidecar name index.
+	 * @param nameRefs references of the name table which belong to this region
+	 */
+	public void searchAddressDataByNameIndex(AddressRegion reg, SearchRequest<MapObject> req, List<Integer> typeFilter,
+			CachedNameIndexes.NameTable names, TIntArrayList nameRefs) throws IOException {
+		long time = System.currentTimeMillis();
+		TIntArrayList[] refs = newRefsArray();
+		TIntArrayList[] refsContainer = newRefsArray();
+		for (int i = 0; i < nameRefs.size(); i++) {
+			int ref = nameRefs.get(i);
+			if (names.getRef(ref, 4) != 0 && req.isBboxSpecified()) {
+				int in32 = names.getRef(ref, 5);
+				int x16 = (in32 >>> 16) << 15;
+				int y16 = (in32 & ((1 << 16) - 1)) << 15;
+				if (!req.contains(x16, y16, x16, y16)) {
+					continue;
+				}
+			}
+			int type = names.getRef(ref, 1);
+			int shiftindex = names.getRef(ref, 2);
+			int shiftcityindex = names.getRef(ref, 3);
+			if (shiftindex != 0) {
+				refs[type].add(shiftindex);
+			}
+			if (shiftcityindex != 0) {
+				refsContainer[type].add(shiftcityindex);
+			}
+		}
+		readAddressNameIndexObjects(reg, req, typeFilter, refs, refsContainer,
+				new CollatorStringMatcher(req.nameQuery, req.matcherMode));
+		LOG.info("Address search by name with name index is done in " + (System.currentTimeMillis() - time) + "ms. Found "
+				+ req.getSearchResults().size());
+	}
+
+	/**
+	 * Reads names of all atoms of address name index into sidecar name index.
+	 */
+	protected void readAddressNames(int regionIndex, CachedNameIndexes.NameTableBuilder builder) throws IOException {
+		TIntArrayList loffsets = new TIntArrayList();
+		int indexOffset = 0;
+		while (true) {
+			int t = codedIS.readTag();
+			int tag = WireFormat.getTagFieldNumber(t);
+			switch (tag) {
+			case 0:
+				return;
+			case OsmAndAddressNameIndexData.TABLE_FIELD_NUMBER:
+				int length = readInt();
+				indexOffset = codedIS.getTotalBytesRead();
+				int oldLimit = codedIS.pushLimit(length);
+				// empty query matches all keys
+				map.readIndexedStringTable(OsmAndCollator.primaryCollator(), "", "", loffsets, 0);
+				codedIS.popLimit(oldLimit);
+				break;
+			case OsmAndAddressNameIndexData.ATOM_FIELD_NUMBER:
+				loffsets.sort();
+				for (int j = 0; j < loffsets.size(); j++) {
+					if (j > 0 && loffsets.get(j) == loffsets.get(j - 1)) {
+						continue;
+					}
+					int fp = indexOffset + loffsets.get(j);
+					codedIS.seek(fp);
+					int len = codedIS.readRawVarint32();
+					int oldLim = codedIS.pushLimit(len);
+					int stag = 0;
+					do {
+						int st = codedIS.readTag();
+						stag = WireFormat.getTagFieldNumber(st);
+						if (stag == AddressNameIndexData.ATOM_FIELD_NUMBER) {
+							int slen = codedIS.readRawVarint32();
+							int soldLim = codedIS.pushLimit(slen);
+							readAddressNameDataNames(regionIndex, fp, builder);
+							codedIS.popLimit(soldLim);
+						} else if (stag != 0) {
+							skipUnknownField(st);
+						}
+					} while (stag != 0);
+					codedIS.popLimit(oldLim);
+				}
 				return;
 			default:
 				skipUnknownField(t);
 				break;
 			}
 		}
+	}
 
+	// same as readAddressNameData but keeps names and all references
+	private void readAddressNameDataNames(int regionIndex, int fp, CachedNameIndexes.NameTableBuilder builder)
+			throws IOException {
+		String name = null;
+		String nameEn = null;
+		int type = -1;
+		int shiftindex = 0;
+		int shiftcityindex = 0;
+		boolean hasXY = false;
+		int xy16 = 0;
+		while (true) {
+			int t = codedIS.readTag();
+			int tag = WireFormat.getTagFieldNumber(t);
+			if (tag == 0 || tag == AddressNameIndexDataAtom.SHIFTTOINDEX_FIELD_NUMBER) {
+				if (type != -1 && (shiftindex != 0 || shiftcityindex != 0)) {
+					int hasXYValue = hasXY ? 1 : 0;
+					builder.add(name, regionIndex, type, shiftindex, shiftcityindex, hasXYValue, xy16);
+					builder.add(nameEn, regionIndex, type, shiftindex, shiftcityindex, hasXYValue, xy16);
+				}
+			}
+			switch (tag) {
+			case 0:
+				return;
+			case AddressNameIndexDataAtom.NAMEEN_FIELD_NUMBER:
+				nameEn = codedIS.readString();
+				break;
+			case AddressNameIndexDataAtom.NAME_FIELD_NUMBER:
+				name = codedIS.readString();
+				break;
+			case AddressNameIndexDataAtom.SHIFTTOCITYINDEX_FIELD_NUMBER:
+				shiftcityindex = fp - codedIS.readInt32();
+				break;
+			case AddressNameIndexDataAtom.XY16_FIELD_NUMBER:
+				xy16 = codedIS.readInt32();
+				hasXY = true;
+				break;
+			case AddressNameIndexDataAtom.SHIFTTOINDEX_FIELD_NUMBER:
+				shiftindex = fp - codedIS.readInt32();
+				break;
+			case AddressNameIndexDataAtom.TYPE_FIELD_NUMBER:
+				type = codedIS.readInt32();
+				break;
+			default:
+				skipUnknownField(t);
+				break;
+			}
+		}
 	}
 
 	private void readAddressNameData(SearchRequest<MapObject> req, TIntArrayList[] refs,
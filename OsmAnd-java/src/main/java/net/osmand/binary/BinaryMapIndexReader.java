@@ -55,7 +55,9 @@ import java.io.InputStream;
 import java.io.InputStreamReader;
 import java.io.RandomAccessFile;
 import java.io.Reader;
+import java.nio.ByteBuffer;
 import java.util.ArrayList;
+import java.util.BitSet;
 import java.util.Collections;
 import java.util.Comparator;
 import java.util.HashMap;
@@ -75,6 +77,7 @@ import javax.xml.parsers.ParserConfigurationException;
 import gnu.trove.list.array.TIntArrayList;
 import gnu.trove.list.array.TLongArrayList;
 import gnu.trove.map.TIntObjectMap;
+import gnu.trove.map.hash.TIntLongHashMap;
 import gnu.trove.map.hash.TIntObjectHashMap;
 import gnu.trove.map.hash.TLongObjectHashMap;
 import gnu.trove.set.hash.TIntHashSet;
@@ -86,6 +89,8 @@ public class BinaryMapIndexReader {
 	public static final int LABEL_ZOOM_ENCODE = 26;
 	private final static Log log = PlatformUtil.getLog(BinaryMapIndexReader.class);
 	public static boolean READ_STATS = false;
+	// chunk size used to map file into memory (files bigger than chunk are mapped by several chunks)
+	public static int MEMORY_MAPPED_CHUNK_SIZE = 1 << 30;
 	public static final SearchPoiTypeFilter ACCEPT_ALL_POI_TYPE_FILTER = new SearchPoiTypeFilter() {
 		@Override
 		public boolean isEmpty() {
@@ -100,6 +105,9 @@ public class BinaryMapIndexReader {
 	
 	
 	private final RandomAccessFile raf;
+	// not null if file is read in memory mapped mode, chunks are shared with readers referencing same file
+	private ByteBuffer[] mappedChunks;
+	private int mappedChunkSize;
 	protected final File file;
 	/*private*/ int version;
 	/*private*/ long dateCreated;
@@ -119,6 +127,8 @@ public class BinaryMapIndexReader {
 	private final BinaryMapPoiReaderAdapter poiAdapter;
 	private final BinaryMapAddressReaderAdapter addressAdapter;
 	private final BinaryMapRouteReaderAdapter routeAdapter;
+	private PoiTileCache poiTileCache;
+	private CachedAddressIndexes.FileAddressIndex addressIndex;
 
 	private static String BASEMAP_NAME = "basemap";
 
@@ -136,9 +146,23 @@ public class BinaryMapIndexReader {
 	}
 
 	public BinaryMapIndexReader(final RandomAccessFile raf, File file, boolean init) throws IOException {
+		this(raf, file, init, false);
+	}
+
+	/**
+	 * @param memoryMapped read file through memory mapped chunks instead of seeking RandomAccessFile,
+	 *                     data is decoded directly from page cache without system calls per read
+	 */
+	public BinaryMapIndexReader(final RandomAccessFile raf, File file, boolean init, boolean memoryMapped) throws IOException {
 		this.raf = raf;
 		this.file = file;
-		codedIS = CodedInputStream.newInstance(raf);
+		if (memoryMapped) {
+			mappedChunkSize = MEMORY_MAPPED_CHUNK_SIZE;
+			mappedChunks = CodedInputStream.mapFile(raf, mappedChunkSize);
+			codedIS = CodedInputStream.newInstance(mappedChunks, mappedChunkSize);
+		} else {
+			codedIS = CodedInputStream.newInstance(raf);
+		}
 		codedIS.setSizeLimit(Integer.MAX_VALUE); // 2048 MB
 		transportAdapter = new BinaryMapTransportReaderAdapter(this);
 		addressAdapter = new BinaryMapAddressReaderAdapter(this);
@@ -152,7 +176,13 @@ public class BinaryMapIndexReader {
 	public BinaryMapIndexReader(final RandomAccessFile raf, BinaryMapIndexReader referenceToSameFile) throws IOException {
 		this.raf = raf;
 		this.file = referenceToSameFile.file;
-		codedIS = CodedInputStream.newInstance(raf);
+		if (referenceToSameFile.mappedChunks != null) {
+			mappedChunks = referenceToSameFile.mappedChunks;
+			mappedChunkSize = referenceToSameFile.mappedChunkSize;
+			codedIS = CodedInputStream.newInstance(mappedChunks, mappedChunkSize);
+		} else {
+			codedIS = CodedInputStream.newInstance(raf);
+		}
 		codedIS.setSizeLimit(Integer.MAX_VALUE); // 2048 MB
 		version = referenceToSameFile.version;
 		dateCreated = referenceToSameFile.dateCreated;
@@ -167,6 +197,8 @@ public class BinaryMapIndexReader {
 		routingIndexes = new ArrayList<RouteRegion>(referenceToSameFile.routingIndexes);
 		indexes = new ArrayList<BinaryIndexPart>(referenceToSameFile.indexes);
 		basemap = referenceToSameFile.basemap;
+		poiTileCache = referenceToSameFile.poiTileCache;
+		addressIndex = referenceToSameFile.addressIndex;
 		calculateCenterPointForRegions();
 	}
 
@@ -392,10 +424,21 @@ public class BinaryMapIndexReader {
 		return raf;
 	}
 
+	public boolean isMemoryMapped() {
+		return mappedChunks != null;
+	}
+
 	public File getFile() {
 		return file;
 	}
 
+	/**
+	 * @return bytes loaded from file by this reader (memory mapped reading is not counted)
+	 */
+	public long getBytesLoaded() {
+		return codedIS.getBytesLoaded();
+	}
+
 
 	public String getCountryName() {
 		List<String> rg = getRegionNames();
@@ -659,6 +702,18 @@ public class BinaryMapIndexReader {
 		} catch (IllegalArgumentException e) {
 			throw new IOException(e.getMessage() + " while reading " + c + " (id: " + c.getId() + ")");
 		}
+		CachedAddressIndexes.FileAddressIndex index = addressIndex;
+		if (index != null) {
+			CachedAddressIndexes.RegionAddressIndex regionIndex = index.getRegionIndex(this, reg);
+			if (regionIndex != null && regionIndex.loadStreets(c, resultMatcher)) {
+				return 0;
+			}
+		}
+		return readCityStreets(c, resultMatcher);
+	}
+
+	int readCityStreets(City c, SearchRequest<Street> resultMatcher) throws IOException {
+		AddressRegion reg = checkAddressIndex(c.getFileOffset());
 		codedIS.seek(c.getFileOffset());
 		int size = codedIS.readRawVarint32();
 		int old = codedIS.pushLimit(size);
@@ -678,13 +733,24 @@ public class BinaryMapIndexReader {
 	}
 
 	public void preloadBuildings(Street s, SearchRequest<Building> resultMatcher) throws IOException {
+		CachedAddressIndexes.FileAddressIndex index = addressIndex;
+		if (index != null) {
+			CachedAddressIndexes.RegionAddressIndex regionIndex = index.getRegionIndex(this,
+					checkAddressIndex(s.getFileOffset()));
+			if (regionIndex != null && regionIndex.loadBuildings(s, resultMatcher)) {
+				return;
+			}
+		}
+		City city = s.getCity();
+		readStreetBuildings(s, resultMatcher, city != null && city.isPostcode() ? city.getName() : null);
+	}
+
+	void readStreetBuildings(Street s, SearchRequest<Building> resultMatcher, String postcodeFilter) throws IOException {
 		AddressRegion reg = checkAddressIndex(s.getFileOffset());
 		codedIS.seek(s.getFileOffset());
 		int size = codedIS.readRawVarint32();
 		int old = codedIS.pushLimit(size);
-		City city = s.getCity();
-		addressAdapter.readStreet(s, resultMatcher, true, 0, 0, city != null && city.isPostcode() ? city.getName() : null,
-				reg.attributeTagsTable);
+		addressAdapter.readStreet(s, resultMatcher, true, 0, 0, postcodeFilter, reg.attributeTagsTable);
 		codedIS.popLimit(old);
 	}
 
@@ -879,12 +945,14 @@ public class BinaryMapIndexReader {
 			if(filterMapIndex != null && mapIndex != filterMapIndex) {
 				continue;
 			}
-			// lazy initializing rules
-			if (mapIndex.encodingRules.isEmpty()) {
-				codedIS.seek(mapIndex.filePointer);
-				int oldLimit = codedIS.pushLimit(mapIndex.length);
-				readMapIndex(mapIndex, true);
-				codedIS.popLimit(oldLimit);
+			// lazy initializing rules (index could be shared by readers of same file)
+			synchronized (mapIndex) {
+				if (mapIndex.encodingRules.isEmpty()) {
+					codedIS.seek(mapIndex.filePointer);
+					int oldLimit = codedIS.pushLimit(mapIndex.length);
+					readMapIndex(mapIndex, true);
+					codedIS.popLimit(oldLimit);
+				}
 			}
 			for (MapRoot index : mapIndex.getRoots()) {
 				if (index.minZoom <= req.zoom && index.maxZoom >= req.zoom) {
@@ -895,12 +963,14 @@ public class BinaryMapIndexReader {
 
 
 					// lazy initializing trees
-					if (index.trees == null) {
-						index.trees = new ArrayList<MapTree>();
-						codedIS.seek(index.filePointer);
-						int oldLimit = codedIS.pushLimit(index.length);
-						readMapLevel(index);
-						codedIS.popLimit(oldLimit);
+					synchronized (index) {
+						if (index.trees == null) {
+							index.trees = new ArrayList<MapTree>();
+							codedIS.seek(index.filePointer);
+							int oldLimit = codedIS.pushLimit(index.length);
+							readMapLevel(index);
+							codedIS.popLimit(oldLimit);
+						}
 					}
 
 					for (MapTree tree : index.trees) {
@@ -1314,6 +1384,27 @@ public class BinaryMapIndexReader {
 		return searchAddressDataByName(req, null);
 	}
 
+	/**
+	 * Searches address objects by name using sidecar name index instead of name index of the file.
+	 */
+	public List<MapObject> searchAddressDataByNameIndex(SearchRequest<MapObject> req, CachedNameIndexes.FileNameIndex nameIndex)
+			throws IOException {
+		CachedNameIndexes.NameTable names = nameIndex.getAddressNames();
+		TIntArrayList refs = names.findRefs(CachedNameIndexes.getNameKey(req.nameQuery));
+		for (int i = 0; i < addressIndexes.size() && !req.isCancelled(); i++) {
+			TIntArrayList regionRefs = new TIntArrayList();
+			for (int j = 0; j < refs.size(); j++) {
+				if (names.getRef(refs.get(j), 0) == i) {
+					regionRefs.add(refs.get(j));
+				}
+			}
+			if (!regionRefs.isEmpty()) {
+				addressAdapter.searchAddressDataByNameIndex(addressIndexes.get(i), req, null, names, regionRefs);
+			}
+		}
+		return req.getSearchResults();
+	}
+
 	public void initCategories(PoiRegion poiIndex) throws IOException {
 		poiAdapter.initCategories(poiIndex);
 	}
@@ -1338,6 +1429,64 @@ public class BinaryMapIndexReader {
 		return req.getSearchResults();
 	}
 
+	/**
+	 * Searches poi by name using sidecar name index, only boxes having names which contain query are read.
+	 */
+	public List<Amenity> searchPoiByNameIndex(SearchRequest<Amenity> req, CachedNameIndexes.FileNameIndex nameIndex)
+			throws IOException {
+		if (req.nameQuery == null || req.nameQuery.length() == 0) {
+			throw new IllegalArgumentException();
+		}
+		CachedNameIndexes.NameTable names = nameIndex.getPoiNames();
+		TIntArrayList refs = names.findRefs(CachedNameIndexes.getNameKey(req.nameQuery));
+		for (int i = 0; i < poiIndexes.size() && !req.isCancelled(); i++) {
+			// box offset -> distance as in name index of the file
+			TIntLongHashMap offsets = new TIntLongHashMap();
+			for (int j = 0; j < refs.size(); j++) {
+				int ref = refs.get(j);
+				int x31 = names.getRef(ref, 2);
+				int y31 = names.getRef(ref, 3);
+				if (names.getRef(ref, 0) == i && req.contains(x31, y31, x31, y31)) {
+					offsets.put(names.getRef(ref, 1), Math.abs(req.x - x31) + Math.abs(req.y - y31));
+				}
+			}
+			if (!offsets.isEmpty()) {
+				PoiRegion poiIndex = poiIndexes.get(i);
+				poiAdapter.initCategories(poiIndex);
+				codedIS.seek(poiIndex.filePointer);
+				int old = codedIS.pushLimit(poiIndex.length);
+				poiAdapter.searchPoiByNameIndex(poiIndex, req, offsets);
+				codedIS.popLimit(old);
+			}
+		}
+		return req.getSearchResults();
+	}
+
+	/**
+	 * Reads names of all objects of poi and address name indexes to build sidecar name index.
+	 */
+	void readNameIndexes(CachedNameIndexes.NameTableBuilder poiNames, CachedNameIndexes.NameTableBuilder addressNames)
+			throws IOException {
+		for (int i = 0; i < addressIndexes.size(); i++) {
+			AddressRegion reg = addressIndexes.get(i);
+			if (reg.indexNameOffset != -1) {
+				codedIS.seek(reg.indexNameOffset);
+				int len = readInt();
+				int old = codedIS.pushLimit(len);
+				addressAdapter.readAddressNames(i, addressNames);
+				codedIS.popLimit(old);
+			}
+		}
+		for (int i = 0; i < poiIndexes.size(); i++) {
+			PoiRegion poiIndex = poiIndexes.get(i);
+			poiAdapter.initCategories(poiIndex);
+			codedIS.seek(poiIndex.filePointer);
+			int old = codedIS.pushLimit(poiIndex.length);
+			poiAdapter.readPoiNames(poiIndex, i, poiNames);
+			codedIS.popLimit(old);
+		}
+	}
+
 	public Map<PoiCategory, List<String>> searchPoiCategoriesByName(String query, Map<PoiCategory, List<String>> map) throws IOException {
 		if (query == null || query.length() == 0) {
 			throw new IllegalArgumentException();
@@ -1375,7 +1524,12 @@ public class BinaryMapIndexReader {
 		req.numberOfAcceptedObjects = 0;
 		req.numberOfAcceptedSubtrees = 0;
 		req.numberOfReadSubtrees = 0;
+		PoiTileCache cache = poiTileCache;
 		for (PoiRegion poiIndex : poiIndexes) {
+			if (cache != null && cache.isCacheable(req)) {
+				cache.searchPoi(this, poiIndex, req);
+				continue;
+			}
 			poiAdapter.initCategories(poiIndex);
 			codedIS.seek(poiIndex.filePointer);
 			int old = codedIS.pushLimit(poiIndex.length);
@@ -1394,6 +1548,11 @@ public class BinaryMapIndexReader {
 		req.numberOfAcceptedSubtrees = 0;
 		req.numberOfReadSubtrees = 0;
 
+		PoiTileCache cache = poiTileCache;
+		if (cache != null && cache.isCacheable(req)) {
+			cache.searchPoi(this, poiIndex, req);
+			return req.getSearchResults();
+		}
 		poiAdapter.initCategories(poiIndex);
 		codedIS.seek(poiIndex.filePointer);
 		int old = codedIS.pushLimit(poiIndex.length);
@@ -1406,6 +1565,46 @@ public class BinaryMapIndexReader {
 		return req.getSearchResults();
 	}
 
+	/**
+	 * Cache of decoded POI used by bbox POI search (shared with readers created for the same file).
+	 */
+	public void setPoiTileCache(PoiTileCache poiTileCache) {
+		this.poiTileCache = poiTileCache;
+	}
+
+	public PoiTileCache getPoiTileCache() {
+		return poiTileCache;
+	}
+
+	/**
+	 * In-memory address index used to preload streets and buildings without reading the file
+	 * (shared with readers created for the same file).
+	 */
+	public void setAddressIndex(CachedAddressIndexes.FileAddressIndex addressIndex) {
+		this.addressIndex = addressIndex;
+	}
+
+	public CachedAddressIndexes.FileAddressIndex getAddressIndex() {
+		return addressIndex;
+	}
+
+	/**
+	 * Reads all poi of the box, type ids of poi subtypes (see {@link PoiRegion#getTypeId}) are put to typeIds.
+	 */
+	List<Amenity> readPoiTile(PoiRegion poiIndex, int left31, int right31, int top31, int bottom31,
+			Map<Amenity, int[]> typeIds, Map<Amenity, Integer> filePointers) throws IOException {
+		// all POI types without density filter
+		SearchRequest<Amenity> req = buildSearchPoiRequest(left31, right31, top31, bottom31, -1, null, null);
+		req.poiTypeIds = typeIds;
+		req.poiFilePointers = filePointers;
+		poiAdapter.initCategories(poiIndex);
+		codedIS.seek(poiIndex.filePointer);
+		int old = codedIS.pushLimit(poiIndex.length);
+		poiAdapter.searchPoiIndex(left31, right31, top31, bottom31, req, poiIndex);
+		codedIS.popLimit(old);
+		return req.getSearchResults();
+	}
+
 	protected List<String> readStringTable() throws IOException {
 		List<String> list = new ArrayList<String>();
 		while (true) {
@@ -1588,6 +1787,7 @@ public class BinaryMapIndexReader {
 		if (codedIS != null) {
 			raf.close();
 			codedIS = null;
+			mappedChunks = null;
 			mapIndexes.clear();
 			addressIndexes.clear();
 			transportIndexes.clear();
@@ -1675,6 +1875,14 @@ public class BinaryMapIndexReader {
 		SearchFilter searchFilter = null;
 
 		SearchPoiTypeFilter poiTypeFilter = null;
+		// poiTypeFilter decisions by type id of poiTypeFilterRegion (see PoiRegion#getTypeId)
+		PoiRegion poiTypeFilterRegion = null;
+		// type ids of every subtype of decoded poi, collected if not null
+		Map<Amenity, int[]> poiTypeIds = null;
+		// file pointers of decoded poi (poi are read from file in their order), collected if not null
+		Map<Amenity, Integer> poiFilePointers = null;
+		BitSet checkedPoiTypes = new BitSet();
+		BitSet acceptedPoiTypes = new BitSet();
 
 		// cache information
 		TIntArrayList cacheCoordinates = new TIntArrayList();
@@ -1706,6 +1914,10 @@ public class BinaryMapIndexReader {
 			return (x << SearchRequest.ZOOM_TO_SEARCH_POI) | y;
 		}
 
+		public void setMatcherMode(StringMatcherMode matcherMode) {
+			this.matcherMode = matcherMode;
+		}
+
 		public void setBBoxRadius(double lat, double lon, int radiusMeters) {
 			double dx = MapUtils.getTileNumberX(16, lon);
 			double half16t = MapUtils.getDistance(lat, MapUtils.getLongitudeFromTile(16, ((int) dx) + 0.5), 
@@ -0,0 +1,212 @@
+package net.osmand.binary;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import net.osmand.binary.BinaryMapIndexReader.SearchRequest;
+import net.osmand.binary.BinaryMapRouteReaderAdapter.RouteRegion;
+import net.osmand.binary.BinaryMapRouteReaderAdapter.RouteSubregion;
+import net.osmand.data.Amenity;
+import net.osmand.data.LatLon;
+import net.osmand.util.MapUtils;
+
+/**
+ * Compares reading obf file through RandomAccessFile and through memory mapped chunks
+ * running the same map, poi and route queries with both readers.
+ * With -threads=1,2,4,8 measures throughput of the same queries run concurrently through {@link BinaryMapIndexReaderPool}.
+ * With -poiCache memory mapped reader serves poi queries through {@link PoiTileCache}.
+ * Usage: -obf=file.obf [-queries=200] [-iterations=3] [-zoom=15] [-lat=..] [-lon=..] [-radius=20000] [-threads=1,2,4] [-mmap] [-poiCache]
+ */
+public class BinaryMapIndexReaderBenchmark {
+
+	private static class Stats {
+		long mapTime;
+		long poiTime;
+		long routeTime;
+		long mapObjects;
+		long pois;
+		long routeObjects;
+
+		@Override
+		public String toString() {
+			return String.format("map %d ms (%d objects), poi %d ms (%d objects), route %d ms (%d objects)",
+					mapTime / 1000000, mapObjects, poiTime / 1000000, pois, routeTime / 1000000, routeObjects);
+		}
+	}
+
+	public static void main(String[] args) throws IOException {
+		File obf = null;
+		int queries = 200;
+		int iterations = 3;
+		int zoom = 15;
+		double radius = 20000;
+		LatLon center = null;
+		double lat = Double.NaN;
+		double lon = Double.NaN;
+		String threads = null;
+		boolean poolMmap = false;
+		boolean poiCache = false;
+		for (String a : args) {
+			if (a.startsWith("-obf=")) {
+				obf = new File(a.substring("-obf=".length()));
+			} else if (a.startsWith("-queries=")) {
+				queries = Integer.parseInt(a.substring("-queries=".length()));
+			} else if (a.startsWith("-iterations=")) {
+				iterations = Integer.parseInt(a.substring("-iterations=".length()));
+			} else if (a.startsWith("-zoom=")) {
+				zoom = Integer.parseInt(a.substring("-zoom=".length()));
+			} else if (a.startsWith("-radius=")) {
+				radius = Double.parseDouble(a.substring("-radius=".length()));
+			} else if (a.startsWith("-lat=")) {
+				lat = Double.parseDouble(a.substring("-lat=".length()));
+			} else if (a.startsWith("-lon=")) {
+				lon = Double.parseDouble(a.substring("-lon=".length()));
+			} else if (a.startsWith("-threads=")) {
+				threads = a.substring("-threads=".length());
+			} else if (a.equals("-mmap")) {
+				poolMmap = true;
+			} else if (a.equals("-poiCache")) {
+				poiCache = true;
+			}
+		}
+		if (!Double.isNaN(lat) && !Double.isNaN(lon)) {
+			center = new LatLon(lat, lon);
+		}
+		if (obf == null) {
+			System.out.println("Usage: -obf=file.obf [-queries=200] [-iterations=3] [-zoom=15] [-lat=..] [-lon=..] [-radius=20000] [-threads=1,2,4] [-mmap] [-poiCache]");
+			return;
+		}
+		BinaryMapIndexReader rafReader = new BinaryMapIndexReader(new RandomAccessFile(obf, "r"), obf, true, false);
+		BinaryMapIndexReader mmapReader = new BinaryMapIndexReader(new RandomAccessFile(obf, "r"), obf, true, true);
+		if (poiCache) {
+			mmapReader.setPoiTileCache(new PoiTileCache());
+		}
+		if (center == null) {
+			center = rafReader.getRegionCenter();
+		}
+		if (center == null) {
+			System.out.println("Region center is unknown, specify -lat= -lon=");
+			return;
+		}
+		int[][] boxes = generateQueryBoxes(center, radius, zoom, queries);
+		if (threads != null) {
+			BinaryMapIndexReader main = poolMmap ? mmapReader : rafReader;
+			double singleThread = 0;
+			for (String t : threads.split(",")) {
+				int th = Integer.parseInt(t.trim());
+				BinaryMapIndexReaderPool pool = new BinaryMapIndexReaderPool(main, th);
+				for (int it = 0; it < iterations; it++) {
+					double qps = runConcurrentQueries(pool, boxes, zoom, th);
+					if (th == 1) {
+						singleThread = Math.max(singleThread, qps);
+					}
+					System.out.println(String.format("Threads %d iteration %d: %.1f queries/s%s", th, it + 1, qps,
+							singleThread > 0 ? String.format(" (x%.2f)", qps / singleThread) : ""));
+				}
+				pool.close();
+			}
+			rafReader.close();
+			mmapReader.close();
+			return;
+		}
+		for (int it = 0; it < iterations; it++) {
+			Stats raf = runQueries(rafReader, boxes, zoom);
+			Stats mmap = runQueries(mmapReader, boxes, zoom);
+			System.out.println("Iteration " + (it + 1));
+			System.out.println("  RandomAccessFile: " + raf);
+			System.out.println("  Memory mapped   : " + mmap);
+			if (raf.mapObjects != mmap.mapObjects || raf.pois != mmap.pois || raf.routeObjects != mmap.routeObjects) {
+				System.out.println("  ERROR: results are different");
+			}
+			if (mmapReader.getPoiTileCache() != null) {
+				System.out.println("  " + mmapReader.getPoiTileCache());
+			}
+		}
+		rafReader.close();
+		mmapReader.close();
+	}
+
+	private static double runConcurrentQueries(final BinaryMapIndexReaderPool pool, final int[][] boxes, final int zoom,
+			int threads) throws IOException {
+		ExecutorService executor = Executors.newFixedThreadPool(threads);
+		List<Future<Stats>> futures = new ArrayList<Future<Stats>>();
+		long now = System.nanoTime();
+		for (int i = 0; i < boxes.length; i++) {
+			final int[][] box = new int[][] { boxes[i] };
+			futures.add(executor.submit(new Callable<Stats>() {
+				@Override
+				public Stats call() throws Exception {
+					return pool.execute(new BinaryMapIndexReaderPool.ReaderCallback<Stats>() {
+						@Override
+						public Stats run(BinaryMapIndexReader reader) throws IOException {
+							return runQueries(reader, box, zoom);
+						}
+					});
+				}
+			}));
+		}
+		try {
+			for (Future<Stats> f : futures) {
+				f.get();
+			}
+		} catch (Exception e) {
+			throw new IOException(e);
+		} finally {
+			executor.shutdown();
+		}
+		// each box runs map, poi and route query
+		return boxes.length * 3 / ((System.nanoTime() - now) / 1e9);
+	}
+
+	private static int[][] generateQueryBoxes(LatLon center, double radius, int zoom, int queries) {
+		Random rnd = new Random(7);
+		int[][] boxes = new int[queries][];
+		double tile = 1 << (31 - zoom);
+		for (int i = 0; i < queries; i++) {
+			LatLon l = MapUtils.rhumbDestinationPoint(center, rnd.nextDouble() * radius, rnd.nextDouble() * 360);
+			int x = MapUtils.get31TileNumberX(l.getLongitude());
+			int y = MapUtils.get31TileNumberY(l.getLatitude());
+			boxes[i] = new int[] { (int) (x - tile / 2), (int) (x + tile / 2), (int) (y - tile / 2), (int) (y + tile / 2) };
+		}
+		return boxes;
+	}
+
+	private static Stats runQueries(BinaryMapIndexReader reader, int[][] boxes, int zoom) throws IOException {
+		Stats st = new Stats();
+		long now = System.nanoTime();
+		for (int[] b : boxes) {
+			SearchRequest<BinaryMapDataObject> req = BinaryMapIndexReader.buildSearchRequest(b[0], b[1], b[2], b[3], zoom, null);
+			st.mapObjects += reader.searchMapIndex(req).size();
+		}
+		st.mapTime = System.nanoTime() - now;
+
+		now = System.nanoTime();
+		for (int[] b : boxes) {
+			SearchRequest<Amenity> req = BinaryMapIndexReader.buildSearchPoiRequest(b[0], b[1], b[2], b[3], -1,
+					BinaryMapIndexReader.ACCEPT_ALL_POI_TYPE_FILTER, null);
+			st.pois += reader.searchPoi(req).size();
+		}
+		st.poiTime = System.nanoTime() - now;
+
+		now = System.nanoTime();
+		for (int[] b : boxes) {
+			SearchRequest<RouteDataObject> req = BinaryMapIndexReader.buildSearchRouteRequest(b[0], b[1], b[2], b[3], null);
+			for (RouteRegion reg : reader.getRoutingIndexes()) {
+				List<RouteSubregion> subregs = reader.searchRouteIndexTree(req, new ArrayList<RouteSubregion>(reg.getSubregions()));
+				for (RouteSubregion sub : subregs) {
+					st.routeObjects += reader.loadRouteIndexData(sub).size();
+				}
+			}
+		}
+		st.routeTime = System.nanoTime() - now;
+		return st;
+	}
+}
@@ -0,0 +1,201 @@
+package net.osmand.binary;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.RandomAccessFile;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Semaphore;
+
+import net.osmand.PlatformUtil;
+import net.osmand.binary.BinaryMapIndexReader.SearchRequest;
+import net.osmand.binary.BinaryMapRouteReaderAdapter.RouteSubregion;
+import net.osmand.data.Amenity;
+import net.osmand.data.MapObject;
+import net.osmand.data.TransportStop;
+
+import org.apache.commons.logging.Log;
+
+/**
+ * Allows to run queries against the same obf file from many threads.
+ * Each pooled reader has its own cursor (file handle or view of memory mapped chunks)
+ * while parsed index metadata (MapIndex, PoiRegion, RouteRegion trees...) is shared with the main reader.
+ * Main reader itself is never handed out, so it could still be used directly by its owner.
+ */
+public class BinaryMapIndexReaderPool {
+
+	private static final Log log = PlatformUtil.getLog(BinaryMapIndexReaderPool.class);
+
+	public interface ReaderCallback<T> {
+		T run(BinaryMapIndexReader reader) throws IOException;
+	}
+
+	private final BinaryMapIndexReader mainReader;
+	private final int maxReaders;
+	private final Semaphore permits;
+	private final ConcurrentLinkedQueue<BinaryMapIndexReader> idleReaders = new ConcurrentLinkedQueue<BinaryMapIndexReader>();
+	private final List<BinaryMapIndexReader> createdReaders = new ArrayList<BinaryMapIndexReader>();
+	private volatile boolean closed;
+
+	public BinaryMapIndexReaderPool(BinaryMapIndexReader mainReader, int maxReaders) {
+		if (maxReaders <= 0) {
+			throw new IllegalArgumentException("Pool should have at least 1 reader");
+		}
+		this.mainReader = mainReader;
+		this.maxReaders = maxReaders;
+		this.permits = new Semaphore(maxReaders, true);
+	}
+
+	public BinaryMapIndexReader getMainReader() {
+		return mainReader;
+	}
+
+	public int getMaxReaders() {
+		return maxReaders;
+	}
+
+	public synchronized int getCreatedReaders() {
+		return createdReaders.size();
+	}
+
+	/**
+	 * Takes reader for exclusive use of the calling thread, blocks if all readers are busy.
+	 * Reader should be returned with {@link #release(BinaryMapIndexReader)}.
+	 */
+	public BinaryMapIndexReader acquire() throws IOException {
+		if (closed) {
+			throw new IOException("Pool is closed " + mainReader.getFile().getName());
+		}
+		try {
+			permits.acquire();
+		} catch (InterruptedException e) {
+			throw new InterruptedIOException("Interrupted waiting for reader " + mainReader.getFile().getName());
+		}
+		synchronized (this) {
+			try {
+				// pool could be closed while waiting for permit
+				if (closed) {
+					throw new IOException("Pool is closed " + mainReader.getFile().getName());
+				}
+				BinaryMapIndexReader reader = idleReaders.poll();
+				if (reader == null) {
+					reader = createReader();
+				}
+				return reader;
+			} catch (IOException e) {
+				permits.release();
+				throw e;
+			}
+		}
+	}
+
+	/**
+	 * Returns reader taken by {@link #acquire()}, readers released after {@link #close()} are already closed
+	 * and are dropped.
+	 */
+	public void release(BinaryMapIndexReader reader) {
+		synchronized (this) {
+			if (createdReaders.contains(reader)) {
+				idleReaders.add(reader);
+			} else if (!closed) {
+				throw new IllegalArgumentException("Reader doesn't belong to pool of " + mainReader.getFile().getName());
+			}
+		}
+		permits.release();
+	}
+
+	private BinaryMapIndexReader createReader() throws IOException {
+		RandomAccessFile raf = new RandomAccessFile(mainReader.getFile(), "r");
+		BinaryMapIndexReader reader = new BinaryMapIndexReader(raf, mainReader);
+		createdReaders.add(reader);
+		if (log.isDebugEnabled()) {
+			log.debug("Created reader " + createdReaders.size() + " for " + mainReader.getFile().getName());
+		}
+		return reader;
+	}
+
+	public <T> T execute(ReaderCallback<T> callback) throws IOException {
+		BinaryMapIndexReader reader = acquire();
+		try {
+			return callback.run(reader);
+		} finally {
+			release(reader);
+		}
+	}
+
+	public List<BinaryMapDataObject> searchMapIndex(final SearchRequest<BinaryMapDataObject> req) throws IOException {
+		return execute(new ReaderCallback<List<BinaryMapDataObject>>() {
+			@Override
+			public List<BinaryMapDataObject> run(BinaryMapIndexReader reader) throws IOException {
+				return reader.searchMapIndex(req);
+			}
+		});
+	}
+
+	public List<Amenity> searchPoi(final SearchRequest<Amenity> req) throws IOException {
+		return execute(new ReaderCallback<List<Amenity>>() {
+			@Override
+			public List<Amenity> run(BinaryMapIndexReader reader) throws IOException {
+				return reader.searchPoi(req);
+			}
+		});
+	}
+
+	public List<Amenity> searchPoiByName(final SearchRequest<Amenity> req) throws IOException {
+		return execute(new ReaderCallback<List<Amenity>>() {
+			@Override
+			public List<Amenity> run(BinaryMapIndexReader reader) throws IOException {
+				return reader.searchPoiByName(req);
+			}
+		});
+	}
+
+	public List<MapObject> searchAddressDataByName(final SearchRequest<MapObject> req) throws IOException {
+		return execute(new ReaderCallback<List<MapObject>>() {
+			@Override
+			public List<MapObject> run(BinaryMapIndexReader reader) throws IOException {
+				return reader.searchAddressDataByName(req);
+			}
+		});
+	}
+
+	public List<TransportStop> searchTransportIndex(final SearchRequest<TransportStop> req) throws IOException {
+		return execute(new ReaderCallback<List<TransportStop>>() {
+			@Override
+			public List<TransportStop> run(BinaryMapIndexReader reader) throws IOException {
+				return reader.searchTransportIndex(req);
+			}
+		});
+	}
+
+	public List<RouteDataObject> loadRouteIndexData(final RouteSubregion subregion) throws IOException {
+		return execute(new ReaderCallback<List<RouteDataObject>>() {
+			@Override
+			public List<RouteDataObject> run(BinaryMapIndexReader reader) throws IOException {
+				return reader.loadRouteIndexData(subregion);
+			}
+		});
+	}
+
+	/**
+	 * Closes all readers created by pool, main reader is left open.
+	 * Threads waiting in {@link #acquire()} are woken up and get IOException.
+	 */
+	public synchronized void close() throws IOException {
+		if (closed) {
+			return;
+		}
+		closed = true;
+		try {
+			for (BinaryMapIndexReader reader : createdReaders) {
+				reader.close();
+			}
+		} finally {
+			createdReaders.clear();
+			idleReaders.clear();
+			// every woken waiter returns its permit before throwing, so waiters are woken one after another
+			permits.release(maxReaders);
+		}
+	}
+}
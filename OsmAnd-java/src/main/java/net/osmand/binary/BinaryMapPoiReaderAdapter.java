@@ -18,6 +18,7 @@ import net.osmand.Collator;
 import net.osmand.CollatorStringMatcher;
 import net.osmand.CollatorStringMatcher.StringMatcherMode;
 import net.osmand.Location;
+import net.osmand.OsmAndCollator;
 import net.osmand.PlatformUtil;
 import net.osmand.binary.BinaryMapIndexReader.SearchRequest;
 import net.osmand.binary.OsmandOdb.OsmAndPoiNameIndex.OsmAndPoiNameIndexData;
@@ -39,7 +40,7 @@ public class BinaryMapPoiReaderAdapter {
 	public static final int SHIFT_BITS_CATEGORY = 7;
 	private static final int CATEGORY_MASK = (1 << SHIFT_BITS_CATEGORY) - 1;
 	private static final int ZOOM_TO_SKIP_FILTER_READ = 6;
-	private static final int ZOOM_TO_SKIP_FILTER = 3;
+	static final int ZOOM_TO_SKIP_FILTER = 3;
 	private static final int BUCKET_SEARCH_BY_NAME = 5;
 
 	public static class PoiSubType {
@@ -54,6 +55,11 @@ public class BinaryMapPoiReaderAdapter {
 		List<PoiCategory> categoriesType = new ArrayList<PoiCategory>();
 		List<List<String>> subcategories = new ArrayList<List<String>>();
 		List<PoiSubType> subTypes = new ArrayList<PoiSubType>();
+		// dense ids of category/subcategory pairs, ids of category i start at typeIdOffsets[i] and its last id
+		// stands for unknown subcategory, last id of region stands for unknown category
+		int[] typeIdOffsets;
+		PoiCategory[] typeCategories;
+		String[] typeSubtypes;
 
 		int left31;
 		int right31;
@@ -97,6 +103,38 @@ public class BinaryMapPoiReaderAdapter {
 			return OsmandOdb.OsmAndStructure.POIINDEX_FIELD_NUMBER;
 		}
 
+		void compileTypes(MapPoiTypes poiTypes) {
+			int size = categoriesType.size();
+			typeIdOffsets = new int[size + 1];
+			int ids = 0;
+			for (int i = 0; i < size; i++) {
+				typeIdOffsets[i] = ids;
+				ids += subcategories.get(i).size() + 1;
+			}
+			typeIdOffsets[size] = ids;
+			typeCategories = new PoiCategory[ids + 1];
+			typeSubtypes = new String[ids + 1];
+			for (int i = 0; i < size; i++) {
+				PoiCategory type = categoriesType.get(i);
+				List<String> subcats = subcategories.get(i);
+				int id = typeIdOffsets[i];
+				for (int j = 0; j <= subcats.size(); j++) {
+					String subtype = j < subcats.size() ? subcats.get(j) : "";
+					typeCategories[id + j] = type;
+					typeSubtypes[id + j] = poiTypes.replaceDeprecatedSubtype(type, subtype);
+				}
+			}
+			typeCategories[ids] = poiTypes.getOtherPoiCategory();
+			typeSubtypes[ids] = poiTypes.replaceDeprecatedSubtype(typeCategories[ids], "");
+		}
+
+		int getTypeId(int catId, int subcatId) {
+			if (catId >= typeIdOffsets.length - 1) {
+				return typeIdOffsets[typeIdOffsets.length - 1];
+			}
+			return Math.min(typeIdOffsets[catId] + subcatId, typeIdOffsets[catId + 1] - 1);
+		}
+
 		public PoiSubType getSubtypeFromId(int id, StringBuilder returnValue) {
 			int tl;
 			int sl;
@@ -282,11 +320,14 @@ public class BinaryMapPoiReaderAdapter {
 	}
 
 	public void initCategories(PoiRegion region) throws IOException {
-		if (region.categories.isEmpty()) {
-			codedIS.seek(region.filePointer);
-			int oldLimit = codedIS.pushLimit(region.length);
-			readPoiIndex(region, true);
-			codedIS.popLimit(oldLimit);
+		synchronized (region) {
+			if (region.categories.isEmpty()) {
+				codedIS.seek(region.filePointer);
+				int oldLimit = codedIS.pushLimit(region.length);
+				readPoiIndex(region, true);
+				codedIS.popLimit(oldLimit);
+				region.compileTypes(poiTypes);
+			}
 		}
 	}
 
@@ -318,49 +359,117 @@ public class BinaryMapPoiReaderAdapter {
 				codedIS.popLimit(oldLimit);
 				break;
 			case OsmandOdb.OsmAndPoiIndex.POIDATA_FIELD_NUMBER:
-				// also offsets can be randomly skipped by limit
-				Integer[] offKeys = new Integer[offsets.size()];
-				if (offsets.size() > 0) {
-					int[] keys = offsets.keys();
-					for (int i = 0; i < keys.length; i++) {
-						offKeys[i] = keys[i];
-					}
-					final TIntLongHashMap foffsets = offsets;
-					Arrays.sort(offKeys, new Comparator<Integer>() {
-						@Override
-						public int compare(Integer object1, Integer object2) {
-							return Double.compare(foffsets.get(object1), foffsets.get(object2));
-						}
-					});
-					int p = BUCKET_SEARCH_BY_NAME * 3;
-					if (p < offKeys.length) {
-						for (int i = p + BUCKET_SEARCH_BY_NAME; ; i += BUCKET_SEARCH_BY_NAME) {
-							if (i > offKeys.length) {
-								Arrays.sort(offKeys, p, offKeys.length);
-								break;
-							} else {
-								Arrays.sort(offKeys, p, i);
-							}
-							p = i;
-						}
+				Integer[] offKeys = sortPoiNameOffsets(offsets);
+				LOG.info("Searched poi structure in " + (System.currentTimeMillis() - time) +
+						"ms. Found " + offKeys.length + " subtrees");
+				if (!readPoiDataBoxes(offKeys, indexOffset, matcher, req, region)) {
+					return;
+				}
+				LOG.info("Whole poi by name search is done in " + (System.currentTimeMillis() - time) +
+						"ms. Found " + req.getSearchResults().size());
+				codedIS.skipRawBytes(codedIS.getBytesUntilLimit());
+				return;
+			default:
+				skipUnknownField(t);
+				break;
+			}
+		}
+	}
+
+	private Integer[] sortPoiNameOffsets(final TIntLongHashMap offsets) {
+		// also offsets can be randomly skipped by limit
+		Integer[] offKeys = new Integer[offsets.size()];
+		if (offsets.size() > 0) {
+			int[] keys = offsets.keys();
+			for (int i = 0; i < keys.length; i++) {
+				offKeys[i] = keys[i];
+			}
+			Arrays.sort(offKeys, new Comparator<Integer>() {
+				@Override
+				public int compare(Integer object1, Integer object2) {
+					return Double.compare(offsets.get(object1), offsets.get(object2));
+				}
+			});
+			int p = BUCKET_SEARCH_BY_NAME * 3;
+			if (p < offKeys.length) {
+				for (int i = p + BUCKET_SEARCH_BY_NAME; ; i += BUCKET_SEARCH_BY_NAME) {
+					if (i > offKeys.length) {
+						Arrays.sort(offKeys, p, offKeys.length);
+						break;
+					} else {
+						Arrays.sort(offKeys, p, i);
 					}
+					p = i;
 				}
+			}
+		}
+		return offKeys;
+	}
 
+	/**
+	 * @return false if search is cancelled or limit is exceeded
+	 */
+	private boolean readPoiDataBoxes(Integer[] offKeys, int indexOffset, CollatorStringMatcher matcher,
+			SearchRequest<Amenity> req, PoiRegion region) throws IOException {
+		for (int j = 0; j < offKeys.length; j++) {
+			codedIS.seek(offKeys[j] + indexOffset);
+			int len = readInt();
+			int oldLim = codedIS.pushLimit(len);
+			readPoiData(matcher, req, region);
+			codedIS.popLimit(oldLim);
+			if (req.isCancelled() || req.limitExceeded()) {
+				return false;
+			}
+		}
+		return true;
+	}
 
-				LOG.info("Searched poi structure in " + (System.currentTimeMillis() - time) +
-						"ms. Found " + offKeys.length + " subtrees");
-				for (int j = 0; j < offKeys.length; j++) {
-					codedIS.seek(offKeys[j] + indexOffset);
+	/**
+	 * Searches poi by name in boxes found by sidecar name index (box offset -> distance to request center).
+	 */
+	protected void searchPoiByNameIndex(PoiRegion region, SearchRequest<Amenity> req, TIntLongHashMap offsets)
+			throws IOException {
+		long time = System.currentTimeMillis();
+		int indexOffset = codedIS.getTotalBytesRead();
+		CollatorStringMatcher matcher = new CollatorStringMatcher(normalizeSearchPoiByNameQuery(req.nameQuery),
+				req.matcherMode);
+		readPoiDataBoxes(sortPoiNameOffsets(offsets), indexOffset, matcher, req, region);
+		LOG.info("Poi by name search with name index is done in " + (System.currentTimeMillis() - time) +
+				"ms. Read " + offsets.size() + " boxes");
+	}
+
+	/**
+	 * Reads names of all poi referenced by name index of the region into sidecar name index.
+	 */
+	protected void readPoiNames(PoiRegion region, int regionIndex, CachedNameIndexes.NameTableBuilder builder)
+			throws IOException {
+		int indexOffset = codedIS.getTotalBytesRead();
+		SearchRequest<Amenity> req = BinaryMapIndexReader.buildSearchPoiRequest(0, 0, "", 0, Integer.MAX_VALUE, 0,
+				Integer.MAX_VALUE, null);
+		TIntLongHashMap offsets = new TIntLongHashMap();
+		while (true) {
+			int t = codedIS.readTag();
+			int tag = WireFormat.getTagFieldNumber(t);
+			switch (tag) {
+			case 0:
+				return;
+			case OsmandOdb.OsmAndPoiIndex.NAMEINDEX_FIELD_NUMBER:
+				int length = readInt();
+				int oldLimit = codedIS.pushLimit(length);
+				// empty query matches all keys
+				offsets = readPoiNameIndex(OsmAndCollator.primaryCollator(), "", req);
+				codedIS.popLimit(oldLimit);
+				break;
+			case OsmandOdb.OsmAndPoiIndex.POIDATA_FIELD_NUMBER:
+				int[] keys = offsets.keys();
+				Arrays.sort(keys);
+				for (int j = 0; j < keys.length; j++) {
+					codedIS.seek(keys[j] + indexOffset);
 					int len = readInt();
 					int oldLim = codedIS.pushLimit(len);
-					readPoiData(matcher, req, region);
+					readPoiDataNames(req, region, regionIndex, keys[j], builder);
 					codedIS.popLimit(oldLim);
-					if (req.isCancelled() || req.limitExceeded()) {
-						return;
-					}
 				}
-				LOG.info("Whole poi by name search is done in " + (System.currentTimeMillis() - time) +
-						"ms. Found " + req.getSearchResults().size());
 				codedIS.skipRawBytes(codedIS.getBytesUntilLimit());
 				return;
 			default:
@@ -370,6 +479,54 @@ public class BinaryMapPoiReaderAdapter {
 		}
 	}
 
+	private void readPoiDataNames(SearchRequest<Amenity> req, PoiRegion region, int regionIndex, int boxOffset,
+			CachedNameIndexes.NameTableBuilder builder) throws IOException {
+		int x = 0;
+		int y = 0;
+		int zoom = 0;
+		while (true) {
+			int t = codedIS.readTag();
+			int tag = WireFormat.getTagFieldNumber(t);
+			switch (tag) {
+			case 0:
+				return;
+			case OsmandOdb.OsmAndPoiBoxData.X_FIELD_NUMBER:
+				x = codedIS.readUInt32();
+				break;
+			case OsmandOdb.OsmAndPoiBoxData.ZOOM_FIELD_NUMBER:
+				zoom = codedIS.readUInt32();
+				break;
+			case OsmandOdb.OsmAndPoiBoxData.Y_FIELD_NUMBER:
+				y = codedIS.readUInt32();
+				break;
+			case OsmandOdb.OsmAndPoiBoxData.POIDATA_FIELD_NUMBER:
+				int len = codedIS.readRawVarint32();
+				int oldLim = codedIS.pushLimit(len);
+				Amenity am = readPoiPoint(0, Integer.MAX_VALUE, 0, Integer.MAX_VALUE, x, y, zoom, req, region, false);
+				codedIS.popLimit(oldLim);
+				if (am != null) {
+					int x31 = x << (31 - zoom);
+					int y31 = y << (31 - zoom);
+					// same names are checked by readPoiData
+					builder.add(am.getName(), regionIndex, boxOffset, x31, y31);
+					builder.add(am.getEnName(true), regionIndex, boxOffset, x31, y31);
+					for (String s : am.getAllNames()) {
+						builder.add(s, regionIndex, boxOffset, x31, y31);
+					}
+					for (Entry<String, String> e : am.getAdditionalInfo().entrySet()) {
+						if (e.getKey().contains("_name") || e.getKey().equals("brand")) {
+							builder.add(e.getValue(), regionIndex, boxOffset, x31, y31);
+						}
+					}
+				}
+				break;
+			default:
+				skipUnknownField(t);
+				break;
+			}
+		}
+	}
+
 	private TIntLongHashMap readPoiNameIndex(Collator instance, String query, SearchRequest<Amenity> req) throws IOException {
 		TIntLongHashMap offsets = new TIntLongHashMap();
 		TIntArrayList dataOffsets = null;
@@ -689,11 +846,13 @@ public class BinaryMapPoiReaderAdapter {
 	private Amenity readPoiPoint(int left31, int right31, int top31, int bottom31,
 			int px, int py, int zoom, SearchRequest<Amenity> req, PoiRegion region, boolean checkBounds) throws IOException {
 		Amenity am = null;
+		int filePointer = codedIS.getTotalBytesRead();
 		int x = 0;
 		int y = 0;
 		StringBuilder retValue = new StringBuilder();
 		PoiCategory amenityType = null;
 		LinkedList<String> textTags = null;
+		TIntArrayList typeIds = null;
 		while (true) {
 			int t = codedIS.readTag();
 			int tag = WireFormat.getTagFieldNumber(t);
@@ -717,6 +876,12 @@ public class BinaryMapPoiReaderAdapter {
 						am.setRoutePoint(arp);
 					}
 				}
+				if (req.poiTypeIds != null) {
+					req.poiTypeIds.put(am, typeIds.toArray());
+				}
+				if (req.poiFilePointers != null) {
+					req.poiFilePointers.put(am, filePointer);
+				}
 				return am;
 			case OsmandOdb.OsmAndPoiBoxDataAtom.DX_FIELD_NUMBER:
 				x = (codedIS.readSInt32() + (px << (24 - zoom))) << 7;
@@ -760,20 +925,10 @@ public class BinaryMapPoiReaderAdapter {
 				break;
 			case OsmandOdb.OsmAndPoiBoxDataAtom.CATEGORIES_FIELD_NUMBER:
 				int cat = codedIS.readUInt32();
-				int subcatId = cat >> SHIFT_BITS_CATEGORY;
-				int catId = cat & CATEGORY_MASK;
-				PoiCategory type = poiTypes.getOtherPoiCategory();
-				String subtype = "";
-				if (catId < region.categoriesType.size()) {
-					type = region.categoriesType.get(catId);
-					List<String> subcats = region.subcategories.get(catId);
-					if (subcatId < subcats.size()) {
-						subtype = subcats.get(subcatId);
-					}
-				}
-				subtype = poiTypes.replaceDeprecatedSubtype(type, subtype);
-				boolean isForbidden = poiTypes.isTypeForbidden(subtype);
-				if (!isForbidden && (req.poiTypeFilter == null || req.poiTypeFilter.accept(type, subtype))) {
+				int typeId = region.getTypeId(cat & CATEGORY_MASK, cat >> SHIFT_BITS_CATEGORY);
+				if (acceptType(req, region, typeId)) {
+					PoiCategory type = region.typeCategories[typeId];
+					String subtype = region.typeSubtypes[typeId];
 					if (amenityType == null) {
 						amenityType = type;
 						am.setSubType(subtype);
@@ -781,6 +936,12 @@ public class BinaryMapPoiReaderAdapter {
 					} else {
 						am.setSubType(am.getSubType() + ";" + subtype);
 					}
+					if (req.poiTypeIds != null) {
+						if (typeIds == null) {
+							typeIds = new TIntArrayList();
+						}
+						typeIds.add(typeId);
+					}
 				}
 				break;
 			case OsmandOdb.OsmAndPoiBoxDataAtom.ID_FIELD_NUMBER:
@@ -811,6 +972,25 @@ public class BinaryMapPoiReaderAdapter {
 		}
 	}
 
+	// filter is evaluated once per type of region during request
+	private boolean acceptType(SearchRequest<Amenity> req, PoiRegion region, int typeId) {
+		if (req.poiTypeFilterRegion != region) {
+			req.poiTypeFilterRegion = region;
+			req.checkedPoiTypes.clear();
+			req.acceptedPoiTypes.clear();
+		}
+		if (!req.checkedPoiTypes.get(typeId)) {
+			req.checkedPoiTypes.set(typeId);
+			PoiCategory type = region.typeCategories[typeId];
+			String subtype = region.typeSubtypes[typeId];
+			if (!poiTypes.isTypeForbidden(subtype)
+					&& (req.poiTypeFilter == null || req.poiTypeFilter.accept(type, subtype))) {
+				req.acceptedPoiTypes.set(typeId);
+			}
+		}
+		return req.acceptedPoiTypes.get(typeId);
+	}
+
 	private boolean checkCategories(SearchRequest<Amenity> req, PoiRegion region) throws IOException {
 		StringBuilder subType = new StringBuilder();
 		while (true) {
@@ -831,20 +1011,9 @@ public class BinaryMapPoiReaderAdapter {
 //				}
 //				break;
 			case OsmandOdb.OsmAndPoiCategories.CATEGORIES_FIELD_NUMBER:
-				PoiCategory type = poiTypes.getOtherPoiCategory();
-				String subtype = "";
 				int cat = codedIS.readUInt32();
-				int subcatId = cat >> SHIFT_BITS_CATEGORY;
-				int catId = cat & CATEGORY_MASK;
-				if (catId < region.categoriesType.size()) {
-					type = region.categoriesType.get(catId);
-					List<String> subcats = region.subcategories.get(catId);
-					if (subcatId < subcats.size()) {
-						subtype = subcats.get(subcatId);
-					}
-				}
-				subtype = poiTypes.replaceDeprecatedSubtype(type, subtype);
-				if (req.poiTypeFilter.accept(type, subtype)) {
+				// forbidden types are checked as well, box of only forbidden types has no acceptable poi
+				if (acceptType(req, region, region.getTypeId(cat & CATEGORY_MASK, cat >> SHIFT_BITS_CATEGORY))) {
 					codedIS.skipRawBytes(codedIS.getBytesUntilLimit());
 					return true;
 				}
@@ -572,7 +572,6 @@ public class BinaryMapRouteReaderAdapter {
 		public int bottom;
 		public int shiftToData;
 		public List<RouteSubregion> subregions = null;
-		public List<RouteDataObject> dataObjects = null;
 
 		public int getEstimatedSize(){
 			int shallow = 7 * INT_SIZE + 4*3;
@@ -791,9 +790,8 @@ public class BinaryMapRouteReaderAdapter {
 			}
 		}
 	}
-	private void readRouteTreeData(RouteSubregion routeTree,  TLongArrayList idTables,
+	private void readRouteTreeData(RouteSubregion routeTree, List<RouteDataObject> dataObjects, TLongArrayList idTables,
 			TLongObjectHashMap<RestrictionInfo> restrictions) throws IOException {
-		routeTree.dataObjects = new ArrayList<RouteDataObject>();
 		idTables.clear();
 		restrictions.clear();
 		List<String> stringTable = null;
@@ -806,7 +804,7 @@ public class BinaryMapRouteReaderAdapter {
 				while (it.hasNext()) {
 					it.advance();
 					int from = (int) it.key();
-					RouteDataObject fromr = routeTree.dataObjects.get(from);
+					RouteDataObject fromr = dataObjects.get(from);
 					fromr.restrictions = new long[it.value().length()];
 					RestrictionInfo val = it.value();
 					for (int k = 0; k < fromr.restrictions.length; k++) {
@@ -821,7 +819,7 @@ public class BinaryMapRouteReaderAdapter {
 					}
 //					fromr.restrictionsVia = new 
 				}
-				for (RouteDataObject o : routeTree.dataObjects) {
+				for (RouteDataObject o : dataObjects) {
 					if (o != null) {
 						if (o.id < idTables.size()) {
 							o.id = idTables.get((int) o.id);
@@ -848,10 +846,10 @@ public class BinaryMapRouteReaderAdapter {
 				int length = codedIS.readRawVarint32();
 				int oldLimit = codedIS.pushLimit(length);
 				RouteDataObject obj = readRouteDataObject(routeTree.routeReg, routeTree.left, routeTree.top);
-				while(obj.id >= routeTree.dataObjects.size()) {
-					routeTree.dataObjects.add(null);
+				while(obj.id >= dataObjects.size()) {
+					dataObjects.add(null);
 				}
-				routeTree.dataObjects.set((int) obj.id,obj);
+				dataObjects.set((int) obj.id,obj);
 				codedIS.popLimit(oldLimit);
 				break;
 			case RouteDataBlock.IDTABLE_FIELD_NUMBER :
@@ -1029,11 +1027,13 @@ public class BinaryMapRouteReaderAdapter {
 	}
 
 	public void initRouteRegion(RouteRegion routeReg) throws IOException, InvalidProtocolBufferException {
-		if (routeReg.routeEncodingRules.isEmpty()) {
-			codedIS.seek(routeReg.filePointer);
-			int oldLimit = codedIS.pushLimit(routeReg.length);
-			readRouteIndex(routeReg);
-			codedIS.popLimit(oldLimit);
+		synchronized (routeReg) {
+			if (routeReg.routeEncodingRules.isEmpty()) {
+				codedIS.seek(routeReg.filePointer);
+				int oldLimit = codedIS.pushLimit(routeReg.length);
+				readRouteIndex(routeReg);
+				codedIS.popLimit(oldLimit);
+			}
 		}
 	}
 
@@ -1041,16 +1041,7 @@ public class BinaryMapRouteReaderAdapter {
 	public List<RouteDataObject> loadRouteRegionData(RouteSubregion rs) throws IOException {
 		TLongArrayList idMap = new TLongArrayList();
 		TLongObjectHashMap<RestrictionInfo> restrictionMap = new TLongObjectHashMap<RestrictionInfo>();
-		if (rs.dataObjects == null) {
-			codedIS.seek(rs.filePointer + rs.shiftToData);
-			int limit = codedIS.readRawVarint32();
-			int oldLimit = codedIS.pushLimit(limit);
-			readRouteTreeData(rs, idMap, restrictionMap);
-			codedIS.popLimit(oldLimit);
-		}
-		List<RouteDataObject> res = rs.dataObjects;
-		rs.dataObjects = null;
-		return res;
+		return readRouteSubregionData(rs, idMap, restrictionMap);
 	}
 	
 	public void loadRouteRegionData(List<RouteSubregion> toLoad, ResultMatcher<RouteDataObject> matcher) throws IOException {
@@ -1065,32 +1056,37 @@ public class BinaryMapRouteReaderAdapter {
 		TLongArrayList idMap = new TLongArrayList();
 		TLongObjectHashMap<RestrictionInfo> restrictionMap = new TLongObjectHashMap<RestrictionInfo>();
 		for (RouteSubregion rs : toLoad) {
-			if (rs.dataObjects == null) {
-				codedIS.seek(rs.filePointer + rs.shiftToData);
-				int limit = codedIS.readRawVarint32();
-				int oldLimit = codedIS.pushLimit(limit);
-				readRouteTreeData(rs, idMap, restrictionMap);
-				codedIS.popLimit(oldLimit);
-			}
-			for (RouteDataObject ro : rs.dataObjects) {
+			for (RouteDataObject ro : readRouteSubregionData(rs, idMap, restrictionMap)) {
 				if (ro != null) {
 					matcher.publish(ro);
 				}
 			}
-			// free objects
-			rs.dataObjects = null;
 		}
 	}
 
+	private List<RouteDataObject> readRouteSubregionData(RouteSubregion rs, TLongArrayList idMap,
+			TLongObjectHashMap<RestrictionInfo> restrictionMap) throws IOException {
+		// objects are read into local list so same subregion could be loaded by several readers at once
+		List<RouteDataObject> dataObjects = new ArrayList<RouteDataObject>();
+		codedIS.seek(rs.filePointer + rs.shiftToData);
+		int limit = codedIS.readRawVarint32();
+		int oldLimit = codedIS.pushLimit(limit);
+		readRouteTreeData(rs, dataObjects, idMap, restrictionMap);
+		codedIS.popLimit(oldLimit);
+		return dataObjects;
+	}
+
 	public List<RouteSubregion> searchRouteRegionTree(SearchRequest<?> req, List<RouteSubregion> list, 
 			List<RouteSubregion> toLoad) throws IOException {
 		for (RouteSubregion rs : list) {
 			if (req.intersects(rs.left, rs.top, rs.right, rs.bottom)) {
-				if (rs.subregions == null) {
-					codedIS.seek(rs.filePointer);
-					int old = codedIS.pushLimit(rs.length);
-					readRouteTree(rs, null, req.contains(rs.left, rs.top, rs.right, rs.bottom) ? -1 : 1, false);
-					codedIS.popLimit(old);
+				synchronized (rs) {
+					if (rs.subregions == null) {
+						codedIS.seek(rs.filePointer);
+						int old = codedIS.pushLimit(rs.length);
+						readRouteTree(rs, null, req.contains(rs.left, rs.top, rs.right, rs.bottom) ? -1 : 1, false);
+						codedIS.popLimit(old);
+					}
 				}
 				searchRouteRegionTree(req, rs.subregions, toLoad);
 
@@ -1107,11 +1103,13 @@ public class BinaryMapRouteReaderAdapter {
 			List<RouteSubregion> toLoad) throws IOException {
 		for (RouteSubregion rs : list) {
 			if (req.intersects(rs.left, rs.top, rs.right, rs.bottom)) {
-				if (rs.subregions == null) {
-					codedIS.seek(rs.filePointer);
-					int old = codedIS.pushLimit(rs.length);
-					readRouteTree(rs, null, req.contains(rs.left, rs.top, rs.right, rs.bottom) ? -1 : 1, false);
-					codedIS.popLimit(old);
+				synchronized (rs) {
+					if (rs.subregions == null) {
+						codedIS.seek(rs.filePointer);
+						int old = codedIS.pushLimit(rs.length);
+						readRouteTree(rs, null, req.contains(rs.left, rs.top, rs.right, rs.bottom) ? -1 : 1, false);
+						codedIS.popLimit(old);
+					}
 				}
 				searchRouteRegionTree(req, rs.subregions, toLoad);
 
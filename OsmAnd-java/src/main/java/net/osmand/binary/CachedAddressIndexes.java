@@ -0,0 +1,1048 @@
+package net.osmand.binary;
+
+import gnu.trove.list.array.TIntArrayList;
+import gnu.trove.list.array.TLongArrayList;
+import gnu.trove.map.hash.TLongObjectHashMap;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+import net.osmand.CollationKeyCache.NameKey;
+import net.osmand.PlatformUtil;
+import net.osmand.ResultMatcher;
+import net.osmand.binary.BinaryMapAddressReaderAdapter.AddressRegion;
+import net.osmand.binary.BinaryMapIndexReader.SearchRequest;
+import net.osmand.data.Building;
+import net.osmand.data.Building.BuildingInterpolation;
+import net.osmand.data.City;
+import net.osmand.data.City.CityType;
+import net.osmand.data.LatLon;
+import net.osmand.data.MapObject;
+import net.osmand.data.Street;
+import net.osmand.util.MapUtils;
+
+import org.apache.commons.logging.Log;
+
+/**
+ * In-memory address indexes of obf files. For every address region cities (including postcodes and villages),
+ * their streets, buildings and street intersections are stored in flat arrays with int coordinates, so
+ * {@link BinaryMapIndexReader#preloadStreets(City, SearchRequest)} and
+ * {@link BinaryMapIndexReader#preloadBuildings(Street, SearchRequest)} of reader with attached index and search
+ * by name or position don't read the file. Index could be built eagerly for the whole file or lazily by region:
+ * region is built in background on first access (with own reader of the file) and the file is read as usual until
+ * it is built. Index is stored in sidecar file validated the same way as {@link CachedNameIndexes}.
+ */
+public class CachedAddressIndexes {
+
+	private static final Log log = PlatformUtil.getLog(CachedAddressIndexes.class);
+
+	public static final int VERSION = 1;
+	public static final String FILE_EXT = ".addridx";
+
+	// zoom of grid for search by position (~1.2 km)
+	static final int GRID_ZOOM = 15;
+	private static final int NO_CITY_TYPE = -1;
+	private static final char NAMES_SEPARATOR = '\u0000';
+
+	private static ExecutorService lazyBuildExecutor;
+
+	private final File dir;
+	private final Map<File, FileAddressIndex> indexes = new HashMap<File, FileAddressIndex>();
+
+	/**
+	 * @param dir directory to store sidecar files, if null they are stored next to obf files
+	 */
+	public CachedAddressIndexes(File dir) {
+		this.dir = dir;
+	}
+
+	public File getIndexFile(File obf) {
+		return new File(dir == null ? obf.getParentFile() : dir, obf.getName() + FILE_EXT);
+	}
+
+	/**
+	 * @return complete address index of the file or null if sidecar file doesn't exist (or is outdated) and build is false
+	 */
+	public FileAddressIndex getAddressIndex(BinaryMapIndexReader reader, boolean build) throws IOException {
+		FileAddressIndex index = getCachedIndex(reader);
+		if (index == null || (!index.isComplete() && build)) {
+			index = readIndex(reader);
+			if (index == null && build) {
+				index = new FileAddressIndex(reader, false);
+			}
+			if (index != null && build && !index.isComplete()) {
+				index.buildRegions(reader);
+				writeToFile(index, getIndexFile(reader.getFile()));
+			}
+			putCachedIndex(reader, index);
+		}
+		return index;
+	}
+
+	/**
+	 * @return address index read from sidecar file or empty index which builds regions in background on first access
+	 */
+	public FileAddressIndex getLazyAddressIndex(BinaryMapIndexReader reader) throws IOException {
+		FileAddressIndex index = getCachedIndex(reader);
+		if (index == null) {
+			index = readIndex(reader);
+			if (index == null) {
+				index = new FileAddressIndex(reader, true);
+			}
+			putCachedIndex(reader, index);
+		}
+		return index;
+	}
+
+	/**
+	 * Builds regions which are not built yet and writes index to sidecar file.
+	 */
+	public void saveAddressIndex(BinaryMapIndexReader reader, FileAddressIndex index) throws IOException {
+		index.buildRegions(reader);
+		writeToFile(index, getIndexFile(reader.getFile()));
+	}
+
+	private synchronized FileAddressIndex getCachedIndex(BinaryMapIndexReader reader) {
+		FileAddressIndex index = indexes.get(reader.getFile());
+		return index != null && index.isValid(reader) ? index : null;
+	}
+
+	private synchronized void putCachedIndex(BinaryMapIndexReader reader, FileAddressIndex index) {
+		if (index != null) {
+			indexes.put(reader.getFile(), index);
+		}
+	}
+
+	private FileAddressIndex readIndex(BinaryMapIndexReader reader) {
+		File f = getIndexFile(reader.getFile());
+		if (!f.exists()) {
+			return null;
+		}
+		try {
+			FileAddressIndex index = readFromFile(f);
+			if (index != null && index.isValid(reader) && index.regions.length == reader.getAddressIndexes().size()) {
+				return index;
+			}
+		} catch (IOException e) {
+			log.warn("Address index " + f.getName() + " can't be read", e);
+		}
+		return null;
+	}
+
+	private static long getDateCreated(BinaryMapIndexReader reader) {
+		long d = reader.getDateCreated();
+		return d == 0 ? reader.getFile().lastModified() : d;
+	}
+
+	// regions of lazy indexes are built one by one, thread ends after a minute without builds
+	private static synchronized ExecutorService getLazyBuildExecutor() {
+		if (lazyBuildExecutor == null) {
+			lazyBuildExecutor = new ThreadPoolExecutor(0, 1, 60L, TimeUnit.SECONDS,
+					new LinkedBlockingQueue<Runnable>(), new ThreadFactory() {
+						@Override
+						public Thread newThread(Runnable r) {
+							Thread t = new Thread(r, "Address index builder");
+							t.setDaemon(true);
+							return t;
+						}
+					});
+		}
+		return lazyBuildExecutor;
+	}
+
+	public static class FileAddressIndex {
+		final long fileSize;
+		final long dateCreated;
+		final RegionAddressIndex[] regions;
+		final boolean lazy;
+		// regions being built by index of region
+		private final Map<Integer, FutureTask<RegionAddressIndex>> building = new HashMap<Integer, FutureTask<RegionAddressIndex>>();
+
+		FileAddressIndex(long fileSize, long dateCreated, RegionAddressIndex[] regions, boolean lazy) {
+			this.fileSize = fileSize;
+			this.dateCreated = dateCreated;
+			this.regions = regions;
+			this.lazy = lazy;
+		}
+
+		FileAddressIndex(BinaryMapIndexReader reader, boolean lazy) {
+			this(reader.getFile().length(), getDateCreated(reader),
+					new RegionAddressIndex[reader.getAddressIndexes().size()], lazy);
+		}
+
+		boolean isValid(BinaryMapIndexReader reader) {
+			return reader.getFile().length() == fileSize && getDateCreated(reader) == dateCreated;
+		}
+
+		public synchronized boolean isComplete() {
+			for (RegionAddressIndex r : regions) {
+				if (r == null) {
+					return false;
+				}
+			}
+			return true;
+		}
+
+		/**
+		 * @return index of the region, null if it is not built yet. Lazy index starts to build the region in
+		 * background, so caller reads the file until it is built.
+		 */
+		public RegionAddressIndex getRegionIndex(BinaryMapIndexReader reader, AddressRegion region) {
+			int i = reader.getAddressIndexes().indexOf(region);
+			if (i == -1 || i >= regions.length) {
+				return null;
+			}
+			synchronized (this) {
+				if (regions[i] != null || !lazy || building.containsKey(i)) {
+					return regions[i];
+				}
+				FutureTask<RegionAddressIndex> task = createBuildTask(reader, i, region, true);
+				getLazyBuildExecutor().execute(task);
+			}
+			return null;
+		}
+
+		/**
+		 * Waits for regions which are built in background and builds the rest of regions with reader.
+		 */
+		void buildRegions(BinaryMapIndexReader reader) throws IOException {
+			List<AddressRegion> addressRegions = reader.getAddressIndexes();
+			for (int i = 0; i < regions.length; i++) {
+				buildRegion(reader, i, addressRegions.get(i));
+			}
+		}
+
+		// region is built outside of the lock by the first thread, other threads wait for it
+		private RegionAddressIndex buildRegion(BinaryMapIndexReader reader, int i, AddressRegion region)
+				throws IOException {
+			FutureTask<RegionAddressIndex> task;
+			boolean run = false;
+			synchronized (this) {
+				if (regions[i] != null) {
+					return regions[i];
+				}
+				task = building.get(i);
+				if (task == null) {
+					task = createBuildTask(reader, i, region, false);
+					run = true;
+				}
+			}
+			if (run) {
+				task.run();
+			}
+			try {
+				return task.get();
+			} catch (ExecutionException e) {
+				Throwable cause = e.getCause();
+				if (cause instanceof IOException) {
+					throw (IOException) cause;
+				} else if (cause instanceof RuntimeException) {
+					throw (RuntimeException) cause;
+				}
+				throw new IllegalStateException(cause);
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				throw new IOException("Interrupted while address index of " + region.getName() + " is built");
+			}
+		}
+
+		// called under lock, task stores built region and is removed after it's done (next access builds failed region again)
+		private FutureTask<RegionAddressIndex> createBuildTask(final BinaryMapIndexReader reader, final int i,
+				final AddressRegion region, final boolean ownReader) {
+			FutureTask<RegionAddressIndex> task = new FutureTask<RegionAddressIndex>(new Callable<RegionAddressIndex>() {
+				@Override
+				public RegionAddressIndex call() throws IOException {
+					try {
+						RegionAddressIndex index = ownReader ? buildRegionIndexWithOwnReader(reader, region)
+								: buildRegionIndex(reader, region);
+						synchronized (FileAddressIndex.this) {
+							regions[i] = index;
+						}
+						return index;
+					} catch (IOException e) {
+						if (ownReader) {
+							log.warn("Address index of " + region.getName() + " is not built", e);
+						}
+						throw e;
+					} finally {
+						synchronized (FileAddressIndex.this) {
+							building.remove(i);
+						}
+					}
+				}
+			});
+			building.put(i, task);
+			return task;
+		}
+	}
+
+	// reader of caller is not thread safe, so background build reads the file with own reader
+	private static RegionAddressIndex buildRegionIndexWithOwnReader(BinaryMapIndexReader reader, AddressRegion region)
+			throws IOException {
+		BinaryMapIndexReader own = new BinaryMapIndexReader(new RandomAccessFile(reader.getFile(), "r"), reader);
+		try {
+			return buildRegionIndex(own, region);
+		} finally {
+			own.close();
+		}
+	}
+
+	/**
+	 * Common fields of address objects: id, names, file offset and location (31 tile numbers for cities and
+	 * 24 tile numbers for streets and buildings, as they are stored in obf).
+	 */
+	static class ObjectTable {
+		final long[] ids;
+		final String[] names;
+		final String[] enNames;
+		// other names as lang, name, lang, name... separated by NAMES_SEPARATOR
+		final String[] otherNames;
+		// x, y of object i are xy[2 * i], xy[2 * i + 1]
+		final int[] xy;
+		final int[] offsets;
+		final int zoom;
+
+		ObjectTable(int zoom, long[] ids, String[] names, String[] enNames, String[] otherNames, int[] xy, int[] offsets) {
+			this.zoom = zoom;
+			this.ids = ids;
+			this.names = names;
+			this.enNames = enNames;
+			this.otherNames = otherNames;
+			this.xy = xy;
+			this.offsets = offsets;
+		}
+
+		int size() {
+			return ids.length;
+		}
+
+		int getX(int i) {
+			return xy[2 * i];
+		}
+
+		int getY(int i) {
+			return xy[2 * i + 1];
+		}
+
+		<T extends MapObject> T fill(T o, int i) {
+			if (ids[i] != Long.MIN_VALUE) {
+				o.setId(ids[i]);
+			}
+			o.setName(names[i]);
+			if (enNames[i] != null) {
+				o.setEnName(enNames[i]);
+			}
+			if (otherNames[i] != null) {
+				String[] s = otherNames[i].split(String.valueOf(NAMES_SEPARATOR));
+				for (int k = 0; k + 1 < s.length; k += 2) {
+					o.setName(s[k], s[k + 1]);
+				}
+			}
+			o.setFileOffset(offsets[i]);
+			o.setLocation(getLatitude(zoom, getY(i)), getLongitude(zoom, getX(i)));
+			return o;
+		}
+	}
+
+	static class ObjectTableBuilder {
+		final int zoom;
+		final TLongArrayList ids = new TLongArrayList();
+		final List<String> names = new ArrayList<String>();
+		final List<String> enNames = new ArrayList<String>();
+		final List<String> otherNames = new ArrayList<String>();
+		final TIntArrayList xy = new TIntArrayList();
+		final TIntArrayList offsets = new TIntArrayList();
+
+		ObjectTableBuilder(int zoom) {
+			this.zoom = zoom;
+		}
+
+		int add(MapObject o) {
+			ids.add(o.getId() == null ? Long.MIN_VALUE : o.getId());
+			names.add(o.getName());
+			String en = o.getEnName(false);
+			enNames.add(en == null || en.length() == 0 ? null : en);
+			Map<String, String> other = o.getNamesMap(false);
+			if (other.isEmpty()) {
+				otherNames.add(null);
+			} else {
+				StringBuilder sb = new StringBuilder();
+				for (Entry<String, String> e : other.entrySet()) {
+					if (sb.length() > 0) {
+						sb.append(NAMES_SEPARATOR);
+					}
+					sb.append(e.getKey()).append(NAMES_SEPARATOR).append(e.getValue());
+				}
+				otherNames.add(sb.toString());
+			}
+			LatLon l = o.getLocation();
+			xy.add(l == null ? 0 : getTileX(zoom, l.getLongitude()));
+			xy.add(l == null ? 0 : getTileY(zoom, l.getLatitude()));
+			offsets.add(o.getFileOffset());
+			return ids.size() - 1;
+		}
+
+		ObjectTable build() {
+			return new ObjectTable(zoom, ids.toArray(), names.toArray(new String[names.size()]),
+					enNames.toArray(new String[enNames.size()]), otherNames.toArray(new String[otherNames.size()]),
+					xy.toArray(), offsets.toArray());
+		}
+	}
+
+	// inverse of getLongitude / getLatitude (rounded, so stored tile numbers are restored exactly)
+	static int getTileX(int zoom, double lon) {
+		if (zoom == 31) {
+			return (int) Math.round(MapUtils.getTileNumberX(21, lon) * 1024);
+		}
+		return (int) Math.round(MapUtils.getTileNumberX(zoom, lon));
+	}
+
+	static int getTileY(int zoom, double lat) {
+		if (zoom == 31) {
+			return (int) Math.round(MapUtils.getTileNumberY(21, lat) * 1024);
+		}
+		return (int) Math.round(MapUtils.getTileNumberY(zoom, lat));
+	}
+
+	static double getLatitude(int zoom, int y) {
+		return zoom == 31 ? MapUtils.get31LatitudeY(y) : MapUtils.getLatitudeFromTile(zoom, y);
+	}
+
+	static double getLongitude(int zoom, int x) {
+		return zoom == 31 ? MapUtils.get31LongitudeX(x) : MapUtils.getLongitudeFromTile(zoom, x);
+	}
+
+	/**
+	 * Address objects of one address region. Streets of city i are cityStreets[i] .. cityStreets[i + 1] - 1,
+	 * buildings and intersections of streets are referenced the same way.
+	 */
+	public static class RegionAddressIndex {
+		final ObjectTable cities;
+		// CitiesBlock type (city / postcode / village)
+		final int[] cityBlockType;
+		// ordinal of CityType, -1 for postcodes
+		final int[] cityType;
+		final int[] cityStreets;
+
+		final ObjectTable streets;
+		final int[] streetCity;
+		final int[] streetBuildings;
+		final int[] streetIntersections;
+
+		final ObjectTable buildings;
+		// x2, y2 of interpolation (24 tile numbers), 0 if not set
+		final int[] buildingXY2;
+		final String[] buildingName2;
+		final String[] buildingPostcode;
+		// interpolation interval if > 0, otherwise BuildingInterpolation value or 0
+		final int[] buildingInterpolation;
+
+		final ObjectTable intersections;
+
+		// derived data, built on load
+		private int[] sortedCityOffsets;
+		private int[] sortedCityIds;
+		private int[] sortedStreetOffsets;
+		private int[] sortedStreetIds;
+		private String[] nameKeys;
+		// city i is 2 * i, street i is 2 * i + 1
+		private int[] nameRefs;
+		private TLongObjectHashMap<TIntArrayList> streetsGrid;
+
+		RegionAddressIndex(ObjectTable cities, int[] cityBlockType, int[] cityType, int[] cityStreets,
+				ObjectTable streets, int[] streetCity, int[] streetBuildings, int[] streetIntersections,
+				ObjectTable buildings, int[] buildingXY2, String[] buildingName2, String[] buildingPostcode,
+				int[] buildingInterpolation, ObjectTable intersections) {
+			this.cities = cities;
+			this.cityBlockType = cityBlockType;
+			this.cityType = cityType;
+			this.cityStreets = cityStreets;
+			this.streets = streets;
+			this.streetCity = streetCity;
+			this.streetBuildings = streetBuildings;
+			this.streetIntersections = streetIntersections;
+			this.buildings = buildings;
+			this.buildingXY2 = buildingXY2;
+			this.buildingName2 = buildingName2;
+			this.buildingPostcode = buildingPostcode;
+			this.buildingInterpolation = buildingInterpolation;
+			this.intersections = intersections;
+			init();
+		}
+
+		private void init() {
+			int[][] c = sortByOffset(cities.offsets);
+			sortedCityOffsets = c[0];
+			sortedCityIds = c[1];
+			int[][] s = sortByOffset(streets.offsets);
+			sortedStreetOffsets = s[0];
+			sortedStreetIds = s[1];
+
+			final List<String> keys = new ArrayList<String>();
+			TIntArrayList refs = new TIntArrayList();
+			addNameKeys(cities, 0, keys, refs);
+			addNameKeys(streets, 1, keys, refs);
+			Integer[] order = new Integer[keys.size()];
+			for (int i = 0; i < order.length; i++) {
+				order[i] = i;
+			}
+			Arrays.sort(order, new Comparator<Integer>() {
+				@Override
+				public int compare(Integer o1, Integer o2) {
+					return keys.get(o1).compareTo(keys.get(o2));
+				}
+			});
+			nameKeys = new String[order.length];
+			nameRefs = new int[order.length];
+			for (int i = 0; i < order.length; i++) {
+				nameKeys[i] = keys.get(order[i]);
+				nameRefs[i] = refs.get(order[i]);
+			}
+
+			streetsGrid = new TLongObjectHashMap<TIntArrayList>();
+			for (int i = 0; i < streets.size(); i++) {
+				addToGrid(i, streets.getX(i), streets.getY(i));
+				for (int b = streetBuildings[i]; b < streetBuildings[i + 1]; b++) {
+					addToGrid(i, buildings.getX(b), buildings.getY(b));
+				}
+			}
+		}
+
+		private void addToGrid(int street, int x24, int y24) {
+			long key = gridKey(x24 >> (24 - GRID_ZOOM), y24 >> (24 - GRID_ZOOM));
+			TIntArrayList l = streetsGrid.get(key);
+			if (l == null) {
+				l = new TIntArrayList(4);
+				streetsGrid.put(key, l);
+			}
+			if (l.isEmpty() || l.get(l.size() - 1) != street) {
+				l.add(street);
+			}
+		}
+
+		private static long gridKey(int x, int y) {
+			return (((long) x) << GRID_ZOOM) + y;
+		}
+
+		private static int[][] sortByOffset(int[] offsets) {
+			long[] packed = new long[offsets.length];
+			for (int i = 0; i < offsets.length; i++) {
+				packed[i] = (((long) offsets[i]) << 32) | i;
+			}
+			Arrays.sort(packed);
+			int[][] res = new int[2][offsets.length];
+			for (int i = 0; i < packed.length; i++) {
+				res[0][i] = (int) (packed[i] >> 32);
+				res[1][i] = (int) packed[i];
+			}
+			return res;
+		}
+
+		private static int findByOffset(int[] sortedOffsets, int[] sortedIds, int offset) {
+			int i = Arrays.binarySearch(sortedOffsets, offset);
+			return i < 0 ? -1 : sortedIds[i];
+		}
+
+		private static void addNameKeys(ObjectTable t, int type, List<String> keys, TIntArrayList refs) {
+			for (int i = 0; i < t.size(); i++) {
+				List<String> added = new ArrayList<String>(2);
+				addNameKeys(t.names[i], 2 * i + type, keys, refs, added);
+				addNameKeys(t.enNames[i], 2 * i + type, keys, refs, added);
+				if (t.otherNames[i] != null) {
+					String[] s = t.otherNames[i].split(String.valueOf(NAMES_SEPARATOR));
+					for (int k = 1; k < s.length; k += 2) {
+						addNameKeys(s[k], 2 * i + type, keys, refs, added);
+					}
+				}
+			}
+		}
+
+		private static void addNameKeys(String name, int ref, List<String> keys, TIntArrayList refs, List<String> added) {
+			if (name == null || name.length() == 0) {
+				return;
+			}
+			NameKey n = CachedNameIndexes.createNameKey(name);
+			// key from every word start of the name, words are found in text as key has no spaces and punctuation
+			String text = n.text;
+			for (int i = 0; i < text.length(); i++) {
+				if ((i == 0 || !Character.isLetterOrDigit(text.charAt(i - 1))) && Character.isLetterOrDigit(text.charAt(i))) {
+					String key = n.key.substring(n.offset(i));
+					if (key.length() > 0 && !added.contains(key)) {
+						added.add(key);
+						keys.add(key);
+						refs.add(ref);
+					}
+				}
+			}
+		}
+
+		public int getCitiesCount() {
+			return cities.size();
+		}
+
+		public int getStreetsCount() {
+			return streets.size();
+		}
+
+		public int getBuildingsCount() {
+			return buildings.size();
+		}
+
+		City createCity(int i) {
+			City c;
+			if (cityType[i] == NO_CITY_TYPE) {
+				c = new City(cities.names[i], cities.ids[i]);
+			} else {
+				c = new City(CityType.values()[cityType[i]]);
+			}
+			return cities.fill(c, i);
+		}
+
+		Street createStreet(int i, City city) {
+			return streets.fill(new Street(city), i);
+		}
+
+		Building createBuilding(int i) {
+			Building b = buildings.fill(new Building(), i);
+			if (buildingXY2[2 * i] != 0 && buildingXY2[2 * i + 1] != 0) {
+				b.setLatLon2(new LatLon(getLatitude(24, buildingXY2[2 * i + 1]), getLongitude(24, buildingXY2[2 * i])));
+			}
+			b.setName2(buildingName2[i]);
+			b.setPostcode(buildingPostcode[i]);
+			int interpolation = buildingInterpolation[i];
+			if (interpolation > 0) {
+				b.setInterpolationInterval(interpolation);
+			} else if (interpolation < 0) {
+				b.setInterpolationType(BuildingInterpolation.fromValue(interpolation));
+			}
+			return b;
+		}
+
+		/**
+		 * @param blockType {@link BinaryMapAddressReaderAdapter#CITY_TOWN_TYPE},
+		 *                  {@link BinaryMapAddressReaderAdapter#POSTCODES_TYPE} or {@link BinaryMapAddressReaderAdapter#VILLAGES_TYPE}
+		 */
+		public List<City> getCities(int blockType) {
+			List<City> res = new ArrayList<City>();
+			for (int i = 0; i < cities.size(); i++) {
+				if (cityBlockType[i] == blockType) {
+					res.add(createCity(i));
+				}
+			}
+			return res;
+		}
+
+		/**
+		 * Registers streets of the city the same way as they are read from file.
+		 * @return false if city is not in the index
+		 */
+		public boolean loadStreets(City c, SearchRequest<Street> resultMatcher) {
+			int i = findByOffset(sortedCityOffsets, sortedCityIds, c.getFileOffset());
+			if (i == -1) {
+				return false;
+			}
+			for (int s = cityStreets[i]; s < cityStreets[i + 1]; s++) {
+				Street street = createStreet(s, c);
+				if (resultMatcher != null) {
+					resultMatcher.collectRawData(street);
+				}
+				if (resultMatcher == null || resultMatcher.publish(street)) {
+					c.registerStreet(street);
+				}
+				if (resultMatcher != null && resultMatcher.isCancelled()) {
+					break;
+				}
+			}
+			return true;
+		}
+
+		/**
+		 * Adds buildings and intersected streets to the street the same way as they are read from file
+		 * (buildings of postcode city streets are filtered by postcode).
+		 * @return false if street is not in the index
+		 */
+		public boolean loadBuildings(Street s, SearchRequest<Building> resultMatcher) {
+			int i = findByOffset(sortedStreetOffsets, sortedStreetIds, s.getFileOffset());
+			if (i == -1) {
+				return false;
+			}
+			for (int k = streetIntersections[i]; k < streetIntersections[i + 1]; k++) {
+				s.addIntersectedStreet(intersections.fill(new Street(s.getCity()), k));
+			}
+			City city = s.getCity();
+			String postcodeFilter = city != null && city.isPostcode() ? city.getName() : null;
+			for (int k = streetBuildings[i]; k < streetBuildings[i + 1]; k++) {
+				Building b = createBuilding(k);
+				if (resultMatcher != null) {
+					resultMatcher.collectRawData(b);
+				}
+				if (postcodeFilter == null || postcodeFilter.equalsIgnoreCase(b.getPostcode())) {
+					if (resultMatcher == null || resultMatcher.publish(b)) {
+						s.addBuilding(b);
+					}
+				}
+			}
+			return true;
+		}
+
+		/**
+		 * Finds cities and streets (with their cities) having name word starting with query
+		 * (compared by primary collation keys, see {@link CachedNameIndexes#getNameKey(String)}).
+		 */
+		public List<MapObject> searchByName(String query, ResultMatcher<MapObject> matcher) {
+			String q = CachedNameIndexes.getNameKey(query.trim());
+			List<MapObject> res = new ArrayList<MapObject>();
+			if (q.length() == 0) {
+				return res;
+			}
+			int i = Arrays.binarySearch(nameKeys, q);
+			if (i < 0) {
+				i = -i - 1;
+			}
+			TIntArrayList found = new TIntArrayList();
+			for (; i < nameKeys.length && nameKeys[i].startsWith(q); i++) {
+				found.add(nameRefs[i]);
+			}
+			found.sort();
+			Map<Integer, City> createdCities = new HashMap<Integer, City>();
+			int prev = -1;
+			for (int k = 0; k < found.size(); k++) {
+				int ref = found.get(k);
+				if (ref == prev) {
+					continue;
+				}
+				prev = ref;
+				MapObject o;
+				if (ref % 2 == 0) {
+					o = createCity(ref / 2);
+				} else {
+					int s = ref / 2;
+					City c = createdCities.get(streetCity[s]);
+					if (c == null) {
+						c = createCity(streetCity[s]);
+						createdCities.put(streetCity[s], c);
+					}
+					o = createStreet(s, c);
+				}
+				if (matcher == null || matcher.publish(o)) {
+					res.add(o);
+				}
+				if (matcher != null && matcher.isCancelled()) {
+					break;
+				}
+			}
+			return res;
+		}
+
+		/**
+		 * Finds streets with location or any building within radius, streets are returned with their
+		 * buildings (as {@link #loadBuildings(Street, SearchRequest)} loads them) sorted by distance.
+		 */
+		public List<Street> findStreets(double lat, double lon, double radius) {
+			int x24 = getTileX(24, lon);
+			int y24 = getTileY(24, lat);
+			int cx = x24 >> (24 - GRID_ZOOM);
+			int cy = y24 >> (24 - GRID_ZOOM);
+			double cellWidth = MapUtils.getDistance(lat, MapUtils.getLongitudeFromTile(GRID_ZOOM, cx), lat,
+					MapUtils.getLongitudeFromTile(GRID_ZOOM, cx + 1));
+			int cells = (int) Math.ceil(radius / cellWidth);
+			final Map<Integer, Double> distances = new HashMap<Integer, Double>();
+			for (int x = cx - cells; x <= cx + cells; x++) {
+				for (int y = cy - cells; y <= cy + cells; y++) {
+					TIntArrayList l = streetsGrid.get(gridKey(x, y));
+					for (int k = 0; l != null && k < l.size(); k++) {
+						int s = l.get(k);
+						if (distances.containsKey(s)) {
+							continue;
+						}
+						double d = MapUtils.getDistance(lat, lon, getLatitude(24, streets.getY(s)),
+								getLongitude(24, streets.getX(s)));
+						for (int b = streetBuildings[s]; b < streetBuildings[s + 1]; b++) {
+							d = Math.min(d, MapUtils.getDistance(lat, lon, getLatitude(24, buildings.getY(b)),
+									getLongitude(24, buildings.getX(b))));
+						}
+						distances.put(s, d);
+					}
+				}
+			}
+			List<Integer> found = new ArrayList<Integer>();
+			for (Entry<Integer, Double> e : distances.entrySet()) {
+				if (e.getValue() <= radius) {
+					found.add(e.getKey());
+				}
+			}
+			Collections.sort(found, new Comparator<Integer>() {
+				@Override
+				public int compare(Integer o1, Integer o2) {
+					return Double.compare(distances.get(o1), distances.get(o2));
+				}
+			});
+			List<Street> res = new ArrayList<Street>();
+			Map<Integer, City> createdCities = new HashMap<Integer, City>();
+			for (int s : found) {
+				City c = createdCities.get(streetCity[s]);
+				if (c == null) {
+					c = createCity(streetCity[s]);
+					createdCities.put(streetCity[s], c);
+				}
+				Street street = createStreet(s, c);
+				loadBuildings(street, null);
+				res.add(street);
+			}
+			return res;
+		}
+	}
+
+	static RegionAddressIndex buildRegionIndex(BinaryMapIndexReader reader, AddressRegion region) throws IOException {
+		long time = System.currentTimeMillis();
+		RegionIndexBuilder builder = new RegionIndexBuilder();
+		for (int blockType : BinaryMapAddressReaderAdapter.CITY_TYPES) {
+			for (City c : reader.getCities(region, null, blockType)) {
+				reader.readCityStreets(c, null);
+				for (Street s : c.getStreets()) {
+					// all buildings, postcode filter is applied on load
+					reader.readStreetBuildings(s, null, null);
+				}
+				builder.addCity(c, blockType);
+			}
+		}
+		RegionAddressIndex index = builder.build();
+		log.info("Address index of " + region.getName() + " (" + reader.getFile().getName() + ") is built in "
+				+ (System.currentTimeMillis() - time) + " ms: " + index.getCitiesCount() + " cities, "
+				+ index.getStreetsCount() + " streets, " + index.getBuildingsCount() + " buildings");
+		return index;
+	}
+
+	static class RegionIndexBuilder {
+		final ObjectTableBuilder cities = new ObjectTableBuilder(31);
+		final TIntArrayList cityBlockType = new TIntArrayList();
+		final TIntArrayList cityType = new TIntArrayList();
+		final TIntArrayList cityStreets = new TIntArrayList();
+		final ObjectTableBuilder streets = new ObjectTableBuilder(24);
+		final TIntArrayList streetCity = new TIntArrayList();
+		final TIntArrayList streetBuildings = new TIntArrayList();
+		final TIntArrayList streetIntersections = new TIntArrayList();
+		final ObjectTableBuilder buildings = new ObjectTableBuilder(24);
+		final TIntArrayList buildingXY2 = new TIntArrayList();
+		final List<String> buildingName2 = new ArrayList<String>();
+		final List<String> buildingPostcode = new ArrayList<String>();
+		final TIntArrayList buildingInterpolation = new TIntArrayList();
+		final ObjectTableBuilder intersections = new ObjectTableBuilder(24);
+
+		/**
+		 * Adds city with its registered streets, their buildings and intersected streets.
+		 */
+		void addCity(City c, int blockType) {
+			int ci = cities.add(c);
+			cityBlockType.add(blockType);
+			cityType.add(c.getType() == null ? NO_CITY_TYPE : c.getType().ordinal());
+			cityStreets.add(streets.ids.size());
+			for (Street s : c.getStreets()) {
+				streets.add(s);
+				streetCity.add(ci);
+				streetBuildings.add(buildings.ids.size());
+				streetIntersections.add(intersections.ids.size());
+				for (Street is : s.getIntersectedStreets()) {
+					intersections.add(is);
+				}
+				for (Building b : s.getBuildings()) {
+					buildings.add(b);
+					LatLon l2 = b.getLatLon2();
+					buildingXY2.add(l2 == null ? 0 : getTileX(24, l2.getLongitude()));
+					buildingXY2.add(l2 == null ? 0 : getTileY(24, l2.getLatitude()));
+					buildingName2.add(b.getName2());
+					buildingPostcode.add(b.getPostcode());
+					if (b.getInterpolationInterval() > 0) {
+						buildingInterpolation.add(b.getInterpolationInterval());
+					} else if (b.getInterpolationType() != null) {
+						buildingInterpolation.add(b.getInterpolationType().getValue());
+					} else {
+						buildingInterpolation.add(0);
+					}
+				}
+			}
+		}
+
+		RegionAddressIndex build() {
+			TIntArrayList cs = new TIntArrayList(cityStreets);
+			cs.add(streets.ids.size());
+			TIntArrayList sb = new TIntArrayList(streetBuildings);
+			sb.add(buildings.ids.size());
+			TIntArrayList si = new TIntArrayList(streetIntersections);
+			si.add(intersections.ids.size());
+			return new RegionAddressIndex(cities.build(), cityBlockType.toArray(), cityType.toArray(), cs.toArray(),
+					streets.build(), streetCity.toArray(), sb.toArray(), si.toArray(), buildings.build(),
+					buildingXY2.toArray(), buildingName2.toArray(new String[buildingName2.size()]),
+					buildingPostcode.toArray(new String[buildingPostcode.size()]), buildingInterpolation.toArray(),
+					intersections.build());
+		}
+	}
+
+	FileAddressIndex readFromFile(File f) throws IOException {
+		long time = System.currentTimeMillis();
+		DataInputStream is = new DataInputStream(new BufferedInputStream(new FileInputStream(f)));
+		try {
+			if (is.readInt() != VERSION) {
+				return null;
+			}
+			long fileSize = is.readLong();
+			long dateCreated = is.readLong();
+			RegionAddressIndex[] regions = new RegionAddressIndex[is.readInt()];
+			for (int i = 0; i < regions.length; i++) {
+				regions[i] = readRegion(is);
+			}
+			log.info("Address index " + f.getName() + " is read in " + (System.currentTimeMillis() - time) + " ms");
+			return new FileAddressIndex(fileSize, dateCreated, regions, false);
+		} finally {
+			is.close();
+		}
+	}
+
+	private static RegionAddressIndex readRegion(DataInputStream is) throws IOException {
+		ObjectTable cities = readTable(is);
+		int[] cityBlockType = readInts(is);
+		int[] cityType = readInts(is);
+		int[] cityStreets = readInts(is);
+		ObjectTable streets = readTable(is);
+		int[] streetCity = readInts(is);
+		int[] streetBuildings = readInts(is);
+		int[] streetIntersections = readInts(is);
+		ObjectTable buildings = readTable(is);
+		int[] buildingXY2 = readInts(is);
+		String[] buildingName2 = readStrings(is);
+		String[] buildingPostcode = readStrings(is);
+		int[] buildingInterpolation = readInts(is);
+		ObjectTable intersections = readTable(is);
+		return new RegionAddressIndex(cities, cityBlockType, cityType, cityStreets, streets, streetCity,
+				streetBuildings, streetIntersections, buildings, buildingXY2, buildingName2, buildingPostcode,
+				buildingInterpolation, intersections);
+	}
+
+	private static ObjectTable readTable(DataInputStream is) throws IOException {
+		int zoom = is.readInt();
+		long[] ids = new long[is.readInt()];
+		for (int i = 0; i < ids.length; i++) {
+			ids[i] = is.readLong();
+		}
+		return new ObjectTable(zoom, ids, readStrings(is), readStrings(is), readStrings(is), readInts(is), readInts(is));
+	}
+
+	private static String[] readStrings(DataInputStream is) throws IOException {
+		String[] r = new String[is.readInt()];
+		for (int i = 0; i < r.length; i++) {
+			r[i] = is.readBoolean() ? is.readUTF() : null;
+		}
+		return r;
+	}
+
+	private static int[] readInts(DataInputStream is) throws IOException {
+		int[] r = new int[is.readInt()];
+		for (int i = 0; i < r.length; i++) {
+			r[i] = is.readInt();
+		}
+		return r;
+	}
+
+	void writeToFile(FileAddressIndex index, File f) throws IOException {
+		// unique temporary file, so concurrent writes (also from other processes) don't mix
+		File tmp = File.createTempFile(f.getName(), ".tmp", f.getAbsoluteFile().getParentFile());
+		boolean written = false;
+		try {
+			DataOutputStream os = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(tmp)));
+			try {
+				os.writeInt(VERSION);
+				os.writeLong(index.fileSize);
+				os.writeLong(index.dateCreated);
+				synchronized (index) {
+					os.writeInt(index.regions.length);
+					for (RegionAddressIndex r : index.regions) {
+						writeRegion(os, r);
+					}
+				}
+			} finally {
+				os.close();
+			}
+			if (!tmp.renameTo(f)) {
+				f.delete();
+				if (!tmp.renameTo(f)) {
+					throw new IOException("Address index " + f.getName() + " can't be written");
+				}
+			}
+			written = true;
+		} finally {
+			if (!written) {
+				tmp.delete();
+			}
+		}
+	}
+
+	private static void writeRegion(DataOutputStream os, RegionAddressIndex r) throws IOException {
+		writeTable(os, r.cities);
+		writeInts(os, r.cityBlockType);
+		writeInts(os, r.cityType);
+		writeInts(os, r.cityStreets);
+		writeTable(os, r.streets);
+		writeInts(os, r.streetCity);
+		writeInts(os, r.streetBuildings);
+		writeInts(os, r.streetIntersections);
+		writeTable(os, r.buildings);
+		writeInts(os, r.buildingXY2);
+		writeStrings(os, r.buildingName2);
+		writeStrings(os, r.buildingPostcode);
+		writeInts(os, r.buildingInterpolation);
+		writeTable(os, r.intersections);
+	}
+
+	private static void writeTable(DataOutputStream os, ObjectTable t) throws IOException {
+		os.writeInt(t.zoom);
+		os.writeInt(t.ids.length);
+		for (long id : t.ids) {
+			os.writeLong(id);
+		}
+		writeStrings(os, t.names);
+		writeStrings(os, t.enNames);
+		writeStrings(os, t.otherNames);
+		writeInts(os, t.xy);
+		writeInts(os, t.offsets);
+	}
+
+	private static void writeStrings(DataOutputStream os, String[] r) throws IOException {
+		os.writeInt(r.length);
+		for (String s : r) {
+			os.writeBoolean(s != null);
+			if (s != null) {
+				os.writeUTF(s);
+			}
+		}
+	}
+
+	private static void writeInts(DataOutputStream os, int[] r) throws IOException {
+		os.writeInt(r.length);
+		for (int v : r) {
+			os.writeInt(v);
+		}
+	}
+}
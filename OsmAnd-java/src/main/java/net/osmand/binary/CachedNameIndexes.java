@@ -0,0 +1,462 @@
+package net.osmand.binary;
+
+import gnu.trove.list.array.TIntArrayList;
+import gnu.trove.map.hash.TLongObjectHashMap;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
+
+import net.osmand.CollationKeyCache;
+import net.osmand.PlatformUtil;
+
+import org.apache.commons.logging.Log;
+
+/**
+ * Sidecar name indexes of obf files. For every obf file primary collation keys (see {@link #getNameKey(String)})
+ * of names of named POI and address objects are stored with trigram postings and references to POI boxes and address name index atoms, so search by name
+ * (including infix search) doesn't walk name index tree of the file. Sidecar file is built once per obf file and
+ * is validated by version, size and creation date of obf file (same way as {@link CachedOsmandIndexes}).
+ */
+public class CachedNameIndexes {
+
+	private static final Log log = PlatformUtil.getLog(CachedNameIndexes.class);
+
+	public static final int VERSION = 2;
+	public static final String FILE_EXT = ".nameidx";
+
+	// POI reference: poi region index, box offset, box x31, box y31
+	static final int POI_REF_SIZE = 4;
+	// address reference: address region index, type, object offset, city offset, has xy16, xy16
+	static final int ADDRESS_REF_SIZE = 6;
+
+	// keys are built by primary collator, so names matched by collator contain key of query
+	private static final CollationKeyCache KEYS = new CollationKeyCache(0);
+
+	private final File dir;
+	private final Map<File, FileNameIndex> indexes = new HashMap<File, FileNameIndex>();
+	// indexes being built and written by obf file
+	private final Map<File, FutureTask<FileNameIndex>> building = new HashMap<File, FutureTask<FileNameIndex>>();
+
+	/**
+	 * @param dir directory to store sidecar files, if null they are stored next to obf files
+	 */
+	public CachedNameIndexes(File dir) {
+		this.dir = dir;
+	}
+
+	public File getIndexFile(File obf) {
+		return new File(dir == null ? obf.getParentFile() : dir, obf.getName() + FILE_EXT);
+	}
+
+	/**
+	 * @return name index of the file or null if sidecar file doesn't exist (or is outdated) and build is false
+	 */
+	public FileNameIndex getNameIndex(BinaryMapIndexReader reader, boolean build) throws IOException {
+		if (!KEYS.isSupported()) {
+			return null;
+		}
+		File obf = reader.getFile();
+		synchronized (this) {
+			FileNameIndex index = indexes.get(obf);
+			if (index != null && index.isValid(reader)) {
+				return index;
+			}
+		}
+		FileNameIndex index = null;
+		File f = getIndexFile(obf);
+		if (f.exists()) {
+			try {
+				index = readFromFile(f);
+			} catch (IOException e) {
+				log.warn("Name index " + f.getName() + " can't be read", e);
+			}
+			if (index != null && !index.isValid(reader)) {
+				index = null;
+			}
+		}
+		if (index == null && build) {
+			index = buildAndWrite(reader, f);
+		}
+		if (index != null) {
+			synchronized (this) {
+				indexes.put(obf, index);
+			}
+		}
+		return index;
+	}
+
+	// index is built by the first thread with its reader, other threads wait for it instead of building it again
+	private FileNameIndex buildAndWrite(final BinaryMapIndexReader reader, final File f) throws IOException {
+		File obf = reader.getFile();
+		FutureTask<FileNameIndex> task;
+		boolean run = false;
+		synchronized (this) {
+			task = building.get(obf);
+			if (task == null) {
+				task = new FutureTask<FileNameIndex>(new Callable<FileNameIndex>() {
+					@Override
+					public FileNameIndex call() throws IOException {
+						FileNameIndex index = buildNameIndex(reader);
+						writeToFile(index, f);
+						return index;
+					}
+				});
+				building.put(obf, task);
+				run = true;
+			}
+		}
+		if (run) {
+			try {
+				task.run();
+			} finally {
+				synchronized (this) {
+					building.remove(obf);
+				}
+			}
+		}
+		try {
+			return task.get();
+		} catch (ExecutionException e) {
+			Throwable cause = e.getCause();
+			if (cause instanceof IOException) {
+				throw (IOException) cause;
+			} else if (cause instanceof RuntimeException) {
+				throw (RuntimeException) cause;
+			}
+			throw new IllegalStateException(cause);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new IOException("Interrupted while name index of " + obf.getName() + " is built");
+		}
+	}
+
+	public FileNameIndex buildNameIndex(BinaryMapIndexReader reader) throws IOException {
+		long time = System.currentTimeMillis();
+		NameTableBuilder poi = new NameTableBuilder(POI_REF_SIZE);
+		NameTableBuilder address = new NameTableBuilder(ADDRESS_REF_SIZE);
+		reader.readNameIndexes(poi, address);
+		FileNameIndex index = new FileNameIndex(reader.getFile().length(), getDateCreated(reader), poi.build(),
+				address.build());
+		log.info("Name index of " + reader.getFile().getName() + " is built in " + (System.currentTimeMillis() - time)
+				+ " ms: " + index.poi.size() + " poi names, " + index.address.size() + " address names");
+		return index;
+	}
+
+	private static long getDateCreated(BinaryMapIndexReader reader) {
+		long d = reader.getDateCreated();
+		return d == 0 ? reader.getFile().lastModified() : d;
+	}
+
+	/**
+	 * Primary collation key of the name (or query), name matched by primary collator contains key of query.
+	 */
+	public static String getNameKey(String s) {
+		return KEYS.createKey(s).key;
+	}
+
+	/**
+	 * Key of the name with offsets of its chars, see {@link CollationKeyCache.NameKey}.
+	 */
+	static CollationKeyCache.NameKey createNameKey(String s) {
+		return KEYS.createKey(s);
+	}
+
+	public static class FileNameIndex {
+		final long fileSize;
+		final long dateCreated;
+		final NameTable poi;
+		final NameTable address;
+
+		FileNameIndex(long fileSize, long dateCreated, NameTable poi, NameTable address) {
+			this.fileSize = fileSize;
+			this.dateCreated = dateCreated;
+			this.poi = poi;
+			this.address = address;
+		}
+
+		boolean isValid(BinaryMapIndexReader reader) {
+			return reader.getFile().length() == fileSize && getDateCreated(reader) == dateCreated;
+		}
+
+		public NameTable getPoiNames() {
+			return poi;
+		}
+
+		public NameTable getAddressNames() {
+			return address;
+		}
+	}
+
+	/**
+	 * Sorted name keys with references to objects and trigram postings (trigram -> sorted name ids).
+	 */
+	public static class NameTable {
+		final int refSize;
+		final String[] names;
+		// references of name i are refStart[i] .. refStart[i + 1] - 1, each reference is refSize ints in refs
+		final int[] refStart;
+		final int[] refs;
+		final TLongObjectHashMap<int[]> trigrams;
+
+		NameTable(int refSize, String[] names, int[] refStart, int[] refs, TLongObjectHashMap<int[]> trigrams) {
+			this.refSize = refSize;
+			this.names = names;
+			this.refStart = refStart;
+			this.refs = refs;
+			this.trigrams = trigrams;
+		}
+
+		public int size() {
+			return names.length;
+		}
+
+		public int getRefSize() {
+			return refSize;
+		}
+
+		public int getRef(int ref, int field) {
+			return refs[ref * refSize + field];
+		}
+
+		/**
+		 * @param query key of query
+		 * @return ids of names containing query
+		 */
+		public TIntArrayList findNames(String query) {
+			TIntArrayList res = new TIntArrayList();
+			if (query.length() < 3) {
+				for (int i = 0; i < names.length; i++) {
+					if (names[i].contains(query)) {
+						res.add(i);
+					}
+				}
+				return res;
+			}
+			int[][] postings = new int[query.length() - 2][];
+			for (int i = 0; i < postings.length; i++) {
+				postings[i] = trigrams.get(trigram(query, i));
+				if (postings[i] == null) {
+					return res;
+				}
+			}
+			Arrays.sort(postings, new Comparator<int[]>() {
+				@Override
+				public int compare(int[] o1, int[] o2) {
+					return o1.length < o2.length ? -1 : (o1.length == o2.length ? 0 : 1);
+				}
+			});
+			for (int id : postings[0]) {
+				boolean all = true;
+				for (int i = 1; i < postings.length && all; i++) {
+					all = Arrays.binarySearch(postings[i], id) >= 0;
+				}
+				// trigrams could be matched in different places
+				if (all && names[id].contains(query)) {
+					res.add(id);
+				}
+			}
+			return res;
+		}
+
+		/**
+		 * @param query key of query
+		 * @return references (to be used with {@link #getRef(int, int)}) of objects whose names contain query
+		 */
+		public TIntArrayList findRefs(String query) {
+			TIntArrayList ids = findNames(query);
+			TIntArrayList res = new TIntArrayList();
+			for (int i = 0; i < ids.size(); i++) {
+				int id = ids.get(i);
+				for (int r = refStart[id]; r < refStart[id + 1]; r++) {
+					res.add(r);
+				}
+			}
+			return res;
+		}
+
+		public String getName(int id) {
+			return names[id];
+		}
+	}
+
+	static long trigram(String s, int i) {
+		return ((long) s.charAt(i) << 32) | ((long) s.charAt(i + 1) << 16) | s.charAt(i + 2);
+	}
+
+	static class NameTableBuilder {
+		private final int refSize;
+		private final Map<String, TIntArrayList> refs = new HashMap<String, TIntArrayList>();
+
+		NameTableBuilder(int refSize) {
+			this.refSize = refSize;
+		}
+
+		void add(String name, int... ref) {
+			if (name == null || name.length() == 0) {
+				return;
+			}
+			String n = getNameKey(name);
+			TIntArrayList l = refs.get(n);
+			if (l == null) {
+				l = new TIntArrayList(refSize);
+				refs.put(n, l);
+			} else if (isLastRef(l, ref)) {
+				// same object (or poi box) added with different names which have equal keys
+				return;
+			}
+			l.add(ref);
+		}
+
+		private boolean isLastRef(TIntArrayList l, int[] ref) {
+			int s = l.size() - refSize;
+			for (int i = 0; i < refSize; i++) {
+				if (l.get(s + i) != ref[i]) {
+					return false;
+				}
+			}
+			return true;
+		}
+
+		NameTable build() {
+			List<String> sorted = new ArrayList<String>(refs.keySet());
+			Collections.sort(sorted);
+			String[] names = sorted.toArray(new String[sorted.size()]);
+			int[] refStart = new int[names.length + 1];
+			TIntArrayList allRefs = new TIntArrayList();
+			TLongObjectHashMap<TIntArrayList> tg = new TLongObjectHashMap<TIntArrayList>();
+			for (int i = 0; i < names.length; i++) {
+				refStart[i] = allRefs.size() / refSize;
+				allRefs.addAll(refs.get(names[i]));
+				for (int k = 0; k + 3 <= names[i].length(); k++) {
+					long t = trigram(names[i], k);
+					TIntArrayList p = tg.get(t);
+					if (p == null) {
+						p = new TIntArrayList();
+						tg.put(t, p);
+					}
+					// ids are added in increasing order
+					if (p.isEmpty() || p.get(p.size() - 1) != i) {
+						p.add(i);
+					}
+				}
+			}
+			refStart[names.length] = allRefs.size() / refSize;
+			TLongObjectHashMap<int[]> trigrams = new TLongObjectHashMap<int[]>(tg.size());
+			for (long t : tg.keys()) {
+				trigrams.put(t, tg.get(t).toArray());
+			}
+			return new NameTable(refSize, names, refStart, allRefs.toArray(), trigrams);
+		}
+	}
+
+	FileNameIndex readFromFile(File f) throws IOException {
+		long time = System.currentTimeMillis();
+		DataInputStream is = new DataInputStream(new BufferedInputStream(new FileInputStream(f)));
+		try {
+			if (is.readInt() != VERSION || is.readInt() != KEYS.getRulesHash()) {
+				return null;
+			}
+			long fileSize = is.readLong();
+			long dateCreated = is.readLong();
+			NameTable poi = readTable(is);
+			NameTable address = readTable(is);
+			log.info("Name index " + f.getName() + " is read in " + (System.currentTimeMillis() - time) + " ms");
+			return new FileNameIndex(fileSize, dateCreated, poi, address);
+		} finally {
+			is.close();
+		}
+	}
+
+	private static NameTable readTable(DataInputStream is) throws IOException {
+		int refSize = is.readInt();
+		String[] names = new String[is.readInt()];
+		for (int i = 0; i < names.length; i++) {
+			names[i] = is.readUTF();
+		}
+		int[] refStart = readInts(is);
+		int[] refs = readInts(is);
+		int cnt = is.readInt();
+		TLongObjectHashMap<int[]> trigrams = new TLongObjectHashMap<int[]>(cnt);
+		for (int i = 0; i < cnt; i++) {
+			long t = is.readLong();
+			trigrams.put(t, readInts(is));
+		}
+		return new NameTable(refSize, names, refStart, refs, trigrams);
+	}
+
+	private static int[] readInts(DataInputStream is) throws IOException {
+		int[] r = new int[is.readInt()];
+		for (int i = 0; i < r.length; i++) {
+			r[i] = is.readInt();
+		}
+		return r;
+	}
+
+	void writeToFile(FileNameIndex index, File f) throws IOException {
+		// unique temporary file, so concurrent writes (also from other processes) don't mix
+		File tmp = File.createTempFile(f.getName(), ".tmp", f.getAbsoluteFile().getParentFile());
+		boolean written = false;
+		try {
+			DataOutputStream os = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(tmp)));
+			try {
+				os.writeInt(VERSION);
+				os.writeInt(KEYS.getRulesHash());
+				os.writeLong(index.fileSize);
+				os.writeLong(index.dateCreated);
+				writeTable(os, index.poi);
+				writeTable(os, index.address);
+			} finally {
+				os.close();
+			}
+			if (!tmp.renameTo(f)) {
+				f.delete();
+				if (!tmp.renameTo(f)) {
+					throw new IOException("Name index " + f.getName() + " can't be written");
+				}
+			}
+			written = true;
+		} finally {
+			if (!written) {
+				tmp.delete();
+			}
+		}
+	}
+
+	private static void writeTable(DataOutputStream os, NameTable table) throws IOException {
+		os.writeInt(table.refSize);
+		os.writeInt(table.names.length);
+		for (String n : table.names) {
+			os.writeUTF(n);
+		}
+		writeInts(os, table.refStart);
+		writeInts(os, table.refs);
+		os.writeInt(table.trigrams.size());
+		for (long t : table.trigrams.keys()) {
+			os.writeLong(t);
+			writeInts(os, table.trigrams.get(t));
+		}
+	}
+
+	private static void writeInts(DataOutputStream os, int[] r) throws IOException {
+		os.writeInt(r.length);
+		for (int v : r) {
+			os.writeInt(v);
+		}
+	}
+}
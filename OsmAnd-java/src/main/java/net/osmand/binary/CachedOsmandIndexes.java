@@ -173,6 +173,10 @@ public class CachedOsmandIndexes {
 	}
 	
 	public BinaryMapIndexReader getReader(File f) throws IOException {
+		return getReader(f, false);
+	}
+
+	public BinaryMapIndexReader getReader(File f, boolean memoryMapped) throws IOException {
 		RandomAccessFile mf = new RandomAccessFile(f.getPath(), "r");
 		FileIndex found = null;
 		if (storedIndex != null) {
@@ -188,19 +192,19 @@ public class CachedOsmandIndexes {
 		BinaryMapIndexReader reader = null;
 		if (found == null) {
 			long val = System.currentTimeMillis();
-			reader = new BinaryMapIndexReader(mf, f);
+			reader = new BinaryMapIndexReader(mf, f, true, memoryMapped);
 			addToCache(reader, f);
 			if (log.isDebugEnabled()) {
 				log.debug("Initializing db " + f.getAbsolutePath() + " " + (System.currentTimeMillis() - val ) + "ms"); //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$
 			}
 		} else {
-			reader = initFileIndex(found, mf, f);
+			reader = initFileIndex(found, mf, f, memoryMapped);
 		}
 		return reader;
 	}
 	
-	private BinaryMapIndexReader initFileIndex(FileIndex found, RandomAccessFile mf, File f) throws IOException {
-		BinaryMapIndexReader reader = new BinaryMapIndexReader(mf, f, false);
+	private BinaryMapIndexReader initFileIndex(FileIndex found, RandomAccessFile mf, File f, boolean memoryMapped) throws IOException {
+		BinaryMapIndexReader reader = new BinaryMapIndexReader(mf, f, false, memoryMapped);
 		reader.version = found.getVersion();
 		reader.dateCreated = found.getDateModified();
 		
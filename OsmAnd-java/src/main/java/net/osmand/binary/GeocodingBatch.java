@@ -0,0 +1,197 @@
+package net.osmand.binary;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import net.osmand.PlatformUtil;
+import net.osmand.ResultMatcher;
+import net.osmand.binary.GeocodingUtilities.AddressCache;
+import net.osmand.binary.GeocodingUtilities.GeocodingResult;
+import net.osmand.data.LatLon;
+import net.osmand.router.RouteTileDataCache;
+import net.osmand.router.RoutePlannerFrontEnd;
+import net.osmand.router.RoutePlannerFrontEnd.RouteCalculationMode;
+import net.osmand.router.RoutingConfiguration;
+import net.osmand.router.RoutingContext;
+import net.osmand.util.MapUtils;
+
+import org.apache.commons.logging.Log;
+
+/**
+ * Reverse geocoding of many points. Points are sorted along Z-order curve, so neighbour points are processed
+ * one after another, and split into partitions processed in parallel. Every partition has its own routing
+ * context, all contexts share decoded route tiles ({@link RouteTileDataCache}) and all searches share streets and
+ * buildings ({@link AddressCache}). Each point gets the same results as
+ * {@link GeocodingUtilities#reverseGeocodingSearch(RoutingContext, double, double, boolean)} justified by
+ * {@link GeocodingUtilities#justifyReverseGeocodingResults(List, BinaryMapIndexReader[], ResultMatcher)},
+ * results are published as soon as point is processed (in order of partitions, not in order of input).
+ */
+public class GeocodingBatch {
+
+	private static final Log log = PlatformUtil.getLog(GeocodingBatch.class);
+
+	public static final int DEFAULT_PARTITION_SIZE = 256;
+
+	private final RoutingConfiguration config;
+	private final BinaryMapIndexReader[] readers;
+	private final RouteTileDataCache tileDataCache;
+	private final AddressCache addressCache;
+	private int partitionSize = DEFAULT_PARTITION_SIZE;
+	private boolean allowEmptyNames;
+
+	public GeocodingBatch(RoutingConfiguration config, BinaryMapIndexReader[] readers) {
+		this(config, readers, new AddressCache());
+	}
+
+	public GeocodingBatch(RoutingConfiguration config, BinaryMapIndexReader[] readers, AddressCache addressCache) {
+		this.config = config;
+		this.readers = readers;
+		this.addressCache = addressCache;
+		RouteTileDataCache shared = RouteTileDataCache.getSharedCache();
+		this.tileDataCache = shared != null ? shared : new RouteTileDataCache(config.memoryLimitation);
+	}
+
+	public static class GeocodingPointResult {
+		// index of point in the input list
+		public final int index;
+		public final LatLon point;
+		public final List<GeocodingResult> results;
+
+		GeocodingPointResult(int index, LatLon point, List<GeocodingResult> results) {
+			this.index = index;
+			this.point = point;
+			this.results = results;
+		}
+	}
+
+	public int getPartitionSize() {
+		return partitionSize;
+	}
+
+	public void setPartitionSize(int partitionSize) {
+		this.partitionSize = partitionSize;
+	}
+
+	public boolean isAllowEmptyNames() {
+		return allowEmptyNames;
+	}
+
+	public void setAllowEmptyNames(boolean allowEmptyNames) {
+		this.allowEmptyNames = allowEmptyNames;
+	}
+
+	public AddressCache getAddressCache() {
+		return addressCache;
+	}
+
+	/**
+	 * @param matcher receives result of every point (publish is called from one thread at a time)
+	 * @return number of processed points
+	 */
+	public int geocode(final List<LatLon> points, int threads, final ResultMatcher<GeocodingPointResult> matcher)
+			throws IOException, InterruptedException {
+		long time = System.nanoTime();
+		final int[] order = sortSpatially(points);
+		final AtomicInteger processed = new AtomicInteger();
+		ExecutorService executor = Executors.newFixedThreadPool(Math.max(1, threads));
+		try {
+			List<Future<Void>> partitions = new ArrayList<Future<Void>>();
+			final int size = Math.max(1, partitionSize);
+			for (int i = 0; i < order.length; i += size) {
+				final int start = i;
+				final int end = Math.min(order.length, i + size);
+				partitions.add(executor.submit(new Callable<Void>() {
+					@Override
+					public Void call() throws Exception {
+						geocodePartition(points, order, start, end, processed, matcher);
+						return null;
+					}
+				}));
+			}
+			for (Future<Void> f : partitions) {
+				f.get();
+			}
+		} catch (ExecutionException e) {
+			Throwable cause = e.getCause();
+			if (cause instanceof IOException) {
+				throw (IOException) cause;
+			} else if (cause instanceof InterruptedException) {
+				throw (InterruptedException) cause;
+			} else if (cause instanceof RuntimeException) {
+				throw (RuntimeException) cause;
+			}
+			throw new IllegalStateException(cause);
+		} finally {
+			executor.shutdownNow();
+		}
+		log.info(String.format("Reverse geocoding of %d points in %.1f ms (address cache hits %d, misses %d)",
+				processed.get(), (System.nanoTime() - time) / 1e6, addressCache.getHits(), addressCache.getMisses()));
+		return processed.get();
+	}
+
+	private void geocodePartition(List<LatLon> points, int[] order, int start, int end, AtomicInteger processed,
+			ResultMatcher<GeocodingPointResult> matcher) throws IOException {
+		GeocodingUtilities gu = new GeocodingUtilities(addressCache);
+		RoutingContext ctx = new RoutePlannerFrontEnd().buildRoutingContext(config, null, readers,
+				RouteCalculationMode.NORMAL);
+		ctx.tileDataCache = tileDataCache;
+		try {
+			for (int i = start; i < end; i++) {
+				if (matcher.isCancelled()) {
+					return;
+				}
+				LatLon p = points.get(order[i]);
+				List<GeocodingResult> roads = gu.reverseGeocodingSearch(ctx, p.getLatitude(), p.getLongitude(),
+						allowEmptyNames);
+				List<GeocodingResult> res = gu.justifyReverseGeocodingResults(roads, readers, null);
+				synchronized (matcher) {
+					matcher.publish(new GeocodingPointResult(order[i], p, res));
+				}
+				processed.incrementAndGet();
+			}
+		} finally {
+			ctx.unloadAllData();
+		}
+	}
+
+	static int[] sortSpatially(List<LatLon> points) {
+		final long[] keys = new long[points.size()];
+		Integer[] idx = new Integer[points.size()];
+		for (int i = 0; i < keys.length; i++) {
+			LatLon p = points.get(i);
+			keys[i] = interleave(MapUtils.get31TileNumberX(p.getLongitude()), MapUtils.get31TileNumberY(p.getLatitude()));
+			idx[i] = i;
+		}
+		Arrays.sort(idx, new Comparator<Integer>() {
+			@Override
+			public int compare(Integer o1, Integer o2) {
+				long k1 = keys[o1];
+				long k2 = keys[o2];
+				return k1 < k2 ? -1 : (k1 == k2 ? 0 : 1);
+			}
+		});
+		int[] order = new int[idx.length];
+		for (int i = 0; i < order.length; i++) {
+			order[i] = idx[i];
+		}
+		return order;
+	}
+
+	// Z-order (Morton) code of 31 bit tile numbers
+	private static long interleave(int x, int y) {
+		long z = 0;
+		for (int i = 30; i >= 0; i--) {
+			z = (z << 2) | (((x >> i) & 1) << 1) | ((y >> i) & 1);
+		}
+		return z;
+	}
+}
@@ -26,10 +26,13 @@ import java.util.Collections;
 import java.util.Comparator;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.IdentityHashMap;
 import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
 
 import gnu.trove.set.hash.TLongHashSet;
 
@@ -141,6 +144,168 @@ public class GeocodingUtilities {
 	}
 
 
+	private final AddressCache addressCache;
+
+	public GeocodingUtilities() {
+		this(null);
+	}
+
+	/**
+	 * @param addressCache streets and buildings shared between many searches, could be null
+	 */
+	public GeocodingUtilities(AddressCache addressCache) {
+		this.addressCache = addressCache;
+	}
+
+	/**
+	 * Streets found by name and preloaded buildings shared between reverse geocoding of many points (safe for
+	 * concurrent use). Streets are searched once per file, name and cell of {@link #CELL_ZOOM} zoom with bbox of the
+	 * cell extended by {@link #DISTANCE_STREET_NAME_PROXIMITY_BY_NAME}, so they include all streets found by search
+	 * around any point of the cell and the same distance check gives the same result.
+	 * Least recently used searches are evicted when cache is full, concurrent searches of the same key wait for
+	 * one search. Readers are locked while address data is read.
+	 */
+	public static class AddressCache {
+		public static final int CELL_ZOOM = 10;
+		public static final int DEFAULT_MAX_SIZE = 20000;
+
+		// Lock order: search entry or street, then reader. streetsByName and preloadedStreets are locked only to
+		// access maps (streetsByName before preloadedStreets on eviction), no other lock is taken inside.
+		private final Map<String, StreetsEntry> streetsByName;
+		private final Map<Street, Boolean> preloadedStreets = new IdentityHashMap<Street, Boolean>();
+		private final AtomicLong hits = new AtomicLong();
+		private final AtomicLong misses = new AtomicLong();
+
+		private static class StreetsEntry {
+			// null until search is finished
+			List<Street> streets;
+		}
+
+		public AddressCache() {
+			this(DEFAULT_MAX_SIZE);
+		}
+
+		/**
+		 * @param maxSize max number of cached name searches
+		 */
+		public AddressCache(final int maxSize) {
+			this.streetsByName = new LinkedHashMap<String, StreetsEntry>(16, 0.75f, true) {
+				private static final long serialVersionUID = 1L;
+
+				@Override
+				protected boolean removeEldestEntry(Map.Entry<String, StreetsEntry> eldest) {
+					if (size() <= maxSize) {
+						return false;
+					}
+					List<Street> streets = eldest.getValue().streets;
+					if (streets != null) {
+						synchronized (preloadedStreets) {
+							for (Street s : streets) {
+								preloadedStreets.remove(s);
+							}
+						}
+					}
+					return true;
+				}
+			};
+		}
+
+		public List<Street> getStreetsByName(BinaryMapIndexReader reader, String name, LatLon location) throws IOException {
+			int cx = (int) MapUtils.getTileNumberX(CELL_ZOOM, location.getLongitude());
+			int cy = (int) MapUtils.getTileNumberY(CELL_ZOOM, location.getLatitude());
+			String key = reader.getFile() + ":" + cx + ":" + cy + ":" + name;
+			StreetsEntry entry;
+			synchronized (streetsByName) {
+				entry = streetsByName.get(key);
+				if (entry == null) {
+					entry = new StreetsEntry();
+					streetsByName.put(key, entry);
+				}
+			}
+			// evicted entry is still complete for the searches holding it
+			synchronized (entry) {
+				if (entry.streets != null) {
+					hits.incrementAndGet();
+					return entry.streets;
+				}
+				misses.incrementAndGet();
+				final List<Street> found = new ArrayList<Street>();
+				// not cancelled, cached list should be complete
+				SearchRequest<MapObject> req = BinaryMapIndexReader.buildAddressByNameRequest(new ResultMatcher<MapObject>() {
+					@Override
+					public boolean publish(MapObject object) {
+						if (object instanceof Street) {
+							found.add((Street) object);
+						}
+						return false;
+					}
+
+					@Override
+					public boolean isCancelled() {
+						return false;
+					}
+				}, name, StringMatcherMode.CHECK_EQUALS_FROM_SPACE);
+				LatLon center = new LatLon(MapUtils.getLatitudeFromTile(CELL_ZOOM, cy + 0.5),
+						MapUtils.getLongitudeFromTile(CELL_ZOOM, cx + 0.5));
+				double cellRadius = Math.max(
+						MapUtils.getDistance(center, MapUtils.getLatitudeFromTile(CELL_ZOOM, cy), MapUtils.getLongitudeFromTile(CELL_ZOOM, cx)),
+						MapUtils.getDistance(center, MapUtils.getLatitudeFromTile(CELL_ZOOM, cy + 1), MapUtils.getLongitudeFromTile(CELL_ZOOM, cx)));
+				// twice the cell radius covers different scale of bbox at the point latitude
+				req.setBBoxRadius(center.getLatitude(), center.getLongitude(),
+						(int) (DISTANCE_STREET_NAME_PROXIMITY_BY_NAME + 2 * cellRadius));
+				synchronized (reader) {
+					reader.searchAddressDataByName(req);
+				}
+				entry.streets = found;
+				return found;
+			}
+		}
+
+		public void preloadBuildings(BinaryMapIndexReader reader, Street street) throws IOException {
+			synchronized (street) {
+				// street of evicted entry could be still in use, buildings are not loaded twice anyway
+				if (!street.getBuildings().isEmpty() || isPreloaded(street)) {
+					return;
+				}
+				synchronized (reader) {
+					reader.preloadBuildings(street, null);
+				}
+				synchronized (preloadedStreets) {
+					preloadedStreets.put(street, Boolean.TRUE);
+				}
+			}
+		}
+
+		private boolean isPreloaded(Street street) {
+			synchronized (preloadedStreets) {
+				return preloadedStreets.containsKey(street);
+			}
+		}
+
+		public void clear() {
+			synchronized (streetsByName) {
+				streetsByName.clear();
+			}
+			synchronized (preloadedStreets) {
+				preloadedStreets.clear();
+			}
+		}
+
+		public int size() {
+			synchronized (streetsByName) {
+				return streetsByName.size();
+			}
+		}
+
+		public long getHits() {
+			return hits.get();
+		}
+
+		public long getMisses() {
+			return misses.get();
+		}
+	}
+
 	public List<GeocodingResult> reverseGeocodingSearch(RoutingContext ctx, double lat, double lon, boolean allowEmptyNames) throws IOException {
 		RoutePlannerFrontEnd rp = new RoutePlannerFrontEnd();
 		List<GeocodingResult> lst = new ArrayList<GeocodingUtilities.GeocodingResult>();
@@ -244,36 +409,26 @@ public class GeocodingUtilities {
 					mainWord = s;
 				}
 			}
-			SearchRequest<MapObject> req = BinaryMapIndexReader.buildAddressByNameRequest(
-					new ResultMatcher<MapObject>() {
-						@Override
-						public boolean publish(MapObject object) {
-							if (object instanceof Street
-									&& prepareStreetName(object.getName(), addCommonWordsFinal).equals(streetNamesUsedFinal)) {
-								double d = MapUtils.getDistance(object.getLocation(), road.searchPoint.getLatitude(),
-										road.searchPoint.getLongitude());
-								// double check to suport old format
-								if (d < DISTANCE_STREET_NAME_PROXIMITY_BY_NAME) {
-									GeocodingResult rs = new GeocodingResult(road);
-									rs.street = (Street) object;
-									// set connection point to sort
-									rs.connectionPoint = rs.street.getLocation();
-									rs.city = rs.street.getCity();
-									streetsList.add(rs);
-									return true;
-								}
-								return false;
+			if (addressCache != null) {
+				for (Street s : addressCache.getStreetsByName(reader, mainWord, road.getLocation())) {
+					addStreetByName(road, s, addCommonWordsFinal, streetNamesUsedFinal, streetsList);
+				}
+			} else {
+				SearchRequest<MapObject> req = BinaryMapIndexReader.buildAddressByNameRequest(
+						new ResultMatcher<MapObject>() {
+							@Override
+							public boolean publish(MapObject object) {
+								return addStreetByName(road, object, addCommonWordsFinal, streetNamesUsedFinal, streetsList);
 							}
-							return false;
-						}
 
-						@Override
-						public boolean isCancelled() {
-							return result != null && result.isCancelled();
-						}
-					}, mainWord, StringMatcherMode.CHECK_EQUALS_FROM_SPACE);
-			req.setBBoxRadius(road.getLocation().getLatitude(), road.getLocation().getLongitude(), DISTANCE_STREET_NAME_PROXIMITY_BY_NAME);
-			reader.searchAddressDataByName(req);
+							@Override
+							public boolean isCancelled() {
+								return result != null && result.isCancelled();
+							}
+						}, mainWord, StringMatcherMode.CHECK_EQUALS_FROM_SPACE);
+				req.setBBoxRadius(road.getLocation().getLatitude(), road.getLocation().getLongitude(), DISTANCE_STREET_NAME_PROXIMITY_BY_NAME);
+				reader.searchAddressDataByName(req);
+			}
 		}
 
 		final List<GeocodingResult> res = new ArrayList<GeocodingResult>();
@@ -314,6 +469,66 @@ public class GeocodingUtilities {
 		return res;
 	}
 
+	private boolean addStreetByName(GeocodingResult road, MapObject object, boolean addCommonWords,
+			List<String> streetNamesUsed, List<GeocodingResult> streetsList) {
+		if (object instanceof Street
+				&& prepareStreetName(object.getName(), addCommonWords).equals(streetNamesUsed)) {
+			double d = MapUtils.getDistance(object.getLocation(), road.searchPoint.getLatitude(),
+					road.searchPoint.getLongitude());
+			// double check to suport old format
+			if (d < DISTANCE_STREET_NAME_PROXIMITY_BY_NAME) {
+				GeocodingResult rs = new GeocodingResult(road);
+				rs.street = (Street) object;
+				// set connection point to sort
+				rs.connectionPoint = rs.street.getLocation();
+				rs.city = rs.street.getCity();
+				streetsList.add(rs);
+				return true;
+			}
+			return false;
+		}
+		return false;
+	}
+
+	/**
+	 * Justifies roads found by {@link #reverseGeocodingSearch(RoutingContext, double, double, boolean)} with address
+	 * data of files the roads were loaded from, roads without address file are kept as is.
+	 */
+	public List<GeocodingResult> justifyReverseGeocodingResults(List<GeocodingResult> roads,
+			BinaryMapIndexReader[] readers, ResultMatcher<GeocodingResult> result) throws IOException {
+		List<GeocodingResult> complete = new ArrayList<GeocodingResult>();
+		double minBuildingDistance = 0;
+		for (GeocodingResult r : roads) {
+			if (result != null && result.isCancelled()) {
+				break;
+			}
+			BinaryMapIndexReader foundRepo = null;
+			for (BinaryMapIndexReader reader : readers) {
+				for (RouteRegion rb : reader.getRoutingIndexes()) {
+					if (r.regionFP == rb.getFilePointer() && r.regionLen == rb.getLength()) {
+						foundRepo = reader;
+						break;
+					}
+				}
+				if (foundRepo != null) {
+					break;
+				}
+			}
+			if (foundRepo != null && foundRepo.containsAddressData()) {
+				List<GeocodingResult> justified = justifyReverseGeocodingSearch(r, foundRepo, minBuildingDistance, result);
+				if (!justified.isEmpty()) {
+					double md = justified.get(0).getDistance();
+					minBuildingDistance = minBuildingDistance == 0 ? md : Math.min(md, minBuildingDistance);
+					complete.addAll(justified);
+				}
+			} else {
+				complete.add(r);
+			}
+		}
+		filterDuplicateRegionResults(complete);
+		return complete;
+	}
+
 	public void filterDuplicateRegionResults(final List<GeocodingResult> res) {
 		Collections.sort(res, DISTANCE_COMPARATOR);
 		// filter duplicate city results (when building is in both regions on boundary)
@@ -361,7 +576,11 @@ public class GeocodingUtilities {
 	private List<GeocodingResult> loadStreetBuildings(final GeocodingResult road, BinaryMapIndexReader reader,
 			GeocodingResult street) throws IOException {
 		final List<GeocodingResult> streetBuildings = new ArrayList<GeocodingResult>();
-		reader.preloadBuildings(street.street, null);
+		if (addressCache != null) {
+			addressCache.preloadBuildings(reader, street.street);
+		} else {
+			reader.preloadBuildings(street.street, null);
+		}
 		log.info("Preload buildings " + street.street.getName() + " " + street.city.getName() + " " + street.street.getId());
 		for (Building b : street.street.getBuildings()) {
 			if (b.getLatLon2() != null) {
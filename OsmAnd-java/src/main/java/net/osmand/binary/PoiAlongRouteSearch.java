@@ -0,0 +1,306 @@
+package net.osmand.binary;
+
+import gnu.trove.list.array.TIntArrayList;
+import gnu.trove.map.hash.TLongObjectHashMap;
+import gnu.trove.set.hash.TLongHashSet;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import net.osmand.Location;
+import net.osmand.ResultMatcher;
+import net.osmand.binary.BinaryMapIndexReader.SearchPoiTypeFilter;
+import net.osmand.binary.BinaryMapIndexReader.SearchRequest;
+import net.osmand.data.Amenity;
+import net.osmand.data.Amenity.AmenityRoutePoint;
+import net.osmand.data.LatLon;
+import net.osmand.util.MapUtils;
+
+/**
+ * Streaming search of POI along the route. Unlike {@link BinaryMapIndexReader#buildSearchPoiRequest(List, double,
+ * SearchPoiTypeFilter, ResultMatcher)} route is processed by chunks of {@link #getChunkLength()} meters, so only
+ * tiles and found POI of one chunk are kept in memory. POI are tested against route segments registered in
+ * tiles of {@link SearchRequest#ZOOM_TO_SEARCH_POI} zoom, published in order of their projection on the route
+ * (with {@link AmenityRoutePoint} set) and search stops when max number of results is published.
+ * POI are projected on segments of neighbouring chunks too, POI nearest to the next chunk is published with it.
+ */
+public class PoiAlongRouteSearch {
+
+	public static final double DEFAULT_CHUNK_LENGTH = 20000;
+
+	private static final int ZOOM = SearchRequest.ZOOM_TO_SEARCH_POI;
+	private static final List<Location> NO_LOCATIONS = Collections.emptyList();
+
+	private final List<Location> route;
+	private final double radius;
+	private final SearchPoiTypeFilter poiTypeFilter;
+	// distance from route start to point i
+	private final double[] routeDistance;
+	private double chunkLength = DEFAULT_CHUNK_LENGTH;
+	private int maxResults = -1;
+
+	public PoiAlongRouteSearch(List<Location> route, double radius, SearchPoiTypeFilter poiTypeFilter) {
+		this.route = route;
+		this.radius = radius;
+		this.poiTypeFilter = poiTypeFilter;
+		this.routeDistance = new double[route.size()];
+		for (int i = 1; i < route.size(); i++) {
+			routeDistance[i] = routeDistance[i - 1] + route.get(i - 1).distanceTo(route.get(i));
+		}
+	}
+
+	public double getChunkLength() {
+		return chunkLength;
+	}
+
+	public void setChunkLength(double chunkLength) {
+		this.chunkLength = chunkLength;
+	}
+
+	public int getMaxResults() {
+		return maxResults;
+	}
+
+	/**
+	 * @param maxResults number of published results after which search stops, -1 unlimited
+	 */
+	public void setMaxResults(int maxResults) {
+		this.maxResults = maxResults;
+	}
+
+	// route segments of one chunk by tiles, segment i is (i - 1, i)
+	static class ChunkIndex {
+		final int end;
+		// tiles of chunk segments to prune poi boxes
+		final TLongObjectHashMap<List<Location>> tiles = new TLongObjectHashMap<List<Location>>();
+		// segments of chunk and neighbouring chunks to find nearest segment
+		final TLongObjectHashMap<TIntArrayList> segmentTiles = new TLongObjectHashMap<TIntArrayList>();
+
+		ChunkIndex(int end) {
+			this.end = end;
+		}
+	}
+
+	static class RoutePoi {
+		final Amenity amenity;
+		final double routeDistance;
+
+		RoutePoi(Amenity amenity, double routeDistance) {
+			this.amenity = amenity;
+			this.routeDistance = routeDistance;
+		}
+	}
+
+	// poi published by previous chunks, poi without id are identified by location and type
+	static class PublishedPoi {
+		private final TLongHashSet ids = new TLongHashSet();
+		private final Set<String> keys = new HashSet<String>();
+
+		boolean contains(Amenity a) {
+			Long id = a.getId();
+			return id != null ? ids.contains(id) : keys.contains(getKey(a));
+		}
+
+		void add(Amenity a) {
+			Long id = a.getId();
+			if (id != null) {
+				ids.add(id);
+			} else {
+				keys.add(getKey(a));
+			}
+		}
+
+		private static String getKey(Amenity a) {
+			LatLon l = a.getLocation();
+			String type = a.getType() == null ? null : a.getType().getKeyName();
+			return l.getLatitude() + " " + l.getLongitude() + " " + type + " " + a.getSubType();
+		}
+	}
+
+	/**
+	 * @return number of published results
+	 */
+	public int search(List<BinaryMapIndexReader> readers, ResultMatcher<Amenity> matcher) throws IOException {
+		PublishedPoi publishedPoi = new PublishedPoi();
+		int published = 0;
+		int prevStart = 1;
+		int start = 1;
+		int end = getChunkEnd(start);
+		while (start < route.size()) {
+			int nextEnd = end + 1 < route.size() ? getChunkEnd(end + 1) : end;
+			ChunkIndex index = indexChunk(start, end, prevStart, nextEnd);
+			List<RoutePoi> chunk = searchChunk(readers, index, publishedPoi, matcher);
+			if (chunk == null) {
+				return published;
+			}
+			Collections.sort(chunk, new Comparator<RoutePoi>() {
+				@Override
+				public int compare(RoutePoi o1, RoutePoi o2) {
+					return Double.compare(o1.routeDistance, o2.routeDistance);
+				}
+			});
+			for (RoutePoi p : chunk) {
+				if (matcher.isCancelled()) {
+					return published;
+				}
+				if (matcher.publish(p.amenity)) {
+					published++;
+					if (maxResults != -1 && published >= maxResults) {
+						return published;
+					}
+				}
+			}
+			prevStart = start;
+			start = end + 1;
+			end = nextEnd;
+		}
+		return published;
+	}
+
+	int getChunkEnd(int start) {
+		int end = start;
+		while (end + 1 < route.size() && routeDistance[end] - routeDistance[start - 1] < chunkLength) {
+			end++;
+		}
+		return end;
+	}
+
+	private List<RoutePoi> searchChunk(List<BinaryMapIndexReader> readers, final ChunkIndex index,
+			final PublishedPoi publishedPoi, final ResultMatcher<Amenity> matcher) throws IOException {
+		TLongObjectHashMap<List<Location>> tiles = index.tiles;
+		int left = Integer.MAX_VALUE, right = 0, top = Integer.MAX_VALUE, bottom = 0;
+		for (long t : tiles.keys()) {
+			int x = (int) (t >> ZOOM);
+			int y = (int) (t & ((1 << ZOOM) - 1));
+			left = Math.min(left, x << (31 - ZOOM));
+			top = Math.min(top, y << (31 - ZOOM));
+			right = (int) Math.max(right, Math.min(((long) x + 1 << (31 - ZOOM)) - 1, Integer.MAX_VALUE));
+			bottom = (int) Math.max(bottom, Math.min(((long) y + 1 << (31 - ZOOM)) - 1, Integer.MAX_VALUE));
+		}
+		final List<RoutePoi> result = new ArrayList<RoutePoi>();
+		ResultMatcher<Amenity> chunkMatcher = new ResultMatcher<Amenity>() {
+			@Override
+			public boolean publish(Amenity object) {
+				if (publishedPoi.contains(object)) {
+					return false;
+				}
+				RoutePoi p = matchRoute(index, object);
+				if (p != null) {
+					publishedPoi.add(object);
+					result.add(p);
+				}
+				// results are not collected by request
+				return false;
+			}
+
+			@Override
+			public boolean isCancelled() {
+				return matcher.isCancelled();
+			}
+		};
+		for (BinaryMapIndexReader reader : readers) {
+			if (matcher.isCancelled()) {
+				return null;
+			}
+			if (!reader.containsPoiData(left, top, right, bottom)) {
+				continue;
+			}
+			SearchRequest<Amenity> req = BinaryMapIndexReader.buildSearchPoiRequest(left, right, top, bottom, -1,
+					poiTypeFilter, chunkMatcher);
+			// tiles prune poi boxes, distance to route is checked by matcher
+			req.tiles = tiles;
+			reader.searchPoi(req);
+		}
+		return result;
+	}
+
+	/**
+	 * Indexes segments start..end of the chunk and segments matchStart..matchEnd of neighbouring chunks.
+	 */
+	ChunkIndex indexChunk(int start, int end, int matchStart, int matchEnd) {
+		ChunkIndex index = new ChunkIndex(end);
+		// tile width is measured at 30 degrees, tiles are narrower closer to the poles
+		double coeff30 = radius / MapUtils.getTileDistanceWidth(ZOOM) * Math.cos(Math.toRadians(30));
+		// segments are added in route order, so the first one wins for equal distance
+		for (int i = matchStart; i <= matchEnd; i++) {
+			Location cr = route.get(i);
+			Location pr = route.get(i - 1);
+			double maxLat = Math.min(85, Math.max(Math.abs(cr.getLatitude()), Math.abs(pr.getLatitude())));
+			double coeff = coeff30 / Math.cos(Math.toRadians(maxLat));
+			double tx = MapUtils.getTileNumberX(ZOOM, cr.getLongitude());
+			double ty = MapUtils.getTileNumberY(ZOOM, cr.getLatitude());
+			double px = MapUtils.getTileNumberX(ZOOM, pr.getLongitude());
+			double py = MapUtils.getTileNumberY(ZOOM, pr.getLatitude());
+			double topLeftX = Math.min(tx, px) - coeff;
+			double topLeftY = Math.min(ty, py) - coeff;
+			double bottomRightX = Math.max(tx, px) + coeff;
+			double bottomRightY = Math.max(ty, py) + coeff;
+			for (int x = (int) topLeftX; x <= bottomRightX; x++) {
+				for (int y = (int) topLeftY; y <= bottomRightY; y++) {
+					long hash = (((long) x) << ZOOM) + y;
+					TIntArrayList segments = index.segmentTiles.get(hash);
+					if (segments == null) {
+						segments = new TIntArrayList(4);
+						index.segmentTiles.put(hash, segments);
+					}
+					segments.add(i);
+					if (i >= start && i <= end) {
+						index.tiles.put(hash, NO_LOCATIONS);
+					}
+				}
+			}
+		}
+		return index;
+	}
+
+	/**
+	 * @return poi projected on nearest segment or null if it is too far or nearest segment is in the next chunk
+	 */
+	RoutePoi matchRoute(ChunkIndex index, Amenity am) {
+		LatLon l = am.getLocation();
+		long x = (long) MapUtils.getTileNumberX(ZOOM, l.getLongitude());
+		long y = (long) MapUtils.getTileNumberY(ZOOM, l.getLatitude());
+		TIntArrayList segments = index.segmentTiles.get((x << ZOOM) + y);
+		if (segments == null) {
+			return null;
+		}
+		double minDist = radius + 0.1;
+		int segment = -1;
+		LatLon projection = null;
+		for (int k = 0; k < segments.size(); k++) {
+			int i = segments.get(k);
+			Location a = route.get(i - 1);
+			Location b = route.get(i);
+			LatLon pr = MapUtils.getProjection(l.getLatitude(), l.getLongitude(), a.getLatitude(), a.getLongitude(),
+					b.getLatitude(), b.getLongitude());
+			double d = MapUtils.getDistance(pr, l);
+			// first segment wins for equal distance to keep route order
+			if (d < minDist) {
+				minDist = d;
+				segment = i;
+				projection = pr;
+			}
+		}
+		if (segment == -1 || segment > index.end) {
+			return null;
+		}
+		Location a = route.get(segment - 1);
+		Location b = route.get(segment);
+		AmenityRoutePoint arp = new AmenityRoutePoint();
+		arp.deviateDistance = minDist;
+		arp.pointA = a;
+		arp.pointB = b;
+		if (minDist != 0) {
+			arp.deviationDirectionRight = MapUtils.rightSide(l.getLatitude(), l.getLongitude(), a.getLatitude(),
+					a.getLongitude(), b.getLatitude(), b.getLongitude());
+		}
+		am.setRoutePoint(arp);
+		double along = MapUtils.getDistance(projection, a.getLatitude(), a.getLongitude());
+		return new RoutePoi(am, routeDistance[segment - 1] + along);
+	}
+}
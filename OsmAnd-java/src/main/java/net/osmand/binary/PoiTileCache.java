@@ -0,0 +1,369 @@
+package net.osmand.binary;
+
+import gnu.trove.set.hash.TLongHashSet;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
+
+import net.osmand.PlatformUtil;
+import net.osmand.binary.BinaryMapIndexReader.SearchPoiTypeFilter;
+import net.osmand.binary.BinaryMapIndexReader.SearchRequest;
+import net.osmand.binary.BinaryMapPoiReaderAdapter.PoiRegion;
+import net.osmand.data.Amenity;
+import net.osmand.osm.PoiCategory;
+import net.osmand.util.MapUtils;
+
+import org.apache.commons.logging.Log;
+
+/**
+ * Cache of decoded POI by tiles of {@link #TILE_ZOOM} zoom. Tile is decoded once with all POI types and
+ * requests covering it are served from memory: POI are filtered by request bbox and
+ * {@link SearchPoiTypeFilter} and density filter of request zoom is applied to them in file order as reading
+ * from file does. Returned amenities share names and additional info with cached ones. Tiles are evicted in LRU order when estimated size of cached POI exceeds the limit.
+ * Cache could be shared by several readers (i.e. of {@link BinaryMapIndexReaderPool}), tiles are keyed by poi region.
+ */
+public class PoiTileCache {
+
+	private static final Log log = PlatformUtil.getLog(PoiTileCache.class);
+
+	public static final int TILE_ZOOM = 14;
+	// bigger requests are read from file
+	public static final int MAX_TILES_PER_REQUEST = 64;
+	public static final long DEFAULT_MAX_BYTES = 32 * 1024 * 1024;
+
+	private final long maxBytes;
+	private final LinkedHashMap<TileKey, PoiTile> tiles = new LinkedHashMap<TileKey, PoiTile>(64, 0.75f, true);
+	// tiles being decoded, other requests of the same tile wait for them
+	private final Map<TileKey, FutureTask<PoiTile>> loading = new HashMap<TileKey, FutureTask<PoiTile>>();
+	private long bytes;
+	private long hits;
+	private long misses;
+	private long evictions;
+
+	public PoiTileCache() {
+		this(DEFAULT_MAX_BYTES);
+	}
+
+	public PoiTileCache(long maxBytes) {
+		this.maxBytes = maxBytes;
+	}
+
+	private static class TileKey {
+		final PoiRegion region;
+		final int x;
+		final int y;
+
+		TileKey(PoiRegion region, int x, int y) {
+			this.region = region;
+			this.x = x;
+			this.y = y;
+		}
+
+		@Override
+		public int hashCode() {
+			return (System.identityHashCode(region) * 31 + x) * 31 + y;
+		}
+
+		@Override
+		public boolean equals(Object obj) {
+			if (!(obj instanceof TileKey)) {
+				return false;
+			}
+			TileKey o = (TileKey) obj;
+			return region == o.region && x == o.x && y == o.y;
+		}
+	}
+
+	private static class PoiTile {
+		final CachedPoi[] pois;
+		final long bytes;
+
+		PoiTile(CachedPoi[] pois, long bytes) {
+			this.pois = pois;
+			this.bytes = bytes;
+		}
+	}
+
+	private static class CachedPoi {
+		final Amenity amenity;
+		final int filePointer;
+		final int x31;
+		final int y31;
+		// category of every subtype as in poi region (amenity type is category of first subtype)
+		final PoiCategory[] types;
+		final String[] subtypes;
+
+		CachedPoi(Amenity amenity, PoiRegion region, int[] typeIds, int filePointer) {
+			this.amenity = amenity;
+			this.filePointer = filePointer;
+			this.x31 = MapUtils.get31TileNumberX(amenity.getLocation().getLongitude());
+			this.y31 = MapUtils.get31TileNumberY(amenity.getLocation().getLatitude());
+			this.types = new PoiCategory[typeIds.length];
+			this.subtypes = new String[typeIds.length];
+			for (int i = 0; i < typeIds.length; i++) {
+				types[i] = region.typeCategories[typeIds[i]];
+				subtypes[i] = region.typeSubtypes[typeIds[i]];
+			}
+		}
+
+		Amenity filter(SearchPoiTypeFilter filter) {
+			if (filter == null) {
+				return amenity.copy(amenity.getType(), amenity.getSubType());
+			}
+			PoiCategory type = null;
+			String subtype = null;
+			for (int i = 0; i < subtypes.length; i++) {
+				if (filter.accept(types[i], subtypes[i])) {
+					if (type == null) {
+						type = types[i];
+						subtype = subtypes[i];
+					} else {
+						subtype = subtype + ";" + subtypes[i];
+					}
+				}
+			}
+			return type == null ? null : amenity.copy(type, subtype);
+		}
+
+		long estimateBytes() {
+			long b = 160 + stringBytes(amenity.getName()) + stringBytes(amenity.getSubType());
+			for (Entry<String, String> e : amenity.getNamesMap(false).entrySet()) {
+				b += 48 + stringBytes(e.getKey()) + stringBytes(e.getValue());
+			}
+			for (Entry<String, String> e : amenity.getAdditionalInfo().entrySet()) {
+				b += 48 + stringBytes(e.getKey()) + stringBytes(e.getValue());
+			}
+			return b + 8 * subtypes.length;
+		}
+
+		private static long stringBytes(String s) {
+			return s == null ? 0 : 40 + 2 * s.length();
+		}
+	}
+
+	private static final Comparator<CachedPoi> FILE_ORDER = new Comparator<CachedPoi>() {
+		@Override
+		public int compare(CachedPoi o1, CachedPoi o2) {
+			return o1.filePointer < o2.filePointer ? -1 : (o1.filePointer == o2.filePointer ? 0 : 1);
+		}
+	};
+
+	public boolean isCacheable(SearchRequest<Amenity> req) {
+		if (req.radius > 0 || req.tiles != null || (req.nameQuery != null && req.nameQuery.length() > 0)) {
+			return false;
+		}
+		int shift = 31 - TILE_ZOOM;
+		long tilesX = (req.right >> shift) - (req.left >> shift) + 1;
+		long tilesY = (req.bottom >> shift) - (req.top >> shift) + 1;
+		return tilesX > 0 && tilesY > 0 && tilesX * tilesY <= MAX_TILES_PER_REQUEST;
+	}
+
+	void searchPoi(BinaryMapIndexReader reader, PoiRegion region, SearchRequest<Amenity> req) throws IOException {
+		int left = req.left;
+		int right = req.right;
+		int top = req.top;
+		int bottom = req.bottom;
+		if (region.right31 > region.left31 && region.bottom31 > region.top31) {
+			left = Math.max(left, region.left31);
+			right = Math.min(right, region.right31);
+			top = Math.max(top, region.top31);
+			bottom = Math.min(bottom, region.bottom31);
+			if (left > right || top > bottom) {
+				return;
+			}
+		}
+		TLongHashSet skipCells = null;
+		int zSkip = 31;
+		if (req.zoom >= 0 && req.zoom < 16) {
+			skipCells = new TLongHashSet();
+			zSkip = req.zoom + BinaryMapPoiReaderAdapter.ZOOM_TO_SKIP_FILTER;
+		}
+		// poi of all tiles are filtered in file order, so density filter keeps the same poi as reading from file
+		List<CachedPoi> pois = new ArrayList<CachedPoi>();
+		int shift = 31 - TILE_ZOOM;
+		for (int ty = top >> shift; ty <= bottom >> shift; ty++) {
+			for (int tx = left >> shift; tx <= right >> shift; tx++) {
+				for (CachedPoi p : getTile(reader, region, tx, ty).pois) {
+					if (p.x31 >= req.left && p.x31 <= req.right && p.y31 >= req.top && p.y31 <= req.bottom) {
+						pois.add(p);
+					}
+				}
+			}
+		}
+		Collections.sort(pois, FILE_ORDER);
+		for (CachedPoi p : pois) {
+			long cell = 0;
+			if (skipCells != null) {
+				cell = (((long) (p.x31 >> (31 - zSkip))) << zSkip) | (p.y31 >> (31 - zSkip));
+				if (skipCells.contains(cell)) {
+					continue;
+				}
+			}
+			Amenity am = p.filter(req.poiTypeFilter);
+			if (am == null) {
+				continue;
+			}
+			req.numberOfAcceptedObjects++;
+			req.collectRawData(am);
+			if (req.publish(am) && skipCells != null) {
+				skipCells.add(cell);
+			}
+			if (req.isCancelled()) {
+				return;
+			}
+		}
+	}
+
+	// tile is decoded by the first request, other requests of the tile wait for it instead of decoding it again
+	private PoiTile getTile(final BinaryMapIndexReader reader, final PoiRegion region, final int tx, final int ty)
+			throws IOException {
+		final TileKey key = new TileKey(region, tx, ty);
+		FutureTask<PoiTile> task;
+		boolean run = false;
+		synchronized (this) {
+			PoiTile tile = tiles.get(key);
+			if (tile != null) {
+				hits++;
+				return tile;
+			}
+			task = loading.get(key);
+			if (task == null) {
+				misses++;
+				task = new FutureTask<PoiTile>(new Callable<PoiTile>() {
+					@Override
+					public PoiTile call() throws IOException {
+						PoiTile tile = null;
+						try {
+							tile = readTile(reader, region, tx, ty);
+							return tile;
+						} finally {
+							// tile is cached in the same lock as it's removed from loading, so it's decoded once
+							synchronized (PoiTileCache.this) {
+								loading.remove(key);
+								if (tile != null) {
+									put(key, tile);
+								}
+							}
+						}
+					}
+				});
+				loading.put(key, task);
+				run = true;
+			} else {
+				hits++;
+			}
+		}
+		if (run) {
+			task.run();
+		}
+		try {
+			return task.get();
+		} catch (ExecutionException e) {
+			Throwable cause = e.getCause();
+			if (cause instanceof IOException) {
+				throw (IOException) cause;
+			} else if (cause instanceof RuntimeException) {
+				throw (RuntimeException) cause;
+			}
+			throw new IllegalStateException(cause);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new IOException("Interrupted while poi tile is decoded");
+		}
+	}
+
+	private PoiTile readTile(BinaryMapIndexReader reader, PoiRegion region, int tx, int ty) throws IOException {
+		int shift = 31 - TILE_ZOOM;
+		int left = tx << shift;
+		int top = ty << shift;
+		int right = (int) Math.min((((long) tx + 1) << shift) - 1, Integer.MAX_VALUE);
+		int bottom = (int) Math.min((((long) ty + 1) << shift) - 1, Integer.MAX_VALUE);
+		Map<Amenity, int[]> typeIds = new IdentityHashMap<Amenity, int[]>();
+		Map<Amenity, Integer> filePointers = new IdentityHashMap<Amenity, Integer>();
+		List<Amenity> amenities = reader.readPoiTile(region, left, right, top, bottom, typeIds, filePointers);
+		CachedPoi[] pois = new CachedPoi[amenities.size()];
+		long tileBytes = 64;
+		for (int i = 0; i < pois.length; i++) {
+			Amenity a = amenities.get(i);
+			pois[i] = new CachedPoi(a, region, typeIds.get(a), filePointers.get(a));
+			tileBytes += pois[i].estimateBytes();
+		}
+		return new PoiTile(pois, tileBytes);
+	}
+
+	private synchronized void put(TileKey key, PoiTile tile) {
+		PoiTile prev = tiles.put(key, tile);
+		if (prev != null) {
+			bytes -= prev.bytes;
+		}
+		bytes += tile.bytes;
+		Iterator<Map.Entry<TileKey, PoiTile>> it = tiles.entrySet().iterator();
+		while (bytes > maxBytes && it.hasNext()) {
+			Map.Entry<TileKey, PoiTile> e = it.next();
+			if (e.getValue() == tile) {
+				continue;
+			}
+			bytes -= e.getValue().bytes;
+			it.remove();
+			evictions++;
+		}
+	}
+
+	public synchronized void clear() {
+		tiles.clear();
+		bytes = 0;
+	}
+
+	public synchronized int getTilesCount() {
+		return tiles.size();
+	}
+
+	public synchronized long getCachedBytes() {
+		return bytes;
+	}
+
+	public synchronized long getHits() {
+		return hits;
+	}
+
+	public synchronized long getMisses() {
+		return misses;
+	}
+
+	public synchronized long getEvictions() {
+		return evictions;
+	}
+
+	public synchronized double getHitRate() {
+		long total = hits + misses;
+		return total == 0 ? 0 : hits / (double) total;
+	}
+
+	public synchronized void resetStatistics() {
+		hits = 0;
+		misses = 0;
+		evictions = 0;
+	}
+
+	public void logStatistics() {
+		log.info(toString());
+	}
+
+	@Override
+	public synchronized String toString() {
+		return String.format("Poi tile cache: %d tiles, %d KB, hits %d, misses %d (%.1f%%), evictions %d",
+				tiles.size(), bytes >> 10, hits, misses, getHitRate() * 100, evictions);
+	}
+}
@@ -54,6 +54,8 @@ public class Amenity extends MapObject {
 	// context menu geometry;
 	private TIntArrayList y;
 	private TIntArrayList x;
+	// names and additional info are shared with copies (see copy), maps are copied before change
+	private boolean sharedMaps;
 
 	public Amenity() {
 	}
@@ -65,6 +67,63 @@ public class Amenity extends MapObject {
 		public Location pointB;
 	}
 
+	/**
+	 * Copy with given type and subtype. Names and additional info are shared with this amenity
+	 * until one of them is changed, so copies of cached amenity are cheap.
+	 */
+	public Amenity copy(PoiCategory type, String subType) {
+		Amenity am = new Amenity();
+		am.type = type;
+		am.subType = subType;
+		am.name = name;
+		am.enName = enName;
+		am.names = names;
+		am.location = location;
+		am.fileOffset = fileOffset;
+		am.id = id;
+		am.openingHours = openingHours;
+		am.additionalInfo = additionalInfo;
+		if (x != null) {
+			am.x = new TIntArrayList(x);
+		}
+		if (y != null) {
+			am.y = new TIntArrayList(y);
+		}
+		am.sharedMaps = true;
+		sharedMaps = true;
+		return am;
+	}
+
+	private void copySharedMaps() {
+		if (sharedMaps) {
+			sharedMaps = false;
+			if (names != null) {
+				names = new HashMap<String, String>(names);
+			}
+			if (additionalInfo != null) {
+				additionalInfo = new LinkedHashMap<String, String>(additionalInfo);
+			}
+		}
+	}
+
+	@Override
+	public void setName(String lang, String name) {
+		copySharedMaps();
+		super.setName(lang, name);
+	}
+
+	@Override
+	public void setNames(Map<String, String> name) {
+		copySharedMaps();
+		super.setNames(name);
+	}
+
+	@Override
+	public void copyNames(String otherName, String otherEnName, Map<String, String> otherNames, boolean overwrite) {
+		copySharedMaps();
+		super.copyNames(otherName, otherEnName, otherNames, overwrite);
+	}
+
 	public PoiCategory getType() {
 		return type;
 	}
@@ -129,6 +188,7 @@ public class Amenity extends MapObject {
 		} else if (tag.startsWith("name:")) {
 			setName(tag.substring("name:".length()), value);
 		} else {
+			copySharedMaps();
 			if (this.additionalInfo == null) {
 				this.additionalInfo = new LinkedHashMap<String, String>();
 			}
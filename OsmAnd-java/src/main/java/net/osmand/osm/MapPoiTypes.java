@@ -9,9 +9,13 @@ import org.apache.commons.logging.Log;
 import org.xmlpull.v1.XmlPullParser;
 import org.xmlpull.v1.XmlPullParserException;
 
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
 import java.io.FileInputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.net.URL;
 import java.text.Collator;
 import java.util.ArrayList;
 import java.util.Collections;
@@ -357,7 +361,113 @@ public class MapPoiTypes {
 		}
 	}
 
+	/**
+	 * Inits types from snapshot of poi_types.xml written by {@link PoiTypesSnapshot#write},
+	 * resulting types are the same as parsed from xml.
+	 */
+	public void initFromSnapshot(InputStream is) {
+		try {
+			initFromParser(PoiTypesSnapshot.read(is), is);
+		} catch (IOException e) {
+			log.error("Unexpected error", e); //$NON-NLS-1$
+			throw new RuntimeException(e);
+		}
+	}
+
+	/**
+	 * Same as {@link #init(String)}, but types are read from snapshot file when it is written for poi_types.xml
+	 * of the same size (and modification time for file resource) and the same app version, then xml is not read
+	 * at all. Otherwise xml is parsed and snapshot is (re)written.
+	 */
+	public void init(String resourceName, File snapshot, String appVersion) {
+		if (resourceName != null) {
+			this.resourceName = resourceName;
+		}
+		if (appVersion == null) {
+			appVersion = "";
+		}
+		try {
+			long size;
+			long modified;
+			URL resource = null;
+			if (this.resourceName == null) {
+				// size of jar entry is known without reading it, classpath resource is changed only with app version
+				resource = MapPoiTypes.class.getResource("poi_types.xml"); //$NON-NLS-1$
+				size = resource.openConnection().getContentLength();
+				modified = 0;
+			} else {
+				File f = new File(this.resourceName);
+				size = f.length();
+				modified = f.lastModified();
+			}
+			if (size >= 0 && PoiTypesSnapshot.isValid(snapshot, size, modified, appVersion)) {
+				initFromSnapshot(new FileInputStream(snapshot));
+				return;
+			}
+			InputStream is = resource != null ? resource.openStream() : new FileInputStream(this.resourceName);
+			ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+			Algorithms.streamCopy(is, bytes);
+			is.close();
+			byte[] xml = bytes.toByteArray();
+			initFromInputStream(new ByteArrayInputStream(xml));
+			try {
+				PoiTypesSnapshot.write(xml, modified, appVersion, snapshot);
+			} catch (IOException e) {
+				log.warn("Can't write poi types snapshot", e); //$NON-NLS-1$
+			}
+		} catch (IOException e) {
+			log.error("Unexpected error", e); //$NON-NLS-1$
+			throw new RuntimeException(e);
+		}
+	}
+
+	interface PoiTypesParser {
+
+		int next() throws XmlPullParserException, IOException;
+
+		String getName();
+
+		String getAttributeValue(String namespace, String name);
+	}
+
+	private static class XmlPoiTypesParser implements PoiTypesParser {
+		private final XmlPullParser parser;
+
+		XmlPoiTypesParser(XmlPullParser parser) {
+			this.parser = parser;
+		}
+
+		@Override
+		public int next() throws XmlPullParserException, IOException {
+			return parser.next();
+		}
+
+		@Override
+		public String getName() {
+			return parser.getName();
+		}
+
+		@Override
+		public String getAttributeValue(String namespace, String name) {
+			return parser.getAttributeValue(namespace, name);
+		}
+	}
+
 	public void initFromInputStream(InputStream is) {
+		PoiTypesParser parser;
+		try {
+			XmlPullParser xmlParser = PlatformUtil.newXMLPullParser();
+			xmlParser.setInput(is, "UTF-8");
+			parser = new XmlPoiTypesParser(xmlParser);
+		} catch (XmlPullParserException e) {
+			log.error("Unexpected error", e); //$NON-NLS-1$
+			e.printStackTrace();
+			throw new RuntimeException(e);
+		}
+		initFromParser(parser, is);
+	}
+
+	private void initFromParser(PoiTypesParser parser, InputStream is) {
 		long time = System.currentTimeMillis();
 		List<PoiType> referenceTypes = new ArrayList<PoiType>();
 		final Map<String, PoiType> allTypes = new LinkedHashMap<String, PoiType>();
@@ -370,9 +480,7 @@ public class MapPoiTypes {
 
 		List<PoiCategory> categoriesList = new ArrayList<>();
 		try {
-			XmlPullParser parser = PlatformUtil.newXMLPullParser();
 			int tok;
-			parser.setInput(is, "UTF-8");
 			PoiCategory lastCategory = null;
 			Set<String> lastCategoryPoiAdditionalsCategories = new TreeSet<String>();
 			PoiFilter lastFilter = null;
@@ -598,7 +706,7 @@ public class MapPoiTypes {
 		return ref;
 	}
 
-	private PoiType parsePoiAdditional(XmlPullParser parser, PoiCategory lastCategory, PoiFilter lastFilter,
+	private PoiType parsePoiAdditional(PoiTypesParser parser, PoiCategory lastCategory, PoiFilter lastFilter,
 											  PoiType lastType, String lang, PoiType langBaseType,
 											  String poiAdditionalCategory, List<PoiType> textPoiAdditionals) {
 		String oname = parser.getAttributeValue("", "name");
@@ -641,7 +749,7 @@ public class MapPoiTypes {
 	}
 
 
-	private PoiType parsePoiType(final Map<String, PoiType> allTypes, XmlPullParser parser, PoiCategory lastCategory,
+	private PoiType parsePoiType(final Map<String, PoiType> allTypes, PoiTypesParser parser, PoiCategory lastCategory,
 			PoiFilter lastFilter, String lang, PoiType langBaseType) {
 		String oname = parser.getAttributeValue("", "name");
 		if (lang != null) {
@@ -0,0 +1,195 @@
+package net.osmand.osm;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import net.osmand.PlatformUtil;
+import net.osmand.osm.MapPoiTypes.PoiTypesParser;
+
+import org.apache.commons.logging.Log;
+import org.xmlpull.v1.XmlPullParser;
+import org.xmlpull.v1.XmlPullParserException;
+
+/**
+ * Binary snapshot of poi_types.xml: tags with their attributes in document order and table of distinct strings.
+ * Snapshot is replayed by {@link MapPoiTypes} through the same code as xml, so types tree is always the same,
+ * but no xml parsing and no string duplicates. Snapshot stores size and modification time of xml it was written
+ * for and app version, so it's validated without reading xml.
+ */
+public class PoiTypesSnapshot {
+
+	private static final Log log = PlatformUtil.getLog(PoiTypesSnapshot.class);
+
+	public static final int VERSION = 2;
+
+	public static boolean isValid(File snapshot, long xmlSize, long xmlModified, String appVersion) {
+		if (!snapshot.exists()) {
+			return false;
+		}
+		try {
+			DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(snapshot)));
+			try {
+				return in.readInt() == VERSION && in.readLong() == xmlSize && in.readLong() == xmlModified
+						&& in.readUTF().equals(appVersion);
+			} finally {
+				in.close();
+			}
+		} catch (IOException e) {
+			log.warn("Can't read poi types snapshot " + snapshot.getName(), e);
+			return false;
+		}
+	}
+
+	public static void write(byte[] xml, long xmlModified, String appVersion, File snapshot) throws IOException {
+		XmlPullParser parser;
+		try {
+			parser = PlatformUtil.newXMLPullParser();
+			parser.setInput(new ByteArrayInputStream(xml), "UTF-8");
+		} catch (XmlPullParserException e) {
+			throw new IOException(e);
+		}
+		Map<String, Integer> stringIds = new HashMap<String, Integer>();
+		List<String> strings = new ArrayList<String>();
+		List<int[]> tags = new ArrayList<int[]>();
+		try {
+			int tok;
+			while ((tok = parser.next()) != XmlPullParser.END_DOCUMENT) {
+				if (tok == XmlPullParser.START_TAG) {
+					int[] tag = new int[2 + parser.getAttributeCount() * 2];
+					tag[0] = XmlPullParser.START_TAG;
+					tag[1] = stringId(parser.getName(), stringIds, strings);
+					for (int i = 0; i < parser.getAttributeCount(); i++) {
+						tag[2 + i * 2] = stringId(parser.getAttributeName(i), stringIds, strings);
+						tag[3 + i * 2] = stringId(parser.getAttributeValue(i), stringIds, strings);
+					}
+					tags.add(tag);
+				} else if (tok == XmlPullParser.END_TAG) {
+					tags.add(new int[] { XmlPullParser.END_TAG, stringId(parser.getName(), stringIds, strings) });
+				}
+			}
+		} catch (XmlPullParserException e) {
+			throw new IOException(e);
+		}
+		File tmp = new File(snapshot.getParentFile(), snapshot.getName() + ".tmp");
+		DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(tmp)));
+		try {
+			out.writeInt(VERSION);
+			out.writeLong(xml.length);
+			out.writeLong(xmlModified);
+			out.writeUTF(appVersion);
+			out.writeInt(strings.size());
+			for (String s : strings) {
+				out.writeUTF(s);
+			}
+			out.writeInt(tags.size());
+			for (int[] tag : tags) {
+				out.writeByte(tag[0]);
+				out.writeInt(tag[1]);
+				if (tag[0] == XmlPullParser.START_TAG) {
+					out.writeShort((tag.length - 2) / 2);
+					for (int i = 2; i < tag.length; i++) {
+						out.writeInt(tag[i]);
+					}
+				}
+			}
+		} finally {
+			out.close();
+		}
+		snapshot.delete();
+		if (!tmp.renameTo(snapshot)) {
+			tmp.delete();
+			throw new IOException("Can't write poi types snapshot " + snapshot.getName());
+		}
+	}
+
+	static PoiTypesParser read(InputStream is) throws IOException {
+		DataInputStream in = new DataInputStream(new BufferedInputStream(is));
+		int version = in.readInt();
+		if (version != VERSION) {
+			throw new IOException("Unsupported poi types snapshot version " + version);
+		}
+		in.readLong();
+		in.readLong();
+		in.readUTF();
+		String[] strings = new String[in.readInt()];
+		for (int i = 0; i < strings.length; i++) {
+			strings[i] = in.readUTF();
+		}
+		byte[] types = new byte[in.readInt()];
+		String[] names = new String[types.length];
+		String[][] attributes = new String[types.length][];
+		for (int i = 0; i < types.length; i++) {
+			types[i] = in.readByte();
+			names[i] = strings[in.readInt()];
+			if (types[i] == XmlPullParser.START_TAG) {
+				String[] attrs = new String[in.readShort() * 2];
+				for (int j = 0; j < attrs.length; j++) {
+					attrs[j] = strings[in.readInt()];
+				}
+				attributes[i] = attrs;
+			}
+		}
+		return new SnapshotParser(types, names, attributes);
+	}
+
+	private static int stringId(String s, Map<String, Integer> stringIds, List<String> strings) {
+		Integer id = stringIds.get(s);
+		if (id == null) {
+			id = strings.size();
+			stringIds.put(s, id);
+			strings.add(s);
+		}
+		return id;
+	}
+
+	private static class SnapshotParser implements PoiTypesParser {
+		private static final String[] NO_ATTRIBUTES = new String[0];
+		private final byte[] types;
+		private final String[] names;
+		private final String[][] attributes;
+		private int ind = -1;
+
+		SnapshotParser(byte[] types, String[] names, String[][] attributes) {
+			this.types = types;
+			this.names = names;
+			this.attributes = attributes;
+		}
+
+		@Override
+		public int next() {
+			if (ind + 1 >= types.length) {
+				ind = types.length;
+				return XmlPullParser.END_DOCUMENT;
+			}
+			return types[++ind];
+		}
+
+		@Override
+		public String getName() {
+			return names[ind];
+		}
+
+		@Override
+		public String getAttributeValue(String namespace, String name) {
+			String[] attrs = attributes[ind] == null ? NO_ATTRIBUTES : attributes[ind];
+			for (int i = 0; i < attrs.length; i += 2) {
+				if (attrs[i].equals(name)) {
+					return attrs[i + 1];
+				}
+			}
+			return null;
+		}
+	}
+}
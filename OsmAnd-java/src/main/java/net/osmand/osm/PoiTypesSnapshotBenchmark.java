@@ -0,0 +1,72 @@
+package net.osmand.osm;
+
+import java.io.File;
+import java.util.Arrays;
+
+/**
+ * Compares startup time of {@link MapPoiTypes} initialized from poi_types.xml and from its snapshot
+ * (see {@link MapPoiTypes#init(String, File, String)}). Every iteration initializes new types instance.
+ */
+public class PoiTypesSnapshotBenchmark {
+
+	public static void main(String[] args) throws Exception {
+		String xml = null;
+		int iterations = 20;
+		int warmUp = 5;
+		for (String a : args) {
+			if (a.startsWith("-xml=")) {
+				xml = a.substring("-xml=".length());
+			} else if (a.startsWith("-iterations=")) {
+				iterations = Integer.parseInt(a.substring("-iterations=".length()));
+			} else if (a.startsWith("-warmup=")) {
+				warmUp = Integer.parseInt(a.substring("-warmup=".length()));
+			}
+		}
+		File snapshot = File.createTempFile("poi_types", ".snapshot");
+		try {
+			for (int it = 0; it < warmUp; it++) {
+				initFromXml(xml, snapshot);
+				initFromSnapshot(xml, snapshot);
+			}
+			long[] parsed = new long[iterations];
+			long[] replayed = new long[iterations];
+			for (int it = 0; it < iterations; it++) {
+				// alternate modes, so both are equally affected by state of the machine
+				parsed[it] = initFromXml(xml, snapshot);
+				replayed[it] = initFromSnapshot(xml, snapshot);
+				System.out.println(String.format("Iteration %d: xml %.1f ms, snapshot %.1f ms", it, parsed[it] / 1e6,
+						replayed[it] / 1e6));
+			}
+			long xmlMedian = median(parsed);
+			long snapshotMedian = median(replayed);
+			System.out.println(String.format("Median: xml %.1f ms, snapshot %.1f ms (%.2fx)", xmlMedian / 1e6,
+					snapshotMedian / 1e6, xmlMedian / (double) snapshotMedian));
+		} finally {
+			snapshot.delete();
+		}
+	}
+
+	// snapshot is deleted, so xml is parsed (and snapshot is written, it's not measured)
+	private static long initFromXml(String xml, File snapshot) {
+		snapshot.delete();
+		MapPoiTypes types = new MapPoiTypes(xml);
+		long time = System.nanoTime();
+		types.init();
+		time = System.nanoTime() - time;
+		new MapPoiTypes(xml).init(xml, snapshot, "benchmark");
+		return time;
+	}
+
+	private static long initFromSnapshot(String xml, File snapshot) {
+		MapPoiTypes types = new MapPoiTypes(xml);
+		long time = System.nanoTime();
+		types.init(xml, snapshot, "benchmark");
+		return System.nanoTime() - time;
+	}
+
+	private static long median(long[] times) {
+		long[] sorted = times.clone();
+		Arrays.sort(sorted);
+		return sorted[sorted.length / 2];
+	}
+}
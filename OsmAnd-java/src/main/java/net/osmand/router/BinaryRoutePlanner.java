@@ -1,13 +1,24 @@
 package net.osmand.router;
 
+import gnu.trove.list.array.TIntArrayList;
 import gnu.trove.map.hash.TLongObjectHashMap;
 
 import java.io.IOException;
 import java.text.MessageFormat;
 import java.util.Comparator;
+import java.util.IdentityHashMap;
 import java.util.Iterator;
 import java.util.List;
-import java.util.PriorityQueue;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.SynchronousQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 import net.osmand.PlatformUtil;
 import net.osmand.binary.RouteDataObject;
@@ -30,6 +41,8 @@ public class BinaryRoutePlanner {
 
 	private static final int ROUTE_POINTS = 11;
 	private static final boolean TRACE_ROUTING = false;
+	// seconds, close targets could still need a detour (one way roads, turn restrictions)
+	private static final float MIN_ONE_TO_MANY_COST_LIMIT = 600;
 
 
 	public static double squareRootDist(int x1, int y1, int x2, int y2) {
@@ -38,18 +51,6 @@ public class BinaryRoutePlanner {
 	}
 
 
-	private static class SegmentsComparator implements Comparator<RouteSegment> {
-		final RoutingContext ctx;
-
-		public SegmentsComparator(RoutingContext ctx) {
-			this.ctx = ctx;
-		}
-
-		@Override
-		public int compare(RouteSegment o1, RouteSegment o2) {
-			return ctx.roadPriorityComparator(o1.distanceFromStart, o1.distanceToEnd, o2.distanceFromStart, o2.distanceToEnd);
-		}
-	}
 
 	private static class NonHeuristicSegmentsComparator implements Comparator<RouteSegment> {
 		public NonHeuristicSegmentsComparator() {
@@ -69,23 +70,36 @@ public class BinaryRoutePlanner {
 			RouteSegment recalculationEnd ) throws InterruptedException, IOException {
 		// measure time
 		ctx.memoryOverhead = 1000;
+		// router is shared, so counters also include evaluations of concurrent searches
+		long evalCacheHits = ctx.config.router.getEvalCacheHits();
+		long evalCacheMisses = ctx.config.router.getEvalCacheMisses();
 
 		// Initializing priority queue to visit way segments 
 		Comparator<RouteSegment> nonHeuristicSegmentsComparator = new NonHeuristicSegmentsComparator();
-		PriorityQueue<RouteSegment> graphDirectSegments = new PriorityQueue<RouteSegment>(50, new SegmentsComparator(ctx));
-		PriorityQueue<RouteSegment> graphReverseSegments = new PriorityQueue<RouteSegment>(50, new SegmentsComparator(ctx));
+		RouteSegmentQueue graphDirectSegments = new RouteSegmentQueue(ctx.config.heuristicCoefficient);
+		RouteSegmentQueue graphReverseSegments = new RouteSegmentQueue(ctx.config.heuristicCoefficient);
 
 		// Set to not visit one segment twice (stores road.id << X + segmentStart)
-		TLongObjectHashMap<RouteSegment> visitedDirectSegments = new TLongObjectHashMap<RouteSegment>();
-		TLongObjectHashMap<RouteSegment> visitedOppositeSegments = new TLongObjectHashMap<RouteSegment>();
+		boolean parallel = ctx.config.parallelBidirectionalSearch && ctx.planRouteIn2Directions();
+		TLongObjectHashMap<RouteSegment> visitedDirectSegments = parallel ? new SharedVisitedSegments()
+				: new TLongObjectHashMap<RouteSegment>();
+		TLongObjectHashMap<RouteSegment> visitedOppositeSegments = parallel ? new SharedVisitedSegments()
+				: new TLongObjectHashMap<RouteSegment>();
 
 		initQueuesWithStartEnd(ctx, start, end, recalculationEnd, graphDirectSegments, graphReverseSegments, 
 				visitedDirectSegments, visitedOppositeSegments);
+		if (parallel) {
+			FinalRouteSegment res = searchRouteInternalParallel(ctx, start, end, graphDirectSegments, graphReverseSegments,
+					visitedDirectSegments, visitedOppositeSegments);
+			updateEvalCacheProgress(ctx, evalCacheHits, evalCacheMisses);
+			keepReverseSearchFrontier(ctx, end, recalculationEnd, res, visitedOppositeSegments);
+			return res;
+		}
 
 		// Extract & analyze segment with min(f(x)) from queue while final segment is not found
 		boolean forwardSearch = true;
 
-		PriorityQueue<RouteSegment> graphSegments = graphDirectSegments;
+		RouteSegmentQueue graphSegments = graphDirectSegments;
 
 		FinalRouteSegment finalSegment = null;
 		boolean onlyBackward = ctx.getPlanRoadDirection() < 0;
@@ -125,11 +139,11 @@ public class BinaryRoutePlanner {
 			if (forwardSearch) {
 				boolean doNotAddIntersections = onlyBackward;
 				processRouteSegment(ctx, false, graphDirectSegments, visitedDirectSegments,
-						segment, visitedOppositeSegments, doNotAddIntersections);
+						segment, visitedOppositeSegments, doNotAddIntersections, false);
 			} else {
 				boolean doNotAddIntersections = onlyForward;
 				processRouteSegment(ctx, true, graphReverseSegments, visitedOppositeSegments, segment,
-						visitedDirectSegments, doNotAddIntersections);
+						visitedDirectSegments, doNotAddIntersections, false);
 			}
 			updateCalculationProgress(ctx, graphDirectSegments, graphReverseSegments);
 
@@ -165,6 +179,182 @@ public class BinaryRoutePlanner {
 				throw new InterruptedException("Route calculation interrupted");
 			}
 		}
+		updateFinalCalculationProgress(ctx, graphDirectSegments, graphReverseSegments, visitedDirectSegments,
+				visitedOppositeSegments);
+		updateEvalCacheProgress(ctx, evalCacheHits, evalCacheMisses);
+		keepReverseSearchFrontier(ctx, end, recalculationEnd, finalSegment, visitedOppositeSegments);
+		return finalSegment;
+	}
+
+	private void keepReverseSearchFrontier(final RoutingContext ctx, RouteSegmentPoint end, RouteSegment recalculationEnd,
+			FinalRouteSegment finalSegment, TLongObjectHashMap<RouteSegment> visitedOppositeSegments) {
+		// reverse graph depends only on target when it's not adjusted by previous or precalculated route
+		if (ctx.config.incrementalRecalculation && finalSegment != null && recalculationEnd == null
+				&& ctx.precalculatedRouteDirection == null && ctx.planRouteIn2Directions()) {
+			ctx.reverseSearchFrontier = new ReverseSearchFrontier(end, visitedOppositeSegments);
+		} else {
+			ctx.reverseSearchFrontier = null;
+		}
+	}
+
+	/**
+	 * Recalculate route to the target of previous calculation from another start point.
+	 * Reverse graph of previous calculation (and tiles of routing context) are reused and only direct graph is expanded
+	 * until it meets visited reverse segments, so recalculation cost depends on deviation from the route
+	 * and not on route length.
+	 * @return final segment or null if direct graph couldn't reach reverse graph
+	 */
+	FinalRouteSegment searchRouteFromFrontier(final RoutingContext ctx, RouteSegmentPoint start,
+			ReverseSearchFrontier frontier) throws InterruptedException, IOException {
+		ctx.memoryOverhead = 1000;
+		RouteSegmentQueue graphDirectSegments = new RouteSegmentQueue(ctx.config.heuristicCoefficient);
+		TLongObjectHashMap<RouteSegment> visitedDirectSegments = new TLongObjectHashMap<RouteSegment>();
+		TLongObjectHashMap<RouteSegment> visitedOppositeSegments = frontier.visitedSegments;
+		RouteSegment startPos = initRouteSegment(ctx, start, true);
+		RouteSegment startNeg = initRouteSegment(ctx, start, false);
+		applyInitialDirection(ctx, start, startPos, startNeg);
+		float estimatedDistance = estimatedDistance(ctx, ctx.targetX, ctx.targetY, ctx.startX, ctx.startY);
+		if (startPos != null) {
+			startPos.distanceToEnd = estimatedDistance;
+			graphDirectSegments.add(startPos);
+		}
+		if (startNeg != null) {
+			startNeg.distanceToEnd = estimatedDistance;
+			graphDirectSegments.add(startNeg);
+		}
+		FinalRouteSegment finalSegment = null;
+		while (!graphDirectSegments.isEmpty()) {
+			RouteSegment segment = graphDirectSegments.poll();
+			if (segment instanceof FinalRouteSegment) {
+				finalSegment = (FinalRouteSegment) segment;
+				break;
+			}
+			ctx.memoryOverhead = (visitedDirectSegments.size() + visitedOppositeSegments.size()) * STANDARD_ROAD_VISITED_OVERHEAD
+					+ graphDirectSegments.size() * STANDARD_ROAD_IN_QUEUE_OVERHEAD;
+			if (ctx.memoryOverhead > ctx.config.memoryLimitation * 0.95) {
+				throw new IllegalStateException("There is not enough memory " + ctx.config.memoryLimitation / (1 << 20) + " Mb");
+			}
+			if (ctx.calculationProgress != null) {
+				ctx.calculationProgress.visitedSegments++;
+			}
+			processRouteSegment(ctx, false, graphDirectSegments, visitedDirectSegments, segment,
+					visitedOppositeSegments, false, false);
+			if (ctx.calculationProgress != null) {
+				ctx.calculationProgress.directSegmentQueueSize = graphDirectSegments.size();
+				if (ctx.calculationProgress.isCancelled) {
+					throw new InterruptedException("Route calculation interrupted");
+				}
+			}
+		}
+		if (ctx.calculationProgress != null) {
+			ctx.calculationProgress.visitedDirectSegments += visitedDirectSegments.size();
+			ctx.calculationProgress.directQueueSize += graphDirectSegments.size();
+		}
+		return finalSegment;
+	}
+
+	/**
+	 * One-to-many search (Dijkstra, heuristic is not used) from start to all targets.
+	 * Targets are stored as visited segments of opposite search, so they're found as final segments
+	 * and search stops when final segments of all targets are polled.
+	 * Target which is not reached within detourFactor * (straight line time at max speed) is considered not
+	 * reachable, so unreachable target doesn't make search expand the whole graph. If memory limit is reached,
+	 * search stops as well and targets which are not settled yet are not reachable.
+	 * @return final segment for each target (null if target is not reachable)
+	 */
+	FinalRouteSegment[] searchRouteOneToMany(final RoutingContext ctx, RouteSegmentPoint start,
+			RouteSegmentPoint[] targets, float detourFactor) throws InterruptedException, IOException {
+		ctx.memoryOverhead = 1000;
+		RouteSegmentQueue graphSegments = new RouteSegmentQueue(0);
+		TLongObjectHashMap<RouteSegment> visitedSegments = new TLongObjectHashMap<RouteSegment>();
+		TLongObjectHashMap<RouteSegment> targetSegments = new TLongObjectHashMap<RouteSegment>();
+		Map<RouteSegment, TIntArrayList> targetsBySegment = new IdentityHashMap<RouteSegment, TIntArrayList>();
+		FinalRouteSegment[] result = new FinalRouteSegment[targets.length];
+		float[] costLimits = new float[targets.length];
+		int remaining = 0;
+		for (int i = 0; i < targets.length; i++) {
+			RouteSegmentPoint t = targets[i];
+			if (t == null) {
+				continue;
+			}
+			// point is between ]segmentStart - 1, segmentStart]
+			int interval = Math.max(t.getSegmentStart() - 1, 0);
+			long posId = calculateRoutePointId(t.getRoad(), interval, true);
+			RouteSegment seg = targetSegments.get(posId);
+			if (seg == null) {
+				seg = new RouteSegment(t.getRoad(), t.getSegmentStart());
+				targetSegments.put(posId, seg);
+				targetSegments.put(calculateRoutePointId(t.getRoad(), interval, false), seg);
+				targetsBySegment.put(seg, new TIntArrayList(1));
+			}
+			targetsBySegment.get(seg).add(i);
+			costLimits[i] = Math.max(MIN_ONE_TO_MANY_COST_LIMIT,
+					detourFactor * estimatedDistance(ctx, t.preciseX, t.preciseY, start.preciseX, start.preciseY));
+			remaining++;
+		}
+		float costLimit = maxCostLimit(result, targets, costLimits);
+		RouteSegment startPos = initRouteSegment(ctx, start, true);
+		RouteSegment startNeg = initRouteSegment(ctx, start, false);
+		if (startPos != null) {
+			graphSegments.add(startPos);
+		}
+		if (startNeg != null) {
+			graphSegments.add(startNeg);
+		}
+		while (remaining > 0 && !graphSegments.isEmpty()) {
+			RouteSegment segment = graphSegments.poll();
+			if (segment.distanceFromStart > costLimit) {
+				// all targets which could be reached are settled
+				break;
+			}
+			if (segment instanceof FinalRouteSegment) {
+				FinalRouteSegment frs = (FinalRouteSegment) segment;
+				TIntArrayList inds = targetsBySegment.get(frs.opposite);
+				for (int k = 0; k < inds.size(); k++) {
+					if (result[inds.get(k)] == null) {
+						result[inds.get(k)] = frs;
+						remaining--;
+					}
+				}
+				costLimit = maxCostLimit(result, targets, costLimits);
+				continue;
+			}
+			ctx.memoryOverhead = visitedSegments.size() * STANDARD_ROAD_VISITED_OVERHEAD
+					+ graphSegments.size() * STANDARD_ROAD_IN_QUEUE_OVERHEAD;
+			if (ctx.memoryOverhead > ctx.config.memoryLimitation * 0.95) {
+				log.warn("One-to-many search stopped: there is not enough memory "
+						+ ctx.config.memoryLimitation / (1 << 20) + " Mb, " + remaining + " targets are not reached");
+				break;
+			}
+			if (ctx.calculationProgress != null) {
+				ctx.calculationProgress.visitedSegments++;
+			}
+			// search continues through target segments to reach targets behind them
+			processRouteSegment(ctx, false, graphSegments, visitedSegments, segment, targetSegments, false, true);
+			if (ctx.calculationProgress != null && ctx.calculationProgress.isCancelled) {
+				throw new InterruptedException("Route calculation interrupted");
+			}
+		}
+		if (ctx.calculationProgress != null) {
+			ctx.calculationProgress.visitedDirectSegments += visitedSegments.size();
+			ctx.calculationProgress.directQueueSize += graphSegments.size();
+		}
+		return result;
+	}
+
+	private static float maxCostLimit(FinalRouteSegment[] result, RouteSegmentPoint[] targets, float[] costLimits) {
+		float limit = 0;
+		for (int i = 0; i < targets.length; i++) {
+			if (targets[i] != null && result[i] == null) {
+				limit = Math.max(limit, costLimits[i]);
+			}
+		}
+		return limit;
+	}
+
+	private void updateFinalCalculationProgress(final RoutingContext ctx, RouteSegmentQueue graphDirectSegments,
+			RouteSegmentQueue graphReverseSegments, TLongObjectHashMap<RouteSegment> visitedDirectSegments,
+			TLongObjectHashMap<RouteSegment> visitedOppositeSegments) {
 		if (ctx.calculationProgress != null) {
 			ctx.calculationProgress.visitedDirectSegments += visitedDirectSegments.size();
 			ctx.calculationProgress.visitedOppositeSegments += visitedOppositeSegments.size();
@@ -173,11 +363,239 @@ public class BinaryRoutePlanner {
 			ctx.calculationProgress.oppositeQueueSize += graphReverseSegments.size();
 			ctx.calculationProgress.visitedOppositeSegments += visitedOppositeSegments.size();
 		}
+	}
+
+	private void updateEvalCacheProgress(final RoutingContext ctx, long evalCacheHits, long evalCacheMisses) {
+		if (ctx.calculationProgress != null) {
+			ctx.calculationProgress.evalCacheHits += ctx.config.router.getEvalCacheHits() - evalCacheHits;
+			ctx.calculationProgress.evalCacheMisses += ctx.config.router.getEvalCacheMisses() - evalCacheMisses;
+		}
+	}
+
+	private static ExecutorService parallelSearchExecutor;
+
+	// threads are reused by all parallel searches and end after a minute without routing
+	private static synchronized ExecutorService getParallelSearchExecutor() {
+		if (parallelSearchExecutor == null) {
+			ThreadPoolExecutor executor = new ThreadPoolExecutor(0, Integer.MAX_VALUE, 60L, TimeUnit.SECONDS,
+					new SynchronousQueue<Runnable>(), new ThreadFactory() {
+						@Override
+						public Thread newThread(Runnable r) {
+							Thread t = new Thread(r, "Reverse route search");
+							t.setDaemon(true);
+							return t;
+						}
+					});
+			parallelSearchExecutor = executor;
+		}
+		return parallelSearchExecutor;
+	}
+
+	/**
+	 * Same as {@link #searchRouteInternal} but direct and reverse graphs are expanded on separate threads.
+	 * Each direction expands its own queue and visited segments (segments of routing tiles are copied by
+	 * {@link RoutingContext#loadRouteSegment}), only lookups in the visited segments of the opposite direction
+	 * are synchronized (see {@link SharedVisitedSegments}).
+	 * Direction which polls final segment stops, the other one continues while it could still find a cheaper
+	 * meeting point and the cheapest final segment of both directions is returned.
+	 */
+	private FinalRouteSegment searchRouteInternalParallel(final RoutingContext ctx, RouteSegmentPoint start,
+			RouteSegmentPoint end, RouteSegmentQueue graphDirectSegments,
+			RouteSegmentQueue graphReverseSegments, TLongObjectHashMap<RouteSegment> visitedDirectSegments,
+			TLongObjectHashMap<RouteSegment> visitedOppositeSegments) throws InterruptedException, IOException {
+		AtomicBoolean stop = new AtomicBoolean(false);
+		DirectionSearch direct = new DirectionSearch(ctx, false, graphDirectSegments, visitedDirectSegments,
+				visitedOppositeSegments, start, "Route is not found from selected start point.", stop);
+		DirectionSearch reverse = new DirectionSearch(ctx, true, graphReverseSegments, visitedOppositeSegments,
+				visitedDirectSegments, end, "Route is not found to selected target point.", stop);
+		direct.opposite = reverse;
+		reverse.opposite = direct;
+
+		Future<Void> reverseTask = getParallelSearchExecutor().submit(reverse);
+		try {
+			direct.search();
+		} catch (IOException e) {
+			stopAndWait(stop, reverseTask);
+			throw e;
+		} catch (InterruptedException e) {
+			stopAndWait(stop, reverseTask);
+			throw e;
+		} catch (RuntimeException e) {
+			stopAndWait(stop, reverseTask);
+			throw e;
+		}
+		try {
+			reverseTask.get();
+		} catch (ExecutionException e) {
+			Throwable cause = e.getCause();
+			if (cause instanceof IOException) {
+				throw (IOException) cause;
+			} else if (cause instanceof InterruptedException) {
+				throw (InterruptedException) cause;
+			} else if (cause instanceof RuntimeException) {
+				throw (RuntimeException) cause;
+			} else if (cause instanceof Error) {
+				throw (Error) cause;
+			}
+			throw new IllegalStateException(cause);
+		}
+		FinalRouteSegment finalSegment = direct.finalSegment;
+		// cheapest meeting point, direct one on equal cost
+		if (finalSegment == null || (reverse.finalSegment != null
+				&& reverse.finalSegment.distanceFromStart < finalSegment.distanceFromStart)) {
+			finalSegment = reverse.finalSegment;
+		}
+		ctx.memoryOverhead = direct.memoryOverhead + reverse.memoryOverhead;
+		if (finalSegment != null && RoutingContext.SHOW_GC_SIZE) {
+			log.warn("Estimated overhead " + (ctx.memoryOverhead / (1 << 20)) + " mb");
+			printMemoryConsumption("Memory occupied after calculation : ");
+		}
+		updateFinalCalculationProgress(ctx, graphDirectSegments, graphReverseSegments, visitedDirectSegments,
+				visitedOppositeSegments);
 		return finalSegment;
 	}
 
+	private static void stopAndWait(AtomicBoolean stop, Future<Void> task) throws InterruptedException {
+		stop.set(true);
+		try {
+			task.get();
+		} catch (ExecutionException e) {
+			// error of the first failed direction is thrown
+		}
+	}
+
+	/**
+	 * Visited segments of one direction of parallel search. They are written only by own direction and
+	 * read by both, so only accesses are synchronized on the map (uncontended for own direction).
+	 * Segments are not modified after they are put.
+	 */
+	static class SharedVisitedSegments extends TLongObjectHashMap<RouteSegment> {
+
+		@Override
+		public synchronized RouteSegment get(long key) {
+			return super.get(key);
+		}
+
+		@Override
+		public synchronized RouteSegment put(long key, RouteSegment value) {
+			return super.put(key, value);
+		}
+
+		@Override
+		public synchronized boolean containsKey(long key) {
+			return super.containsKey(key);
+		}
+	}
+
+	private class DirectionSearch implements Callable<Void> {
+		final RoutingContext ctx;
+		final boolean reverseWaySearch;
+		final RouteSegmentQueue graphSegments;
+		final TLongObjectHashMap<RouteSegment> visitedSegments;
+		final TLongObjectHashMap<RouteSegment> oppositeSegments;
+		final RouteSegmentPoint pnt;
+		final String notFoundMsg;
+		final AtomicBoolean stop;
+		DirectionSearch opposite;
+		volatile int memoryOverhead;
+		// cheapest final segment of this direction (the first polled one)
+		volatile FinalRouteSegment finalSegment;
+
+		DirectionSearch(RoutingContext ctx, boolean reverseWaySearch, RouteSegmentQueue graphSegments,
+				TLongObjectHashMap<RouteSegment> visitedSegments, TLongObjectHashMap<RouteSegment> oppositeSegments,
+				RouteSegmentPoint pnt, String notFoundMsg, AtomicBoolean stop) {
+			this.ctx = ctx;
+			this.reverseWaySearch = reverseWaySearch;
+			this.graphSegments = graphSegments;
+			this.visitedSegments = visitedSegments;
+			this.oppositeSegments = oppositeSegments;
+			this.pnt = pnt;
+			this.notFoundMsg = notFoundMsg;
+			this.stop = stop;
+		}
+
+		@Override
+		public Void call() throws Exception {
+			try {
+				search();
+			} catch (Exception e) {
+				stop.set(true);
+				throw e;
+			}
+			return null;
+		}
+
+		void search() throws IOException, InterruptedException {
+			float heuristicCoefficient = ctx.config.heuristicCoefficient;
+			while (!stop.get()) {
+				if (graphSegments.isEmpty() && opposite.finalSegment != null) {
+					break;
+				}
+				checkIfGraphIsEmpty(ctx, true, graphSegments, pnt, visitedSegments, notFoundMsg);
+				RouteSegment segment = graphSegments.poll();
+				if (segment == null) {
+					// route is not found, stop opposite search as well
+					stop.set(true);
+					break;
+				}
+				if (TRACE_ROUTING) {
+					printRoad(">", segment, reverseWaySearch);
+				}
+				if (segment instanceof FinalRouteSegment) {
+					finalSegment = (FinalRouteSegment) segment;
+					if (TRACE_ROUTING) {
+						println("Final segment found");
+					}
+					break;
+				}
+				FinalRouteSegment oppositeFinal = opposite.finalSegment;
+				if (oppositeFinal != null && segment.distanceFromStart + heuristicCoefficient * segment.distanceToEnd
+						>= oppositeFinal.distanceFromStart) {
+					// final segments of this direction can't be cheaper than the one already found
+					break;
+				}
+				memoryOverhead = visitedSegments.size() * STANDARD_ROAD_VISITED_OVERHEAD
+						+ graphSegments.size() * STANDARD_ROAD_IN_QUEUE_OVERHEAD;
+				ctx.memoryOverhead = memoryOverhead + opposite.memoryOverhead;
+				if (ctx.memoryOverhead > ctx.config.memoryLimitation * 0.95) {
+					throw new IllegalStateException("There is not enough memory " + ctx.config.memoryLimitation / (1 << 20) + " Mb");
+				}
+				processRouteSegment(ctx, reverseWaySearch, graphSegments, visitedSegments, segment,
+						oppositeSegments, false, false);
+				updateCalculationProgress();
+				// check if interrupted
+				if (ctx.calculationProgress != null && ctx.calculationProgress.isCancelled) {
+					throw new InterruptedException("Route calculation interrupted");
+				}
+			}
+		}
+
+		private void updateCalculationProgress() {
+			RouteCalculationProgress p = ctx.calculationProgress;
+			if (p != null) {
+				RouteSegment peek = graphSegments.peek();
+				synchronized (p) {
+					p.visitedSegments++;
+					if (!reverseWaySearch) {
+						p.directSegmentQueueSize = graphSegments.size();
+						if (peek != null) {
+							p.distanceFromBegin = Math.max(peek.distanceFromStart, p.distanceFromBegin);
+							p.directDistance = peek.distanceFromStart + peek.distanceToEnd;
+						}
+					} else {
+						p.reverseSegmentQueueSize = graphSegments.size();
+						if (peek != null) {
+							p.distanceFromEnd = Math.max(peek.distanceFromStart + peek.distanceToEnd, p.distanceFromEnd);
+							p.reverseDistance = peek.distanceFromStart + peek.distanceToEnd;
+						}
+					}
+				}
+			}
+		}
+	}
+
 	protected void checkIfGraphIsEmpty(final RoutingContext ctx, boolean allowDirection,
-			PriorityQueue<RouteSegment> graphSegments, RouteSegmentPoint pnt, TLongObjectHashMap<RouteSegment> visited,
+			RouteSegmentQueue graphSegments, RouteSegmentPoint pnt, TLongObjectHashMap<RouteSegment> visited,
 			String msg) {
 		if (allowDirection && graphSegments.isEmpty()) {
 			if (pnt.others != null) {
@@ -247,27 +665,14 @@ public class BinaryRoutePlanner {
 
 
 	private void initQueuesWithStartEnd(final RoutingContext ctx, RouteSegment start, RouteSegment end,
-			RouteSegment recalculationEnd, PriorityQueue<RouteSegment> graphDirectSegments, PriorityQueue<RouteSegment> graphReverseSegments, 
+			RouteSegment recalculationEnd, RouteSegmentQueue graphDirectSegments, RouteSegmentQueue graphReverseSegments, 
 			TLongObjectHashMap<RouteSegment> visitedDirectSegments, TLongObjectHashMap<RouteSegment> visitedOppositeSegments) {
 		RouteSegment startPos = initRouteSegment(ctx, start, true);
 		RouteSegment startNeg = initRouteSegment(ctx, start, false);
 		RouteSegment endPos = initRouteSegment(ctx, end, true);
 		RouteSegment endNeg = initRouteSegment(ctx, end, false);
 		// for start : f(start) = g(start) + h(start) = 0 + h(start) = h(start)
-		if (ctx.config.initialDirection != null) {
-			// mark here as positive for further check
-			double plusDir = start.getRoad().directionRoute(start.getSegmentStart(), true);
-			double diff = plusDir - ctx.config.initialDirection;
-			if (Math.abs(MapUtils.alignAngleDifference(diff)) <= Math.PI / 3) {
-				if (startNeg != null) {
-					startNeg.distanceFromStart += 500;
-				}
-			} else if (Math.abs(MapUtils.alignAngleDifference(diff - Math.PI)) <= Math.PI / 3) {
-				if (startPos != null) {
-					startPos.distanceFromStart += 500;
-				}
-			}
-		}
+		applyInitialDirection(ctx, start, startPos, startNeg);
 		if (recalculationEnd != null) {
 			ctx.targetX = recalculationEnd.getRoad().getPoint31XTile(recalculationEnd.getSegmentStart());
 			ctx.targetY = recalculationEnd.getRoad().getPoint31YTile(recalculationEnd.getSegmentStart());
@@ -302,6 +707,24 @@ public class BinaryRoutePlanner {
 	}
 
 
+	private void applyInitialDirection(final RoutingContext ctx, RouteSegment start, RouteSegment startPos,
+			RouteSegment startNeg) {
+		if (ctx.config.initialDirection != null) {
+			// mark here as positive for further check
+			double plusDir = start.getRoad().directionRoute(start.getSegmentStart(), true);
+			double diff = plusDir - ctx.config.initialDirection;
+			if (Math.abs(MapUtils.alignAngleDifference(diff)) <= Math.PI / 3) {
+				if (startNeg != null) {
+					startNeg.distanceFromStart += 500;
+				}
+			} else if (Math.abs(MapUtils.alignAngleDifference(diff - Math.PI)) <= Math.PI / 3) {
+				if (startPos != null) {
+					startPos.distanceFromStart += 500;
+				}
+			}
+		}
+	}
+
 	private void printMemoryConsumption(String string) {
 		long h1 = RoutingContext.runGCUsedMemory();
 		float mb = (1 << 20);
@@ -309,8 +732,8 @@ public class BinaryRoutePlanner {
 	}
 
 
-	private void updateCalculationProgress(final RoutingContext ctx, PriorityQueue<RouteSegment> graphDirectSegments,
-			PriorityQueue<RouteSegment> graphReverseSegments) {
+	private void updateCalculationProgress(final RoutingContext ctx, RouteSegmentQueue graphDirectSegments,
+			RouteSegmentQueue graphReverseSegments) {
 		if (ctx.calculationProgress != null) {
 			ctx.calculationProgress.reverseSegmentQueueSize = graphReverseSegments.size();
 			ctx.calculationProgress.directSegmentQueueSize = graphDirectSegments.size();
@@ -388,6 +811,10 @@ public class BinaryRoutePlanner {
 			printInfo("Visited segments: " + ctx.getVisitedSegments() + ", relaxed roads " + p.relaxedSegments);
 			printInfo("Priority queues sizes : " + p.directQueueSize + "/" + p.oppositeQueueSize);
 			printInfo("Visited interval sizes: " + p.visitedDirectSegments + "/" + p.visitedOppositeSegments);
+			printInfo("Router evaluation cache hits/misses: " + p.evalCacheHits + "/" + p.evalCacheMisses);
+			if (ctx.tileDataCache != null) {
+				printInfo("Tile data cache: " + ctx.tileDataCache);
+			}
 		}
 
 	}
@@ -395,8 +822,9 @@ public class BinaryRoutePlanner {
 
 	@SuppressWarnings("unused")
 	private void processRouteSegment(final RoutingContext ctx, boolean reverseWaySearch,
-			PriorityQueue<RouteSegment> graphSegments, TLongObjectHashMap<RouteSegment> visitedSegments, 
-            RouteSegment segment, TLongObjectHashMap<RouteSegment> oppositeSegments, boolean doNotAddIntersections) throws IOException {
+			RouteSegmentQueue graphSegments, TLongObjectHashMap<RouteSegment> visitedSegments, 
+            RouteSegment segment, TLongObjectHashMap<RouteSegment> oppositeSegments, boolean doNotAddIntersections,
+			boolean passThroughOpposite) throws IOException {
 		final RouteDataObject road = segment.road;
 		boolean initDirectionAllowed = checkIfInitialMovementAllowedOnSegment(ctx, reverseWaySearch, visitedSegments, segment, road);
 		if (TEST_SPECIFIC && road.getId() >> 6 == TEST_ID) {
@@ -461,7 +889,7 @@ public class BinaryRoutePlanner {
 					segmentPoint, segmentDist, obstaclesTime);
 			obstaclesTime += obstacle;
 			obstaclesTime += heightObstacle;
-			if (alreadyVisited) {
+			if (alreadyVisited && !passThroughOpposite) {
 				directionAllowed = false;
 				continue;
 			}
@@ -556,12 +984,12 @@ public class BinaryRoutePlanner {
 	}
 
 	private boolean checkIfOppositeSegmentWasVisited(final RoutingContext ctx, boolean reverseWaySearch,
-			PriorityQueue<RouteSegment> graphSegments, RouteSegment segment, TLongObjectHashMap<RouteSegment> oppositeSegments,
+			RouteSegmentQueue graphSegments, RouteSegment segment, TLongObjectHashMap<RouteSegment> oppositeSegments,
 			int segmentPoint, float segmentDist, float obstaclesTime) {
 		RouteDataObject road = segment.getRoad();
 		long opp = calculateRoutePointId(road, segment.isPositive() ? segmentPoint - 1 : segmentPoint, !segment.isPositive());
-		if (oppositeSegments.containsKey(opp)) {
-			RouteSegment opposite = oppositeSegments.get(opp);
+		RouteSegment opposite = oppositeSegments.get(opp);
+		if (opposite != null) {
 			RouteSegment to = reverseWaySearch ? getParentDiffId(segment) : getParentDiffId(opposite);
 			RouteSegment from = !reverseWaySearch ? getParentDiffId(segment) : getParentDiffId(opposite);
 			if (checkViaRestrictions(from, to)) {
@@ -628,8 +1056,13 @@ public class BinaryRoutePlanner {
 				(parent == null || parent.getRoad().getRestrictionLength() == 0)) {
 			return false;
 		}
-		ctx.segmentsToVisitPrescripted.clear();
-		ctx.segmentsToVisitNotForbidden.clear();
+		if (reverseWay) {
+			ctx.reverseSegmentsToVisitPrescripted.clear();
+			ctx.reverseSegmentsToVisitNotForbidden.clear();
+		} else {
+			ctx.segmentsToVisitPrescripted.clear();
+			ctx.segmentsToVisitNotForbidden.clear();
+		}
 		processRestriction(ctx, inputNext, reverseWay, 0, road);
 		if (parent != null) {
 			processRestriction(ctx, inputNext, reverseWay, road.id, parent.getRoad());
@@ -641,6 +1074,8 @@ public class BinaryRoutePlanner {
 	protected void processRestriction(RoutingContext ctx, RouteSegment inputNext, boolean reverseWay, long viaId,
 			RouteDataObject road) {
 		boolean via = viaId != 0;
+		List<RouteSegment> segmentsToVisitPrescripted = reverseWay ? ctx.reverseSegmentsToVisitPrescripted : ctx.segmentsToVisitPrescripted;
+		List<RouteSegment> segmentsToVisitNotForbidden = reverseWay ? ctx.reverseSegmentsToVisitNotForbidden : ctx.segmentsToVisitNotForbidden;
 		RouteSegment next = inputNext;
 		boolean exclusiveRestriction = false;
 		while (next != null) {
@@ -690,11 +1125,11 @@ public class BinaryRoutePlanner {
 					|| type == MapRenderingTypes.RESTRICTION_NO_STRAIGHT_ON || type == MapRenderingTypes.RESTRICTION_NO_U_TURN) {
 				// next = next.next; continue;
 				if (via) {
-					ctx.segmentsToVisitPrescripted.remove(next);
+					segmentsToVisitPrescripted.remove(next);
 				}
 			} else if (type == -1) {
 				// case no restriction
-				ctx.segmentsToVisitNotForbidden.add(next);
+				segmentsToVisitNotForbidden.add(next);
 			} else {
 				if (!via) {
 					// case exclusive restriction (only_right, only_straight, ...)
@@ -703,22 +1138,22 @@ public class BinaryRoutePlanner {
 					// 2. in case we are going forward we have one "in" and many "out"
 					if (!reverseWay) {
 						exclusiveRestriction = true;
-						ctx.segmentsToVisitNotForbidden.clear();
-						ctx.segmentsToVisitPrescripted.add(next);
+						segmentsToVisitNotForbidden.clear();
+						segmentsToVisitPrescripted.add(next);
 					} else {
-						ctx.segmentsToVisitNotForbidden.add(next);
+						segmentsToVisitNotForbidden.add(next);
 					}
 				}
 			}
 			next = next.next;
 		}
 		if (!via) {
-			ctx.segmentsToVisitPrescripted.addAll(ctx.segmentsToVisitNotForbidden);
+			segmentsToVisitPrescripted.addAll(segmentsToVisitNotForbidden);
 		}
 	}
 
 
-	private RouteSegment processIntersections(RoutingContext ctx, PriorityQueue<RouteSegment> graphSegments,
+	private RouteSegment processIntersections(RoutingContext ctx, RouteSegmentQueue graphSegments,
 			TLongObjectHashMap<RouteSegment> visitedSegments,  float distFromStart, RouteSegment segment,
 			short segmentPoint, RouteSegment inputNext, boolean reverseWaySearch, boolean doNotAddIntersections, 
 			boolean[] processFurther) {
@@ -731,7 +1166,8 @@ public class BinaryRoutePlanner {
 		} else {
 			thereAreRestrictions = proccessRestrictions(ctx, segment, inputNext, reverseWaySearch);
 			if (thereAreRestrictions) {
-				nextIterator = ctx.segmentsToVisitPrescripted.iterator();
+				nextIterator = reverseWaySearch ? ctx.reverseSegmentsToVisitPrescripted.iterator()
+						: ctx.segmentsToVisitPrescripted.iterator();
 				if (TRACE_ROUTING) {
 					println("  >> There are restrictions");
 				}
@@ -789,7 +1225,7 @@ public class BinaryRoutePlanner {
 
 
 	@SuppressWarnings("unused")
-	private void processOneRoadIntersection(RoutingContext ctx, PriorityQueue<RouteSegment> graphSegments,
+	private void processOneRoadIntersection(RoutingContext ctx, RouteSegmentQueue graphSegments,
 			TLongObjectHashMap<RouteSegment> visitedSegments, float distFromStart, float distanceToEnd,  RouteSegment segment,
 			int segmentPoint, RouteSegment next) {
 		if (next != null) {
@@ -803,7 +1239,8 @@ public class BinaryRoutePlanner {
 						" distToEnd=" + distanceToEnd +
 						" segmentPoint=" + segmentPoint + " -- ", next, true);
 			}
-			RouteSegment visIt = visitedSegments.get(calculateRoutePointId(next, next.isPositive()));
+			long nextId = calculateRoutePointId(next, next.isPositive());
+			RouteSegment visIt = visitedSegments.get(nextId);
 			boolean toAdd = true;
 			if (visIt != null) {
 				// the segment was already visited! We need to follow better route if it exists
@@ -835,7 +1272,8 @@ public class BinaryRoutePlanner {
 				// put additional information to recover whole route after
 				next.setParentRoute(segment);
 				next.setParentSegmentEnd(segmentPoint);
-				graphSegments.add(next);
+				// worse duplicate of segment which is already in queue is not added
+				graphSegments.add(next, nextId);
 			}
 		}
 	}
@@ -1014,6 +1452,29 @@ public class BinaryRoutePlanner {
 		}
 	}
 
+	/**
+	 * Visited segments of reverse search (distance from start is exact time to the target),
+	 * they aren't modified by following searches from the frontier.
+	 */
+	public static class ReverseSearchFrontier {
+		final RouteSegmentPoint end;
+		final TLongObjectHashMap<RouteSegment> visitedSegments;
+
+		ReverseSearchFrontier(RouteSegmentPoint end, TLongObjectHashMap<RouteSegment> visitedSegments) {
+			this.end = end;
+			this.visitedSegments = visitedSegments;
+		}
+
+		public boolean isSameTarget(RouteSegmentPoint target) {
+			return target.getRoad().getId() == end.getRoad().getId() && target.getSegmentStart() == end.getSegmentStart()
+					&& target.preciseX == end.preciseX && target.preciseY == end.preciseY;
+		}
+
+		public int getVisitedSegments() {
+			return visitedSegments.size();
+		}
+	}
+
 	static class FinalRouteSegment extends RouteSegment {
 
 		boolean reverseWaySearch;
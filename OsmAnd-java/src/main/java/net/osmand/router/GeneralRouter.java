@@ -44,6 +44,8 @@ public class GeneralRouter implements VehicleRouter {
 	public static final String VEHICLE_LENGTH = "length";
 
 	private static boolean USE_CACHE = true;
+	// evaluate road types with rules compiled per route region instead of interpreting rules
+	public static boolean USE_COMPILED_RULES = true;
 	public static long TIMER = 0;
 
 	private final RouteAttributeContext[] objectAttributes;
@@ -78,7 +80,9 @@ public class GeneralRouter implements VehicleRouter {
 	private TLongHashSet impassableRoads;
 	private GeneralRouterProfile profile;
 	
-	Map<RouteRegion, Map<IntHolder, Float>>[] evalCache;	
+	// evaluation cache is shared by threads without locking, rule evaluation itself is not thread safe
+	// and is synchronized (router is shared by direct and reverse search)
+	private RouteEvalCache evalCache;
 	
 	public enum RouteDataObjectAttribute {
 		ROAD_SPEED("speed"),
@@ -180,13 +184,16 @@ public class GeneralRouter implements VehicleRouter {
 
 	}
 
-	@SuppressWarnings("unchecked")
 	private void initCaches() {
-		int l = RouteDataObjectAttribute.values().length;
-		evalCache = new Map[l];
-		for (int i = 0; i < l; i++) {
-			evalCache[i] = new HashMap<>();
-		}
+		evalCache = new RouteEvalCache();
+	}
+
+	public long getEvalCacheHits() {
+		return evalCache.getHits();
+	}
+
+	public long getEvalCacheMisses() {
+		return evalCache.getMisses();
 	}
 
 	public String getFilename() {
@@ -267,9 +274,9 @@ public class GeneralRouter implements VehicleRouter {
 
 	@Override
 	public boolean acceptLine(RouteDataObject way) {
-		Float res = getCache(RouteDataObjectAttribute.ACCESS, way);
-		if(res == null) {
-			res = (float) getObjContext(RouteDataObjectAttribute.ACCESS).evaluateInt(way, 0);
+		float res = getCache(RouteDataObjectAttribute.ACCESS, way);
+		if (Float.isNaN(res)) {
+			res = evaluateInt(RouteDataObjectAttribute.ACCESS, way, 0);
 			putCache(RouteDataObjectAttribute.ACCESS, way, res);
 		}
 		if(impassableRoads != null && impassableRoads.contains(way.id)) {
@@ -361,10 +368,13 @@ public class GeneralRouter implements VehicleRouter {
 	public float defineObstacle(RouteDataObject road, int point, boolean dir) {
 		int[] pointTypes = road.getPointTypes(point);
 		if(pointTypes != null) {
-			Float obst = getCache(RouteDataObjectAttribute.OBSTACLES, road.region, pointTypes, dir);
-			if(obst == null) {
+			float obst = getCache(RouteDataObjectAttribute.OBSTACLES, road.region, pointTypes, dir);
+			if (Float.isNaN(obst)) {
 				int[] filteredPointTypes = filterDirectionTags(road, pointTypes, dir);
-				obst = getObjContext(RouteDataObjectAttribute.OBSTACLES).evaluateFloat(road.region, filteredPointTypes, 0);
+				RouteAttributeContext objContext = getObjContext(RouteDataObjectAttribute.OBSTACLES);
+				synchronized (this) {
+					obst = objContext.evaluateFloat(road.region, filteredPointTypes, 0);
+				}
 				putCache(RouteDataObjectAttribute.OBSTACLES, road.region, pointTypes, obst, dir);
 			}
 			return obst;
@@ -372,16 +382,17 @@ public class GeneralRouter implements VehicleRouter {
 		return 0;
 	}
 	
-	TIntArrayList filteredRules = new TIntArrayList();
-	
 	@Override
 	public float defineRoutingObstacle(RouteDataObject road, int point, boolean dir) {
 		int[] pointTypes = road.getPointTypes(point);
 		if(pointTypes != null) {
-			Float obst = getCache(RouteDataObjectAttribute.ROUTING_OBSTACLES, road.region, pointTypes, dir);
-			if(obst == null) {
+			float obst = getCache(RouteDataObjectAttribute.ROUTING_OBSTACLES, road.region, pointTypes, dir);
+			if (Float.isNaN(obst)) {
 				int[] filteredPointTypes = filterDirectionTags(road, pointTypes, dir);
-				obst = getObjContext(RouteDataObjectAttribute.ROUTING_OBSTACLES).evaluateFloat(road.region, filteredPointTypes, 0);
+				RouteAttributeContext objContext = getObjContext(RouteDataObjectAttribute.ROUTING_OBSTACLES);
+				synchronized (this) {
+					obst = objContext.evaluateFloat(road.region, filteredPointTypes, 0);
+				}
 				putCache(RouteDataObjectAttribute.ROUTING_OBSTACLES, road.region, pointTypes, obst, dir);
 			}
 			return obst;
@@ -428,6 +439,12 @@ public class GeneralRouter implements VehicleRouter {
 		if(!heightObstacles) {
 			return 0;
 		}
+		synchronized (this) {
+			return calculateHeightObstacle(road, startIndex, endIndex);
+		}
+	}
+
+	private double calculateHeightObstacle(RouteDataObject road, short startIndex, short endIndex) {
 		float[] heightArray = road.calculateHeightArray();
 		if(heightArray == null || heightArray.length == 0 ) {
 			return 0;
@@ -456,24 +473,24 @@ public class GeneralRouter implements VehicleRouter {
 	
 	@Override
 	public int isOneWay(RouteDataObject road) {
-		Float res = getCache(RouteDataObjectAttribute.ONEWAY, road);
-		if(res == null) {
-			res = (float) getObjContext(RouteDataObjectAttribute.ONEWAY).evaluateInt(road, 0);
+		float res = getCache(RouteDataObjectAttribute.ONEWAY, road);
+		if (Float.isNaN(res)) {
+			res = evaluateInt(RouteDataObjectAttribute.ONEWAY, road, 0);
 			putCache(RouteDataObjectAttribute.ONEWAY, road, res);
 		}
-		return res.intValue();
+		return (int) res;
 	}
 	
 	@Override
-	public boolean isArea(RouteDataObject road) {
+	public synchronized boolean isArea(RouteDataObject road) {
 		return getObjContext(RouteDataObjectAttribute.AREA).evaluateInt(road, 0) == 1;
 	}
 	
 	@Override
 	public float getPenaltyTransition(RouteDataObject road) {
-		Float vl = getCache(RouteDataObjectAttribute.PENALTY_TRANSITION, road);
-		if (vl == null) {
-			vl = (float) getObjContext(RouteDataObjectAttribute.PENALTY_TRANSITION).evaluateInt(road, 0);
+		float vl = getCache(RouteDataObjectAttribute.PENALTY_TRANSITION, road);
+		if (Float.isNaN(vl)) {
+			vl = evaluateInt(RouteDataObjectAttribute.PENALTY_TRANSITION, road, 0);
 			putCache(RouteDataObjectAttribute.PENALTY_TRANSITION, road, vl);
 		}
 		return vl;
@@ -481,9 +498,9 @@ public class GeneralRouter implements VehicleRouter {
 
 	@Override
 	public float defineRoutingSpeed(RouteDataObject road) {
-		Float definedSpd = getCache(RouteDataObjectAttribute.ROAD_SPEED, road);
-		if (definedSpd == null) {
-			float spd = getObjContext(RouteDataObjectAttribute.ROAD_SPEED).evaluateFloat(road, defaultSpeed);
+		float definedSpd = getCache(RouteDataObjectAttribute.ROAD_SPEED, road);
+		if (Float.isNaN(definedSpd)) {
+			float spd = evaluateFloat(RouteDataObjectAttribute.ROAD_SPEED, road, defaultSpeed);
 			definedSpd = Math.max(Math.min(spd, maxSpeed), minSpeed);
 			putCache(RouteDataObjectAttribute.ROAD_SPEED, road, definedSpd);
 		}
@@ -494,12 +511,12 @@ public class GeneralRouter implements VehicleRouter {
 	public float defineVehicleSpeed(RouteDataObject road) {
 		// don't use cache cause max/min is different for routing speed
 		if (maxVehicleSpeed != maxSpeed) {
-			float spd = getObjContext(RouteDataObjectAttribute.ROAD_SPEED).evaluateFloat(road, defaultSpeed);
+			float spd = evaluateFloat(RouteDataObjectAttribute.ROAD_SPEED, road, defaultSpeed);
 			return Math.max(Math.min(spd, maxVehicleSpeed), minSpeed);
 		}
-		Float sp = getCache(RouteDataObjectAttribute.ROAD_SPEED, road);
-		if (sp == null) {
-			float spd = getObjContext(RouteDataObjectAttribute.ROAD_SPEED).evaluateFloat(road, defaultSpeed);
+		float sp = getCache(RouteDataObjectAttribute.ROAD_SPEED, road);
+		if (Float.isNaN(sp)) {
+			float spd = evaluateFloat(RouteDataObjectAttribute.ROAD_SPEED, road, defaultSpeed);
 			sp = Math.max(Math.min(spd, maxVehicleSpeed), minSpeed);
 			putCache(RouteDataObjectAttribute.ROAD_SPEED, road, sp);
 		}
@@ -508,85 +525,42 @@ public class GeneralRouter implements VehicleRouter {
 	
 	@Override
 	public float defineSpeedPriority(RouteDataObject road) {
-		Float sp = getCache(RouteDataObjectAttribute.ROAD_PRIORITIES, road);
-		if(sp == null) {
-			sp = getObjContext(RouteDataObjectAttribute.ROAD_PRIORITIES).evaluateFloat(road, 1f);
-			putCache(RouteDataObjectAttribute.ROAD_PRIORITIES, road, sp, false);
+		float sp = getCache(RouteDataObjectAttribute.ROAD_PRIORITIES, road);
+		if (Float.isNaN(sp)) {
+			sp = evaluateFloat(RouteDataObjectAttribute.ROAD_PRIORITIES, road, 1f);
+			putCache(RouteDataObjectAttribute.ROAD_PRIORITIES, road, sp);
 		}
 		return sp;
 	}
 
-	private void putCache(RouteDataObjectAttribute attr, RouteDataObject road, Float val) {
-		putCache(attr, road.region, road.types, val, false);
+	private synchronized float evaluateFloat(RouteDataObjectAttribute attr, RouteDataObject road, float defValue) {
+		return getObjContext(attr).evaluateFloat(road, defValue);
 	}
-	
-	private void putCache(RouteDataObjectAttribute attr, RouteDataObject road, Float val, boolean extra) {
-		putCache(attr, road.region, road.types, val, extra);
+
+	private synchronized int evaluateInt(RouteDataObjectAttribute attr, RouteDataObject road, int defValue) {
+		return getObjContext(attr).evaluateInt(road, defValue);
 	}
-	
-	private void putCache(RouteDataObjectAttribute attr, RouteRegion reg, int[] types, Float val, boolean extra) {
-//		TIMER -= System.nanoTime();
-		Map<RouteRegion, Map<IntHolder, Float>> ch = evalCache[attr.ordinal()];
-		if (USE_CACHE) {
-			Map<IntHolder, Float> rM = ch.get(reg);
-			if (rM == null) {
-				rM = new HashMap<IntHolder, Float>();
-				ch.put(reg, rM);
-			}
-			rM.put(new IntHolder(types, extra), val);
-		}
-//		TIMER += System.nanoTime();
+
+	private void putCache(RouteDataObjectAttribute attr, RouteDataObject road, float val) {
+		putCache(attr, road.region, road.types, val, false);
 	}
 	
-	class IntHolder {
-		private final int[] array;
-		private final boolean extra;
-
-		IntHolder(int[] ts, boolean extra) {
-			array = ts;
-			this.extra = extra;
-		}
-
-		@Override
-		public int hashCode() {
-			return Arrays.hashCode(array) + (extra ? 1 : 0);
-		}
-
-		@Override
-		public boolean equals(Object other) {
-			if (array == other) {
-				return true;
-			}
-			if (!(other instanceof IntHolder)) {
-				return false;
-			}
-			if (((IntHolder) other).extra != this.extra) {
-				return false;
-			}
-			// noinspection unchecked
-			return Arrays.equals(array, ((IntHolder) other).array);
+	private void putCache(RouteDataObjectAttribute attr, RouteRegion reg, int[] types, float val, boolean extra) {
+		if (USE_CACHE) {
+			evalCache.put(attr.ordinal(), reg, types, extra, val);
 		}
 	}
 
-	private Float getCache(RouteDataObjectAttribute attr, RouteDataObject road) {
+	private float getCache(RouteDataObjectAttribute attr, RouteDataObject road) {
 		return getCache(attr, road.region, road.types, false);
 	}
 	
-	private Float getCache(RouteDataObjectAttribute attr, RouteRegion reg, int[] types, boolean extra) {
-		Map<RouteRegion, Map<IntHolder, Float>> ch = evalCache[attr.ordinal()];
-//		TIMER -= System.nanoTime();
+	// returns Float.NaN if value is not cached
+	private float getCache(RouteDataObjectAttribute attr, RouteRegion reg, int[] types, boolean extra) {
 		if (USE_CACHE) {
-			Map<IntHolder, Float> rM = ch.get(reg);
-			if (rM == null) {
-				return null;
-			}
-			Float vl = rM.get(new IntHolder(types, extra));
-			if(vl != null) {
-//				TIMER += System.nanoTime();
-				return vl;
-			}
+			return evalCache.get(attr.ordinal(), reg, types, extra);
 		}
-		return null;
+		return Float.NaN;
 	}
 
 	@Override
@@ -738,6 +712,8 @@ public class GeneralRouter implements VehicleRouter {
 	public class RouteAttributeContext {
 		List<RouteAttributeEvalRule> rules = new ArrayList<RouteAttributeEvalRule>();
 		ParameterContext paramContext = null;
+		// compiled lazily on first evaluation, rules are not expected to change after that
+		private CompiledRules compiledRules;
 		
 		public RouteAttributeContext(){
 		}
@@ -772,7 +748,17 @@ public class GeneralRouter implements VehicleRouter {
 		}
 		
 		private Object evaluate(RouteDataObject ro) {
-			return evaluate(convert(ro.region, ro.types));
+			return evaluate(ro.region, ro.types);
+		}
+
+		private Object evaluate(RouteRegion region, int[] types) {
+			if (USE_COMPILED_RULES) {
+				if (compiledRules == null) {
+					compiledRules = new CompiledRules(this);
+				}
+				return compiledRules.evaluate(region, types);
+			}
+			return evaluate(convert(region, types));
 		}
 
 		public void printRules(PrintStream out) {
@@ -785,6 +771,7 @@ public class GeneralRouter implements VehicleRouter {
 			RouteAttributeEvalRule ev = new RouteAttributeEvalRule();
 			ev.registerSelectValue(selectValue, selectType);
 			rules.add(ev);	
+			compiledRules = null;
 			return ev;
 		}
 		
@@ -831,7 +818,7 @@ public class GeneralRouter implements VehicleRouter {
 		}
 		
 		public int evaluateInt(RouteRegion region, int[] types, int defValue) {
-			Object o = evaluate(convert(region, types));
+			Object o = evaluate(region, types);
 			if(!(o instanceof Number)){
 				return defValue;
 			}
@@ -855,7 +842,7 @@ public class GeneralRouter implements VehicleRouter {
 		}
 		
 		public float evaluateFloat(RouteRegion region, int[] types, float defValue) {
-			Object o = evaluate(convert(region, types));
+			Object o = evaluate(region, types);
 			if(!(o instanceof Number)) {
 				return defValue;
 			}
@@ -890,6 +877,197 @@ public class GeneralRouter implements VehicleRouter {
 		}
 	}
 
+	/**
+	 * Rules of attribute context compiled to bit masks of features (tag=value or tag present).
+	 * Region types are mapped to features once per region, so evaluation of road types is a few array lookups
+	 * and mask comparisons per rule. Only rules with expressions fall back to interpreted check.
+	 */
+	private class CompiledRules {
+		private final RouteAttributeContext context;
+		private final Map<Integer, Integer> valueFeatures = new HashMap<Integer, Integer>();
+		private final Map<String, Integer> tagFeatures = new HashMap<String, Integer>();
+		private final CompiledRule[] rules;
+		private final long[] roadFeatures;
+		private final Map<RouteRegion, RegionTypes> regions = new HashMap<RouteRegion, RegionTypes>();
+		private RegionTypes lastRegion;
+
+		CompiledRules(RouteAttributeContext context) {
+			this.context = context;
+			rules = new CompiledRule[context.rules.size()];
+			for (int i = 0; i < rules.length; i++) {
+				rules[i] = new CompiledRule(context.rules.get(i));
+			}
+			int words = ((valueFeatures.size() + tagFeatures.size()) >> 6) + 1;
+			for (CompiledRule r : rules) {
+				r.required = r.required.length == words ? r.required : Arrays.copyOf(r.required, words);
+				r.forbidden = r.forbidden.length == words ? r.forbidden : Arrays.copyOf(r.forbidden, words);
+			}
+			roadFeatures = new long[words];
+		}
+
+		private <T> int getFeature(Map<T, Integer> features, T key) {
+			Integer f = features.get(key);
+			return f == null ? -1 : f;
+		}
+
+		private int registerFeature(Object key) {
+			Integer f = key instanceof String ? tagFeatures.get(key) : valueFeatures.get(key);
+			if (f == null) {
+				f = valueFeatures.size() + tagFeatures.size();
+				if (key instanceof String) {
+					tagFeatures.put((String) key, f);
+				} else {
+					valueFeatures.put((Integer) key, f);
+				}
+			}
+			return f;
+		}
+
+		Object evaluate(RouteRegion reg, int[] types) {
+			RegionTypes rt = lastRegion;
+			if (rt == null || rt.region != reg) {
+				rt = regions.get(reg);
+				if (rt == null) {
+					rt = new RegionTypes(reg);
+					regions.put(reg, rt);
+				}
+				lastRegion = rt;
+			}
+			Arrays.fill(roadFeatures, 0);
+			for (int k = 0; k < types.length; k++) {
+				int t = types[k];
+				rt.init(t);
+				int f = rt.valueFeature[t];
+				if (f >= 0) {
+					roadFeatures[f >> 6] |= 1L << f;
+				}
+				f = rt.tagFeature[t];
+				if (f >= 0) {
+					roadFeatures[f >> 6] |= 1L << f;
+				}
+			}
+			BitSet convertedTypes = null;
+			for (CompiledRule r : rules) {
+				if (!r.matches(roadFeatures)) {
+					continue;
+				}
+				if (r.rule.expressions.size() > 0) {
+					if (convertedTypes == null) {
+						convertedTypes = context.convert(reg, types);
+					}
+					if (!r.rule.checkExpressions(convertedTypes, context.paramContext)) {
+						continue;
+					}
+				}
+				Object o = r.selectValue(rt, types);
+				if (o != null) {
+					return o;
+				}
+			}
+			return null;
+		}
+
+		private class RegionTypes {
+			final RouteRegion region;
+			int[] universalType = new int[0];
+			int[] valueFeature = new int[0];
+			int[] tagFeature = new int[0];
+
+			RegionTypes(RouteRegion region) {
+				this.region = region;
+			}
+
+			void init(int t) {
+				if (t >= universalType.length) {
+					int l = Math.max(t + 1, region.routeEncodingRules.size());
+					int p = universalType.length;
+					universalType = Arrays.copyOf(universalType, l);
+					valueFeature = Arrays.copyOf(valueFeature, l);
+					tagFeature = Arrays.copyOf(tagFeature, l);
+					Arrays.fill(universalType, p, l, -1);
+				}
+				if (universalType[t] == -1) {
+					RouteTypeRule r = region.quickGetEncodingRule(t);
+					int id = registerTagValueAttribute(r.getTag(), r.getValue());
+					universalType[t] = id;
+					valueFeature[t] = getFeature(valueFeatures, id);
+					tagFeature[t] = getFeature(tagFeatures, r.getTag());
+				}
+			}
+		}
+
+		private class CompiledRule {
+			final RouteAttributeEvalRule rule;
+			long[] required = new long[0];
+			long[] forbidden = new long[0];
+			// tag of $tag select value
+			String selectTag;
+			Object value;
+
+			CompiledRule(RouteAttributeEvalRule rule) {
+				this.rule = rule;
+				for (int i = rule.filterTypes.nextSetBit(0); i >= 0; i = rule.filterTypes.nextSetBit(i + 1)) {
+					required = setBit(required, registerFeature(i));
+				}
+				for (int i = rule.filterNotTypes.nextSetBit(0); i >= 0; i = rule.filterNotTypes.nextSetBit(i + 1)) {
+					forbidden = setBit(forbidden, registerFeature(i));
+				}
+				for (String tag : rule.onlyTags) {
+					required = setBit(required, registerFeature(tag));
+				}
+				for (String tag : rule.onlyNotTags) {
+					forbidden = setBit(forbidden, registerFeature(tag));
+				}
+				value = rule.selectValue;
+				if (value instanceof String && value.toString().startsWith("$")) {
+					selectTag = value.toString().substring(1);
+				} else if (value instanceof String && value.toString().startsWith(":")) {
+					String p = value.toString().substring(1);
+					ParameterContext paramContext = context.paramContext;
+					if (paramContext != null && paramContext.vars.containsKey(p)) {
+						value = parseValue(paramContext.vars.get(p), rule.selectType);
+					} else {
+						value = null;
+					}
+				}
+			}
+
+			private long[] setBit(long[] bits, int f) {
+				if ((f >> 6) >= bits.length) {
+					bits = Arrays.copyOf(bits, (f >> 6) + 1);
+				}
+				bits[f >> 6] |= 1L << f;
+				return bits;
+			}
+
+			boolean matches(long[] features) {
+				for (int i = 0; i < features.length; i++) {
+					if ((features[i] & required[i]) != required[i] || (features[i] & forbidden[i]) != 0) {
+						return false;
+					}
+				}
+				return true;
+			}
+
+			Object selectValue(RegionTypes rt, int[] types) {
+				BitSet selectTagMask = selectTag == null ? null : tagRuleMask.get(selectTag);
+				if (selectTagMask != null) {
+					int min = -1;
+					for (int k = 0; k < types.length; k++) {
+						int id = rt.universalType[types[k]];
+						if (selectTagMask.get(id) && (min == -1 || id < min)) {
+							min = id;
+						}
+					}
+					if (min != -1) {
+						return parseValueFromTag(min, rule.selectType);
+					}
+				}
+				return value;
+			}
+		}
+	}
+
 	public class RouteAttributeExpression {
 		public static final int LESS_EXPRESSION = 1;
 		public static final int GREAT_EXPRESSION = 2;
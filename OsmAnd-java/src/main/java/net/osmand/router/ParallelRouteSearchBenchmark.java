@@ -0,0 +1,111 @@
+package net.osmand.router;
+
+import java.io.File;
+import java.io.RandomAccessFile;
+import java.util.Arrays;
+import java.util.List;
+
+import net.osmand.binary.BinaryMapIndexReader;
+import net.osmand.data.LatLon;
+import net.osmand.router.RoutePlannerFrontEnd.RouteCalculationMode;
+
+/**
+ * Compares wall-clock time of sequential and parallel bidirectional search for the same route.
+ * Every calculation uses new routing context, routing tiles of the file are read from page cache after warm up.
+ */
+public class ParallelRouteSearchBenchmark {
+
+	public static void main(String[] args) throws Exception {
+		File obf = null;
+		String profile = "car";
+		int iterations = 10;
+		int warmUp = 3;
+		LatLon start = null;
+		LatLon end = null;
+		for (String a : args) {
+			if (a.startsWith("-obf=")) {
+				obf = new File(a.substring("-obf=".length()));
+			} else if (a.startsWith("-profile=")) {
+				profile = a.substring("-profile=".length());
+			} else if (a.startsWith("-iterations=")) {
+				iterations = Integer.parseInt(a.substring("-iterations=".length()));
+			} else if (a.startsWith("-warmup=")) {
+				warmUp = Integer.parseInt(a.substring("-warmup=".length()));
+			} else if (a.startsWith("-start=")) {
+				start = parseLatLon(a.substring("-start=".length()));
+			} else if (a.startsWith("-end=")) {
+				end = parseLatLon(a.substring("-end=".length()));
+			}
+		}
+		if (obf == null || start == null || end == null) {
+			System.out.println("Usage: -obf=file.obf -start=lat,lon -end=lat,lon [-profile=car] [-iterations=10] [-warmup=3]");
+			return;
+		}
+		BinaryMapIndexReader reader = new BinaryMapIndexReader(new RandomAccessFile(obf, "r"), obf);
+		try {
+			for (int it = 0; it < warmUp; it++) {
+				searchRoute(reader, profile, start, end, false);
+				searchRoute(reader, profile, start, end, true);
+			}
+			long[] sequential = new long[iterations];
+			long[] parallel = new long[iterations];
+			for (int it = 0; it < iterations; it++) {
+				// alternate modes, so both are equally affected by state of the machine
+				Measurement seq = searchRoute(reader, profile, start, end, false);
+				Measurement par = searchRoute(reader, profile, start, end, true);
+				sequential[it] = seq.time;
+				parallel[it] = par.time;
+				System.out.println(String.format("Iteration %d: sequential %s, parallel %s", it, seq, par));
+			}
+			long seqMedian = median(sequential);
+			long parMedian = median(parallel);
+			System.out.println(String.format("Median: sequential %.1f ms, parallel %.1f ms (%.2fx)", seqMedian / 1e6,
+					parMedian / 1e6, seqMedian / (double) parMedian));
+		} finally {
+			reader.close();
+		}
+	}
+
+	private static LatLon parseLatLon(String s) {
+		String[] ll = s.split(",");
+		return new LatLon(Double.parseDouble(ll[0]), Double.parseDouble(ll[1]));
+	}
+
+	private static long median(long[] times) {
+		long[] sorted = times.clone();
+		Arrays.sort(sorted);
+		return sorted[sorted.length / 2];
+	}
+
+	private static class Measurement {
+		long time;
+		float routeTime;
+		int visitedSegments;
+
+		@Override
+		public String toString() {
+			return String.format("%.1f ms (route %.1f s, visited %d)", time / 1e6, routeTime, visitedSegments);
+		}
+	}
+
+	private static Measurement searchRoute(BinaryMapIndexReader reader, String profile, LatLon start, LatLon end,
+			boolean parallel) throws Exception {
+		RoutingConfiguration config = RoutingConfiguration.getDefault().build(profile,
+				RoutingConfiguration.DEFAULT_MEMORY_LIMIT * 10);
+		config.parallelBidirectionalSearch = parallel;
+		RoutePlannerFrontEnd frontEnd = new RoutePlannerFrontEnd();
+		RoutingContext ctx = frontEnd.buildRoutingContext(config, null, new BinaryMapIndexReader[] { reader },
+				RouteCalculationMode.NORMAL);
+		Measurement m = new Measurement();
+		long time = System.nanoTime();
+		List<RouteSegmentResult> route = frontEnd.searchRoute(ctx, start, end, null);
+		m.time = System.nanoTime() - time;
+		if (route != null) {
+			for (RouteSegmentResult r : route) {
+				m.routeTime += r.getSegmentTime();
+			}
+		}
+		m.visitedSegments = ctx.getVisitedSegments();
+		return m;
+	}
+}
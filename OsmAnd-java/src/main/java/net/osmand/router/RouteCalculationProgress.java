@@ -19,6 +19,8 @@ public class RouteCalculationProgress {
 	public int visitedOppositeSegments = 0;
 	public int directQueueSize = 0;
 	public int oppositeQueueSize = 0;
+	// routes calculated from reverse search frontier of previous calculation
+	public int frontierRecalculations = 0;
 	
 	public int totalIterations = 1;
 	public int iteration = -1;
@@ -35,6 +37,9 @@ public class RouteCalculationProgress {
 	public int unloadedTiles = 0;
 	public int loadedTiles = 0;
 	
+	public long evalCacheHits = 0;
+	public long evalCacheMisses = 0;
+	
 	public boolean isCancelled;
 	public boolean requestPrivateAccessRouting;
 	
@@ -0,0 +1,156 @@
+package net.osmand.router;
+
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicLong;
+
+import net.osmand.binary.BinaryMapRouteReaderAdapter.RouteRegion;
+
+/**
+ * Cache of evaluated router attributes keyed by (attribute, region, types array, extra flag).
+ * Entries are stored in striped open addressing tables: lookups don't lock and don't allocate,
+ * insertions and resizes lock only one stripe. Entries are immutable so they are safely published
+ * through racy table reads, entry missed because of a race is simply evaluated once more.
+ */
+class RouteEvalCache {
+
+	private static final int STRIPES = 16;
+	private static final int INITIAL_CAPACITY = 64;
+
+	private final Stripe[] stripes = new Stripe[STRIPES];
+
+	private static class Entry {
+		final int hash;
+		final int attribute;
+		final RouteRegion region;
+		final int[] types;
+		final boolean extra;
+		final float value;
+
+		Entry(int hash, int attribute, RouteRegion region, int[] types, boolean extra, float value) {
+			this.hash = hash;
+			this.attribute = attribute;
+			this.region = region;
+			this.types = types;
+			this.extra = extra;
+			this.value = value;
+		}
+
+		boolean matches(int hash, int attribute, RouteRegion region, int[] types, boolean extra) {
+			return this.hash == hash && this.attribute == attribute && this.region == region
+					&& this.extra == extra && Arrays.equals(this.types, types);
+		}
+	}
+
+	private static class Stripe {
+		volatile Entry[] table = new Entry[INITIAL_CAPACITY];
+		int size;
+		final AtomicLong hits = new AtomicLong();
+		final AtomicLong misses = new AtomicLong();
+	}
+
+	RouteEvalCache() {
+		for (int i = 0; i < STRIPES; i++) {
+			stripes[i] = new Stripe();
+		}
+	}
+
+	private static int hash(int attribute, RouteRegion region, int[] types, boolean extra) {
+		int h = attribute * 31 + System.identityHashCode(region);
+		for (int i = 0; i < types.length; i++) {
+			h = h * 31 + types[i];
+		}
+		h = h * 2 + (extra ? 1 : 0);
+		// spread bits as upper bits select stripe and lower bits select slot
+		h ^= (h >>> 16);
+		h *= 0x85ebca6b;
+		h ^= (h >>> 13);
+		return h;
+	}
+
+	private Stripe stripe(int hash) {
+		return stripes[(hash >>> 28) & (STRIPES - 1)];
+	}
+
+	/**
+	 * @return cached value or Float.NaN if value is not cached
+	 */
+	float get(int attribute, RouteRegion region, int[] types, boolean extra) {
+		int hash = hash(attribute, region, types, extra);
+		Stripe s = stripe(hash);
+		Entry[] table = s.table;
+		int mask = table.length - 1;
+		for (int i = hash & mask;; i = (i + 1) & mask) {
+			Entry e = table[i];
+			if (e == null) {
+				s.misses.incrementAndGet();
+				return Float.NaN;
+			}
+			if (e.matches(hash, attribute, region, types, extra)) {
+				s.hits.incrementAndGet();
+				return e.value;
+			}
+		}
+	}
+
+	void put(int attribute, RouteRegion region, int[] types, boolean extra, float value) {
+		int hash = hash(attribute, region, types, extra);
+		Stripe s = stripe(hash);
+		synchronized (s) {
+			Entry[] table = s.table;
+			int mask = table.length - 1;
+			int i = hash & mask;
+			while (table[i] != null) {
+				if (table[i].matches(hash, attribute, region, types, extra)) {
+					return;
+				}
+				i = (i + 1) & mask;
+			}
+			// types array could be modified by caller (conditional tags), so keep own copy
+			table[i] = new Entry(hash, attribute, region, types.clone(), extra, value);
+			if (++s.size * 2 > table.length) {
+				s.table = rehash(table);
+			}
+		}
+	}
+
+	private static Entry[] rehash(Entry[] table) {
+		Entry[] nt = new Entry[table.length * 2];
+		int mask = nt.length - 1;
+		for (Entry e : table) {
+			if (e != null) {
+				int i = e.hash & mask;
+				while (nt[i] != null) {
+					i = (i + 1) & mask;
+				}
+				nt[i] = e;
+			}
+		}
+		return nt;
+	}
+
+	long getHits() {
+		long h = 0;
+		for (Stripe s : stripes) {
+			h += s.hits.get();
+		}
+		return h;
+	}
+
+	long getMisses() {
+		long m = 0;
+		for (Stripe s : stripes) {
+			m += s.misses.get();
+		}
+		return m;
+	}
+
+	int size() {
+		int sz = 0;
+		for (Stripe s : stripes) {
+			synchronized (s) {
+				sz += s.size;
+			}
+		}
+		return sz;
+	}
+}
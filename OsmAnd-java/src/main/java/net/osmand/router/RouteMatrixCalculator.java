@@ -0,0 +1,205 @@
+package net.osmand.router;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import net.osmand.PlatformUtil;
+import net.osmand.binary.BinaryMapIndexReader;
+import net.osmand.binary.RouteDataObject;
+import net.osmand.data.LatLon;
+import net.osmand.router.BinaryRoutePlanner.FinalRouteSegment;
+import net.osmand.router.BinaryRoutePlanner.RouteSegment;
+import net.osmand.router.BinaryRoutePlanner.RouteSegmentPoint;
+import net.osmand.router.RoutePlannerFrontEnd.RouteCalculationMode;
+
+import org.apache.commons.logging.Log;
+
+/**
+ * Calculates time / distance matrix between sources and targets.
+ * Each row is one-to-many Dijkstra expansion from source which stops when all reachable targets are reached,
+ * rows are calculated in parallel. Row or target which fails is left as not reachable, so the rest of matrix is
+ * still calculated. Row contexts share decoded tile data ({@link RouteTileDataCache}) and
+ * router (with its evaluation cache), so tiles are read from files only once for the whole matrix.
+ */
+public class RouteMatrixCalculator {
+
+	private static final Log log = PlatformUtil.getLog(RouteMatrixCalculator.class);
+
+	// target which isn't reached within this factor of straight line time at max speed is not reachable
+	public static final float DEFAULT_DETOUR_FACTOR = 10;
+
+	private final RoutingConfiguration config;
+	private final BinaryMapIndexReader[] readers;
+	private final RouteCalculationMode mode;
+	private final RouteTileDataCache tileDataCache;
+	private float detourFactor = DEFAULT_DETOUR_FACTOR;
+
+	public RouteMatrixCalculator(RoutingConfiguration config, BinaryMapIndexReader[] readers) {
+		this(config, readers, RouteCalculationMode.NORMAL);
+	}
+
+	public RouteMatrixCalculator(RoutingConfiguration config, BinaryMapIndexReader[] readers, RouteCalculationMode mode) {
+		this.config = config;
+		this.readers = readers;
+		this.mode = mode;
+		RouteTileDataCache shared = RouteTileDataCache.getSharedCache();
+		this.tileDataCache = shared != null ? shared : new RouteTileDataCache(0);
+	}
+
+	public void setDetourFactor(float detourFactor) {
+		this.detourFactor = detourFactor;
+	}
+
+	public static class RouteMatrix {
+		// time in seconds, Float.POSITIVE_INFINITY if target is not reachable
+		public final float[][] time;
+		// distance in meters, Float.POSITIVE_INFINITY if target is not reachable
+		public final float[][] distance;
+
+		RouteMatrix(int sources, int targets) {
+			time = new float[sources][targets];
+			distance = new float[sources][targets];
+			for (int i = 0; i < sources; i++) {
+				Arrays.fill(time[i], Float.POSITIVE_INFINITY);
+				Arrays.fill(distance[i], Float.POSITIVE_INFINITY);
+			}
+		}
+	}
+
+	public RouteMatrix calculate(List<LatLon> points, int threads) throws IOException, InterruptedException {
+		return calculate(points, points, threads);
+	}
+
+	public RouteMatrix calculate(List<LatLon> sources, List<LatLon> targets, int threads)
+			throws IOException, InterruptedException {
+		long time = System.nanoTime();
+		RoutingContext ctx = newContext();
+		final RouteSegmentPoint[] sourcePoints = findRouteSegments(ctx, sources);
+		final RouteSegmentPoint[] targetPoints = sources == targets ? sourcePoints : findRouteSegments(ctx, targets);
+		final RouteMatrix matrix = new RouteMatrix(sources.size(), targets.size());
+		ExecutorService executor = Executors.newFixedThreadPool(Math.max(1, threads));
+		try {
+			List<Future<Void>> rows = new ArrayList<Future<Void>>();
+			List<Integer> rowIndexes = new ArrayList<Integer>();
+			for (int i = 0; i < sourcePoints.length; i++) {
+				final int row = i;
+				if (sourcePoints[row] == null) {
+					continue;
+				}
+				rowIndexes.add(row);
+				rows.add(executor.submit(new Callable<Void>() {
+					@Override
+					public Void call() throws Exception {
+						calculateRow(sourcePoints[row], targetPoints, matrix.time[row], matrix.distance[row]);
+						return null;
+					}
+				}));
+			}
+			for (int i = 0; i < rows.size(); i++) {
+				int row = rowIndexes.get(i);
+				try {
+					rows.get(i).get();
+				} catch (ExecutionException e) {
+					Throwable cause = e.getCause();
+					if (cause instanceof InterruptedException) {
+						throw (InterruptedException) cause;
+					}
+					log.error("Route matrix row " + row + " (" + sources.get(row) + ") is not calculated", cause);
+					Arrays.fill(matrix.time[row], Float.POSITIVE_INFINITY);
+					Arrays.fill(matrix.distance[row], Float.POSITIVE_INFINITY);
+				}
+			}
+		} finally {
+			executor.shutdownNow();
+		}
+		log.info(String.format("Route matrix %dx%d calculated in %.1f ms (%d tiles loaded)", sources.size(),
+				targets.size(), (System.nanoTime() - time) / 1e6, tileDataCache.getLoadedTiles()));
+		return matrix;
+	}
+
+	private RoutingContext newContext() {
+		RoutingContext ctx = new RoutingContext(config, null, readers, mode);
+		ctx.tileDataCache = tileDataCache;
+		ctx.calculationProgress = new RouteCalculationProgress();
+		return ctx;
+	}
+
+	private RouteSegmentPoint[] findRouteSegments(RoutingContext ctx, List<LatLon> points) throws IOException {
+		RoutePlannerFrontEnd frontEnd = new RoutePlannerFrontEnd();
+		RouteSegmentPoint[] res = new RouteSegmentPoint[points.size()];
+		for (int i = 0; i < res.length; i++) {
+			res[i] = frontEnd.findRouteSegment(points.get(i).getLatitude(), points.get(i).getLongitude(), ctx, null);
+			if (res[i] == null) {
+				log.warn("Point " + points.get(i) + " is not found on roads");
+			}
+		}
+		return res;
+	}
+
+	private void calculateRow(RouteSegmentPoint source, RouteSegmentPoint[] targets, float[] time, float[] distance)
+			throws IOException, InterruptedException {
+		RoutingContext ctx = newContext();
+		// segment points are shared between rows and route segments store direction
+		RouteSegmentPoint start = new RouteSegmentPoint(source);
+		ctx.startX = start.preciseX;
+		ctx.startY = start.preciseY;
+		ctx.targetX = start.preciseX;
+		ctx.targetY = start.preciseY;
+		RouteSegmentPoint[] rowTargets = new RouteSegmentPoint[targets.length];
+		for (int j = 0; j < targets.length; j++) {
+			if (targets[j] != null) {
+				rowTargets[j] = new RouteSegmentPoint(targets[j]);
+			}
+		}
+		try {
+			FinalRouteSegment[] res = new BinaryRoutePlanner().searchRouteOneToMany(ctx, start, rowTargets,
+					detourFactor);
+			for (int j = 0; j < res.length; j++) {
+				if (targets[j] == source) {
+					time[j] = 0;
+					distance[j] = 0;
+				} else if (res[j] != null) {
+					try {
+						distance[j] = calculateDistance(res[j]);
+						time[j] = res[j].distanceFromStart;
+					} catch (RuntimeException e) {
+						log.error("Route to target " + j + " is not calculated", e);
+						distance[j] = Float.POSITIVE_INFINITY;
+					}
+				}
+			}
+		} finally {
+			ctx.unloadAllData();
+		}
+	}
+
+	private static float calculateDistance(FinalRouteSegment finalSegment) {
+		// same way as RouteResultPreparation converts final segment (opposite segment is target itself)
+		float dist = 0;
+		RouteSegment segment = finalSegment;
+		int parentSegmentEnd = finalSegment.opposite.getSegmentStart();
+		while (segment != null) {
+			dist += roadDistance(segment.getRoad(), segment.getSegmentStart(), parentSegmentEnd);
+			parentSegmentEnd = segment.getParentSegmentEnd();
+			segment = segment.getParentRoute();
+		}
+		return dist;
+	}
+
+	private static float roadDistance(RouteDataObject road, int from, int to) {
+		float d = 0;
+		int step = from < to ? 1 : -1;
+		for (int i = from; i != to; i += step) {
+			d += BinaryRoutePlanner.squareRootDist(road.getPoint31XTile(i), road.getPoint31YTile(i),
+					road.getPoint31XTile(i + step), road.getPoint31YTile(i + step));
+		}
+		return d;
+	}
+}
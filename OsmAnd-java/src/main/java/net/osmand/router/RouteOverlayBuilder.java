@@ -0,0 +1,575 @@
+package net.osmand.router;
+
+import gnu.trove.list.array.TLongArrayList;
+import gnu.trove.map.hash.TLongObjectHashMap;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import net.osmand.PlatformUtil;
+import net.osmand.binary.BinaryMapIndexReader;
+import net.osmand.binary.BinaryMapIndexReader.SearchRequest;
+import net.osmand.binary.BinaryMapRouteReaderAdapter.RouteRegion;
+import net.osmand.binary.BinaryMapRouteReaderAdapter.RouteSubregion;
+import net.osmand.binary.RouteDataObject;
+import net.osmand.data.LatLon;
+import net.osmand.router.RoutePlannerFrontEnd.RouteCalculationMode;
+import net.osmand.util.MapUtils;
+
+import org.apache.commons.logging.Log;
+
+/**
+ * Builds {@link RouteOverlayGraph} from route sections of obf files for one routing profile.
+ * Roads accepted by profile are split into edges between junctions (points shared by several roads and road ends),
+ * edge time is calculated as in {@link BinaryRoutePlanner} (speed * priority, routing obstacles), turn costs and
+ * restrictions are ignored. Nodes are contracted in order of edge difference (lazy updates) with bounded witness search.
+ *
+ * Usage: -obf=file.obf [-profile=car] [-normal] [-out=file] [-validate=N]
+ * -normal builds overlay from detailed route data (default is base route data which is used for BASE calculation),
+ * -validate compares N random overlay routes with routes calculated by {@link RoutePlannerFrontEnd} on the same data.
+ */
+public class RouteOverlayBuilder {
+
+	private static final Log log = PlatformUtil.getLog(RouteOverlayBuilder.class);
+
+	private static final int WITNESS_SETTLE_LIMIT = 300;
+
+	private final GeneralRouter router;
+	private final String profile;
+	private final boolean baseData;
+
+	// working graph
+	private int nodes;
+	private int[] x31;
+	private int[] y31;
+	private EdgeList[] out;
+	private EdgeList[] in;
+
+	// witness search state
+	private float[] witnessCost;
+	private int[] witnessTouched;
+	private int witnessTouchedSize;
+	private final RouteOverlayGraph.NodeHeap witnessHeap = new RouteOverlayGraph.NodeHeap();
+
+	public RouteOverlayBuilder(GeneralRouter router, String profile, boolean baseData) {
+		this.router = router;
+		this.profile = profile;
+		this.baseData = baseData;
+	}
+
+	private static class EdgeList {
+		int[] target = new int[4];
+		float[] time = new float[4];
+		float[] dist = new float[4];
+		int[] middle = new int[4];
+		int size;
+
+		boolean addOrImprove(int t, float tm, float d, int m) {
+			for (int i = 0; i < size; i++) {
+				if (target[i] == t) {
+					if (tm < time[i]) {
+						time[i] = tm;
+						dist[i] = d;
+						middle[i] = m;
+						return true;
+					}
+					return false;
+				}
+			}
+			if (size == target.length) {
+				target = Arrays.copyOf(target, size * 2);
+				time = Arrays.copyOf(time, size * 2);
+				dist = Arrays.copyOf(dist, size * 2);
+				middle = Arrays.copyOf(middle, size * 2);
+			}
+			target[size] = t;
+			time[size] = tm;
+			dist[size] = d;
+			middle[size] = m;
+			size++;
+			return true;
+		}
+	}
+
+	public RouteOverlayGraph build(BinaryMapIndexReader[] readers) throws IOException {
+		long time = System.currentTimeMillis();
+		List<RouteDataObject> roads = loadRoads(readers);
+		log.info("Route overlay: " + roads.size() + " roads loaded in " + (System.currentTimeMillis() - time) + " ms");
+		time = System.currentTimeMillis();
+		buildGraph(roads);
+		roads = null;
+		log.info("Route overlay: graph with " + nodes + " nodes built in " + (System.currentTimeMillis() - time) + " ms");
+		long[] dates = new long[readers.length];
+		for (int i = 0; i < readers.length; i++) {
+			dates[i] = readers[i].getDateCreated();
+		}
+		return contractGraph(dates);
+	}
+
+	RouteOverlayGraph contractGraph(long[] dates) {
+		long time = System.currentTimeMillis();
+		int[] rank = contract();
+		log.info("Route overlay: contracted in " + (System.currentTimeMillis() - time) + " ms");
+		return toOverlay(rank, dates);
+	}
+
+	private List<RouteDataObject> loadRoads(BinaryMapIndexReader[] readers) throws IOException {
+		List<RouteDataObject> roads = new ArrayList<RouteDataObject>();
+		TLongObjectHashMap<List<RouteDataObject>> roadsById = new TLongObjectHashMap<List<RouteDataObject>>();
+		for (BinaryMapIndexReader reader : readers) {
+			for (RouteRegion reg : reader.getRoutingIndexes()) {
+				SearchRequest<RouteDataObject> req = BinaryMapIndexReader.buildSearchRouteRequest(0, Integer.MAX_VALUE,
+						0, Integer.MAX_VALUE, null);
+				List<RouteSubregion> subregions = new ArrayList<RouteSubregion>(baseData ? reg.getBaseSubregions()
+						: reg.getSubregions());
+				for (RouteSubregion sub : reader.searchRouteIndexTree(req, subregions)) {
+					for (RouteDataObject ro : reader.loadRouteIndexData(sub)) {
+						if (ro == null || ro.getPointsLength() < 2 || !router.acceptLine(ro)) {
+							continue;
+						}
+						// roads crossing tile boundaries could be stored in several tiles, pieces with different points
+						// are all kept (they're connected by shared end points), exact duplicates are skipped
+						List<RouteDataObject> sameId = roadsById.get(ro.getId());
+						if (sameId == null) {
+							sameId = new ArrayList<RouteDataObject>(1);
+							roadsById.put(ro.getId(), sameId);
+						} else if (containsSamePoints(sameId, ro)) {
+							continue;
+						}
+						sameId.add(ro);
+						roads.add(ro);
+					}
+				}
+			}
+		}
+		return roads;
+	}
+
+	private static boolean containsSamePoints(List<RouteDataObject> roads, RouteDataObject ro) {
+		for (RouteDataObject r : roads) {
+			if (r.getPointsLength() == ro.getPointsLength()) {
+				boolean same = true;
+				for (int i = 0; i < ro.getPointsLength() && same; i++) {
+					same = r.getPoint31XTile(i) == ro.getPoint31XTile(i) && r.getPoint31YTile(i) == ro.getPoint31YTile(i);
+				}
+				if (same) {
+					return true;
+				}
+			}
+		}
+		return false;
+	}
+
+	private static long pointKey(int x, int y) {
+		return (((long) x) << 31) | y;
+	}
+
+	private void buildGraph(List<RouteDataObject> roads) {
+		// junctions are points used more than once, road ends are added twice
+		TLongArrayList keys = new TLongArrayList();
+		for (RouteDataObject ro : roads) {
+			int last = ro.getPointsLength() - 1;
+			for (int i = 0; i <= last; i++) {
+				long k = pointKey(ro.getPoint31XTile(i), ro.getPoint31YTile(i));
+				keys.add(k);
+				if (i == 0 || i == last) {
+					keys.add(k);
+				}
+			}
+		}
+		long[] sorted = keys.toArray();
+		keys = null;
+		Arrays.sort(sorted);
+		int cnt = 0;
+		for (int i = 1; i < sorted.length; i++) {
+			if (sorted[i] == sorted[i - 1] && (cnt == 0 || sorted[cnt - 1] != sorted[i])) {
+				sorted[cnt++] = sorted[i];
+			}
+		}
+		long[] nodeKeys = Arrays.copyOf(sorted, cnt);
+		sorted = null;
+		int[] x = new int[cnt];
+		int[] y = new int[cnt];
+		for (int i = 0; i < cnt; i++) {
+			x[i] = (int) (nodeKeys[i] >> 31);
+			y[i] = (int) (nodeKeys[i] & Integer.MAX_VALUE);
+		}
+		initNodes(x, y);
+		for (RouteDataObject ro : roads) {
+			addRoadEdges(ro, nodeKeys);
+		}
+	}
+
+	private void addRoadEdges(RouteDataObject ro, long[] nodeKeys) {
+		int oneway = router.isOneWay(ro);
+		float priority = router.defineSpeedPriority(ro);
+		float speed = router.defineRoutingSpeed(ro) * priority;
+		if (speed == 0) {
+			speed = router.getDefaultSpeed() * priority;
+		}
+		if (speed > router.getMaxSpeed()) {
+			speed = router.getMaxSpeed();
+		}
+		int prevNode = Arrays.binarySearch(nodeKeys, pointKey(ro.getPoint31XTile(0), ro.getPoint31YTile(0)));
+		float dist = 0;
+		float fwdObstacles = 0;
+		float bwdObstacles = 0;
+		boolean fwdAllowed = oneway >= 0;
+		boolean bwdAllowed = oneway <= 0;
+		for (int i = 1; i < ro.getPointsLength(); i++) {
+			int x = ro.getPoint31XTile(i);
+			int y = ro.getPoint31YTile(i);
+			dist += BinaryRoutePlanner.squareRootDist(ro.getPoint31XTile(i - 1), ro.getPoint31YTile(i - 1), x, y);
+			float fo = router.defineRoutingObstacle(ro, i, true);
+			if (fo < 0) {
+				fwdAllowed = false;
+			} else {
+				fwdObstacles += fo;
+			}
+			float bo = router.defineRoutingObstacle(ro, i - 1, false);
+			if (bo < 0) {
+				bwdAllowed = false;
+			} else {
+				bwdObstacles += bo;
+			}
+			int node = Arrays.binarySearch(nodeKeys, pointKey(x, y));
+			if (node >= 0) {
+				if (node != prevNode) {
+					if (fwdAllowed) {
+						addEdge(prevNode, node, fwdObstacles + dist / speed, dist, -1);
+					}
+					if (bwdAllowed) {
+						addEdge(node, prevNode, bwdObstacles + dist / speed, dist, -1);
+					}
+				}
+				prevNode = node;
+				dist = 0;
+				fwdObstacles = 0;
+				bwdObstacles = 0;
+				fwdAllowed = oneway >= 0;
+				bwdAllowed = oneway <= 0;
+			}
+		}
+	}
+
+	void initNodes(int[] x, int[] y) {
+		nodes = x.length;
+		x31 = x;
+		y31 = y;
+		out = new EdgeList[nodes];
+		in = new EdgeList[nodes];
+		for (int i = 0; i < nodes; i++) {
+			out[i] = new EdgeList();
+			in[i] = new EdgeList();
+		}
+	}
+
+	void addEdge(int from, int to, float time, float dist, int middle) {
+		if (out[from].addOrImprove(to, time, dist, middle)) {
+			in[to].addOrImprove(from, time, dist, middle);
+		}
+	}
+
+	private int[] contract() {
+		int[] rank = new int[nodes];
+		Arrays.fill(rank, -1);
+		int[] deletedNeighbours = new int[nodes];
+		witnessCost = new float[nodes];
+		Arrays.fill(witnessCost, Float.POSITIVE_INFINITY);
+		witnessTouched = new int[64];
+		RouteOverlayGraph.NodeHeap order = new RouteOverlayGraph.NodeHeap();
+		for (int v = 0; v < nodes; v++) {
+			order.push(v, priority(v, rank, 0));
+		}
+		int contracted = 0;
+		while (!order.isEmpty()) {
+			int v = order.pop();
+			if (rank[v] >= 0) {
+				continue;
+			}
+			// lazy update: priority could only grow after neighbours were contracted
+			float p = priority(v, rank, deletedNeighbours[v]);
+			if (!order.isEmpty() && p > order.peekCost()) {
+				order.push(v, p);
+				continue;
+			}
+			contractNode(v, rank, false);
+			rank[v] = contracted++;
+			markNeighbours(out[v], rank, deletedNeighbours);
+			markNeighbours(in[v], rank, deletedNeighbours);
+			if (contracted % 100000 == 0) {
+				log.info("Route overlay: contracted " + contracted + " / " + nodes);
+			}
+		}
+		return rank;
+	}
+
+	private static void markNeighbours(EdgeList l, int[] rank, int[] deletedNeighbours) {
+		for (int i = 0; i < l.size; i++) {
+			if (rank[l.target[i]] < 0) {
+				deletedNeighbours[l.target[i]]++;
+			}
+		}
+	}
+
+	private float priority(int v, int[] rank, int deletedNeighbours) {
+		int shortcuts = contractNode(v, rank, true);
+		int degree = liveDegree(out[v], rank) + liveDegree(in[v], rank);
+		return shortcuts - degree + deletedNeighbours;
+	}
+
+	private static int liveDegree(EdgeList l, int[] rank) {
+		int d = 0;
+		for (int i = 0; i < l.size; i++) {
+			if (rank[l.target[i]] < 0) {
+				d++;
+			}
+		}
+		return d;
+	}
+
+	/**
+	 * @return number of shortcuts which are needed (and added if not simulate) to contract node
+	 */
+	private int contractNode(int v, int[] rank, boolean simulate) {
+		EdgeList vin = in[v];
+		EdgeList vout = out[v];
+		int shortcuts = 0;
+		for (int i = 0; i < vin.size; i++) {
+			int u = vin.target[i];
+			if (rank[u] >= 0 || u == v) {
+				continue;
+			}
+			float maxOut = -1;
+			for (int j = 0; j < vout.size; j++) {
+				int x = vout.target[j];
+				if (rank[x] < 0 && x != u && x != v) {
+					maxOut = Math.max(maxOut, vout.time[j]);
+				}
+			}
+			if (maxOut < 0) {
+				continue;
+			}
+			float inTime = vin.time[i];
+			float inDist = vin.dist[i];
+			witnessSearch(u, v, inTime + maxOut, rank);
+			for (int j = 0; j < vout.size; j++) {
+				int x = vout.target[j];
+				if (rank[x] >= 0 || x == u || x == v) {
+					continue;
+				}
+				float viaTime = inTime + vout.time[j];
+				if (witnessCost[x] > viaTime) {
+					shortcuts++;
+					if (!simulate) {
+						addEdge(u, x, viaTime, inDist + vout.dist[j], v);
+					}
+				}
+			}
+			resetWitness();
+		}
+		return shortcuts;
+	}
+
+	private void witnessSearch(int source, int avoid, float maxCost, int[] rank) {
+		witnessCost[source] = 0;
+		touchWitness(source);
+		witnessHeap.push(source, 0);
+		int settled = 0;
+		while (!witnessHeap.isEmpty() && settled < WITNESS_SETTLE_LIMIT) {
+			float c = witnessHeap.peekCost();
+			int n = witnessHeap.pop();
+			if (c > witnessCost[n]) {
+				continue;
+			}
+			if (c > maxCost) {
+				break;
+			}
+			settled++;
+			EdgeList l = out[n];
+			for (int i = 0; i < l.size; i++) {
+				int t = l.target[i];
+				if (t == avoid || rank[t] >= 0) {
+					continue;
+				}
+				float nc = c + l.time[i];
+				if (nc < witnessCost[t]) {
+					if (witnessCost[t] == Float.POSITIVE_INFINITY) {
+						touchWitness(t);
+					}
+					witnessCost[t] = nc;
+					witnessHeap.push(t, nc);
+				}
+			}
+		}
+		witnessHeap.clear();
+	}
+
+	private void touchWitness(int n) {
+		if (witnessTouchedSize == witnessTouched.length) {
+			witnessTouched = Arrays.copyOf(witnessTouched, witnessTouchedSize * 2);
+		}
+		witnessTouched[witnessTouchedSize++] = n;
+	}
+
+	private void resetWitness() {
+		for (int i = 0; i < witnessTouchedSize; i++) {
+			witnessCost[witnessTouched[i]] = Float.POSITIVE_INFINITY;
+		}
+		witnessTouchedSize = 0;
+	}
+
+	private RouteOverlayGraph toOverlay(int[] rank, long[] dates) {
+		// edges to higher ranked nodes are upward (lower ranked were contracted before and their edges are kept there)
+		int[] fwdStart = new int[nodes + 1];
+		int[] bwdStart = new int[nodes + 1];
+		for (int v = 0; v < nodes; v++) {
+			fwdStart[v + 1] = fwdStart[v] + upwardCount(out[v], rank, v);
+			bwdStart[v + 1] = bwdStart[v] + upwardCount(in[v], rank, v);
+		}
+		int[] fwdTarget = new int[fwdStart[nodes]];
+		float[] fwdTime = new float[fwdTarget.length];
+		float[] fwdDist = new float[fwdTarget.length];
+		int[] fwdMiddle = new int[fwdTarget.length];
+		int[] bwdTarget = new int[bwdStart[nodes]];
+		float[] bwdTime = new float[bwdTarget.length];
+		float[] bwdDist = new float[bwdTarget.length];
+		int[] bwdMiddle = new int[bwdTarget.length];
+		for (int v = 0; v < nodes; v++) {
+			copyUpward(out[v], rank, v, fwdStart[v], fwdTarget, fwdTime, fwdDist, fwdMiddle);
+			copyUpward(in[v], rank, v, bwdStart[v], bwdTarget, bwdTime, bwdDist, bwdMiddle);
+			out[v] = null;
+			in[v] = null;
+		}
+		return new RouteOverlayGraph(profile, baseData, dates, x31, y31, rank, fwdStart, fwdTarget, fwdTime, fwdDist,
+				fwdMiddle, bwdStart, bwdTarget, bwdTime, bwdDist, bwdMiddle);
+	}
+
+	private static int upwardCount(EdgeList l, int[] rank, int v) {
+		int c = 0;
+		for (int i = 0; i < l.size; i++) {
+			if (rank[l.target[i]] > rank[v]) {
+				c++;
+			}
+		}
+		return c;
+	}
+
+	private static void copyUpward(EdgeList l, int[] rank, int v, int pos, int[] target, float[] time, float[] dist,
+			int[] middle) {
+		for (int i = 0; i < l.size; i++) {
+			if (rank[l.target[i]] > rank[v]) {
+				target[pos] = l.target[i];
+				time[pos] = l.time[i];
+				dist[pos] = l.dist[i];
+				middle[pos] = l.middle[i];
+				pos++;
+			}
+		}
+	}
+
+	public static void main(String[] args) throws Exception {
+		File obf = null;
+		File outFile = null;
+		String profile = "car";
+		boolean normal = false;
+		int validate = 0;
+		for (String a : args) {
+			if (a.startsWith("-obf=")) {
+				obf = new File(a.substring("-obf=".length()));
+			} else if (a.startsWith("-profile=")) {
+				profile = a.substring("-profile=".length());
+			} else if (a.startsWith("-out=")) {
+				outFile = new File(a.substring("-out=".length()));
+			} else if (a.equals("-normal")) {
+				normal = true;
+			} else if (a.startsWith("-validate=")) {
+				validate = Integer.parseInt(a.substring("-validate=".length()));
+			}
+		}
+		if (obf == null) {
+			System.out.println("Usage: -obf=file.obf [-profile=car] [-normal] [-out=file] [-validate=N]");
+			return;
+		}
+		if (outFile == null) {
+			outFile = RouteOverlayGraph.getOverlayFile(obf, profile);
+		}
+		BinaryMapIndexReader reader = new BinaryMapIndexReader(new RandomAccessFile(obf, "r"), obf);
+		BinaryMapIndexReader[] readers = new BinaryMapIndexReader[] { reader };
+		RoutingConfiguration config = RoutingConfiguration.getDefault().build(profile,
+				RoutingConfiguration.DEFAULT_MEMORY_LIMIT * 10);
+		RouteOverlayGraph graph = null;
+		if (validate > 0 && outFile.exists()) {
+			graph = RouteOverlayGraph.readFromFile(outFile);
+			if (!graph.isUpToDate(new long[] { reader.getDateCreated() }) || graph.isBaseData() == normal) {
+				graph = null;
+			}
+		}
+		if (graph == null) {
+			graph = new RouteOverlayBuilder(config.router, profile, !normal).build(readers);
+			graph.writeToFile(outFile);
+			System.out.println(String.format("Overlay %s: %d nodes, %d edges", outFile.getName(), graph.getNodesCount(),
+					graph.getEdgesCount()));
+		}
+		if (validate > 0) {
+			validate(graph, readers, config, validate);
+		}
+		reader.close();
+	}
+
+	private static void validate(RouteOverlayGraph graph, BinaryMapIndexReader[] readers, RoutingConfiguration config,
+			int count) throws IOException, InterruptedException {
+		Random rnd = new Random(17);
+		RoutePlannerFrontEnd frontEnd = new RoutePlannerFrontEnd();
+		RouteCalculationMode mode = graph.isBaseData() ? RouteCalculationMode.BASE : RouteCalculationMode.NORMAL;
+		double sumDiff = 0;
+		double maxDiff = 0;
+		int compared = 0;
+		int overlayFailed = 0;
+		int plannerFailed = 0;
+		long overlayTime = 0;
+		long plannerTime = 0;
+		for (int i = 0; i < count; i++) {
+			int s = rnd.nextInt(graph.getNodesCount());
+			int e = rnd.nextInt(graph.getNodesCount());
+			LatLon start = new LatLon(MapUtils.get31LatitudeY(graph.getNodeY(s)), MapUtils.get31LongitudeX(graph.getNodeX(s)));
+			LatLon end = new LatLon(MapUtils.get31LatitudeY(graph.getNodeY(e)), MapUtils.get31LongitudeX(graph.getNodeX(e)));
+			long now = System.nanoTime();
+			RouteOverlayGraph.OverlayRoute route = new RouteOverlayGraph.OverlayRoute();
+			boolean found = graph.findRoute(s, e, route);
+			overlayTime += System.nanoTime() - now;
+			now = System.nanoTime();
+			RoutingContext ctx = frontEnd.buildRoutingContext(config, null, readers, mode);
+			List<RouteSegmentResult> res = frontEnd.searchRoute(ctx, start, end, null);
+			plannerTime += System.nanoTime() - now;
+			if (!found) {
+				overlayFailed++;
+			}
+			if (res == null || res.isEmpty()) {
+				plannerFailed++;
+			}
+			if (!found || res == null || res.isEmpty()) {
+				continue;
+			}
+			float plannerRouteTime = 0;
+			for (RouteSegmentResult r : res) {
+				plannerRouteTime += r.getRoutingTime();
+			}
+			double diff = plannerRouteTime == 0 ? 0 : Math.abs(route.time - plannerRouteTime) / plannerRouteTime;
+			sumDiff += diff;
+			maxDiff = Math.max(maxDiff, diff);
+			compared++;
+			System.out.println(String.format("%s -> %s: overlay %.0f s, planner %.0f s, diff %.1f%%", start, end,
+					route.time, plannerRouteTime, diff * 100));
+		}
+		System.out.println(String.format("Compared %d routes (overlay failed %d, planner failed %d): "
+				+ "avg diff %.2f%%, max diff %.2f%%, overlay %.2f ms/query, planner %.2f ms/query", compared,
+				overlayFailed, plannerFailed, compared == 0 ? 0 : sumDiff / compared * 100, maxDiff * 100,
+				overlayTime / 1e6 / count, plannerTime / 1e6 / count));
+	}
+}
@@ -0,0 +1,693 @@
+package net.osmand.router;
+
+import gnu.trove.list.array.TIntArrayList;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import net.osmand.PlatformUtil;
+import net.osmand.binary.BinaryMapIndexReader;
+import net.osmand.data.LatLon;
+import net.osmand.util.Algorithms;
+import net.osmand.util.MapUtils;
+
+import org.apache.commons.logging.Log;
+
+/**
+ * Contraction hierarchy built over junctions of obf route sections for one routing profile (see {@link RouteOverlayBuilder}).
+ * Nodes are junctions, edges are road pieces between junctions and shortcuts added during contraction.
+ * Each edge is stored only at its lower ranked end: forward edges (from lower to higher ranked node) and
+ * backward edges (from higher to lower ranked node stored reversed), so query is bidirectional Dijkstra
+ * which goes only up in hierarchy.
+ *
+ * Overlay doesn't know turn restrictions and turn costs, so it's only used to guide A* (precalculated route direction)
+ * for the long-haul part of the route instead of BASE route calculation.
+ */
+public class RouteOverlayGraph {
+
+	private static final Log log = PlatformUtil.getLog(RouteOverlayGraph.class);
+
+	public static final String OVERLAY_EXT = ".overlay";
+	private static final int MAGIC = 0x4f524f56; // ORGV
+	private static final int VERSION = 1;
+	// zoom of grid cells used to find nearest node
+	private static final int GRID_ZOOM = 14;
+
+	// overlays read from files (file -> overlay), overlay is reread if file is modified
+	private static final Map<File, RouteOverlayGraph> loadedOverlays = new HashMap<File, RouteOverlayGraph>();
+
+	final String profile;
+	final boolean baseData;
+	final long[] sourceDates;
+
+	final int[] x31;
+	final int[] y31;
+	final int[] rank;
+
+	// forward up edges (node -> higher node) in compressed form
+	final int[] fwdStart;
+	final int[] fwdTarget;
+	final float[] fwdTime;
+	final float[] fwdDist;
+	final int[] fwdMiddle;
+
+	// backward up edges (higher node -> node) stored at node
+	final int[] bwdStart;
+	final int[] bwdTarget;
+	final float[] bwdTime;
+	final float[] bwdDist;
+	final int[] bwdMiddle;
+
+	// nodes having edges sorted by grid cell: cellKeys are distinct cells, cellStart[i] is first index in cellNodes
+	private long[] cellKeys;
+	private int[] cellStart;
+	private int[] cellNodes;
+	private int minCellX, maxCellX, minCellY, maxCellY;
+	private long fileLastModified;
+
+	// query state reused between queries (queries are synchronized)
+	private float[] fwdCost;
+	private float[] bwdCost;
+	private int[] fwdParent;
+	private int[] bwdParent;
+	private TIntArrayList touched;
+	private NodeHeap fwdHeap;
+	private NodeHeap bwdHeap;
+
+	RouteOverlayGraph(String profile, boolean baseData, long[] sourceDates, int[] x31, int[] y31, int[] rank,
+			int[] fwdStart, int[] fwdTarget, float[] fwdTime, float[] fwdDist, int[] fwdMiddle,
+			int[] bwdStart, int[] bwdTarget, float[] bwdTime, float[] bwdDist, int[] bwdMiddle) {
+		this.profile = profile;
+		this.baseData = baseData;
+		this.sourceDates = sourceDates;
+		this.x31 = x31;
+		this.y31 = y31;
+		this.rank = rank;
+		this.fwdStart = fwdStart;
+		this.fwdTarget = fwdTarget;
+		this.fwdTime = fwdTime;
+		this.fwdDist = fwdDist;
+		this.fwdMiddle = fwdMiddle;
+		this.bwdStart = bwdStart;
+		this.bwdTarget = bwdTarget;
+		this.bwdTime = bwdTime;
+		this.bwdDist = bwdDist;
+		this.bwdMiddle = bwdMiddle;
+		buildGrid();
+	}
+
+	private void buildGrid() {
+		int shift = 31 - GRID_ZOOM;
+		long[] sorted = new long[x31.length];
+		int cnt = 0;
+		minCellX = minCellY = Integer.MAX_VALUE;
+		maxCellX = maxCellY = Integer.MIN_VALUE;
+		for (int i = 0; i < x31.length; i++) {
+			if (fwdStart[i] == fwdStart[i + 1] && bwdStart[i] == bwdStart[i + 1]) {
+				continue;
+			}
+			int cx = x31[i] >> shift;
+			int cy = y31[i] >> shift;
+			minCellX = Math.min(minCellX, cx);
+			maxCellX = Math.max(maxCellX, cx);
+			minCellY = Math.min(minCellY, cy);
+			maxCellY = Math.max(maxCellY, cy);
+			sorted[cnt++] = (cellKey(cx, cy) << 32) | i;
+		}
+		Arrays.sort(sorted, 0, cnt);
+		cellNodes = new int[cnt];
+		TIntArrayList starts = new TIntArrayList();
+		List<Long> keys = new ArrayList<Long>();
+		for (int i = 0; i < cnt; i++) {
+			long key = sorted[i] >>> 32;
+			cellNodes[i] = (int) sorted[i];
+			if (i == 0 || key != sorted[i - 1] >>> 32) {
+				keys.add(key);
+				starts.add(i);
+			}
+		}
+		starts.add(cnt);
+		cellStart = starts.toArray();
+		cellKeys = new long[keys.size()];
+		for (int i = 0; i < cellKeys.length; i++) {
+			cellKeys[i] = keys.get(i);
+		}
+	}
+
+	private static long cellKey(int cx, int cy) {
+		return (((long) cx) << GRID_ZOOM) | cy;
+	}
+
+	public static File getOverlayFile(File obf, String profile) {
+		String name = obf.getName();
+		if (name.endsWith(".obf")) {
+			name = name.substring(0, name.length() - ".obf".length());
+		}
+		return new File(obf.getParentFile(), name + "." + profile + OVERLAY_EXT);
+	}
+
+	public String getProfile() {
+		return profile;
+	}
+
+	public boolean isBaseData() {
+		return baseData;
+	}
+
+	public int getNodesCount() {
+		return x31.length;
+	}
+
+	public int getEdgesCount() {
+		return fwdTarget.length + bwdTarget.length;
+	}
+
+	public int getNodeX(int node) {
+		return x31[node];
+	}
+
+	public int getNodeY(int node) {
+		return y31[node];
+	}
+
+	/**
+	 * @param sourceDates creation dates of obf files overlay was built from (in the same order)
+	 * @return true if overlay was built from the same versions of obf files
+	 */
+	public boolean isUpToDate(long[] sourceDates) {
+		return Arrays.equals(this.sourceDates, sourceDates);
+	}
+
+	/**
+	 * Finds overlay file of profile next to obf file of reader (see {@link #getOverlayFile}).
+	 * Overlay is rejected if it was built for another profile or another version of obf file.
+	 * @return null if there is no valid overlay
+	 */
+	public static RouteOverlayGraph loadOverlay(BinaryMapIndexReader reader, String profile) {
+		File obf = reader.getFile();
+		if (obf == null || Algorithms.isEmpty(profile)) {
+			return null;
+		}
+		File file = getOverlayFile(obf, profile);
+		RouteOverlayGraph graph;
+		synchronized (loadedOverlays) {
+			graph = loadedOverlays.get(file);
+			if (!file.exists()) {
+				loadedOverlays.remove(file);
+				return null;
+			}
+			if (graph == null || graph.fileLastModified != file.lastModified()) {
+				try {
+					graph = readFromFile(file);
+					graph.fileLastModified = file.lastModified();
+					loadedOverlays.put(file, graph);
+				} catch (IOException e) {
+					log.error("Route overlay " + file.getName() + " can't be read", e);
+					loadedOverlays.remove(file);
+					return null;
+				}
+			}
+		}
+		if (!profile.equals(graph.profile)) {
+			log.warn("Route overlay " + file.getName() + " is built for profile " + graph.profile);
+			return null;
+		}
+		if (!graph.isUpToDate(new long[] { reader.getDateCreated() })) {
+			log.warn("Route overlay " + file.getName() + " is outdated for " + obf.getName());
+			return null;
+		}
+		return graph;
+	}
+
+	public static class OverlayRoute {
+		public final TIntArrayList pointsX = new TIntArrayList();
+		public final TIntArrayList pointsY = new TIntArrayList();
+		// speed (m/s) to reach point from previous one
+		public final List<Float> speeds = new ArrayList<Float>();
+		public float time;
+		public float distance;
+
+		void addPoint(int x, int y, float speed) {
+			pointsX.add(x);
+			pointsY.add(y);
+			speeds.add(speed);
+		}
+
+		/**
+		 * Cuts parts closer than cutoffDistance to start and end (they're calculated precisely by A*)
+		 */
+		public PrecalculatedRouteDirection toRouteDirection(float cutoffDistance, float maxSpeed) {
+			int size = pointsX.size();
+			int begi = 0;
+			float d = cutoffDistance;
+			for (; begi < size - 1; begi++) {
+				d -= MapUtils.measuredDist31(pointsX.get(begi), pointsY.get(begi), pointsX.get(begi + 1), pointsY.get(begi + 1));
+				if (d < 0) {
+					break;
+				}
+			}
+			int endi = size - 1;
+			d = cutoffDistance;
+			for (; endi > 0; endi--) {
+				d -= MapUtils.measuredDist31(pointsX.get(endi - 1), pointsY.get(endi - 1), pointsX.get(endi), pointsY.get(endi));
+				if (d < 0) {
+					break;
+				}
+			}
+			if (begi >= endi) {
+				return null;
+			}
+			TIntArrayList px = new TIntArrayList();
+			TIntArrayList py = new TIntArrayList();
+			List<Float> spd = new ArrayList<Float>();
+			for (int i = begi; i <= endi; i++) {
+				px.add(pointsX.get(i));
+				py.add(pointsY.get(i));
+				spd.add(speeds.get(i));
+			}
+			return new PrecalculatedRouteDirection(px, py, spd, maxSpeed);
+		}
+	}
+
+	/**
+	 * @param maxNodeDistance max distance (meters) from points to nearest overlay nodes (other points are not covered by overlay)
+	 * @return null if points are not covered or route is not found
+	 */
+	public OverlayRoute findRoute(LatLon start, LatLon end, List<LatLon> intermediates, double maxNodeDistance) {
+		List<LatLon> points = new ArrayList<LatLon>();
+		points.add(start);
+		if (intermediates != null) {
+			points.addAll(intermediates);
+		}
+		points.add(end);
+		int[] nodes = new int[points.size()];
+		for (int i = 0; i < nodes.length; i++) {
+			int px = MapUtils.get31TileNumberX(points.get(i).getLongitude());
+			int py = MapUtils.get31TileNumberY(points.get(i).getLatitude());
+			nodes[i] = findNearestNode(px, py);
+			if (nodes[i] < 0 || MapUtils.measuredDist31(px, py, x31[nodes[i]], y31[nodes[i]]) > maxNodeDistance) {
+				return null;
+			}
+		}
+		OverlayRoute route = new OverlayRoute();
+		for (int i = 1; i < nodes.length; i++) {
+			if (!findRoute(nodes[i - 1], nodes[i], route)) {
+				return null;
+			}
+		}
+		return route;
+	}
+
+	/**
+	 * Nearest node having edges, grid cells are checked in rings around point until closer node can't be found
+	 * @return -1 if overlay has no edges
+	 */
+	public int findNearestNode(int px, int py) {
+		if (cellNodes.length == 0) {
+			return -1;
+		}
+		int shift = 31 - GRID_ZOOM;
+		int cx = px >> shift;
+		int cy = py >> shift;
+		int maxRing = Math.max(Math.max(cx - minCellX, maxCellX - cx), Math.max(cy - minCellY, maxCellY - cy));
+		// rings which don't intersect cells with nodes are skipped
+		int minRing = Math.max(0, Math.max(Math.max(minCellX - cx, cx - maxCellX), Math.max(minCellY - cy, cy - maxCellY)));
+		int nearest = -1;
+		for (int r = minRing; r <= maxRing; r++) {
+			int fromY = Math.max(cy - r, minCellY);
+			int toY = Math.min(cy + r, maxCellY);
+			for (int i = Math.max(cx - r, minCellX); i <= Math.min(cx + r, maxCellX); i++) {
+				if (i == cx - r || i == cx + r) {
+					for (int j = fromY; j <= toY; j++) {
+						nearest = checkCell(i, j, px, py, nearest);
+					}
+				} else {
+					// inner cells of the ring were checked before
+					if (cy - r >= minCellY) {
+						nearest = checkCell(i, cy - r, px, py, nearest);
+					}
+					if (r > 0 && cy + r <= maxCellY) {
+						nearest = checkCell(i, cy + r, px, py, nearest);
+					}
+				}
+			}
+			// nodes of next rings are at least r cells away from point
+			double ringDist = ((double) r) * (1 << shift);
+			if (nearest >= 0 && dist(nearest, px, py) <= ringDist * ringDist) {
+				break;
+			}
+		}
+		return nearest;
+	}
+
+	private int checkCell(int cx, int cy, int px, int py, int nearest) {
+		int c = Arrays.binarySearch(cellKeys, cellKey(cx, cy));
+		if (c >= 0) {
+			double minDist = nearest < 0 ? Double.POSITIVE_INFINITY : dist(nearest, px, py);
+			for (int k = cellStart[c]; k < cellStart[c + 1]; k++) {
+				int node = cellNodes[k];
+				double d = dist(node, px, py);
+				if (d < minDist || (d == minDist && node < nearest)) {
+					minDist = d;
+					nearest = node;
+				}
+			}
+		}
+		return nearest;
+	}
+
+	private double dist(int node, int px, int py) {
+		double dx = x31[node] - (double) px;
+		double dy = y31[node] - (double) py;
+		return dx * dx + dy * dy;
+	}
+
+	/**
+	 * Finds route between overlay nodes and appends unpacked nodes to route
+	 * @return false if route is not found
+	 */
+	public synchronized boolean findRoute(int start, int end, OverlayRoute route) {
+		initQueryState();
+		try {
+			fwdCost[start] = 0;
+			bwdCost[end] = 0;
+			touched.add(start);
+			touched.add(end);
+			fwdHeap.push(start, 0);
+			bwdHeap.push(end, 0);
+			float best = Float.POSITIVE_INFINITY;
+			int meeting = start == end ? start : -1;
+			if (start == end) {
+				best = 0;
+			}
+			while (!fwdHeap.isEmpty() || !bwdHeap.isEmpty()) {
+				float fmin = fwdHeap.isEmpty() ? Float.POSITIVE_INFINITY : fwdHeap.peekCost();
+				float bmin = bwdHeap.isEmpty() ? Float.POSITIVE_INFINITY : bwdHeap.peekCost();
+				if (Math.min(fmin, bmin) >= best) {
+					break;
+				}
+				boolean forward = fmin <= bmin;
+				NodeHeap heap = forward ? fwdHeap : bwdHeap;
+				float[] cost = forward ? fwdCost : bwdCost;
+				float[] opposite = forward ? bwdCost : fwdCost;
+				float c = heap.peekCost();
+				int node = heap.pop();
+				if (c > cost[node]) {
+					// outdated heap entry
+					continue;
+				}
+				if (opposite[node] != Float.POSITIVE_INFINITY && c + opposite[node] < best) {
+					best = c + opposite[node];
+					meeting = node;
+				}
+				int[] estart = forward ? fwdStart : bwdStart;
+				int[] etarget = forward ? fwdTarget : bwdTarget;
+				float[] etime = forward ? fwdTime : bwdTime;
+				int[] parent = forward ? fwdParent : bwdParent;
+				for (int e = estart[node]; e < estart[node + 1]; e++) {
+					int t = etarget[e];
+					float nc = c + etime[e];
+					if (nc < cost[t]) {
+						if (fwdCost[t] == Float.POSITIVE_INFINITY && bwdCost[t] == Float.POSITIVE_INFINITY) {
+							touched.add(t);
+						}
+						cost[t] = nc;
+						parent[t] = e;
+						heap.push(t, nc);
+					}
+				}
+			}
+			if (meeting < 0) {
+				return false;
+			}
+			// collect path start -> meeting
+			TIntArrayList fwdEdges = new TIntArrayList();
+			for (int n = meeting; n != start; n = fwdSource(fwdParent[n])) {
+				fwdEdges.add(fwdParent[n]);
+			}
+			if (route.pointsX.isEmpty()) {
+				route.addPoint(x31[start], y31[start], 0);
+			}
+			for (int i = fwdEdges.size() - 1; i >= 0; i--) {
+				int e = fwdEdges.get(i);
+				unpack(fwdSource(e), fwdTarget[e], fwdMiddle[e], fwdTime[e], fwdDist[e], route);
+			}
+			// meeting -> end
+			for (int n = meeting; n != end; ) {
+				int e = bwdParent[n];
+				int next = bwdSource(e);
+				unpack(n, next, bwdMiddle[e], bwdTime[e], bwdDist[e], route);
+				n = next;
+			}
+			return true;
+		} finally {
+			resetQueryState();
+		}
+	}
+
+	private int fwdSource(int edge) {
+		return sourceOf(fwdStart, edge);
+	}
+
+	private int bwdSource(int edge) {
+		return sourceOf(bwdStart, edge);
+	}
+
+	private static int sourceOf(int[] start, int edge) {
+		int i = Arrays.binarySearch(start, edge);
+		if (i < 0) {
+			return -i - 2;
+		}
+		// several nodes could have no edges, take the last one starting with edge
+		while (i + 1 < start.length && start[i + 1] == edge) {
+			i++;
+		}
+		return i;
+	}
+
+	private void unpack(int from, int to, int middle, float time, float dist, OverlayRoute route) {
+		if (middle < 0) {
+			route.addPoint(x31[to], y31[to], time > 0 ? dist / time : 0);
+			route.time += time;
+			route.distance += dist;
+			return;
+		}
+		// from -> middle is stored as backward edge of middle, middle -> to as forward edge of middle
+		int e1 = findEdge(bwdStart, bwdTarget, bwdTime, middle, from);
+		int e2 = findEdge(fwdStart, fwdTarget, fwdTime, middle, to);
+		if (e1 < 0 || e2 < 0) {
+			throw new IllegalStateException("Overlay shortcut " + from + " -> " + to + " can't be unpacked");
+		}
+		unpack(from, middle, bwdMiddle[e1], bwdTime[e1], bwdDist[e1], route);
+		unpack(middle, to, fwdMiddle[e2], fwdTime[e2], fwdDist[e2], route);
+	}
+
+	private static int findEdge(int[] start, int[] target, float[] time, int node, int t) {
+		int res = -1;
+		for (int e = start[node]; e < start[node + 1]; e++) {
+			if (target[e] == t && (res == -1 || time[e] < time[res])) {
+				res = e;
+			}
+		}
+		return res;
+	}
+
+	private void initQueryState() {
+		if (fwdCost == null) {
+			int n = x31.length;
+			fwdCost = new float[n];
+			bwdCost = new float[n];
+			Arrays.fill(fwdCost, Float.POSITIVE_INFINITY);
+			Arrays.fill(bwdCost, Float.POSITIVE_INFINITY);
+			fwdParent = new int[n];
+			bwdParent = new int[n];
+			touched = new TIntArrayList();
+			fwdHeap = new NodeHeap();
+			bwdHeap = new NodeHeap();
+		}
+	}
+
+	private void resetQueryState() {
+		for (int i = 0; i < touched.size(); i++) {
+			int n = touched.get(i);
+			fwdCost[n] = Float.POSITIVE_INFINITY;
+			bwdCost[n] = Float.POSITIVE_INFINITY;
+		}
+		touched.clear();
+		fwdHeap.clear();
+		bwdHeap.clear();
+	}
+
+	/**
+	 * Binary min heap of nodes by cost (lazy deletion, outdated entries are skipped by caller)
+	 */
+	static class NodeHeap {
+		private float[] costs = new float[64];
+		private int[] nodes = new int[64];
+		private int size;
+
+		void push(int node, float cost) {
+			if (size == nodes.length) {
+				costs = Arrays.copyOf(costs, size * 2);
+				nodes = Arrays.copyOf(nodes, size * 2);
+			}
+			int pos = size++;
+			while (pos > 0) {
+				int parent = (pos - 1) >> 1;
+				if (costs[parent] <= cost) {
+					break;
+				}
+				costs[pos] = costs[parent];
+				nodes[pos] = nodes[parent];
+				pos = parent;
+			}
+			costs[pos] = cost;
+			nodes[pos] = node;
+		}
+
+		float peekCost() {
+			return costs[0];
+		}
+
+		int pop() {
+			int result = nodes[0];
+			size--;
+			if (size > 0) {
+				float cost = costs[size];
+				int node = nodes[size];
+				int pos = 0;
+				while (true) {
+					int child = 2 * pos + 1;
+					if (child >= size) {
+						break;
+					}
+					if (child + 1 < size && costs[child + 1] < costs[child]) {
+						child++;
+					}
+					if (cost <= costs[child]) {
+						break;
+					}
+					costs[pos] = costs[child];
+					nodes[pos] = nodes[child];
+					pos = child;
+				}
+				costs[pos] = cost;
+				nodes[pos] = node;
+			}
+			return result;
+		}
+
+		boolean isEmpty() {
+			return size == 0;
+		}
+
+		void clear() {
+			size = 0;
+		}
+	}
+
+	public void writeToFile(File file) throws IOException {
+		DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file), 1 << 16));
+		try {
+			out.writeInt(MAGIC);
+			out.writeInt(VERSION);
+			out.writeUTF(profile);
+			out.writeBoolean(baseData);
+			writeLongs(out, sourceDates);
+			writeInts(out, x31);
+			writeInts(out, y31);
+			writeInts(out, rank);
+			writeInts(out, fwdStart);
+			writeInts(out, fwdTarget);
+			writeFloats(out, fwdTime);
+			writeFloats(out, fwdDist);
+			writeInts(out, fwdMiddle);
+			writeInts(out, bwdStart);
+			writeInts(out, bwdTarget);
+			writeFloats(out, bwdTime);
+			writeFloats(out, bwdDist);
+			writeInts(out, bwdMiddle);
+		} finally {
+			out.close();
+		}
+	}
+
+	public static RouteOverlayGraph readFromFile(File file) throws IOException {
+		DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file), 1 << 16));
+		try {
+			if (in.readInt() != MAGIC) {
+				throw new IOException("Not a route overlay file " + file.getName());
+			}
+			int version = in.readInt();
+			if (version != VERSION) {
+				throw new IOException("Unsupported route overlay version " + version + " " + file.getName());
+			}
+			String profile = in.readUTF();
+			boolean baseData = in.readBoolean();
+			long[] dates = readLongs(in);
+			RouteOverlayGraph g = new RouteOverlayGraph(profile, baseData, dates, readInts(in), readInts(in), readInts(in),
+					readInts(in), readInts(in), readFloats(in), readFloats(in), readInts(in),
+					readInts(in), readInts(in), readFloats(in), readFloats(in), readInts(in));
+			log.info("Route overlay " + file.getName() + " loaded: " + g.getNodesCount() + " nodes, " + g.getEdgesCount() + " edges");
+			return g;
+		} finally {
+			in.close();
+		}
+	}
+
+	private static void writeInts(DataOutputStream out, int[] a) throws IOException {
+		out.writeInt(a.length);
+		for (int v : a) {
+			out.writeInt(v);
+		}
+	}
+
+	private static void writeLongs(DataOutputStream out, long[] a) throws IOException {
+		out.writeInt(a.length);
+		for (long v : a) {
+			out.writeLong(v);
+		}
+	}
+
+	private static void writeFloats(DataOutputStream out, float[] a) throws IOException {
+		out.writeInt(a.length);
+		for (float v : a) {
+			out.writeFloat(v);
+		}
+	}
+
+	private static int[] readInts(DataInputStream in) throws IOException {
+		int[] a = new int[in.readInt()];
+		for (int i = 0; i < a.length; i++) {
+			a[i] = in.readInt();
+		}
+		return a;
+	}
+
+	private static long[] readLongs(DataInputStream in) throws IOException {
+		long[] a = new long[in.readInt()];
+		for (int i = 0; i < a.length; i++) {
+			a[i] = in.readLong();
+		}
+		return a;
+	}
+
+	private static float[] readFloats(DataInputStream in) throws IOException {
+		float[] a = new float[in.readInt()];
+		for (int i = 0; i < a.length; i++) {
+			a[i] = in.readFloat();
+		}
+		return a;
+	}
+}
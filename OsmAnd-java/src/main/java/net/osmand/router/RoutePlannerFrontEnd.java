@@ -11,6 +11,8 @@ import net.osmand.binary.BinaryMapRouteReaderAdapter.RouteRegion;
 import net.osmand.binary.RouteDataObject;
 import net.osmand.data.LatLon;
 import net.osmand.data.QuadPoint;
+import net.osmand.router.BinaryRoutePlanner.FinalRouteSegment;
+import net.osmand.router.BinaryRoutePlanner.ReverseSearchFrontier;
 import net.osmand.router.BinaryRoutePlanner.RouteSegment;
 import net.osmand.router.BinaryRoutePlanner.RouteSegmentPoint;
 import net.osmand.util.MapUtils;
@@ -116,7 +118,22 @@ public class RoutePlannerFrontEnd {
 	}
 
 	public RoutingContext buildRoutingContext(RoutingConfiguration config, NativeLibrary nativeLibrary, BinaryMapIndexReader[] map, RouteCalculationMode rm) {
-		return new RoutingContext(config, nativeLibrary, map, rm);
+		RoutingContext ctx = new RoutingContext(config, nativeLibrary, map, rm);
+		if (rm == RouteCalculationMode.COMPLEX) {
+			ctx.routeOverlays = loadRouteOverlays(map, config.routerName);
+		}
+		return ctx;
+	}
+
+	private List<RouteOverlayGraph> loadRouteOverlays(BinaryMapIndexReader[] map, String profile) {
+		List<RouteOverlayGraph> overlays = new ArrayList<RouteOverlayGraph>();
+		for (BinaryMapIndexReader r : map) {
+			RouteOverlayGraph overlay = RouteOverlayGraph.loadOverlay(r, profile);
+			if (overlay != null) {
+				overlays.add(overlay);
+			}
+		}
+		return overlays;
 	}
 
 	public RoutingContext buildRoutingContext(RoutingConfiguration config, NativeLibrary nativeLibrary, BinaryMapIndexReader[] map) {
@@ -691,6 +708,18 @@ public class RoutePlannerFrontEnd {
 				b = l;
 			}
 		}
+		if (ctx.calculationMode == RouteCalculationMode.COMPLEX && routeDirection == null
+				&& maxDistance > ctx.config.DEVIATION_RADIUS * 6) {
+			// precomputed overlay replaces BASE route calculation, if it fails fallback to BASE
+			for (RouteOverlayGraph overlay : ctx.routeOverlays) {
+				RouteOverlayGraph.OverlayRoute overlayRoute = overlay.findRoute(start, end, intermediates,
+						ctx.config.DEVIATION_RADIUS);
+				if (overlayRoute != null) {
+					routeDirection = overlayRoute.toRouteDirection(ctx.config.DEVIATION_RADIUS, ctx.getRouter().getMaxSpeed());
+					break;
+				}
+			}
+		}
 		if (ctx.calculationMode == RouteCalculationMode.COMPLEX && routeDirection == null
 				&& maxDistance > ctx.config.DEVIATION_RADIUS * 6) {
 			ctx.calculationProgress.totalIterations++;
@@ -844,6 +873,13 @@ public class RoutePlannerFrontEnd {
 
 	private List<RouteSegmentResult> searchRouteInternalPrepare(final RoutingContext ctx, RouteSegmentPoint start, RouteSegmentPoint end,
 	                                                            PrecalculatedRouteDirection routeDirection) throws IOException, InterruptedException {
+		if (ctx.reverseSearchFrontier != null && ctx.nativeLib == null && routeDirection == null) {
+			List<RouteSegmentResult> res = searchRouteFromFrontier(ctx, start, end);
+			if (res != null) {
+				return res;
+			}
+		}
+		ctx.reverseSearchFrontier = null;
 		RouteSegment recalculationEnd = getRecalculationEnd(ctx);
 		if (recalculationEnd != null) {
 			ctx.initStartAndTargetPoints(start, recalculationEnd);
@@ -872,6 +908,29 @@ public class RoutePlannerFrontEnd {
 		}
 	}
 
+	private List<RouteSegmentResult> searchRouteFromFrontier(final RoutingContext ctx, RouteSegmentPoint start,
+			RouteSegmentPoint end) throws IOException, InterruptedException {
+		ReverseSearchFrontier frontier = ctx.reverseSearchFrontier;
+		if (!frontier.isSameTarget(end)) {
+			return null;
+		}
+		ctx.initStartAndTargetPoints(start, end);
+		refreshProgressDistance(ctx);
+		long time = System.nanoTime();
+		FinalRouteSegment finalSegment = new BinaryRoutePlanner().searchRouteFromFrontier(ctx, start, frontier);
+		if (finalSegment == null) {
+			log.info("Route is not recalculated from previous reverse graph, run full calculation");
+			return null;
+		}
+		log.info(String.format("Route recalculated from previous reverse graph (%d segments) in %.1f ms",
+				frontier.getVisitedSegments(), (System.nanoTime() - time) / 1e6));
+		if (ctx.calculationProgress != null) {
+			ctx.calculationProgress.frontierRecalculations++;
+		}
+		ctx.finalRouteSegment = finalSegment;
+		return new RouteResultPreparation().prepareResult(ctx, finalSegment);
+	}
+
 	public RouteSegment getRecalculationEnd(final RoutingContext ctx) {
 		RouteSegment recalculationEnd = null;
 		boolean runRecalculation = ctx.previouslyCalculatedRoute != null && ctx.previouslyCalculatedRoute.size() > 0
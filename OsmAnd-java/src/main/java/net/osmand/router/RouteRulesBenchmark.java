@@ -0,0 +1,154 @@
+package net.osmand.router;
+
+import java.io.File;
+import java.io.RandomAccessFile;
+import java.util.ArrayList;
+import java.util.List;
+
+import net.osmand.binary.BinaryMapIndexReader;
+import net.osmand.binary.BinaryMapIndexReader.SearchRequest;
+import net.osmand.binary.BinaryMapRouteReaderAdapter.RouteRegion;
+import net.osmand.binary.BinaryMapRouteReaderAdapter.RouteSubregion;
+import net.osmand.binary.RouteDataObject;
+import net.osmand.data.LatLon;
+import net.osmand.router.GeneralRouter.RouteAttributeContext;
+import net.osmand.router.GeneralRouter.RouteDataObjectAttribute;
+import net.osmand.router.RoutePlannerFrontEnd.RouteCalculationMode;
+
+/**
+ * Compares interpreted and compiled evaluation of routing profile rules.
+ * Evaluates all attributes for every road of obf file (bypassing evaluation cache)
+ * and optionally calculates route between given points in both modes.
+ */
+public class RouteRulesBenchmark {
+
+	private static final RouteDataObjectAttribute[] ROAD_ATTRIBUTES = { RouteDataObjectAttribute.ROAD_SPEED,
+			RouteDataObjectAttribute.ROAD_PRIORITIES, RouteDataObjectAttribute.ACCESS, RouteDataObjectAttribute.ONEWAY,
+			RouteDataObjectAttribute.PENALTY_TRANSITION };
+
+	public static void main(String[] args) throws Exception {
+		File obf = null;
+		String profile = "car";
+		int iterations = 5;
+		LatLon start = null;
+		LatLon end = null;
+		for (String a : args) {
+			if (a.startsWith("-obf=")) {
+				obf = new File(a.substring("-obf=".length()));
+			} else if (a.startsWith("-profile=")) {
+				profile = a.substring("-profile=".length());
+			} else if (a.startsWith("-iterations=")) {
+				iterations = Integer.parseInt(a.substring("-iterations=".length()));
+			} else if (a.startsWith("-start=")) {
+				start = parseLatLon(a.substring("-start=".length()));
+			} else if (a.startsWith("-end=")) {
+				end = parseLatLon(a.substring("-end=".length()));
+			}
+		}
+		if (obf == null) {
+			System.out.println("Usage: -obf=file.obf [-profile=car] [-iterations=5] [-start=lat,lon -end=lat,lon]");
+			return;
+		}
+		BinaryMapIndexReader reader = new BinaryMapIndexReader(new RandomAccessFile(obf, "r"), obf);
+		RoutingConfiguration config = RoutingConfiguration.getDefault().build(profile,
+				RoutingConfiguration.DEFAULT_MEMORY_LIMIT * 10);
+		List<RouteDataObject> roads = loadRoads(reader);
+		System.out.println("Loaded roads: " + roads.size());
+
+		GeneralRouter.USE_COMPILED_RULES = false;
+		float[] expected = evaluate(config.router, roads);
+		GeneralRouter.USE_COMPILED_RULES = true;
+		float[] actual = evaluate(config.router, roads);
+		int mismatches = 0;
+		for (int i = 0; i < expected.length; i++) {
+			if (Float.compare(expected[i], actual[i]) != 0) {
+				mismatches++;
+			}
+		}
+		System.out.println("Evaluated values: " + expected.length + ", mismatches: " + mismatches);
+
+		for (int it = 0; it < iterations; it++) {
+			long interpreted = timeEvaluation(config.router, roads, false);
+			long compiled = timeEvaluation(config.router, roads, true);
+			System.out.println(String.format("Iteration %d: interpreted %.1f ms, compiled %.1f ms (%.1fx)", it,
+					interpreted / 1e6, compiled / 1e6, interpreted / (double) compiled));
+		}
+
+		if (start != null && end != null) {
+			for (int it = 0; it < iterations; it++) {
+				long interpreted = timeRoute(obf, profile, start, end, false);
+				long compiled = timeRoute(obf, profile, start, end, true);
+				System.out.println(String.format("Route %d: interpreted %.1f ms, compiled %.1f ms", it,
+						interpreted / 1e6, compiled / 1e6));
+			}
+		}
+		reader.close();
+	}
+
+	private static LatLon parseLatLon(String s) {
+		String[] ll = s.split(",");
+		return new LatLon(Double.parseDouble(ll[0]), Double.parseDouble(ll[1]));
+	}
+
+	private static List<RouteDataObject> loadRoads(BinaryMapIndexReader reader) throws Exception {
+		List<RouteDataObject> roads = new ArrayList<RouteDataObject>();
+		for (RouteRegion reg : reader.getRoutingIndexes()) {
+			SearchRequest<RouteDataObject> req = BinaryMapIndexReader.buildSearchRouteRequest(0, Integer.MAX_VALUE, 0,
+					Integer.MAX_VALUE, null);
+			for (RouteSubregion sub : reader.searchRouteIndexTree(req, reg.getSubregions())) {
+				for (RouteDataObject ro : reader.loadRouteIndexData(sub)) {
+					if (ro != null) {
+						roads.add(ro);
+					}
+				}
+			}
+		}
+		return roads;
+	}
+
+	private static float[] evaluate(GeneralRouter router, List<RouteDataObject> roads) {
+		float[] res = new float[roads.size() * (ROAD_ATTRIBUTES.length + 1)];
+		int ind = 0;
+		RouteAttributeContext obstacles = router.getObjContext(RouteDataObjectAttribute.ROUTING_OBSTACLES);
+		for (RouteDataObject ro : roads) {
+			for (RouteDataObjectAttribute attr : ROAD_ATTRIBUTES) {
+				res[ind++] = router.getObjContext(attr).evaluateFloat(ro, Float.NaN);
+			}
+			float obst = 0;
+			for (int i = 0; i < ro.getPointsLength(); i++) {
+				int[] pointTypes = ro.getPointTypes(i);
+				if (pointTypes != null) {
+					obst += obstacles.evaluateFloat(ro.region, pointTypes, 0);
+				}
+			}
+			res[ind++] = obst;
+		}
+		return res;
+	}
+
+	private static long timeEvaluation(GeneralRouter router, List<RouteDataObject> roads, boolean compiled) {
+		GeneralRouter.USE_COMPILED_RULES = compiled;
+		long time = System.nanoTime();
+		evaluate(router, roads);
+		return System.nanoTime() - time;
+	}
+
+	private static long timeRoute(File obf, String profile, LatLon start, LatLon end, boolean compiled)
+			throws Exception {
+		GeneralRouter.USE_COMPILED_RULES = compiled;
+		BinaryMapIndexReader reader = new BinaryMapIndexReader(new RandomAccessFile(obf, "r"), obf);
+		try {
+			// new router to start with empty evaluation cache
+			RoutingConfiguration config = RoutingConfiguration.getDefault().build(profile,
+					RoutingConfiguration.DEFAULT_MEMORY_LIMIT * 10);
+			RoutePlannerFrontEnd frontEnd = new RoutePlannerFrontEnd();
+			RoutingContext ctx = frontEnd.buildRoutingContext(config, null, new BinaryMapIndexReader[] { reader },
+					RouteCalculationMode.NORMAL);
+			long time = System.nanoTime();
+			frontEnd.searchRoute(ctx, start, end, null);
+			return System.nanoTime() - time;
+		} finally {
+			reader.close();
+		}
+	}
+}
@@ -0,0 +1,293 @@
+package net.osmand.router;
+
+import java.util.Arrays;
+
+import net.osmand.router.BinaryRoutePlanner.RouteSegment;
+
+/**
+ * Priority queue of route segments used by {@link BinaryRoutePlanner} instead of java.util.PriorityQueue.
+ * It is an indexed 4-ary min heap over parallel primitive arrays, priority f(x) = g(x) + heuristicCoefficient * h(x)
+ * is calculated once on insert, so sifting compares primitive floats and doesn't call comparator.
+ *
+ * Segments added with key (route point id) are kept unique in the queue: better segment replaces worse one
+ * in place (decrease key) and worse segment is not added at all.
+ */
+public class RouteSegmentQueue {
+
+	public static final long NO_KEY = Long.MIN_VALUE;
+	private static final int ARITY = 4;
+	private static final int INITIAL_CAPACITY = 64;
+
+	private final float heuristicCoefficient;
+
+	// heap of handles, priorities are stored next to handles to not follow handle on each comparison
+	private float[] heapPriorities;
+	private int[] heapHandles;
+	private int size;
+
+	// segment data stored by handle (handle doesn't change while segment is in queue)
+	private RouteSegment[] segments;
+	private long[] keys;
+	private int[] positions;
+	private int[] freeHandles;
+	private int freeHandlesSize;
+	private int handlesSize;
+
+	// open addressing (linear probing) map key -> handle
+	private long[] indexKeys;
+	private int[] indexHandles;
+	private int indexSize;
+	private int indexMask;
+
+	// statistics
+	private int decreasedKeys;
+	private int skippedDuplicates;
+
+	public RouteSegmentQueue(float heuristicCoefficient) {
+		this(heuristicCoefficient, INITIAL_CAPACITY);
+	}
+
+	public RouteSegmentQueue(float heuristicCoefficient, int capacity) {
+		this.heuristicCoefficient = heuristicCoefficient;
+		capacity = Math.max(capacity, ARITY);
+		heapPriorities = new float[capacity];
+		heapHandles = new int[capacity];
+		segments = new RouteSegment[capacity];
+		keys = new long[capacity];
+		positions = new int[capacity];
+		freeHandles = new int[capacity];
+		int indexCapacity = Integer.highestOneBit(capacity * 2 - 1) << 1;
+		indexKeys = new long[indexCapacity];
+		indexHandles = new int[indexCapacity];
+		Arrays.fill(indexKeys, NO_KEY);
+		indexMask = indexCapacity - 1;
+	}
+
+	public float priority(RouteSegment s) {
+		return s.distanceFromStart + heuristicCoefficient * s.distanceToEnd;
+	}
+
+	public boolean add(RouteSegment s) {
+		return add(s, NO_KEY);
+	}
+
+	/**
+	 * @return false if segment with the same key and better (or equal) priority is already in queue
+	 */
+	public boolean add(RouteSegment s, long key) {
+		float p = priority(s);
+		if (key != NO_KEY) {
+			int handle = indexGet(key);
+			if (handle >= 0) {
+				int pos = positions[handle];
+				if (p < heapPriorities[pos]) {
+					decreasedKeys++;
+					segments[handle] = s;
+					siftUp(pos, handle, p);
+					return true;
+				}
+				skippedDuplicates++;
+				return false;
+			}
+		}
+		if (size == heapHandles.length) {
+			grow();
+		}
+		int handle = freeHandlesSize > 0 ? freeHandles[--freeHandlesSize] : handlesSize++;
+		segments[handle] = s;
+		keys[handle] = key;
+		if (key != NO_KEY) {
+			indexPut(key, handle);
+		}
+		size++;
+		siftUp(size - 1, handle, p);
+		return true;
+	}
+
+	public RouteSegment peek() {
+		return size == 0 ? null : segments[heapHandles[0]];
+	}
+
+	public float peekPriority() {
+		return size == 0 ? Float.NaN : heapPriorities[0];
+	}
+
+	public RouteSegment poll() {
+		if (size == 0) {
+			return null;
+		}
+		int handle = heapHandles[0];
+		RouteSegment result = segments[handle];
+		if (keys[handle] != NO_KEY) {
+			indexRemove(keys[handle]);
+		}
+		segments[handle] = null;
+		freeHandles[freeHandlesSize++] = handle;
+		size--;
+		if (size > 0) {
+			siftDown(0, heapHandles[size], heapPriorities[size]);
+		}
+		return result;
+	}
+
+	public boolean isEmpty() {
+		return size == 0;
+	}
+
+	public int size() {
+		return size;
+	}
+
+	public void clear() {
+		Arrays.fill(segments, 0, handlesSize, null);
+		Arrays.fill(indexKeys, NO_KEY);
+		size = 0;
+		handlesSize = 0;
+		freeHandlesSize = 0;
+		indexSize = 0;
+	}
+
+	public int getDecreasedKeys() {
+		return decreasedKeys;
+	}
+
+	public int getSkippedDuplicates() {
+		return skippedDuplicates;
+	}
+
+	private void siftUp(int pos, int handle, float p) {
+		while (pos > 0) {
+			int parent = (pos - 1) / ARITY;
+			if (p >= heapPriorities[parent]) {
+				break;
+			}
+			move(parent, pos);
+			pos = parent;
+		}
+		set(pos, handle, p);
+	}
+
+	private void siftDown(int pos, int handle, float p) {
+		while (true) {
+			int child = pos * ARITY + 1;
+			if (child >= size) {
+				break;
+			}
+			int min = child;
+			float minPriority = heapPriorities[child];
+			int end = Math.min(child + ARITY, size);
+			for (int c = child + 1; c < end; c++) {
+				if (heapPriorities[c] < minPriority) {
+					min = c;
+					minPriority = heapPriorities[c];
+				}
+			}
+			if (p <= minPriority) {
+				break;
+			}
+			move(min, pos);
+			pos = min;
+		}
+		set(pos, handle, p);
+	}
+
+	private void move(int from, int to) {
+		heapPriorities[to] = heapPriorities[from];
+		heapHandles[to] = heapHandles[from];
+		positions[heapHandles[to]] = to;
+	}
+
+	private void set(int pos, int handle, float p) {
+		heapPriorities[pos] = p;
+		heapHandles[pos] = handle;
+		positions[handle] = pos;
+	}
+
+	private void grow() {
+		int capacity = heapHandles.length * 2;
+		heapPriorities = Arrays.copyOf(heapPriorities, capacity);
+		heapHandles = Arrays.copyOf(heapHandles, capacity);
+		segments = Arrays.copyOf(segments, capacity);
+		keys = Arrays.copyOf(keys, capacity);
+		positions = Arrays.copyOf(positions, capacity);
+		freeHandles = Arrays.copyOf(freeHandles, capacity);
+	}
+
+	private static int hash(long key) {
+		long h = key * 0x9E3779B97F4A7C15L;
+		return (int) (h ^ (h >>> 32));
+	}
+
+	private int indexGet(long key) {
+		int i = hash(key) & indexMask;
+		while (indexKeys[i] != NO_KEY) {
+			if (indexKeys[i] == key) {
+				return indexHandles[i];
+			}
+			i = (i + 1) & indexMask;
+		}
+		return -1;
+	}
+
+	private void indexPut(long key, int handle) {
+		int i = hash(key) & indexMask;
+		while (indexKeys[i] != NO_KEY) {
+			if (indexKeys[i] == key) {
+				indexHandles[i] = handle;
+				return;
+			}
+			i = (i + 1) & indexMask;
+		}
+		indexKeys[i] = key;
+		indexHandles[i] = handle;
+		indexSize++;
+		if (indexSize * 2 > indexKeys.length) {
+			rehashIndex(indexKeys.length * 2);
+		}
+	}
+
+	private void indexRemove(long key) {
+		int i = hash(key) & indexMask;
+		while (indexKeys[i] != key) {
+			if (indexKeys[i] == NO_KEY) {
+				return;
+			}
+			i = (i + 1) & indexMask;
+		}
+		indexKeys[i] = NO_KEY;
+		indexSize--;
+		// shift back following entries of the same cluster
+		int j = i;
+		while (true) {
+			j = (j + 1) & indexMask;
+			long k = indexKeys[j];
+			if (k == NO_KEY) {
+				return;
+			}
+			int home = hash(k) & indexMask;
+			// entry could stay if its home is cyclically in (i, j]
+			if (i <= j ? (i < home && home <= j) : (i < home || home <= j)) {
+				continue;
+			}
+			indexKeys[i] = k;
+			indexHandles[i] = indexHandles[j];
+			indexKeys[j] = NO_KEY;
+			i = j;
+		}
+	}
+
+	private void rehashIndex(int capacity) {
+		long[] oldKeys = indexKeys;
+		int[] oldHandles = indexHandles;
+		indexKeys = new long[capacity];
+		indexHandles = new int[capacity];
+		Arrays.fill(indexKeys, NO_KEY);
+		indexMask = capacity - 1;
+		indexSize = 0;
+		for (int i = 0; i < oldKeys.length; i++) {
+			if (oldKeys[i] != NO_KEY) {
+				indexPut(oldKeys[i], oldHandles[i]);
+			}
+		}
+	}
+}
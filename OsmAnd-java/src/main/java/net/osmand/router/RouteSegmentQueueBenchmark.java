@@ -0,0 +1,203 @@
+package net.osmand.router;
+
+import java.io.File;
+import java.io.RandomAccessFile;
+import java.lang.management.ManagementFactory;
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.Random;
+
+import net.osmand.binary.BinaryMapIndexReader;
+import net.osmand.data.LatLon;
+import net.osmand.router.BinaryRoutePlanner.RouteSegment;
+import net.osmand.router.BinaryRoutePlanner.RouteSegmentVisitor;
+import net.osmand.router.RoutePlannerFrontEnd.RouteCalculationMode;
+
+/**
+ * Compares java.util.PriorityQueue with comparator (previous implementation) and {@link RouteSegmentQueue}
+ * replaying queue operations of recorded route queries.
+ * Route is calculated once with visitor which records polled segments (priority and route point id),
+ * then both queues replay the same add/poll sequence (every 4th segment is added again with worse priority,
+ * one poll per 2 added segments) and report operations per second and allocated bytes per operation.
+ * Without -obf synthetic trace is generated.
+ * Usage: [-obf=file.obf -start=lat;lon -end=lat;lon] [-vehicle=car] [-iterations=10] [-segments=500000]
+ */
+public class RouteSegmentQueueBenchmark {
+
+	private static class Result {
+		long ops;
+		long time;
+		long allocated;
+
+		@Override
+		public String toString() {
+			return String.format("%.2f M ops/s, %.1f bytes/op", ops / (time / 1e9) / 1e6,
+					allocated < 0 ? Double.NaN : allocated / (double) ops);
+		}
+	}
+
+	public static void main(String[] args) throws Exception {
+		String obf = null;
+		LatLon start = null;
+		LatLon end = null;
+		String vehicle = "car";
+		int iterations = 10;
+		int segments = 500000;
+		for (String a : args) {
+			if (a.startsWith("-obf=")) {
+				obf = a.substring("-obf=".length());
+			} else if (a.startsWith("-start=")) {
+				start = parseLatLon(a.substring("-start=".length()));
+			} else if (a.startsWith("-end=")) {
+				end = parseLatLon(a.substring("-end=".length()));
+			} else if (a.startsWith("-vehicle=")) {
+				vehicle = a.substring("-vehicle=".length());
+			} else if (a.startsWith("-iterations=")) {
+				iterations = Integer.parseInt(a.substring("-iterations=".length()));
+			} else if (a.startsWith("-segments=")) {
+				segments = Integer.parseInt(a.substring("-segments=".length()));
+			}
+		}
+		final float heuristicCoefficient;
+		List<RouteSegment> trace;
+		if (obf != null && start != null && end != null) {
+			RoutingConfiguration config = RoutingConfiguration.getDefault().build(vehicle, RoutingConfiguration.DEFAULT_MEMORY_LIMIT * 10);
+			heuristicCoefficient = config.heuristicCoefficient;
+			trace = recordRoute(new File(obf), config, start, end);
+		} else {
+			heuristicCoefficient = 1;
+			trace = syntheticTrace(segments);
+		}
+		System.out.println("Trace segments " + trace.size());
+		List<RouteSegment> duplicates = new ArrayList<RouteSegment>();
+		for (int i = 0; i < trace.size(); i += 4) {
+			RouteSegment s = trace.get(i);
+			RouteSegment d = new RouteSegment(s.road, s.getSegmentStart());
+			d.distanceFromStart = s.distanceFromStart + 10;
+			d.distanceToEnd = s.distanceToEnd;
+			duplicates.add(d);
+		}
+		for (int it = 0; it < iterations; it++) {
+			Result pq = replayPriorityQueue(trace, duplicates, heuristicCoefficient);
+			Result rq = replayRouteSegmentQueue(trace, duplicates, heuristicCoefficient);
+			System.out.println(String.format("Iteration %d: PriorityQueue %s, RouteSegmentQueue %s", it + 1, pq, rq));
+		}
+	}
+
+	private static LatLon parseLatLon(String s) {
+		String[] pt = s.split(";");
+		return new LatLon(Double.parseDouble(pt[0]), Double.parseDouble(pt[1]));
+	}
+
+	private static List<RouteSegment> recordRoute(File obf, RoutingConfiguration config, LatLon start, LatLon end) throws Exception {
+		BinaryMapIndexReader reader = new BinaryMapIndexReader(new RandomAccessFile(obf, "r"), obf);
+		RoutePlannerFrontEnd frontEnd = new RoutePlannerFrontEnd();
+		RoutingContext ctx = frontEnd.buildRoutingContext(config, null, new BinaryMapIndexReader[] { reader },
+				RouteCalculationMode.NORMAL);
+		final List<RouteSegment> trace = new ArrayList<RouteSegment>();
+		ctx.setVisitor(new RouteSegmentVisitor() {
+			@Override
+			public void visitSegment(RouteSegment segment, int segmentEnd, boolean poll) {
+				if (poll) {
+					RouteSegment s = new RouteSegment(segment.road, segment.getSegmentStart());
+					s.assignDirection(segment.getDirectionAssigned());
+					s.distanceFromStart = segment.distanceFromStart;
+					s.distanceToEnd = segment.distanceToEnd;
+					trace.add(s);
+				}
+			}
+		});
+		frontEnd.searchRoute(ctx, start, end, null);
+		reader.close();
+		return trace;
+	}
+
+	private static List<RouteSegment> syntheticTrace(int segments) {
+		Random rnd = new Random(11);
+		List<RouteSegment> trace = new ArrayList<RouteSegment>(segments);
+		float g = 0;
+		for (int i = 0; i < segments; i++) {
+			// priorities slowly grow as A* frontier expands
+			g += rnd.nextFloat() * 0.5f;
+			RouteSegment s = new RouteSegment(null, i % 1000);
+			s.distanceFromStart = g + rnd.nextFloat() * 60;
+			s.distanceToEnd = rnd.nextFloat() * 600;
+			trace.add(s);
+		}
+		return trace;
+	}
+
+	private static long key(RouteSegment s, int i) {
+		long id = s.road == null ? i : s.road.getId();
+		return (id << 11) + (s.getSegmentStart() << 1) + (s.isPositive() ? 1 : 0);
+	}
+
+	private static Result replayPriorityQueue(List<RouteSegment> trace, List<RouteSegment> duplicates, final float hc) {
+		Result r = new Result();
+		long allocated = allocatedBytes();
+		long now = System.nanoTime();
+		PriorityQueue<RouteSegment> queue = new PriorityQueue<RouteSegment>(50, new Comparator<RouteSegment>() {
+			@Override
+			public int compare(RouteSegment o1, RouteSegment o2) {
+				return BinaryRoutePlanner.roadPriorityComparator(o1.distanceFromStart, o1.distanceToEnd,
+						o2.distanceFromStart, o2.distanceToEnd, hc);
+			}
+		});
+		for (int i = 0; i < trace.size(); i++) {
+			queue.add(trace.get(i));
+			r.ops++;
+			if (i % 4 == 0) {
+				queue.add(duplicates.get(i / 4));
+				r.ops++;
+			}
+			if (i % 2 == 1) {
+				queue.poll();
+				r.ops++;
+			}
+		}
+		while (queue.poll() != null) {
+			r.ops++;
+		}
+		r.time = System.nanoTime() - now;
+		r.allocated = allocated < 0 ? -1 : allocatedBytes() - allocated;
+		return r;
+	}
+
+	private static Result replayRouteSegmentQueue(List<RouteSegment> trace, List<RouteSegment> duplicates, float hc) {
+		Result r = new Result();
+		long allocated = allocatedBytes();
+		long now = System.nanoTime();
+		RouteSegmentQueue queue = new RouteSegmentQueue(hc);
+		for (int i = 0; i < trace.size(); i++) {
+			queue.add(trace.get(i), key(trace.get(i), i));
+			r.ops++;
+			if (i % 4 == 0) {
+				queue.add(duplicates.get(i / 4), key(trace.get(i), i));
+				r.ops++;
+			}
+			if (i % 2 == 1) {
+				queue.poll();
+				r.ops++;
+			}
+		}
+		while (queue.poll() != null) {
+			r.ops++;
+		}
+		r.time = System.nanoTime() - now;
+		r.allocated = allocated < 0 ? -1 : allocatedBytes() - allocated;
+		return r;
+	}
+
+	private static long allocatedBytes() {
+		try {
+			Class<?> cl = Class.forName("com.sun.management.ThreadMXBean");
+			Method m = cl.getMethod("getThreadAllocatedBytes", long.class);
+			return (Long) m.invoke(ManagementFactory.getThreadMXBean(), Thread.currentThread().getId());
+		} catch (Exception e) {
+			return -1;
+		}
+	}
+}
@@ -0,0 +1,218 @@
+package net.osmand.router;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import net.osmand.PlatformUtil;
+import net.osmand.binary.BinaryMapIndexReader;
+import net.osmand.binary.BinaryMapRouteReaderAdapter.RouteSubregion;
+import net.osmand.binary.RouteDataObject;
+
+import org.apache.commons.logging.Log;
+
+/**
+ * Route objects of subregion tiles decoded once and shared between routing contexts (safe for concurrent use).
+ * Tiles are keyed by obf file (path and creation date) and subregion offset, so contexts with different reader
+ * instances of the same file share tiles too. Contexts still build own route segments from shared objects
+ * as route segments keep search state.
+ *
+ * Cache size is bounded by estimated size of objects (same estimate as routing memory limit uses),
+ * least recently used tiles are evicted when limit is exceeded (tiles are kept in access ordered map, so eviction
+ * doesn't sort entries).
+ * Process-wide cache is enabled with {@link #initSharedCache(long)} and used by all new routing contexts.
+ */
+public class RouteTileDataCache {
+
+	private static final Log log = PlatformUtil.getLog(RouteTileDataCache.class);
+
+	// after eviction cache is filled to this ratio of limit
+	private static final float EVICT_TO_RATIO = 0.8f;
+
+	private static volatile RouteTileDataCache sharedCache;
+
+	private final long maxSize;
+	// access ordered, guarded by itself
+	private final LinkedHashMap<Long, TileData> tiles = new LinkedHashMap<Long, TileData>(16, 0.75f, true);
+	private long size;
+	private final ConcurrentMap<String, Integer> fileIds = new ConcurrentHashMap<String, Integer>();
+	private final AtomicInteger fileIdsCounter = new AtomicInteger();
+
+	private final AtomicLong hits = new AtomicLong();
+	private final AtomicLong misses = new AtomicLong();
+	private final AtomicLong evictedTiles = new AtomicLong();
+	private final AtomicLong evictedSize = new AtomicLong();
+	private final AtomicLong loadTime = new AtomicLong();
+
+	private static class TileData {
+		final List<RouteDataObject> objects;
+		final int size;
+
+		TileData(List<RouteDataObject> objects, int size) {
+			this.objects = objects;
+			this.size = size;
+		}
+	}
+
+	/**
+	 * @param maxSize max estimated size of cached objects in bytes, 0 - not bounded
+	 */
+	public RouteTileDataCache(long maxSize) {
+		this.maxSize = maxSize;
+	}
+
+	public static RouteTileDataCache initSharedCache(long maxSize) {
+		sharedCache = new RouteTileDataCache(maxSize);
+		return sharedCache;
+	}
+
+	public static RouteTileDataCache getSharedCache() {
+		return sharedCache;
+	}
+
+	public static void clearSharedCache() {
+		sharedCache = null;
+	}
+
+	public List<RouteDataObject> loadRouteIndexData(BinaryMapIndexReader reader, RouteSubregion subregion) throws IOException {
+		Long key = getTileKey(reader, subregion);
+		TileData data = get(key);
+		if (data == null) {
+			// reader is not thread safe
+			synchronized (reader) {
+				data = get(key);
+				if (data == null) {
+					long now = System.nanoTime();
+					List<RouteDataObject> objects = reader.loadRouteIndexData(subregion);
+					loadTime.addAndGet(System.nanoTime() - now);
+					misses.incrementAndGet();
+					return put(key, new TileData(objects, estimateSize(objects))).objects;
+				}
+			}
+		}
+		hits.incrementAndGet();
+		return data.objects;
+	}
+
+	private TileData get(Long key) {
+		synchronized (tiles) {
+			return tiles.get(key);
+		}
+	}
+
+	private TileData put(Long key, TileData data) {
+		synchronized (tiles) {
+			TileData prev = tiles.get(key);
+			if (prev != null) {
+				// loaded through another reader of the same file
+				return prev;
+			}
+			tiles.put(key, data);
+			size += data.size;
+			if (maxSize > 0 && size > maxSize) {
+				evict();
+			}
+			return data;
+		}
+	}
+
+	private Long getTileKey(BinaryMapIndexReader reader, RouteSubregion subregion) {
+		File f = reader.getFile();
+		String file = (f == null ? "" : f.getAbsolutePath()) + ":" + reader.getDateCreated();
+		Integer fileId = fileIds.get(file);
+		if (fileId == null) {
+			Integer newId = fileIdsCounter.incrementAndGet();
+			fileId = fileIds.putIfAbsent(file, newId);
+			if (fileId == null) {
+				fileId = newId;
+			}
+		}
+		return (((long) fileId) << 32) | (subregion.filePointer & 0xffffffffL);
+	}
+
+	private static int estimateSize(List<RouteDataObject> objects) {
+		int sz = 16 + 8 * objects.size();
+		for (RouteDataObject o : objects) {
+			if (o != null) {
+				sz += RoutingContext.getEstimatedSize(o);
+			}
+		}
+		return sz;
+	}
+
+	// called under tiles lock, the most recently loaded tile is never evicted
+	private void evict() {
+		long desirableSize = (long) (maxSize * EVICT_TO_RATIO);
+		Iterator<Map.Entry<Long, TileData>> it = tiles.entrySet().iterator();
+		while (size > desirableSize && tiles.size() > 1) {
+			TileData data = it.next().getValue();
+			it.remove();
+			size -= data.size;
+			evictedTiles.incrementAndGet();
+			evictedSize.addAndGet(data.size);
+		}
+		if (log.isDebugEnabled()) {
+			log.debug("Route tile cache eviction: " + this);
+		}
+	}
+
+	public void clear() {
+		synchronized (tiles) {
+			tiles.clear();
+			size = 0;
+		}
+	}
+
+	public int getLoadedTiles() {
+		synchronized (tiles) {
+			return tiles.size();
+		}
+	}
+
+	public long getSize() {
+		synchronized (tiles) {
+			return size;
+		}
+	}
+
+	public long getMaxSize() {
+		return maxSize;
+	}
+
+	public long getHits() {
+		return hits.get();
+	}
+
+	public long getMisses() {
+		return misses.get();
+	}
+
+	public long getEvictedTiles() {
+		return evictedTiles.get();
+	}
+
+	public long getEvictedSize() {
+		return evictedSize.get();
+	}
+
+	public long getLoadTimeNanos() {
+		return loadTime.get();
+	}
+
+	@Override
+	public String toString() {
+		long h = hits.get();
+		long m = misses.get();
+		return String.format("tiles %d, size %.1f / %.1f MB, hits %d, misses %d (hit ratio %.1f%%), "
+				+ "evicted %d tiles (%.1f MB), load time %.1f ms", getLoadedTiles(), getSize() / (float) (1 << 20),
+				maxSize / (float) (1 << 20), h, m, h + m == 0 ? 0 : h * 100f / (h + m), evictedTiles.get(),
+				evictedSize.get() / (float) (1 << 20), loadTime.get() / 1e6);
+	}
+}
@@ -48,6 +48,13 @@ public class RoutingConfiguration {
 	
 	// 1.6 Time to calculate all access restrictions based on conditions
 	public long routeCalculationTime = 0;
+
+	// 1.7 Expand direct and reverse A* graph on separate threads (only when planRoadDirection = 0)
+	public boolean parallelBidirectionalSearch = false;
+
+	// 1.8 Keep reverse A* graph of calculated route in routing context, so route to the same target
+	// could be recalculated from another start point only by expanding direct graph
+	public boolean incrementalRecalculation = false;
 	
 	public static class Builder {
 		// Design time storage
@@ -106,6 +113,8 @@ public class RoutingConfiguration {
 				i.memoryLimitation = memoryLimitMB * (1l << 20);
 			}
 			i.planRoadDirection = parseSilentInt(getAttribute(i.router, "planRoadDirection"), i.planRoadDirection);
+			i.parallelBidirectionalSearch = Boolean.parseBoolean(getAttribute(i.router, "parallelBidirectionalSearch"));
+			i.incrementalRecalculation = Boolean.parseBoolean(getAttribute(i.router, "incrementalRecalculation"));
 //			i.planRoadDirection = 1;
 			return i;
 		}
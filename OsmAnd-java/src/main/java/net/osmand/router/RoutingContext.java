@@ -71,17 +71,26 @@ public class RoutingContext {
 	public boolean leftSideNavigation;
 	public List<RouteSegmentResult> previouslyCalculatedRoute;
 	public PrecalculatedRouteDirection precalculatedRouteDirection;
+	// precomputed overlays of maps (same profile) used instead of BASE route calculation for long routes in COMPLEX mode
+	public List<RouteOverlayGraph> routeOverlays = Collections.emptyList();
+	// reverse graph of last calculated route (config.incrementalRecalculation), context should be reused to recalculate
+	public BinaryRoutePlanner.ReverseSearchFrontier reverseSearchFrontier;
 	
 	
-	// 2. Routing memory cache (big objects)
+	// 2. Routing memory cache (big objects), guarded by this as tiles could be loaded by direct and reverse search threads
 	TLongObjectHashMap<List<RoutingSubregionTile>> indexedSubregions = new TLongObjectHashMap<List<RoutingSubregionTile>>();
 	
 	// Needs to be a sorted array list . Another option to use hashmap but it will be more memory expensive
 	List<RoutingSubregionTile> subregionTiles = new ArrayList<RoutingSubregionTile>();
 	
-	// 3. Warm object caches
+	// decoded tile data shared with other contexts (process-wide cache by default if it is initialized)
+	public RouteTileDataCache tileDataCache;
+	
+	// 3. Warm object caches (separate for direct and reverse search, so both could be expanded on different threads)
 	ArrayList<RouteSegment> segmentsToVisitPrescripted = new ArrayList<BinaryRoutePlanner.RouteSegment>(5);
 	ArrayList<RouteSegment> segmentsToVisitNotForbidden = new ArrayList<BinaryRoutePlanner.RouteSegment>(5);
+	ArrayList<RouteSegment> reverseSegmentsToVisitPrescripted = new ArrayList<BinaryRoutePlanner.RouteSegment>(5);
+	ArrayList<RouteSegment> reverseSegmentsToVisitNotForbidden = new ArrayList<BinaryRoutePlanner.RouteSegment>(5);
 	
 	
 	// 5. debug information (package accessor)
@@ -105,6 +114,8 @@ public class RoutingContext {
 		this.leftSideNavigation = cp.leftSideNavigation;
 		this.reverseMap.putAll(cp.reverseMap);
 		this.nativeLib = cp.nativeLib;
+		this.tileDataCache = cp.tileDataCache;
+		this.routeOverlays = cp.routeOverlays;
 		// copy local data and clear caches
 		for(RoutingSubregionTile tl : subregionTiles) {
 			if(tl.isLoaded()) {
@@ -140,6 +151,7 @@ public class RoutingContext {
 		}
 		this.config = config;
 		this.nativeLib = nativeLibrary;
+		this.tileDataCache = RouteTileDataCache.getSharedCache();
 	}
 	
 	
@@ -147,7 +159,7 @@ public class RoutingContext {
 		return visitor;
 	}
 	
-	public int getCurrentlyLoadedTiles() {
+	public synchronized int getCurrentlyLoadedTiles() {
 		int cnt = 0;
 		for(RoutingSubregionTile t : this.subregionTiles){
 			if(t.isLoaded()) {
@@ -211,7 +223,7 @@ public class RoutingContext {
 		unloadAllData(null);
 	}
 	
-	public void unloadAllData(RoutingContext except) {
+	public synchronized void unloadAllData(RoutingContext except) {
 		for (RoutingSubregionTile tl : subregionTiles) {
 			if (tl.isLoaded()) {
 				if(except == null || except.searchSubregionTile(tl.subregion) < 0){
@@ -253,7 +265,7 @@ public class RoutingContext {
 	}
 	
 	
-	public RouteSegment loadRouteSegment(int x31, int y31, long memoryLimit) {
+	public synchronized RouteSegment loadRouteSegment(int x31, int y31, long memoryLimit) {
 		long tileId = getRoutingTile(x31, y31, memoryLimit);
 		TLongObjectHashMap<RouteDataObject> excludeDuplications = new TLongObjectHashMap<RouteDataObject>();
 		RouteSegment original = null;
@@ -267,7 +279,7 @@ public class RoutingContext {
 		return original;
 	}
 	
-	public void loadSubregionTile(final RoutingSubregionTile ts, boolean loadObjectsInMemory, List<RouteDataObject> toLoad, TLongHashSet excludeNotAllowed) {
+	public synchronized void loadSubregionTile(final RoutingSubregionTile ts, boolean loadObjectsInMemory, List<RouteDataObject> toLoad, TLongHashSet excludeNotAllowed) {
 		boolean wasUnloaded = ts.isUnloaded();
 		int ucount = ts.getUnloadCont();
 		if (nativeLib == null) {
@@ -275,7 +287,12 @@ public class RoutingContext {
 			try {
 				BinaryMapIndexReader reader = reverseMap.get(ts.subregion.routeReg);
 				ts.setLoadedNonNative();
-				List<RouteDataObject> res = reader.loadRouteIndexData(ts.subregion);
+				List<RouteDataObject> res;
+				if (tileDataCache != null) {
+					res = tileDataCache.loadRouteIndexData(reader, ts.subregion);
+				} else {
+					res = reader.loadRouteIndexData(ts.subregion);
+				}
 				
 				if(toLoad != null) {
 					toLoad.addAll(res);
@@ -283,6 +300,10 @@ public class RoutingContext {
 					for(RouteDataObject ro : res){
 						if(ro != null) {
 							if(config.routeCalculationTime != 0) {
+								if (tileDataCache != null) {
+									// object is shared with other contexts (could have other calculation time)
+									ro = copyWithOwnTypes(ro);
+								}
 								ro.processConditionalTags(config.routeCalculationTime);
 							}
 							if(config.router.acceptLine(ro)) {
@@ -379,7 +400,7 @@ public class RoutingContext {
 		return list;
 	}
 
-	public List<RoutingSubregionTile> loadTileHeaders(final int zoomToLoadM31, int tileX, int tileY) {
+	public synchronized List<RoutingSubregionTile> loadTileHeaders(final int zoomToLoadM31, int tileX, int tileY) {
 		SearchRequest<RouteDataObject> request = BinaryMapIndexReader.buildSearchRouteRequest(tileX << zoomToLoadM31,
 				(tileX + 1) << zoomToLoadM31, tileY << zoomToLoadM31, (tileY + 1) << zoomToLoadM31, null);
 		List<RoutingSubregionTile> collection = null;
@@ -389,7 +410,11 @@ public class RoutingContext {
 				if (r.getValue().size() > 0) {
 					long now = System.nanoTime();
 					// int rg = r.getValue().get(0).routeReg.regionsRead;
-					List<RouteSubregion> subregs = r.getKey().searchRouteIndexTree(request, r.getValue());
+					List<RouteSubregion> subregs;
+					// reader could be shared with contexts running on other threads
+					synchronized (r.getKey()) {
+						subregs = r.getKey().searchRouteIndexTree(request, r.getValue());
+					}
 					if(subregs.size() > 0) {
 						checkOldRoutingFiles(r.getKey());
 					}
@@ -422,7 +447,7 @@ public class RoutingContext {
 		loadTileData(x31, y31, zoomAround, toFillIn, false);
 	}
 	
-	public void loadTileData(int x31, int y31, int zoomAround, final List<RouteDataObject> toFillIn, boolean allowDuplications) {
+	public synchronized void loadTileData(int x31, int y31, int zoomAround, final List<RouteDataObject> toFillIn, boolean allowDuplications) {
 		int t =  config.ZOOM_TO_LOAD_TILES - zoomAround;
 		int coordinatesShift = (1 << (31 - config.ZOOM_TO_LOAD_TILES));
 		if(t <= 0) {
@@ -518,7 +543,7 @@ public class RoutingContext {
 		return getCurrentEstimatedSize() > 0.9 * memoryLimit;
 	}
 	
-	public void unloadUnusedTiles(long memoryLimit) {
+	public synchronized void unloadUnusedTiles(long memoryLimit) {
 		float desirableSize = memoryLimit * 0.7f;
 		List<RoutingSubregionTile> list = new ArrayList<RoutingSubregionTile>(subregionTiles.size() / 2);
 		int loaded = 0;
@@ -747,6 +772,18 @@ public class RoutingContext {
 		}
 	}
 	
+	private static RouteDataObject copyWithOwnTypes(RouteDataObject ro) {
+		RouteDataObject copy = new RouteDataObject(ro);
+		copy.types = ro.types == null ? null : ro.types.clone();
+		if (ro.pointTypes != null) {
+			copy.pointTypes = new int[ro.pointTypes.length][];
+			for (int i = 0; i < ro.pointTypes.length; i++) {
+				copy.pointTypes[i] = ro.pointTypes[i] == null ? null : ro.pointTypes[i].clone();
+			}
+		}
+		return copy;
+	}
+
 	static int getEstimatedSize(RouteDataObject o) {
 		// calculate size
 		int sz = 0;
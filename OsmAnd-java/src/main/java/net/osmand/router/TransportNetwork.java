@@ -0,0 +1,494 @@
+package net.osmand.router;
+
+import gnu.trove.list.array.TIntArrayList;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+
+import net.osmand.PlatformUtil;
+import net.osmand.binary.BinaryMapIndexReader;
+import net.osmand.binary.BinaryMapIndexReader.SearchRequest;
+import net.osmand.binary.BinaryMapTransportReaderAdapter.TransportIndex;
+import net.osmand.data.MapObject;
+import net.osmand.data.TransportRoute;
+import net.osmand.data.TransportSchedule;
+import net.osmand.data.TransportStop;
+import net.osmand.data.TransportStopExit;
+import net.osmand.osm.edit.Node;
+import net.osmand.osm.edit.Way;
+import net.osmand.util.MapUtils;
+
+import org.apache.commons.logging.Log;
+
+/**
+ * Transit network of all transport indexes of obf files compiled once: stops are merged between files and routes
+ * are combined (as {@link TransportStopsRouteReader} does per query), every stop has int id, stops are sorted by
+ * grid tile and for every stop routes with position of the stop on the route are precalculated. Network is not
+ * modified after build, so it could be shared by many {@link TransportRoutingContext} (also from different threads),
+ * which don't read files then. Network could be stored to cache file validated by size and creation date of obf files.
+ */
+public class TransportNetwork {
+
+	private static final Log log = PlatformUtil.getLog(TransportNetwork.class);
+
+	public static final int VERSION = 1;
+
+	// zoom of stops grid (~1.2 km)
+	static final int GRID_ZOOM = 15;
+	private static final int STOP_SHIFT = 31 - BinaryMapIndexReader.TRANSPORT_STOP_ZOOM;
+
+	private final String[] fileNames;
+	private final long[] fileSizes;
+	private final long[] fileDates;
+
+	// stops sorted by tile
+	final TransportStop[] stops;
+	final TransportRoute[] routes;
+	// routes of stop s are [stopRoutesStart[s], stopRoutesStart[s + 1]), -1 index if stop is not found on route
+	final int[] stopRoutesStart;
+	final int[] stopRoutes;
+	final int[] stopRouteIndex;
+	// tile of stops [tileStart[i], tileStart[i + 1])
+	private final long[] tileIds;
+	private final int[] tileStart;
+
+	TransportNetwork(String[] fileNames, long[] fileSizes, long[] fileDates, TransportStop[] stops,
+			TransportRoute[] routes, int[] stopRoutesStart, int[] stopRoutes, int[] stopRouteIndex) {
+		this.fileNames = fileNames;
+		this.fileSizes = fileSizes;
+		this.fileDates = fileDates;
+		this.stops = stops;
+		this.routes = routes;
+		this.stopRoutesStart = stopRoutesStart;
+		this.stopRoutes = stopRoutes;
+		this.stopRouteIndex = stopRouteIndex;
+		TIntArrayList starts = new TIntArrayList();
+		long[] tiles = new long[stops.length];
+		int cnt = 0;
+		for (int i = 0; i < stops.length; i++) {
+			long tile = getTileId(stops[i].x31, stops[i].y31);
+			if (cnt == 0 || tiles[cnt - 1] != tile) {
+				tiles[cnt++] = tile;
+				starts.add(i);
+			}
+		}
+		starts.add(stops.length);
+		tileIds = Arrays.copyOf(tiles, cnt);
+		tileStart = starts.toArray();
+	}
+
+	private static long getTileId(int x31, int y31) {
+		return (((long) (x31 >>> (31 - GRID_ZOOM))) << GRID_ZOOM) + (y31 >>> (31 - GRID_ZOOM));
+	}
+
+	public int getStopsCount() {
+		return stops.length;
+	}
+
+	public int getRoutesCount() {
+		return routes.length;
+	}
+
+	public TransportStop getStop(int stopId) {
+		return stops[stopId];
+	}
+
+	/**
+	 * Adds ids of stops in [left, right) x [top, bottom) (31 zoom)
+	 */
+	public TIntArrayList searchStops(int left, int top, int right, int bottom, TIntArrayList res) {
+		for (int tx = left >>> (31 - GRID_ZOOM); tx <= (right - 1) >>> (31 - GRID_ZOOM); tx++) {
+			long fromTile = ((long) tx << GRID_ZOOM) + (top >>> (31 - GRID_ZOOM));
+			long toTile = ((long) tx << GRID_ZOOM) + ((bottom - 1) >>> (31 - GRID_ZOOM));
+			int t = Arrays.binarySearch(tileIds, fromTile);
+			if (t < 0) {
+				t = -(t + 1);
+			}
+			for (; t < tileIds.length && tileIds[t] <= toTile; t++) {
+				for (int s = tileStart[t]; s < tileStart[t + 1]; s++) {
+					TransportStop st = stops[s];
+					if (st.x31 >= left && st.x31 < right && st.y31 >= top && st.y31 < bottom) {
+						res.add(s);
+					}
+				}
+			}
+		}
+		return res;
+	}
+
+	public boolean isValid(BinaryMapIndexReader... readers) {
+		if (readers.length != fileNames.length) {
+			return false;
+		}
+		for (int i = 0; i < readers.length; i++) {
+			File f = readers[i].getFile();
+			if (!f.getName().equals(fileNames[i]) || f.length() != fileSizes[i]
+					|| getDateCreated(readers[i]) != fileDates[i]) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	private static long getDateCreated(BinaryMapIndexReader reader) {
+		long d = reader.getDateCreated();
+		return d == 0 ? reader.getFile().lastModified() : d;
+	}
+
+	/**
+	 * @return network read from cache file if it is valid for readers, otherwise built network (cache file is rewritten)
+	 */
+	public static TransportNetwork load(File cache, BinaryMapIndexReader... readers) throws IOException {
+		if (cache.exists()) {
+			try {
+				TransportNetwork network = readFromFile(cache);
+				if (network != null && network.isValid(readers)) {
+					return network;
+				}
+			} catch (IOException e) {
+				log.warn("Can't read transport network " + cache.getName(), e);
+			}
+		}
+		TransportNetwork network = build(readers);
+		try {
+			network.writeToFile(cache);
+		} catch (IOException e) {
+			log.warn("Can't write transport network " + cache.getName(), e);
+		}
+		return network;
+	}
+
+	public static TransportNetwork build(BinaryMapIndexReader... readers) throws IOException {
+		long time = System.currentTimeMillis();
+		int left = Integer.MAX_VALUE;
+		int top = Integer.MAX_VALUE;
+		int right = 0;
+		int bottom = 0;
+		String[] fileNames = new String[readers.length];
+		long[] fileSizes = new long[readers.length];
+		long[] fileDates = new long[readers.length];
+		for (int i = 0; i < readers.length; i++) {
+			fileNames[i] = readers[i].getFile().getName();
+			fileSizes[i] = readers[i].getFile().length();
+			fileDates[i] = getDateCreated(readers[i]);
+			for (TransportIndex ti : readers[i].getTransportIndexes()) {
+				left = Math.min(left, ti.getLeft());
+				top = Math.min(top, ti.getTop());
+				right = Math.max(right, ti.getRight());
+				bottom = Math.max(bottom, ti.getBottom());
+			}
+		}
+		List<TransportStop> stops = new ArrayList<TransportStop>();
+		if (left <= right) {
+			SearchRequest<TransportStop> sr = BinaryMapIndexReader.buildSearchTransportRequest(left << STOP_SHIFT,
+					right << STOP_SHIFT, top << STOP_SHIFT, bottom << STOP_SHIFT, -1, null);
+			Collection<TransportStop> merged = new TransportStopsRouteReader(Arrays.asList(readers))
+					.readMergedTransportStops(sr);
+			for (TransportStop s : merged) {
+				if (!s.isDeleted() && s.getRoutes() != null) {
+					stops.add(s);
+				}
+			}
+		}
+		TransportStop[] stopsArray = stops.toArray(new TransportStop[stops.size()]);
+		Arrays.sort(stopsArray, new Comparator<TransportStop>() {
+			@Override
+			public int compare(TransportStop o1, TransportStop o2) {
+				int c = Long.compare(getTileId(o1.x31, o1.y31), getTileId(o2.x31, o2.y31));
+				return c != 0 ? c : Long.compare(o1.getId(), o2.getId());
+			}
+		});
+		Map<TransportRoute, Integer> routeIds = new IdentityHashMap<TransportRoute, Integer>();
+		List<TransportRoute> routes = new ArrayList<TransportRoute>();
+		int[] stopRoutesStart = new int[stopsArray.length + 1];
+		TIntArrayList stopRoutes = new TIntArrayList();
+		TIntArrayList stopRouteIndex = new TIntArrayList();
+		for (int i = 0; i < stopsArray.length; i++) {
+			stopRoutesStart[i] = stopRoutes.size();
+			for (TransportRoute route : stopsArray[i].getRoutes()) {
+				Integer r = routeIds.get(route);
+				if (r == null) {
+					r = routes.size();
+					routeIds.put(route, r);
+					routes.add(route);
+					// distance is calculated lazily
+					route.getDistance();
+				}
+				stopRoutes.add(r);
+				stopRouteIndex.add(TransportRoutingContext.findStopIndex(route, stopsArray[i]));
+			}
+		}
+		stopRoutesStart[stopsArray.length] = stopRoutes.size();
+		TransportNetwork network = new TransportNetwork(fileNames, fileSizes, fileDates, stopsArray,
+				routes.toArray(new TransportRoute[routes.size()]), stopRoutesStart, stopRoutes.toArray(),
+				stopRouteIndex.toArray());
+		log.info("Transport network is built in " + (System.currentTimeMillis() - time) + " ms: " + stopsArray.length
+				+ " stops, " + routes.size() + " routes");
+		return network;
+	}
+
+	public static TransportNetwork readFromFile(File f) throws IOException {
+		long time = System.currentTimeMillis();
+		DataInputStream is = new DataInputStream(new BufferedInputStream(new FileInputStream(f)));
+		try {
+			if (is.readInt() != VERSION) {
+				return null;
+			}
+			int files = is.readInt();
+			String[] fileNames = new String[files];
+			long[] fileSizes = new long[files];
+			long[] fileDates = new long[files];
+			for (int i = 0; i < files; i++) {
+				fileNames[i] = is.readUTF();
+				fileSizes[i] = is.readLong();
+				fileDates[i] = is.readLong();
+			}
+			// network stops and stops of routes
+			TransportStop[] allStops = new TransportStop[is.readInt()];
+			for (int i = 0; i < allStops.length; i++) {
+				allStops[i] = readStop(is);
+			}
+			TransportStop[] stops = new TransportStop[is.readInt()];
+			for (int i = 0; i < stops.length; i++) {
+				stops[i] = allStops[is.readInt()];
+			}
+			TransportRoute[] routes = new TransportRoute[is.readInt()];
+			for (int i = 0; i < routes.length; i++) {
+				routes[i] = readRoute(is, allStops);
+			}
+			int[] stopRoutesStart = readInts(is);
+			int[] stopRoutes = readInts(is);
+			int[] stopRouteIndex = readInts(is);
+			for (int i = 0; i < stops.length; i++) {
+				for (int j = stopRoutesStart[i]; j < stopRoutesStart[i + 1]; j++) {
+					stops[i].addRoute(routes[stopRoutes[j]]);
+				}
+			}
+			log.info("Transport network " + f.getName() + " is read in " + (System.currentTimeMillis() - time) + " ms");
+			return new TransportNetwork(fileNames, fileSizes, fileDates, stops, routes, stopRoutesStart, stopRoutes,
+					stopRouteIndex);
+		} finally {
+			is.close();
+		}
+	}
+
+	private static TransportStop readStop(DataInputStream is) throws IOException {
+		TransportStop s = new TransportStop();
+		s.setId(is.readLong());
+		readNames(is, s);
+		s.setLocation(is.readDouble(), is.readDouble());
+		s.x31 = is.readInt();
+		s.y31 = is.readInt();
+		s.setFileOffset(is.readInt());
+		int exits = is.readInt();
+		for (int i = 0; i < exits; i++) {
+			TransportStopExit e = new TransportStopExit();
+			e.setLocation(BinaryMapIndexReader.TRANSPORT_STOP_ZOOM, is.readInt() >> STOP_SHIFT,
+					is.readInt() >> STOP_SHIFT);
+			e.setRef(readString(is));
+			s.addExit(e);
+		}
+		return s;
+	}
+
+	private static TransportRoute readRoute(DataInputStream is, TransportStop[] allStops) throws IOException {
+		TransportRoute r = new TransportRoute();
+		r.setId(is.readLong());
+		readNames(is, r);
+		r.setRef(readString(is));
+		r.setOperator(readString(is));
+		r.setType(readString(is));
+		r.setColor(readString(is));
+		r.setDistance(is.readInt());
+		r.setFileOffset(is.readInt());
+		int[] routeStops = readInts(is);
+		List<TransportStop> forwardStops = new ArrayList<TransportStop>(routeStops.length);
+		for (int s : routeStops) {
+			forwardStops.add(allStops[s]);
+		}
+		r.setForwardStops(forwardStops);
+		int ways = is.readInt();
+		List<Way> forwardWays = new ArrayList<Way>(ways);
+		for (int i = 0; i < ways; i++) {
+			Way w = new Way(is.readLong());
+			int nodes = is.readInt();
+			for (int j = 0; j < nodes; j++) {
+				long id = is.readLong();
+				int x = is.readInt();
+				int y = is.readInt();
+				w.addNode(new Node(MapUtils.get31LatitudeY(y), MapUtils.get31LongitudeX(x), id));
+			}
+			forwardWays.add(w);
+		}
+		r.setForwardWays(forwardWays);
+		if (is.readBoolean()) {
+			r.setSchedule(new TransportSchedule(new TIntArrayList(readInts(is)), new TIntArrayList(readInts(is)),
+					new TIntArrayList(readInts(is))));
+		}
+		return r;
+	}
+
+	private static void readNames(DataInputStream is, MapObject o) throws IOException {
+		o.setName(readString(is));
+		o.setEnName(readString(is));
+		int names = is.readInt();
+		for (int i = 0; i < names; i++) {
+			o.setName(is.readUTF(), is.readUTF());
+		}
+	}
+
+	private static String readString(DataInputStream is) throws IOException {
+		return is.readBoolean() ? is.readUTF() : null;
+	}
+
+	private static int[] readInts(DataInputStream is) throws IOException {
+		int[] r = new int[is.readInt()];
+		for (int i = 0; i < r.length; i++) {
+			r[i] = is.readInt();
+		}
+		return r;
+	}
+
+	public void writeToFile(File f) throws IOException {
+		// stops of routes are not always stops of network
+		Map<TransportStop, Integer> stopIds = new IdentityHashMap<TransportStop, Integer>();
+		List<TransportStop> allStops = new ArrayList<TransportStop>(Arrays.asList(stops));
+		for (int i = 0; i < stops.length; i++) {
+			stopIds.put(stops[i], i);
+		}
+		for (TransportRoute r : routes) {
+			for (TransportStop s : r.getForwardStops()) {
+				if (!stopIds.containsKey(s)) {
+					stopIds.put(s, allStops.size());
+					allStops.add(s);
+				}
+			}
+		}
+		File tmp = new File(f.getParentFile(), f.getName() + ".tmp");
+		DataOutputStream os = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(tmp)));
+		try {
+			os.writeInt(VERSION);
+			os.writeInt(fileNames.length);
+			for (int i = 0; i < fileNames.length; i++) {
+				os.writeUTF(fileNames[i]);
+				os.writeLong(fileSizes[i]);
+				os.writeLong(fileDates[i]);
+			}
+			os.writeInt(allStops.size());
+			for (TransportStop s : allStops) {
+				writeStop(os, s);
+			}
+			os.writeInt(stops.length);
+			for (int i = 0; i < stops.length; i++) {
+				os.writeInt(i);
+			}
+			os.writeInt(routes.length);
+			for (TransportRoute r : routes) {
+				writeRoute(os, r, stopIds);
+			}
+			writeInts(os, stopRoutesStart);
+			writeInts(os, stopRoutes);
+			writeInts(os, stopRouteIndex);
+		} finally {
+			os.close();
+		}
+		if (!tmp.renameTo(f)) {
+			f.delete();
+			if (!tmp.renameTo(f)) {
+				throw new IOException("Transport network " + f.getName() + " can't be written");
+			}
+		}
+	}
+
+	private static void writeStop(DataOutputStream os, TransportStop s) throws IOException {
+		os.writeLong(s.getId());
+		writeNames(os, s);
+		os.writeDouble(s.getLocation().getLatitude());
+		os.writeDouble(s.getLocation().getLongitude());
+		os.writeInt(s.x31);
+		os.writeInt(s.y31);
+		os.writeInt(s.getFileOffset());
+		List<TransportStopExit> exits = s.getExits();
+		os.writeInt(exits.size());
+		for (TransportStopExit e : exits) {
+			os.writeInt(e.x31);
+			os.writeInt(e.y31);
+			writeString(os, e.ref);
+		}
+	}
+
+	private static void writeRoute(DataOutputStream os, TransportRoute r, Map<TransportStop, Integer> stopIds)
+			throws IOException {
+		os.writeLong(r.getId());
+		writeNames(os, r);
+		writeString(os, r.getRef());
+		writeString(os, r.getOperator());
+		writeString(os, r.getType());
+		writeString(os, r.getColor());
+		os.writeInt(r.getDistance());
+		os.writeInt(r.getFileOffset());
+		List<TransportStop> forwardStops = r.getForwardStops();
+		os.writeInt(forwardStops.size());
+		for (TransportStop s : forwardStops) {
+			os.writeInt(stopIds.get(s));
+		}
+		List<Way> ways = r.getForwardWays();
+		os.writeInt(ways.size());
+		for (Way w : ways) {
+			os.writeLong(w.getId());
+			List<Node> nodes = w.getNodes();
+			os.writeInt(nodes.size());
+			for (Node n : nodes) {
+				os.writeLong(n.getId());
+				os.writeInt(MapUtils.get31TileNumberX(n.getLongitude()));
+				os.writeInt(MapUtils.get31TileNumberY(n.getLatitude()));
+			}
+		}
+		TransportSchedule sc = r.getSchedule();
+		os.writeBoolean(sc != null);
+		if (sc != null) {
+			writeInts(os, sc.getTripIntervals());
+			writeInts(os, sc.getAvgStopIntervals());
+			writeInts(os, sc.getAvgWaitIntervals());
+		}
+	}
+
+	private static void writeNames(DataOutputStream os, MapObject o) throws IOException {
+		writeString(os, o.getName());
+		writeString(os, o.getEnName(false));
+		Map<String, String> names = o.getNamesMap(false);
+		os.writeInt(names.size());
+		for (Entry<String, String> e : names.entrySet()) {
+			os.writeUTF(e.getKey());
+			os.writeUTF(e.getValue());
+		}
+	}
+
+	private static void writeString(DataOutputStream os, String s) throws IOException {
+		os.writeBoolean(s != null);
+		if (s != null) {
+			os.writeUTF(s);
+		}
+	}
+
+	private static void writeInts(DataOutputStream os, int[] r) throws IOException {
+		os.writeInt(r.length);
+		for (int v : r) {
+			os.writeInt(v);
+		}
+	}
+}
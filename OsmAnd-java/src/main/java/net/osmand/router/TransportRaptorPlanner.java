@@ -0,0 +1,889 @@
+package net.osmand.router;
+
+import gnu.trove.list.array.TIntArrayList;
+import gnu.trove.map.hash.TIntObjectHashMap;
+import gnu.trove.map.hash.TLongObjectHashMap;
+import gnu.trove.set.hash.TIntHashSet;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+
+import net.osmand.data.LatLon;
+import net.osmand.data.TransportRoute;
+import net.osmand.data.TransportSchedule;
+import net.osmand.data.TransportStop;
+import net.osmand.router.TransportRoutePlanner.TransportRouteSegment;
+import net.osmand.util.MapUtils;
+
+/**
+ * Round based (RAPTOR like) earliest arrival search, alternative to the segments queue of
+ * {@link TransportRoutePlanner}, selected by {@link TransportRoutingConfiguration#useRaptor}.
+ * Routes (or trips of routes with schedule) found through {@link TransportRoutingContext} are compiled into
+ * patterns: flat arrays of pattern stops with location, cumulative travel time and distance. Round k scans once
+ * every pattern boarded after k - 1 changes from its first boarding stop and propagates arrivals to stops within
+ * walkChangeRadius, labels of every round are arrays indexed by pattern stop. Best arrival of every round is an
+ * alternative with fewer changes, results are built as segment chains of {@link TransportRoutePlanner} so
+ * {@link TransportRouteResult} are the same as of queue search.
+ * With {@link TransportRoutingConfiguration#multiCriteria} labels are bounded pareto sets on time and walk distance
+ * (see {@link #searchPareto(Query)}), so alternatives with less walking are found in the same pass.
+ */
+public class TransportRaptorPlanner {
+
+	private static final double INF = Double.POSITIVE_INFINITY;
+
+	public List<TransportRouteResult> buildRoute(TransportRoutingContext ctx, LatLon start, LatLon end)
+			throws IOException, InterruptedException {
+		ctx.startCalcTime = System.currentTimeMillis();
+		TransportRoutingConfiguration cfg = ctx.cfg;
+		TransportRoutePlanner planner = new TransportRoutePlanner();
+		double totalDistance = MapUtils.getDistance(start, end);
+		List<TransportRouteSegment> startStops = ctx.getTransportStops(start);
+		List<TransportRouteSegment> endStops = ctx.getTransportStops(end);
+		if (startStops.size() == 0) {
+			return Collections.emptyList();
+		}
+		Query q = new Query(ctx, end);
+		q.finishTime = cfg.maxRouteTime;
+		ctx.finishTimeSeconds = cfg.finishTimeSeconds;
+		if (totalDistance > cfg.maxRouteDistance && cfg.maxRouteIncreaseSpeed > 0) {
+			int increaseTime = (int) ((totalDistance - cfg.maxRouteDistance) * 3.6 / cfg.maxRouteIncreaseSpeed);
+			q.finishTime += increaseTime;
+			ctx.finishTimeSeconds += increaseTime / 6;
+		}
+		q.maxTravelTimeCmpToWalk = totalDistance / cfg.walkSpeed - cfg.changeTime / 2;
+		planner.initProgressBar(ctx, start, end);
+
+		for (TransportRouteSegment s : endStops) {
+			int ps = q.net.register(s);
+			if (ps != -1) {
+				q.endPatternStops.add(ps);
+			}
+		}
+		for (TransportRouteSegment s : startStops) {
+			int ps = q.net.register(s);
+			if (ps != -1) {
+				q.startPatternStops.add(ps);
+				q.startWalk.add(MapUtils.getDistance(s.getLocation(), start));
+			}
+		}
+		List<TransportRouteSegment> results = cfg.multiCriteria ? searchPareto(q) : searchEarliestArrival(q);
+		if (results == null) {
+			return null;
+		}
+		return planner.prepareResults(ctx, results);
+	}
+
+	private List<TransportRouteSegment> searchEarliestArrival(Query q) throws IOException {
+		TransportRoutingContext ctx = q.ctx;
+		TransportRoutingConfiguration cfg = ctx.cfg;
+		PatternNetwork net = q.net;
+		int rounds = cfg.maxNumberOfChanges + 1;
+		// boards[k] - ready to board after k rides, arrivals[k] - arrived by k-th ride
+		Labels[] boards = new Labels[rounds];
+		Labels[] arrivals = new Labels[rounds + 1];
+		Labels bestBoard = new Labels();
+		Labels bestArrival = new Labels();
+		boards[0] = new Labels();
+		for (int i = 0; i < q.startPatternStops.size(); i++) {
+			int ps = q.startPatternStops.getQuick(i);
+			double walk = q.startWalk.get(i);
+			double time = walk / cfg.walkSpeed;
+			if (time <= q.maxTravelTimeCmpToWalk && bestBoard.improve(ps, time)) {
+				boards[0].set(ps, time, -1, walk);
+			}
+		}
+		// best result of every round: pattern stop, walk to end and time
+		int[] resultStop = new int[rounds + 1];
+		double[] resultWalk = new double[rounds + 1];
+		double[] resultTime = new double[rounds + 1];
+		Arrays.fill(resultStop, -1);
+		Arrays.fill(resultTime, INF);
+		TIntArrayList changeStops = new TIntArrayList();
+		DoubleArray changeWalk = new DoubleArray();
+		for (int k = 1; k <= rounds; k++) {
+			Labels prev = boards[k - 1];
+			if (prev.marked.isEmpty()) {
+				break;
+			}
+			TIntArrayList patterns = q.markPatterns(prev.marked);
+			Labels arr = new Labels();
+			arrivals[k] = arr;
+			double limit = q.finishTime + ctx.finishTimeSeconds;
+			for (int i = 0; i < patterns.size(); i++) {
+				if (ctx.calculationProgress != null && ctx.calculationProgress.isCancelled) {
+					return null;
+				}
+				int p = patterns.getQuick(i);
+				int first = q.firstBoarding[p];
+				q.firstBoarding[p] = -1;
+				ctx.visitedRoutesCount++;
+				scanPattern(net, p, first, prev, arr, bestArrival, limit);
+			}
+			// reach end and change to other routes
+			Labels next = k < rounds ? new Labels() : null;
+			double boardLimit = Math.min(limit, q.maxTravelTimeCmpToWalk);
+			for (int i = 0; i < arr.marked.size(); i++) {
+				if (ctx.calculationProgress != null && ctx.calculationProgress.isCancelled) {
+					return null;
+				}
+				int ps = arr.marked.getQuick(i);
+				double time = arr.time[ps];
+				double distToEnd = q.getDistanceToEnd(ps);
+				if (distToEnd < cfg.walkRadius) {
+					double finish = time + distToEnd / cfg.walkSpeed;
+					if (finish < resultTime[k]) {
+						resultStop[k] = ps;
+						resultWalk[k] = distToEnd;
+						resultTime[k] = finish;
+					}
+				}
+				if (next == null) {
+					continue;
+				}
+				q.loadChanges(ps, changeStops, changeWalk);
+				for (int j = 0; j < changeStops.size(); j++) {
+					int nps = changeStops.getQuick(j);
+					double walk = changeWalk.get(j);
+					double board = time + walk / cfg.walkSpeed + cfg.getChangeTime() + cfg.getBoardingTime();
+					if (board <= boardLimit && bestBoard.improve(nps, board)) {
+						next.set(nps, board, ps, walk);
+					}
+				}
+			}
+			if (resultTime[k] < q.finishTime) {
+				q.finishTime = resultTime[k];
+			}
+			if (next != null) {
+				boards[k] = next;
+			}
+			if (ctx.calculationProgress != null) {
+				ctx.calculationProgress.directSegmentQueueSize = next == null ? 0 : next.marked.size();
+			}
+		}
+
+		List<TransportRouteSegment> results = new ArrayList<TransportRouteSegment>();
+		double fewerChangesTime = INF;
+		for (int k = 1; k <= rounds; k++) {
+			double time = resultTime[k];
+			// more changes only if faster
+			if (resultStop[k] == -1 || time >= fewerChangesTime) {
+				continue;
+			}
+			fewerChangesTime = time;
+			if (time < q.finishTime + ctx.finishTimeSeconds && (time < q.maxTravelTimeCmpToWalk || results.size() == 0)) {
+				results.add(buildSegments(net, boards, arrivals, k, resultStop[k], resultWalk[k], time));
+			}
+		}
+		return results;
+	}
+
+	/**
+	 * Multi criteria search: labels of pattern stop are pareto set on arrival time and walk distance (number of
+	 * changes is the round), every set keeps at most maxLabelsPerStop labels. Results are pareto optimal on time,
+	 * changes and walk distance.
+	 */
+	private List<TransportRouteSegment> searchPareto(Query q) throws IOException {
+		TransportRoutingContext ctx = q.ctx;
+		TransportRoutingConfiguration cfg = ctx.cfg;
+		PatternNetwork net = q.net;
+		int maxLabels = Math.max(1, cfg.maxLabelsPerStop);
+		int rounds = cfg.maxNumberOfChanges + 1;
+		ParetoLabels[] boards = new ParetoLabels[rounds];
+		ParetoLabels[] arrivals = new ParetoLabels[rounds + 1];
+		ParetoLabels bestBoard = new ParetoLabels(maxLabels);
+		ParetoLabels bestArrival = new ParetoLabels(maxLabels);
+		boards[0] = new ParetoLabels(maxLabels);
+		for (int i = 0; i < q.startPatternStops.size(); i++) {
+			int ps = q.startPatternStops.getQuick(i);
+			double walk = q.startWalk.get(i);
+			double time = walk / cfg.walkSpeed;
+			if (time <= q.maxTravelTimeCmpToWalk && bestBoard.add(ps, time, walk, walk, -1) != -1) {
+				boards[0].add(ps, time, walk, walk, -1);
+			}
+		}
+		List<ParetoResult> candidates = new ArrayList<ParetoResult>();
+		RouteBag bag = new RouteBag(maxLabels);
+		TIntArrayList changeStops = new TIntArrayList();
+		DoubleArray changeWalk = new DoubleArray();
+		for (int k = 1; k <= rounds; k++) {
+			ParetoLabels prev = boards[k - 1];
+			if (prev.marked.isEmpty()) {
+				break;
+			}
+			TIntArrayList patterns = q.markPatterns(prev.marked);
+			ParetoLabels arr = new ParetoLabels(maxLabels);
+			arrivals[k] = arr;
+			double limit = q.finishTime + ctx.finishTimeSeconds;
+			for (int i = 0; i < patterns.size(); i++) {
+				if (ctx.calculationProgress != null && ctx.calculationProgress.isCancelled) {
+					return null;
+				}
+				int p = patterns.getQuick(i);
+				int first = q.firstBoarding[p];
+				q.firstBoarding[p] = -1;
+				ctx.visitedRoutesCount++;
+				scanPattern(net, p, first, prev, arr, bestArrival, bag, limit);
+			}
+			ParetoLabels next = k < rounds ? new ParetoLabels(maxLabels) : null;
+			double boardLimit = Math.min(limit, q.maxTravelTimeCmpToWalk);
+			double roundFinishTime = INF;
+			for (int i = 0; i < arr.marked.size(); i++) {
+				if (ctx.calculationProgress != null && ctx.calculationProgress.isCancelled) {
+					return null;
+				}
+				int ps = arr.marked.getQuick(i);
+				double distToEnd = q.getDistanceToEnd(ps);
+				if (distToEnd < cfg.walkRadius) {
+					for (int l = arr.head[ps]; l != -1; l = arr.next[l]) {
+						ParetoResult r = new ParetoResult(k, l, ps, distToEnd,
+								arr.time[l] + distToEnd / cfg.walkSpeed, arr.walk[l] + distToEnd);
+						candidates.add(r);
+						roundFinishTime = Math.min(roundFinishTime, r.time);
+					}
+				}
+				if (next == null) {
+					continue;
+				}
+				q.loadChanges(ps, changeStops, changeWalk);
+				for (int j = 0; j < changeStops.size(); j++) {
+					int nps = changeStops.getQuick(j);
+					double walk = changeWalk.get(j);
+					for (int l = arr.head[ps]; l != -1; l = arr.next[l]) {
+						double board = arr.time[l] + walk / cfg.walkSpeed + cfg.getChangeTime() + cfg.getBoardingTime();
+						double totalWalk = arr.walk[l] + walk;
+						if (board <= boardLimit && bestBoard.add(nps, board, totalWalk, walk, -1) != -1) {
+							next.add(nps, board, totalWalk, walk, l);
+						}
+					}
+				}
+			}
+			if (roundFinishTime < q.finishTime) {
+				q.finishTime = roundFinishTime;
+			}
+			if (next != null) {
+				boards[k] = next;
+			}
+			if (ctx.calculationProgress != null) {
+				ctx.calculationProgress.directSegmentQueueSize = next == null ? 0 : next.marked.size();
+			}
+		}
+
+		Collections.sort(candidates, new Comparator<ParetoResult>() {
+			@Override
+			public int compare(ParetoResult o1, ParetoResult o2) {
+				return Double.compare(o1.time, o2.time);
+			}
+		});
+		List<ParetoResult> optimal = new ArrayList<ParetoResult>();
+		List<TransportRouteSegment> results = new ArrayList<TransportRouteSegment>();
+		for (ParetoResult c : candidates) {
+			// candidates are sorted by time, so faster or same results are already checked
+			boolean dominated = false;
+			for (ParetoResult o : optimal) {
+				if (o.round <= c.round && o.walk <= c.walk) {
+					dominated = true;
+					break;
+				}
+			}
+			if (dominated) {
+				continue;
+			}
+			optimal.add(c);
+			if (c.time < q.finishTime + ctx.finishTimeSeconds && (c.time < q.maxTravelTimeCmpToWalk || results.size() == 0)) {
+				results.add(buildSegments(net, boards, arrivals, c));
+			}
+		}
+		return results;
+	}
+
+	private void scanPattern(PatternNetwork net, int p, int first, Labels boards, Labels arrivals,
+			Labels bestArrival, double limit) {
+		int end = net.patternEnd(p);
+		double tripStart = net.tripStart.get(p);
+		boolean trip = tripStart != INF;
+		// departure time of first stop for boarded vehicle
+		double current = INF;
+		int boardedAt = -1;
+		for (int ps = first; ps < end; ps++) {
+			if (boardedAt != -1) {
+				double time = current + net.cumTime.get(ps);
+				if (time > limit) {
+					break;
+				}
+				if (bestArrival.improve(ps, time)) {
+					arrivals.set(ps, time, boardedAt, 0);
+				}
+			}
+			double board = boards.get(ps);
+			if (board == INF) {
+				continue;
+			}
+			if (trip) {
+				// wait for departure of the trip
+				if (boardedAt == -1 && board <= tripStart + net.cumTime.get(ps)) {
+					current = tripStart;
+					boardedAt = ps;
+				}
+			} else if (board - net.cumTime.get(ps) < current) {
+				current = board - net.cumTime.get(ps);
+				boardedAt = ps;
+			}
+		}
+	}
+
+	private TransportRouteSegment buildSegments(PatternNetwork net, Labels[] boards, Labels[] arrivals, int k,
+			int endStop, double walkToEnd, double time) {
+		TransportRouteSegment finish = net.createSegment(endStop);
+		finish.walkDist = walkToEnd;
+		finish.distFromStart = time;
+		TransportRouteSegment child = finish;
+		int arrivalStop = endStop;
+		for (int r = k; r >= 1; r--) {
+			int boardStop = arrivals[r].parent[arrivalStop];
+			TransportRouteSegment ride = net.createSegment(boardStop);
+			ride.distFromStart = boards[r - 1].time[boardStop];
+			ride.walkDist = boards[r - 1].walk[boardStop];
+			child.parentRoute = ride;
+			child.parentStop = net.stopIndex.getQuick(arrivalStop);
+			child.parentTravelTime = net.cumTime.get(arrivalStop) - net.cumTime.get(boardStop);
+			child.parentTravelDist = net.cumDist.get(arrivalStop) - net.cumDist.get(boardStop);
+			child = ride;
+			arrivalStop = boards[r - 1].parent[boardStop];
+		}
+		return finish;
+	}
+
+	private void scanPattern(PatternNetwork net, int p, int first, ParetoLabels boards, ParetoLabels arrivals,
+			ParetoLabels bestArrival, RouteBag bag, double limit) {
+		int end = net.patternEnd(p);
+		double tripStart = net.tripStart.get(p);
+		boolean trip = tripStart != INF;
+		bag.size = 0;
+		for (int ps = first; ps < end; ps++) {
+			double cum = net.cumTime.get(ps);
+			if (bag.size > 0 && bag.minCurrent() + cum > limit) {
+				break;
+			}
+			for (int i = 0; i < bag.size; i++) {
+				double time = bag.current[i] + cum;
+				if (time <= limit && bestArrival.add(ps, time, bag.walk[i], 0, -1) != -1) {
+					arrivals.add(ps, time, bag.walk[i], 0, bag.label[i]);
+				}
+			}
+			for (int l = boards.get(ps); l != -1; l = boards.next[l]) {
+				// wait for departure of the trip
+				if (!trip || boards.time[l] <= tripStart + cum) {
+					bag.add(trip ? tripStart : boards.time[l] - cum, boards.walk[l], l);
+				}
+			}
+		}
+	}
+
+	private TransportRouteSegment buildSegments(PatternNetwork net, ParetoLabels[] boards, ParetoLabels[] arrivals,
+			ParetoResult res) {
+		TransportRouteSegment finish = net.createSegment(res.stop);
+		finish.walkDist = res.walkToEnd;
+		finish.distFromStart = res.time;
+		TransportRouteSegment child = finish;
+		int a = res.label;
+		for (int r = res.round; r >= 1; r--) {
+			ParetoLabels arr = arrivals[r];
+			ParetoLabels brd = boards[r - 1];
+			int b = arr.parent[a];
+			int arrivalStop = arr.stop[a];
+			int boardStop = brd.stop[b];
+			TransportRouteSegment ride = net.createSegment(boardStop);
+			ride.distFromStart = brd.time[b];
+			ride.walkDist = brd.walkStep[b];
+			child.parentRoute = ride;
+			child.parentStop = net.stopIndex.getQuick(arrivalStop);
+			child.parentTravelTime = net.cumTime.get(arrivalStop) - net.cumTime.get(boardStop);
+			child.parentTravelDist = net.cumDist.get(arrivalStop) - net.cumDist.get(boardStop);
+			child = ride;
+			a = brd.parent[b];
+		}
+		return finish;
+	}
+
+	/**
+	 * @return index of label to drop from full set sorted by time: label with the smallest gap to the previous
+	 *         (faster) label
+	 */
+	private static int labelToDrop(double[] times, int size) {
+		int drop = -1;
+		double minGap = INF;
+		for (int i = 1; i < size; i++) {
+			if (times[i] - times[i - 1] < minGap) {
+				minGap = times[i] - times[i - 1];
+				drop = i;
+			}
+		}
+		return drop;
+	}
+
+	private static class Query {
+		final TransportRoutingContext ctx;
+		final LatLon end;
+		final PatternNetwork net;
+		final TIntHashSet endPatternStops = new TIntHashSet();
+		final TIntArrayList startPatternStops = new TIntArrayList();
+		final DoubleArray startWalk = new DoubleArray();
+		double finishTime;
+		double maxTravelTimeCmpToWalk;
+		// first boarding stop of marked pattern
+		int[] firstBoarding = new int[0];
+		private List<TransportRouteSegment> sgms = new ArrayList<TransportRouteSegment>();
+
+		Query(TransportRoutingContext ctx, LatLon end) {
+			this.ctx = ctx;
+			this.end = end;
+			this.net = new PatternNetwork(ctx.cfg);
+		}
+
+		TIntArrayList markPatterns(TIntArrayList markedStops) {
+			if (firstBoarding.length < net.patternsCount()) {
+				int old = firstBoarding.length;
+				firstBoarding = Arrays.copyOf(firstBoarding, net.patternsCount() * 2);
+				Arrays.fill(firstBoarding, old, firstBoarding.length, -1);
+			}
+			TIntArrayList patterns = new TIntArrayList();
+			for (int i = 0; i < markedStops.size(); i++) {
+				int ps = markedStops.getQuick(i);
+				int p = net.stopPattern.getQuick(ps);
+				if (firstBoarding[p] == -1) {
+					patterns.add(p);
+					firstBoarding[p] = ps;
+				} else if (ps < firstBoarding[p]) {
+					firstBoarding[p] = ps;
+				}
+			}
+			return patterns;
+		}
+
+		double getDistanceToEnd(int ps) {
+			if (!endPatternStops.contains(ps)) {
+				return INF;
+			}
+			return MapUtils.getDistance(net.getStop(ps).getLocation(), end);
+		}
+
+		/**
+		 * Loads pattern stops of other routes within walkChangeRadius and walk distances to them
+		 */
+		void loadChanges(int ps, TIntArrayList stops, DoubleArray walk) throws IOException {
+			stops.clear();
+			walk.clear();
+			TransportStop stop = net.getStop(ps);
+			sgms.clear();
+			sgms = ctx.getTransportStops(stop.x31, stop.y31, true, sgms);
+			ctx.visitedStops++;
+			long routeId = net.getRoute(ps).getId();
+			for (TransportRouteSegment sgm : sgms) {
+				if (sgm.road.getId().longValue() == routeId) {
+					continue;
+				}
+				int nps = net.register(sgm);
+				if (nps != -1) {
+					stops.add(nps);
+					walk.add(MapUtils.getDistance(sgm.getLocation(), stop.getLocation()));
+				}
+			}
+		}
+	}
+
+	private static class ParetoResult {
+		final int round;
+		final int label;
+		final int stop;
+		final double walkToEnd;
+		final double time;
+		final double walk;
+
+		ParetoResult(int round, int label, int stop, double walkToEnd, double time, double walk) {
+			this.round = round;
+			this.label = label;
+			this.stop = stop;
+			this.walkToEnd = walkToEnd;
+			this.time = time;
+			this.walk = walk;
+		}
+	}
+
+	/**
+	 * Pareto sets (time, walk) of pattern stops, labels of pattern stop are linked list from head sorted by time.
+	 * Labels removed from the set are reused: they aren't referenced, as labels get children only when the set
+	 * is complete.
+	 */
+	private static class ParetoLabels {
+		final int maxLabels;
+		int size;
+		// removed labels linked by next
+		int free = -1;
+		int[] stop = new int[64];
+		double[] time = new double[64];
+		// total walk and walk to board (or walk from start)
+		double[] walk = new double[64];
+		double[] walkStep = new double[64];
+		int[] parent = new int[64];
+		int[] next = new int[64];
+		int[] head = new int[0];
+		// pattern stops with labels in order of first label
+		final TIntArrayList marked = new TIntArrayList();
+		private final BitSet markedStops = new BitSet();
+		private final double[] tmpTimes;
+		private final int[] tmpLabels;
+
+		ParetoLabels(int maxLabels) {
+			this.maxLabels = maxLabels;
+			tmpTimes = new double[maxLabels + 1];
+			tmpLabels = new int[maxLabels + 1];
+		}
+
+		int get(int ps) {
+			return ps < head.length ? head[ps] : -1;
+		}
+
+		/**
+		 * @return new label or -1 if it is dominated by label of the set
+		 */
+		int add(int ps, double t, double w, double step, int p) {
+			if (head.length <= ps) {
+				int old = head.length;
+				head = Arrays.copyOf(head, Math.max(ps + 1, old * 2));
+				Arrays.fill(head, old, head.length, -1);
+			}
+			int cnt = 0;
+			int prev = -1;
+			// last faster label, new label is inserted after it
+			int faster = -1;
+			for (int l = head[ps]; l != -1;) {
+				int nl = next[l];
+				if (time[l] <= t && walk[l] <= w) {
+					return -1;
+				}
+				if (t <= time[l] && w <= walk[l]) {
+					unlink(ps, prev, l);
+					release(l);
+				} else {
+					if (time[l] < t) {
+						faster = l;
+					}
+					prev = l;
+					cnt++;
+				}
+				l = nl;
+			}
+			int label = allocate();
+			stop[label] = ps;
+			time[label] = t;
+			walk[label] = w;
+			walkStep[label] = step;
+			parent[label] = p;
+			if (faster == -1) {
+				next[label] = head[ps];
+				head[ps] = label;
+			} else {
+				next[label] = next[faster];
+				next[faster] = label;
+			}
+			if (!markedStops.get(ps)) {
+				markedStops.set(ps);
+				marked.add(ps);
+			}
+			if (cnt + 1 > maxLabels) {
+				int n = 0;
+				for (int l = head[ps]; l != -1; l = next[l]) {
+					tmpLabels[n] = l;
+					tmpTimes[n++] = time[l];
+				}
+				int d = labelToDrop(tmpTimes, n);
+				int drop = tmpLabels[d];
+				unlink(ps, tmpLabels[d - 1], drop);
+				release(drop);
+				if (drop == label) {
+					return -1;
+				}
+			}
+			return label;
+		}
+
+		private int allocate() {
+			if (free != -1) {
+				int label = free;
+				free = next[label];
+				return label;
+			}
+			if (size == stop.length) {
+				int n = size * 2;
+				stop = Arrays.copyOf(stop, n);
+				time = Arrays.copyOf(time, n);
+				walk = Arrays.copyOf(walk, n);
+				walkStep = Arrays.copyOf(walkStep, n);
+				parent = Arrays.copyOf(parent, n);
+				next = Arrays.copyOf(next, n);
+			}
+			return size++;
+		}
+
+		private void release(int l) {
+			next[l] = free;
+			free = l;
+		}
+
+		private void unlink(int ps, int prev, int l) {
+			if (prev == -1) {
+				head[ps] = next[l];
+			} else {
+				next[prev] = next[l];
+			}
+		}
+	}
+
+	/**
+	 * Pareto set (departure from first stop, walk) of boarded labels while pattern is scanned, sorted by departure
+	 */
+	private static class RouteBag {
+		final int maxLabels;
+		final double[] current;
+		final double[] walk;
+		final int[] label;
+		int size;
+
+		RouteBag(int maxLabels) {
+			this.maxLabels = maxLabels;
+			current = new double[maxLabels + 1];
+			walk = new double[maxLabels + 1];
+			label = new int[maxLabels + 1];
+		}
+
+		double minCurrent() {
+			return size == 0 ? INF : current[0];
+		}
+
+		void add(double c, double w, int l) {
+			for (int i = 0; i < size; i++) {
+				if (current[i] <= c && walk[i] <= w) {
+					return;
+				}
+			}
+			int n = 0;
+			int pos = 0;
+			for (int i = 0; i < size; i++) {
+				if (!(c <= current[i] && w <= walk[i])) {
+					current[n] = current[i];
+					walk[n] = walk[i];
+					label[n++] = label[i];
+					if (current[i] < c) {
+						pos = n;
+					}
+				}
+			}
+			move(pos, pos + 1, n - pos);
+			current[pos] = c;
+			walk[pos] = w;
+			label[pos] = l;
+			n++;
+			if (n > maxLabels) {
+				int drop = labelToDrop(current, n);
+				move(drop + 1, drop, n - drop - 1);
+				n--;
+			}
+			size = n;
+		}
+
+		private void move(int from, int to, int length) {
+			System.arraycopy(current, from, current, to, length);
+			System.arraycopy(walk, from, walk, to, length);
+			System.arraycopy(label, from, label, to, length);
+		}
+	}
+
+	private static class Labels {
+		double[] time = new double[0];
+		int[] parent = new int[0];
+		double[] walk = new double[0];
+		// pattern stops with label in order of setting
+		final TIntArrayList marked = new TIntArrayList();
+
+		double get(int ps) {
+			return ps < time.length ? time[ps] : INF;
+		}
+
+		boolean improve(int ps, double t) {
+			ensure(ps + 1);
+			if (t < time[ps]) {
+				time[ps] = t;
+				return true;
+			}
+			return false;
+		}
+
+		void set(int ps, double t, int p, double w) {
+			ensure(ps + 1);
+			if (time[ps] == INF) {
+				marked.add(ps);
+			}
+			time[ps] = t;
+			parent[ps] = p;
+			walk[ps] = w;
+		}
+
+		private void ensure(int size) {
+			if (time.length < size) {
+				int old = time.length;
+				int n = Math.max(size, old * 2);
+				time = Arrays.copyOf(time, n);
+				Arrays.fill(time, old, n, INF);
+				parent = Arrays.copyOf(parent, n);
+				walk = Arrays.copyOf(walk, n);
+			}
+		}
+	}
+
+	static class DoubleArray {
+		private double[] values = new double[64];
+		private int size;
+
+		void add(double v) {
+			if (size == values.length) {
+				values = Arrays.copyOf(values, size * 2);
+			}
+			values[size++] = v;
+		}
+
+		double get(int i) {
+			return values[i];
+		}
+
+		void clear() {
+			size = 0;
+		}
+
+		int size() {
+			return size;
+		}
+	}
+
+	/**
+	 * Routes (trips of routes with schedule) registered during search. Stops of pattern p are pattern stops
+	 * [patternFirst[p], patternFirst[p + 1]) in route order.
+	 */
+	static class PatternNetwork {
+		private final TransportRoutingConfiguration cfg;
+		// pattern by route id and trip start (-1 without schedule), -1 for routes which can't be used
+		private final TLongObjectHashMap<TIntObjectHashMap<Integer>> patternIds =
+				new TLongObjectHashMap<TIntObjectHashMap<Integer>>();
+		final List<TransportRoute> routes = new ArrayList<TransportRoute>();
+		final TIntArrayList patternFirst = new TIntArrayList();
+		// trip start (seconds from schedule time of day) or INF for routes without schedule
+		final DoubleArray tripStart = new DoubleArray();
+		// trip start in schedule units (10 seconds) to restore departure times
+		final TIntArrayList tripDeparture = new TIntArrayList();
+		final TIntArrayList stopPattern = new TIntArrayList();
+		final TIntArrayList stopIndex = new TIntArrayList();
+		final DoubleArray cumTime = new DoubleArray();
+		final DoubleArray cumDist = new DoubleArray();
+
+		PatternNetwork(TransportRoutingConfiguration cfg) {
+			this.cfg = cfg;
+			patternFirst.add(0);
+		}
+
+		int patternsCount() {
+			return routes.size();
+		}
+
+		int patternEnd(int p) {
+			return patternFirst.getQuick(p + 1);
+		}
+
+		TransportRoute getRoute(int ps) {
+			return routes.get(stopPattern.getQuick(ps));
+		}
+
+		TransportStop getStop(int ps) {
+			return getRoute(ps).getForwardStops().get(stopIndex.getQuick(ps));
+		}
+
+		TransportRouteSegment createSegment(int ps) {
+			int p = stopPattern.getQuick(ps);
+			int ind = stopIndex.getQuick(ps);
+			TransportRoute route = routes.get(p);
+			if (tripStart.get(p) == INF) {
+				return new TransportRouteSegment(route, ind);
+			}
+			return new TransportRouteSegment(route, ind, tripDeparture.getQuick(p) + stopTravelTime(route, ind));
+		}
+
+		/**
+		 * @return pattern stop of segment or -1 if route of segment can't be used
+		 */
+		int register(TransportRouteSegment s) {
+			TransportRoute route = s.road;
+			int departure = -1;
+			if (s.departureTime != -1) {
+				departure = s.departureTime - stopTravelTime(route, s.segStart);
+			}
+			TIntObjectHashMap<Integer> trips = patternIds.get(route.getId());
+			if (trips == null) {
+				trips = new TIntObjectHashMap<Integer>();
+				patternIds.put(route.getId(), trips);
+			}
+			Integer p = trips.get(departure);
+			if (p == null) {
+				p = addPattern(route, departure);
+				trips.put(departure, p);
+			}
+			if (p == -1) {
+				return -1;
+			}
+			return patternFirst.getQuick(p) + s.segStart;
+		}
+
+		private int addPattern(TransportRoute route, int departure) {
+			float speed = cfg.getSpeedByRouteType(route.getType());
+			if (speed == 0) {
+				return -1;
+			}
+			int p = routes.size();
+			routes.add(route);
+			tripStart.add(departure == -1 ? INF : (departure - cfg.scheduleTimeOfDay) * 10);
+			tripDeparture.add(departure);
+			List<TransportStop> stops = route.getForwardStops();
+			TransportSchedule sc = route.getSchedule();
+			double time = 0;
+			double dist = 0;
+			for (int i = 0; i < stops.size(); i++) {
+				if (i > 0) {
+					double segmentDist = MapUtils.getDistance(stops.get(i - 1).getLocation(), stops.get(i).getLocation());
+					dist += segmentDist;
+					if (departure != -1) {
+						time += sc.avgStopIntervals.size() > i - 1 ? sc.avgStopIntervals.get(i - 1) * 10 : 0;
+					} else {
+						time += cfg.stopTime + segmentDist / speed;
+					}
+				}
+				stopPattern.add(p);
+				stopIndex.add(i);
+				cumTime.add(time);
+				cumDist.add(dist);
+			}
+			patternFirst.add(stopPattern.size());
+			return p;
+		}
+
+		private static int stopTravelTime(TransportRoute route, int stopIndex) {
+			int t = 0;
+			TIntArrayList avgStopIntervals = route.getSchedule().avgStopIntervals;
+			for (int i = 0; i < stopIndex && i < avgStopIntervals.size(); i++) {
+				t += avgStopIntervals.getQuick(i);
+			}
+			return t;
+		}
+	}
+}
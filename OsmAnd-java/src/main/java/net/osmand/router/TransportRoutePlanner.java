@@ -31,6 +31,9 @@ public class TransportRoutePlanner {
 	public static final long STOPS_WAY_ID = -2;
 
 	public List<TransportRouteResult> buildRoute(TransportRoutingContext ctx, LatLon start, LatLon end) throws IOException, InterruptedException {
+		if (ctx.cfg.useRaptor || ctx.cfg.multiCriteria) {
+			return new TransportRaptorPlanner().buildRoute(ctx, start, end);
+		}
 		ctx.startCalcTime = System.currentTimeMillis();
 		double totalDistance = MapUtils.getDistance(start, end);
 		List<TransportRouteSegment> startStops = ctx.getTransportStops(start);
@@ -189,7 +192,7 @@ public class TransportRoutePlanner {
 		return prepareResults(ctx, results);
 	}
 	
-	private void initProgressBar(TransportRoutingContext ctx, LatLon start, LatLon end) {
+	void initProgressBar(TransportRoutingContext ctx, LatLon start, LatLon end) {
 		if (ctx.calculationProgress != null) {
 			ctx.calculationProgress.distanceFromEnd = 0;
 			ctx.calculationProgress.reverseSegmentQueueSize = 0;
@@ -210,7 +213,7 @@ public class TransportRoutePlanner {
 		}		
 	}
 
-	private List<TransportRouteResult> prepareResults(TransportRoutingContext ctx, List<TransportRouteSegment> results) {
+	List<TransportRouteResult> prepareResults(TransportRoutingContext ctx, List<TransportRouteSegment> results) {
 		Collections.sort(results, new SegmentsComparator(ctx));
 		List<TransportRouteResult> lst = new ArrayList<TransportRouteResult>();
 		System.out.println(String.format(Locale.US, "Calculated %.1f seconds, found %d results, visited %d routes / %d stops, loaded %d tiles (%d ms read, %d ms total), loaded ways %d (%d wrong)",
@@ -384,7 +387,10 @@ public class TransportRoutePlanner {
 		}
 
 		public List<Way> getGeometry() {
-			route.mergeForwardWays();
+			// route could be shared by contexts of TransportNetwork
+			synchronized (route) {
+				route.mergeForwardWays();
+			}
 			if (DISPLAY_FULL_SEGMENT_ROUTE) {
 				System.out.println("TOTAL SEGMENTS: " + route.getForwardWays().size());
 				if (route.getForwardWays().size() > DISPLAY_SEGMENT_IND && DISPLAY_SEGMENT_IND != -1) {
@@ -0,0 +1,107 @@
+package net.osmand.router;
+
+import java.io.File;
+import java.io.RandomAccessFile;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import net.osmand.binary.BinaryMapIndexReader;
+import net.osmand.data.LatLon;
+
+/**
+ * Compares segments queue search of {@link TransportRoutePlanner} with round based {@link TransportRaptorPlanner}
+ * (earliest arrival and multi criteria) on the same city obf: every iteration builds new
+ * {@link TransportRoutingContext} (tiles are loaded again) and reports average time, number of results and time
+ * of the fastest route for every engine.
+ * Usage: -obf=file.obf -start=lat;lon -end=lat;lon [-iterations=5] [-schedule] [-changes=3]
+ */
+public class TransportRoutingBenchmark {
+
+	private static class Result {
+		long time;
+		int runs;
+		int results;
+		double bestRouteTime = Double.NaN;
+		int changes;
+
+		@Override
+		public String toString() {
+			return String.format("%.1f ms, %d results, fastest route %.0f s (%d changes)", time / 1e6 / runs,
+					results, bestRouteTime, changes);
+		}
+	}
+
+	public static void main(String[] args) throws Exception {
+		String obf = null;
+		LatLon start = null;
+		LatLon end = null;
+		int iterations = 5;
+		boolean schedule = false;
+		String changes = null;
+		for (String a : args) {
+			if (a.startsWith("-obf=")) {
+				obf = a.substring("-obf=".length());
+			} else if (a.startsWith("-start=")) {
+				start = parseLatLon(a.substring("-start=".length()));
+			} else if (a.startsWith("-end=")) {
+				end = parseLatLon(a.substring("-end=".length()));
+			} else if (a.startsWith("-iterations=")) {
+				iterations = Integer.parseInt(a.substring("-iterations=".length()));
+			} else if (a.equals("-schedule")) {
+				schedule = true;
+			} else if (a.startsWith("-changes=")) {
+				changes = a.substring("-changes=".length());
+			}
+		}
+		if (obf == null || start == null || end == null) {
+			System.out.println("Usage: -obf=file.obf -start=lat;lon -end=lat;lon [-iterations=5] [-schedule] [-changes=3]");
+			return;
+		}
+		File file = new File(obf);
+		BinaryMapIndexReader reader = new BinaryMapIndexReader(new RandomAccessFile(file, "r"), file);
+		Map<String, String> params = new LinkedHashMap<String, String>();
+		if (changes != null) {
+			params.put("max_num_changes", changes);
+		}
+		Result queue = new Result();
+		Result raptor = new Result();
+		Result pareto = new Result();
+		// first run of every engine only warms up
+		for (int i = 0; i <= iterations; i++) {
+			run(reader, params, schedule, false, false, start, end, i == 0 ? new Result() : queue);
+			run(reader, params, schedule, true, false, start, end, i == 0 ? new Result() : raptor);
+			run(reader, params, schedule, true, true, start, end, i == 0 ? new Result() : pareto);
+		}
+		System.out.println("Queue  " + queue);
+		System.out.println("Raptor " + raptor);
+		System.out.println("Pareto " + pareto);
+		reader.close();
+	}
+
+	private static void run(BinaryMapIndexReader reader, Map<String, String> params, boolean schedule,
+			boolean useRaptor, boolean multiCriteria, LatLon start, LatLon end, Result res) throws Exception {
+		TransportRoutingConfiguration cfg = new TransportRoutingConfiguration(
+				RoutingConfiguration.getDefault().getRouter(TransportRoutingConfiguration.KEY), params);
+		cfg.useSchedule = schedule;
+		cfg.useRaptor = useRaptor;
+		cfg.multiCriteria = multiCriteria;
+		TransportRoutingContext ctx = new TransportRoutingContext(cfg, null, reader);
+		long nt = System.nanoTime();
+		List<TransportRouteResult> routes = new TransportRoutePlanner().buildRoute(ctx, start, end);
+		res.time += System.nanoTime() - nt;
+		res.runs++;
+		res.results = routes.size();
+		for (TransportRouteResult r : routes) {
+			if (Double.isNaN(res.bestRouteTime) || r.getRouteTime() < res.bestRouteTime) {
+				res.bestRouteTime = r.getRouteTime();
+				res.changes = r.getChanges();
+			}
+		}
+	}
+
+	private static LatLon parseLatLon(String s) {
+		String[] pt = s.split(";");
+		return new LatLon(Double.parseDouble(pt[0]), Double.parseDouble(pt[1]));
+	}
+}
@@ -37,6 +37,11 @@ public class TransportRoutingConfiguration {
 	public int boardingTime = 180;
 	
 	public boolean useSchedule;
+	// round based search (TransportRaptorPlanner) instead of segments queue
+	public boolean useRaptor;
+	// pareto labels on time, changes and walk distance (round based search)
+	public boolean multiCriteria;
+	public int maxLabelsPerStop = 4;
 	// 10 seconds based
 	public int scheduleTimeOfDay = 12 * 60 * 6; // 12:00 - 60*6*12
 	public int scheduleMaxTime = 50 * 6; // TODO not appropriate variable, should be dynamic
@@ -92,6 +97,15 @@ public class TransportRoutingConfiguration {
 			maxRouteIncreaseSpeed =  router.getIntAttribute("maxRouteIncreaseSpeed", maxRouteIncreaseSpeed);
 			maxRouteDistance =  router.getIntAttribute("maxRouteDistance", maxRouteDistance);
 			finishTimeSeconds =  router.getIntAttribute("delayForAlternativesRoutes", finishTimeSeconds);
+			String raptor = router.getAttribute("useRaptor");
+			if (raptor != null) {
+				useRaptor = Boolean.parseBoolean(raptor);
+			}
+			String mc = router.getAttribute("multiCriteria");
+			if (mc != null) {
+				multiCriteria = Boolean.parseBoolean(mc);
+			}
+			maxLabelsPerStop = router.getIntAttribute("maxLabelsPerStop", maxLabelsPerStop);
 			String mn = params.get("max_num_changes");
 			maxNumberOfChanges = (int) RoutingConfiguration.parseSilentFloat(mn, maxNumberOfChanges);
 			
@@ -34,6 +34,8 @@ public class TransportRoutingContext {
 	// Incomplete routes usually don't need more files than around Max-BBOX of start/end,
 	// so here an improvement could be introduced
 	final TransportStopsRouteReader transportStopsReader;
+	// shared network, used instead of reader if set
+	final TransportNetwork network;
 	public int finishTimeSeconds;
 
 	// stats
@@ -49,12 +51,25 @@ public class TransportRoutingContext {
 	private final int walkChangeRadiusIn31;
 
 	public TransportRoutingContext(TransportRoutingConfiguration cfg, NativeLibrary library, BinaryMapIndexReader... readers) {
+		this(cfg, library, null, readers);
+	}
+
+	/**
+	 * Context which takes stops from shared precompiled network and doesn't read files
+	 */
+	public TransportRoutingContext(TransportRoutingConfiguration cfg, NativeLibrary library, TransportNetwork network) {
+		this(cfg, library, network, new BinaryMapIndexReader[0]);
+	}
+
+	private TransportRoutingContext(TransportRoutingConfiguration cfg, NativeLibrary library, TransportNetwork network,
+			BinaryMapIndexReader[] readers) {
 		this.cfg = cfg;
 		walkRadiusIn31 = (int) (cfg.walkRadius / MapUtils.getTileDistanceWidth(31));
 		walkChangeRadiusIn31 = (int) (cfg.walkChangeRadius / MapUtils.getTileDistanceWidth(31));
 		quadTree = new TLongObjectHashMap<List<TransportRouteSegment>>();
 		this.library = library;
-		transportStopsReader = new TransportStopsRouteReader(Arrays.asList(readers));
+		this.network = network;
+		transportStopsReader = network == null ? new TransportStopsRouteReader(Arrays.asList(readers)) : null;
 	}
 
 	public List<TransportRouteSegment> getTransportStops(LatLon loc) throws IOException {
@@ -102,10 +117,23 @@ public class TransportRoutingContext {
 		long nanoTime = System.nanoTime();
 		List<TransportRouteSegment> lst = new ArrayList<TransportRouteSegment>();
 		int pz = (31 - cfg.ZOOM_TO_LOAD_TILES);
-		BinaryMapIndexReader.SearchRequest<TransportStop> sr = BinaryMapIndexReader.buildSearchTransportRequest(x << pz, (x + 1) << pz,
-				y << pz, (y + 1) << pz, -1, null);
-		Collection<TransportStop> stops = transportStopsReader.readMergedTransportStops(sr);
-		loadTransportSegments(stops, lst);
+		if (network != null) {
+			TIntArrayList stops = network.searchStops(x << pz, y << pz, (x + 1) << pz, (y + 1) << pz, new TIntArrayList());
+			for (int i = 0; i < stops.size(); i++) {
+				int s = stops.getQuick(i);
+				for (int j = network.stopRoutesStart[s]; j < network.stopRoutesStart[s + 1]; j++) {
+					int stopIndex = network.stopRouteIndex[j];
+					if (stopIndex != -1) {
+						loadRouteSegment(lst, network.routes[network.stopRoutes[j]], stopIndex);
+					}
+				}
+			}
+		} else {
+			BinaryMapIndexReader.SearchRequest<TransportStop> sr = BinaryMapIndexReader.buildSearchTransportRequest(x << pz, (x + 1) << pz,
+					y << pz, (y + 1) << pz, -1, null);
+			Collection<TransportStop> stops = transportStopsReader.readMergedTransportStops(sr);
+			loadTransportSegments(stops, lst);
+		}
 		readTime += System.nanoTime() - nanoTime;
 		return lst;
 	}
@@ -116,35 +144,45 @@ public class TransportRoutingContext {
 				continue;
 			}
 			for (TransportRoute route : s.getRoutes()) {
-				int stopIndex = -1;
-				double dist = TransportRoute.SAME_STOP;
-				for (int k = 0; k < route.getForwardStops().size(); k++) {
-					TransportStop st = route.getForwardStops().get(k);
-					if(st.getId().longValue() == s.getId().longValue() ) {
-						stopIndex = k;
-						break;
-					}
-					double d = MapUtils.getDistance(st.getLocation(), s.getLocation());
-					if (d < dist) {
-						stopIndex = k;
-						dist = d;
-					}
-				}
+				int stopIndex = findStopIndex(route, s);
 				if (stopIndex != -1) {
-					if (cfg != null && cfg.useSchedule) {
-						loadScheduleRouteSegment(lst, route, stopIndex);
-					} else {
-						TransportRouteSegment segment = new TransportRouteSegment(route, stopIndex);
-						lst.add(segment);
-					}
-				} else {
-					System.err.println(String.format(Locale.US, "Routing error: missing stop '%s' in route '%s' id: %d",
-							s.toString(), route.getRef(), route.getId() / 2));
+					loadRouteSegment(lst, route, stopIndex);
 				}
 			}
 		}
 	}
 
+	static int findStopIndex(TransportRoute route, TransportStop s) {
+		int stopIndex = -1;
+		double dist = TransportRoute.SAME_STOP;
+		for (int k = 0; k < route.getForwardStops().size(); k++) {
+			TransportStop st = route.getForwardStops().get(k);
+			if(st.getId().longValue() == s.getId().longValue() ) {
+				stopIndex = k;
+				break;
+			}
+			double d = MapUtils.getDistance(st.getLocation(), s.getLocation());
+			if (d < dist) {
+				stopIndex = k;
+				dist = d;
+			}
+		}
+		if (stopIndex == -1) {
+			System.err.println(String.format(Locale.US, "Routing error: missing stop '%s' in route '%s' id: %d",
+					s.toString(), route.getRef(), route.getId() / 2));
+		}
+		return stopIndex;
+	}
+
+	private void loadRouteSegment(List<TransportRouteSegment> lst, TransportRoute route, int stopIndex) {
+		if (cfg != null && cfg.useSchedule) {
+			loadScheduleRouteSegment(lst, route, stopIndex);
+		} else {
+			TransportRouteSegment segment = new TransportRouteSegment(route, stopIndex);
+			lst.add(segment);
+		}
+	}
+
 	private void loadScheduleRouteSegment(List<TransportRouteSegment> lst, TransportRoute route, int stopIndex) {
 		if(route.getSchedule() != null) {
 			TIntArrayList ti = route.getSchedule().tripIntervals;
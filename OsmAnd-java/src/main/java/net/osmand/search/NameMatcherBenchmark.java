@@ -0,0 +1,139 @@
+package net.osmand.search;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+
+import net.osmand.CollationKeyCache;
+import net.osmand.CollatorStringMatcher;
+import net.osmand.CollatorStringMatcher.StringMatcherMode;
+import net.osmand.util.Algorithms;
+
+import org.json.JSONArray;
+import org.json.JSONObject;
+
+/**
+ * Measures per candidate cost of name matching with collator and with cached primary keys.
+ * Queries (words of search phrases) and candidate names (expected results) are taken from
+ * search test json files (src/test/resources/search by default).
+ */
+public class NameMatcherBenchmark {
+
+	private static final StringMatcherMode[] MODES = { StringMatcherMode.CHECK_STARTS_FROM_SPACE,
+			StringMatcherMode.CHECK_EQUALS_FROM_SPACE, StringMatcherMode.CHECK_ONLY_STARTS_WITH,
+			StringMatcherMode.CHECK_CONTAINS };
+
+	public static void main(String[] args) throws Exception {
+		File dir = new File("src/test/resources/search");
+		int iterations = 5;
+		for (String a : args) {
+			if (a.startsWith("-dir=")) {
+				dir = new File(a.substring("-dir=".length()));
+			} else if (a.startsWith("-iterations=")) {
+				iterations = Integer.parseInt(a.substring("-iterations=".length()));
+			}
+		}
+		Set<String> queries = new LinkedHashSet<String>();
+		Set<String> names = new LinkedHashSet<String>();
+		File[] files = dir.listFiles();
+		if (files != null) {
+			for (File f : files) {
+				if (f.getName().endsWith(".json")) {
+					readTestFile(f, queries, names);
+				}
+			}
+		}
+		if (queries.isEmpty() || names.isEmpty()) {
+			System.out.println("No search test data found in " + dir.getAbsolutePath());
+			System.out.println("Usage: [-dir=src/test/resources/search] [-iterations=5]");
+			return;
+		}
+		List<String> candidates = new ArrayList<String>(names);
+		System.out.println("Queries: " + queries.size() + ", candidate names: " + candidates.size());
+
+		int mismatches = 0;
+		CollationKeyCache cache = new CollationKeyCache();
+		for (StringMatcherMode mode : MODES) {
+			for (String q : queries) {
+				CollatorStringMatcher cm = new CollatorStringMatcher(q, mode);
+				CollatorStringMatcher km = new CollatorStringMatcher(q, mode, cache);
+				for (String n : candidates) {
+					if (cm.matches(n) != km.matches(n)) {
+						mismatches++;
+					}
+				}
+			}
+		}
+		System.out.println("Mismatches between collator and keys: " + mismatches);
+
+		long checks = (long) MODES.length * queries.size() * candidates.size();
+		for (int it = 0; it < iterations; it++) {
+			long collator = time(queries, candidates, null);
+			long cold = time(queries, candidates, new CollationKeyCache());
+			long warm = time(queries, candidates, cache);
+			System.out.println(String.format("Iteration %d: collator %.1f ns, keys %.1f ns, keys (warm cache) %.1f ns per candidate",
+					it, collator / (double) checks, cold / (double) checks, warm / (double) checks));
+		}
+	}
+
+	private static long time(Set<String> queries, List<String> candidates, CollationKeyCache cache) {
+		int matched = 0;
+		long time = System.nanoTime();
+		for (StringMatcherMode mode : MODES) {
+			for (String q : queries) {
+				CollatorStringMatcher m = new CollatorStringMatcher(q, mode, cache);
+				for (String n : candidates) {
+					if (m.matches(n)) {
+						matched++;
+					}
+				}
+			}
+		}
+		time = System.nanoTime() - time;
+		if (matched < 0) {
+			System.out.println(matched);
+		}
+		return time;
+	}
+
+	private static void readTestFile(File f, Set<String> queries, Set<String> names) {
+		JSONObject json = new JSONObject(Algorithms.getFileAsString(f));
+		List<String> phrases = new ArrayList<String>();
+		if (json.has("phrase")) {
+			phrases.add(json.getString("phrase"));
+		}
+		JSONArray phrasesJson = json.optJSONArray("phrases");
+		for (int i = 0; phrasesJson != null && i < phrasesJson.length(); i++) {
+			phrases.add(phrasesJson.getString(i));
+		}
+		for (String p : phrases) {
+			for (String w : p.split("[\\s,]+")) {
+				if (w.length() > 0) {
+					queries.add(w);
+				}
+			}
+		}
+		addResults(json.optJSONArray("results"), names);
+		addResults(json.optJSONArray("extra-results"), names);
+	}
+
+	private static void addResults(JSONArray results, Set<String> names) {
+		for (int i = 0; results != null && i < results.length(); i++) {
+			Object o = results.get(i);
+			if (o instanceof JSONArray) {
+				addResults((JSONArray) o, names);
+				continue;
+			}
+			String r = o.toString();
+			// result format: name [type, distance]
+			if (r.indexOf('[') != -1) {
+				r = r.substring(0, r.indexOf('[')).trim();
+			}
+			if (r.length() > 0) {
+				names.add(r);
+			}
+		}
+	}
+}
@@ -0,0 +1,394 @@
+package net.osmand.search;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.lang.management.ManagementFactory;
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.zip.GZIPInputStream;
+
+import net.osmand.ResultMatcher;
+import net.osmand.binary.BinaryMapIndexReader;
+import net.osmand.osm.MapPoiTypes;
+import net.osmand.search.SearchUICore.SearchResultMatcher;
+import net.osmand.search.core.ObjectType;
+import net.osmand.search.core.SearchCoreAPI;
+import net.osmand.search.core.SearchPhrase;
+import net.osmand.search.core.SearchResult;
+import net.osmand.search.core.SearchSettings;
+import net.osmand.util.Algorithms;
+
+import org.json.JSONArray;
+import org.json.JSONObject;
+
+/**
+ * Replays phrases of search test json files (src/test/resources/search by default) against {@link SearchUICore}
+ * and reports latency percentiles per query and per {@link SearchCoreAPI}, bytes loaded from obf and bytes
+ * allocated (by search thread) per query. With -mmap files are read through memory mapped chunks, then bytes
+ * loaded are not counted and reported as n/a. With -baseline=file results are compared with the baseline and
+ * benchmark exits with code 1 when a metric is worse than baseline by more than tolerance, -write-baseline
+ * stores current results as the baseline instead.
+ * <p>
+ * The check is manual (gradle searchBenchmark -PsearchBaseline=file), it's not part of gradle check:
+ * latencies of the baseline are comparable only on the same machine.
+ */
+public class SearchBenchmark {
+
+	private static final String TOTAL = "total";
+	private static final double[] PERCENTILES = { 50, 90, 99 };
+	// percentiles compared with baseline, p99 is too noisy for a check
+	private static final double[] CHECKED_PERCENTILES = { 50, 90 };
+
+	private static final Method threadAllocatedBytes;
+	static {
+		Method m = null;
+		try {
+			m = Class.forName("com.sun.management.ThreadMXBean").getMethod("getThreadAllocatedBytes", long.class);
+		} catch (Exception e) {
+			// not supported
+		}
+		threadAllocatedBytes = m;
+	}
+
+	private final MapPoiTypes poiTypes;
+	private final Map<String, List<Long>> latencies = new LinkedHashMap<String, List<Long>>();
+	private final Map<String, Long> queryLatencies = new LinkedHashMap<String, Long>();
+	private long lastCheckpoint;
+	private long bytesLoaded;
+	// bytes loaded through memory mapped chunks are not counted
+	private boolean memoryMapped;
+	private long bytesAllocated = -1;
+	private int queries;
+
+	public SearchBenchmark(MapPoiTypes poiTypes) {
+		this.poiTypes = poiTypes;
+	}
+
+	public static void main(String[] args) throws Exception {
+		File dir = new File("src/test/resources/search");
+		File poiTypesFile = new File("src/test/resources/poi_types.xml");
+		File baseline = null;
+		boolean writeBaseline = false;
+		boolean memoryMapped = false;
+		double tolerance = 0.25;
+		int warmup = 3;
+		int iterations = 10;
+		for (String a : args) {
+			if (a.startsWith("-dir=")) {
+				dir = new File(a.substring("-dir=".length()));
+			} else if (a.startsWith("-poiTypes=")) {
+				poiTypesFile = new File(a.substring("-poiTypes=".length()));
+			} else if (a.startsWith("-baseline=")) {
+				baseline = new File(a.substring("-baseline=".length()));
+			} else if (a.equals("-write-baseline")) {
+				writeBaseline = true;
+			} else if (a.equals("-mmap")) {
+				memoryMapped = true;
+			} else if (a.startsWith("-tolerance=")) {
+				tolerance = Double.parseDouble(a.substring("-tolerance=".length()));
+			} else if (a.startsWith("-warmup=")) {
+				warmup = Integer.parseInt(a.substring("-warmup=".length()));
+			} else if (a.startsWith("-iterations=")) {
+				iterations = Integer.parseInt(a.substring("-iterations=".length()));
+			}
+		}
+		List<File> files = new ArrayList<File>();
+		File[] list = dir.listFiles();
+		if (list != null) {
+			for (File f : list) {
+				if (f.getName().endsWith(".json")) {
+					files.add(f);
+				}
+			}
+		}
+		if (files.isEmpty()) {
+			System.out.println("No search test data found in " + dir.getAbsolutePath());
+			System.out.println("Usage: [-dir=src/test/resources/search] [-poiTypes=src/test/resources/poi_types.xml] "
+					+ "[-warmup=3] [-iterations=10] [-mmap] [-baseline=file [-write-baseline] [-tolerance=0.25]]");
+			return;
+		}
+		Collections.sort(files);
+		MapPoiTypes poiTypes = new MapPoiTypes(poiTypesFile.exists() ? poiTypesFile.getAbsolutePath() : null);
+		poiTypes.init();
+		MapPoiTypes.setDefault(poiTypes);
+
+		SearchBenchmark benchmark = new SearchBenchmark(poiTypes);
+		benchmark.setMemoryMapped(memoryMapped);
+		for (int it = 0; it < warmup; it++) {
+			for (File f : files) {
+				benchmark.runFile(f);
+			}
+		}
+		benchmark.reset();
+		for (int it = 0; it < iterations; it++) {
+			for (File f : files) {
+				benchmark.runFile(f);
+			}
+		}
+		JSONObject results = benchmark.getResults();
+		benchmark.print(results);
+		if (baseline != null) {
+			if (writeBaseline) {
+				FileOutputStream out = new FileOutputStream(baseline);
+				try {
+					out.write(results.toString(2).getBytes("UTF-8"));
+				} finally {
+					out.close();
+				}
+				System.out.println("Baseline is written to " + baseline.getAbsolutePath());
+			} else {
+				List<String> regressions = compare(new JSONObject(Algorithms.getFileAsString(baseline)), results,
+						tolerance);
+				for (String r : regressions) {
+					System.out.println("REGRESSION " + r);
+				}
+				if (!regressions.isEmpty()) {
+					System.exit(1);
+				}
+				System.out.println("No regressions against " + baseline.getName());
+			}
+		}
+	}
+
+	public void setMemoryMapped(boolean memoryMapped) {
+		this.memoryMapped = memoryMapped;
+	}
+
+	public void reset() {
+		latencies.clear();
+		bytesLoaded = 0;
+		bytesAllocated = -1;
+		queries = 0;
+	}
+
+	public void runFile(File jsonFile) throws IOException {
+		JSONObject json = new JSONObject(Algorithms.getFileAsString(jsonFile));
+		List<String> phrases = new ArrayList<String>();
+		if (json.has("phrase")) {
+			phrases.add(json.getString("phrase"));
+		}
+		JSONArray phrasesJson = json.optJSONArray("phrases");
+		for (int i = 0; phrasesJson != null && i < phrasesJson.length(); i++) {
+			phrases.add(phrasesJson.getString(i));
+		}
+		JSONObject settingsJson = json.getJSONObject("settings");
+		File obf = null;
+		BinaryMapIndexReader reader = null;
+		if (settingsJson.optBoolean("useData", true)) {
+			obf = getObfFile(jsonFile);
+			if (obf == null) {
+				return;
+			}
+			reader = new BinaryMapIndexReader(new RandomAccessFile(obf, "r"), obf, true, memoryMapped);
+		}
+		try {
+			SearchSettings settings = SearchSettings.parseJSON(settingsJson);
+			if (reader != null) {
+				settings.setOfflineIndexes(Collections.singletonList(reader));
+			}
+			SearchUICore core = new SearchUICore(poiTypes, "en", false);
+			core.init();
+			for (String text : phrases) {
+				runQuery(core, reader, settings, text);
+			}
+		} finally {
+			if (reader != null) {
+				reader.close();
+			}
+		}
+	}
+
+	private void runQuery(SearchUICore core, BinaryMapIndexReader reader, SearchSettings settings, String text) {
+		ResultMatcher<SearchResult> apiTimer = new ResultMatcher<SearchResult>() {
+			@Override
+			public boolean publish(SearchResult object) {
+				if (object.objectType == ObjectType.SEARCH_API_FINISHED) {
+					checkpoint(object.object.getClass().getSimpleName());
+				}
+				return true;
+			}
+
+			@Override
+			public boolean isCancelled() {
+				return false;
+			}
+		};
+		queryLatencies.clear();
+		long loaded = reader == null ? 0 : reader.getBytesLoaded();
+		long allocated = getAllocatedBytes();
+		long start = System.nanoTime();
+		lastCheckpoint = start;
+		SearchPhrase phrase = SearchPhrase.emptyPhrase(settings).generateNewPhrase(text, settings);
+		SearchResultMatcher matcher = new SearchResultMatcher(apiTimer, phrase, 1, new AtomicInteger(1), -1);
+		core.searchInternal(phrase, matcher);
+		long time = System.nanoTime() - start;
+		if (allocated != -1) {
+			bytesAllocated = Math.max(0, bytesAllocated) + getAllocatedBytes() - allocated;
+		}
+		if (reader != null) {
+			bytesLoaded += reader.getBytesLoaded() - loaded;
+		}
+		queries++;
+		addLatency(TOTAL, time);
+		for (Entry<String, Long> e : queryLatencies.entrySet()) {
+			addLatency(e.getKey(), e.getValue());
+		}
+	}
+
+	// time since previous checkpoint belongs to finished api (inner api finishes before outer)
+	private void checkpoint(String api) {
+		long time = System.nanoTime();
+		Long prev = queryLatencies.get(api);
+		queryLatencies.put(api, (prev == null ? 0 : prev) + time - lastCheckpoint);
+		lastCheckpoint = time;
+	}
+
+	private void addLatency(String key, long time) {
+		List<Long> l = latencies.get(key);
+		if (l == null) {
+			l = new ArrayList<Long>();
+			latencies.put(key, l);
+		}
+		l.add(time);
+	}
+
+	public JSONObject getResults() {
+		JSONObject res = new JSONObject();
+		res.put("queries", queries);
+		JSONObject lat = new JSONObject();
+		for (Entry<String, List<Long>> e : latencies.entrySet()) {
+			long[] times = new long[e.getValue().size()];
+			for (int i = 0; i < times.length; i++) {
+				times[i] = e.getValue().get(i);
+			}
+			Arrays.sort(times);
+			JSONObject p = new JSONObject();
+			p.put("runs", times.length);
+			for (double pr : PERCENTILES) {
+				p.put(percentileKey(pr), times[percentileIndex(times.length, pr)] / 1e6);
+			}
+			lat.put(e.getKey(), p);
+		}
+		res.put("latencyMs", lat);
+		if (queries > 0) {
+			if (memoryMapped) {
+				res.put("bytesLoadedPerQuery", "n/a");
+			} else {
+				res.put("bytesLoadedPerQuery", bytesLoaded / queries);
+			}
+			if (bytesAllocated != -1) {
+				res.put("bytesAllocatedPerQuery", bytesAllocated / queries);
+			}
+		}
+		return res;
+	}
+
+	private void print(JSONObject results) {
+		System.out.println("Queries: " + results.getInt("queries"));
+		System.out.println(String.format("%-36s %6s %10s %10s %10s", "API", "runs", "p50 ms", "p90 ms", "p99 ms"));
+		JSONObject lat = results.getJSONObject("latencyMs");
+		for (String api : latencies.keySet()) {
+			JSONObject p = lat.getJSONObject(api);
+			System.out.println(String.format("%-36s %6d %10.3f %10.3f %10.3f", api, p.getInt("runs"),
+					p.getDouble("p50"), p.getDouble("p90"), p.getDouble("p99")));
+		}
+		if (memoryMapped) {
+			System.out.println("Loaded from obf per query: n/a (memory mapped)");
+		} else if (results.has("bytesLoadedPerQuery")) {
+			System.out.println(String.format("Loaded from obf per query: %.1f KB",
+					results.getLong("bytesLoadedPerQuery") / 1024.0));
+		}
+		if (results.has("bytesAllocatedPerQuery")) {
+			System.out.println(String.format("Allocated per query: %.1f KB",
+					results.getLong("bytesAllocatedPerQuery") / 1024.0));
+		}
+	}
+
+	static List<String> compare(JSONObject baseline, JSONObject current, double tolerance) {
+		List<String> regressions = new ArrayList<String>();
+		JSONObject baseLat = baseline.optJSONObject("latencyMs");
+		JSONObject curLat = current.optJSONObject("latencyMs");
+		if (baseLat != null && curLat != null) {
+			for (String api : baseLat.keySet()) {
+				if (!curLat.has(api)) {
+					continue;
+				}
+				for (double pr : CHECKED_PERCENTILES) {
+					String key = percentileKey(pr);
+					check(regressions, api + " " + key, baseLat.getJSONObject(api).optDouble(key, -1),
+							curLat.getJSONObject(api).optDouble(key, -1), tolerance);
+				}
+			}
+		}
+		check(regressions, "bytesLoadedPerQuery", baseline.optDouble("bytesLoadedPerQuery", -1),
+				current.optDouble("bytesLoadedPerQuery", -1), tolerance);
+		check(regressions, "bytesAllocatedPerQuery", baseline.optDouble("bytesAllocatedPerQuery", -1),
+				current.optDouble("bytesAllocatedPerQuery", -1), tolerance);
+		return regressions;
+	}
+
+	private static void check(List<String> regressions, String name, double base, double cur, double tolerance) {
+		if (base >= 0 && cur >= 0 && cur > base * (1 + tolerance)) {
+			regressions.add(String.format("%s: %.3f (baseline %.3f)", name, cur, base));
+		}
+	}
+
+	private static String percentileKey(double pr) {
+		return "p" + (int) pr;
+	}
+
+	static int percentileIndex(int size, double pr) {
+		int ind = (int) Math.ceil(pr / 100 * size) - 1;
+		return Math.max(0, Math.min(size - 1, ind));
+	}
+
+	private static File getObfFile(File jsonFile) throws IOException {
+		String name = jsonFile.getName().replace(".json", "");
+		File obf = new File(jsonFile.getParentFile(), name + ".obf");
+		if (obf.exists()) {
+			return obf;
+		}
+		File gz = new File(jsonFile.getParentFile(), name + ".obf.gz");
+		if (!gz.exists()) {
+			System.out.println("Could not find obf file for " + jsonFile.getName());
+			return null;
+		}
+		// unpacked once per run
+		File tmp = new File(System.getProperty("java.io.tmpdir"), "search-benchmark-" + name + ".obf");
+		if (!tmp.exists() || tmp.lastModified() < gz.lastModified()) {
+			GZIPInputStream in = new GZIPInputStream(new FileInputStream(gz));
+			FileOutputStream out = new FileOutputStream(tmp);
+			try {
+				Algorithms.streamCopy(in, out);
+			} finally {
+				out.close();
+				in.close();
+			}
+			tmp.deleteOnExit();
+		}
+		return tmp;
+	}
+
+	// allocated bytes of current thread, available on HotSpot only (-1 otherwise)
+	private static long getAllocatedBytes() {
+		if (threadAllocatedBytes == null) {
+			return -1;
+		}
+		try {
+			return (Long) threadAllocatedBytes.invoke(ManagementFactory.getThreadMXBean(),
+					Thread.currentThread().getId());
+		} catch (Exception e) {
+			return -1;
+		}
+	}
+}
@@ -4,6 +4,7 @@ import net.osmand.Collator;
 import net.osmand.PlatformUtil;
 import net.osmand.ResultMatcher;
 import net.osmand.binary.BinaryMapIndexReader;
+import net.osmand.binary.CachedNameIndexes;
 import net.osmand.data.Amenity;
 import net.osmand.data.City;
 import net.osmand.data.LatLon;
@@ -17,6 +18,7 @@ import net.osmand.search.core.SearchCoreAPI;
 import net.osmand.search.core.SearchCoreFactory;
 import net.osmand.search.core.SearchCoreFactory.SearchAmenityByTypeAPI;
 import net.osmand.search.core.SearchCoreFactory.SearchAmenityTypesAPI;
+import net.osmand.search.core.SearchCoreFactory.SearchBaseAPI;
 import net.osmand.search.core.SearchCoreFactory.SearchBuildingAndIntersectionsByStreetAPI;
 import net.osmand.search.core.SearchCoreFactory.SearchStreetByCityAPI;
 import net.osmand.search.core.SearchExportSettings;
@@ -36,12 +38,17 @@ import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.Comparator;
+import java.util.HashMap;
 import java.util.HashSet;
+import java.util.IdentityHashMap;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.ListIterator;
+import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ExecutorService;
 import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
 import java.util.concurrent.ThreadPoolExecutor;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicInteger;
@@ -57,10 +64,15 @@ public class SearchUICore {
 
 	private ThreadPoolExecutor singleThreadedExecutor;
 	private LinkedBlockingQueue<Runnable> taskQueue;
+	private ThreadPoolExecutor regionSearchExecutor;
 	private Runnable onSearchStart = null;
 	private Runnable onResultsComplete = null;
 	private AtomicInteger requestNumber = new AtomicInteger();
 	private int totalLimit = -1; // -1 unlimited - not used
+	private volatile boolean incrementalSearch;
+	// results of last search by api, used to refine results when unknown word is extended
+	private SearchPhrase incrementalPhrase;
+	private Map<SearchCoreAPI, List<SearchResult>> incrementalResults;
 
 	List<SearchCoreAPI> apis = new ArrayList<>();
 	private SearchSettings searchSettings;
@@ -78,6 +90,49 @@ public class SearchUICore {
 		singleThreadedExecutor = new ThreadPoolExecutor(1, 1, 0L, TimeUnit.MILLISECONDS, taskQueue);
 	}
 
+	/**
+	 * Searches region files in parallel on given number of threads, results of each API are still published
+	 * in order of files. 0 or 1 thread switches back to sequential search.
+	 */
+	public void setRegionSearchThreads(int threads) {
+		ThreadPoolExecutor prev = regionSearchExecutor;
+		if (threads > 1) {
+			regionSearchExecutor = new ThreadPoolExecutor(threads, threads, 0L, TimeUnit.MILLISECONDS,
+					new LinkedBlockingQueue<Runnable>(), new ThreadFactory() {
+						private final AtomicInteger threadNumber = new AtomicInteger();
+
+						@Override
+						public Thread newThread(Runnable r) {
+							Thread t = new Thread(r, "Search regions " + threadNumber.incrementAndGet());
+							t.setDaemon(true);
+							return t;
+						}
+					});
+		} else {
+			regionSearchExecutor = null;
+		}
+		if (prev != null) {
+			prev.shutdown();
+		}
+	}
+
+	public int getRegionSearchThreads() {
+		ThreadPoolExecutor executor = regionSearchExecutor;
+		return executor == null ? 1 : executor.getMaximumPoolSize();
+	}
+
+	/**
+	 * When phrase extends unknown word of previous search, APIs supporting it filter their previous
+	 * results instead of reading obf files again. Results truncated by limits are never refined.
+	 */
+	public void setIncrementalSearch(boolean incrementalSearch) {
+		this.incrementalSearch = incrementalSearch;
+	}
+
+	public boolean isIncrementalSearch() {
+		return incrementalSearch;
+	}
+
 	public static void setDebugMode(boolean debugMode) {
 		SearchUICore.debugMode = debugMode;
 	}
@@ -360,6 +415,17 @@ public class SearchUICore {
 		}
 	}
 
+	/**
+	 * Sets sidecar name indexes consulted by search by name before name indexes of obf files.
+	 */
+	public void setNameIndexes(CachedNameIndexes nameIndexes) {
+		for (SearchCoreAPI capi : apis) {
+			if (capi instanceof SearchBaseAPI) {
+				((SearchBaseAPI) capi).setNameIndexes(nameIndexes);
+			}
+		}
+	}
+
 	public void registerAPI(SearchCoreAPI api) {
 		apis.add(api);
 	}
@@ -444,6 +510,7 @@ public class SearchUICore {
 						onSearchStart.run();
 					}
 					final SearchResultMatcher rm = new SearchResultMatcher(matcher, phrase, request, requestNumber, totalLimit);
+					rm.setRegionExecutor(regionSearchExecutor);
 					if (debugMode) {
 						LOG.info("Starting search <" + phrase.toString() + ">");
 					}
@@ -603,6 +670,13 @@ public class SearchUICore {
 						o2.getSearchPriority(phrase));
 			}
 		});
+		boolean incremental = incrementalSearch;
+		SearchPhrase previous = incrementalPhrase;
+		Map<SearchCoreAPI, List<SearchResult>> previousResults = incrementalResults;
+		if (!incremental || !isPhraseExtended(previous, phrase)) {
+			previousResults = null;
+		}
+		Map<SearchCoreAPI, List<SearchResult>> apiResults = new HashMap<>();
 		for (SearchCoreAPI api : lst) {
 			if (matcher.isCancelled()) {
 				break;
@@ -610,11 +684,22 @@ public class SearchUICore {
 			if (!api.isSearchAvailable(phrase) || api.getSearchPriority(phrase) == -1) {
 				continue;
 			}
+			int start = matcher.getRequestResults().size();
+			boolean failed = false;
 			try {
-				if (debugMode) {
-					LOG.info("Run API search <" + phrase + "> API=<" + api + ">");
+				List<SearchResult> cached = previousResults == null ? null : previousResults.get(api);
+				if (cached != null && api instanceof SearchBaseAPI
+						&& ((SearchBaseAPI) api).isIncrementalSearchAvailable(previous, phrase)) {
+					if (debugMode) {
+						LOG.info("Refine API results <" + phrase + "> API=<" + api + "> Results=" + cached.size());
+					}
+					refineResults((SearchBaseAPI) api, phrase, cached, matcher);
+				} else {
+					if (debugMode) {
+						LOG.info("Run API search <" + phrase + "> API=<" + api + ">");
+					}
+					api.search(phrase, matcher);
 				}
-				api.search(phrase, matcher);
 				if (debugMode) {
 					LOG.info("API search finishing <" + phrase + "> API=<" + api + ">");
 				}
@@ -625,10 +710,77 @@ public class SearchUICore {
 			} catch (Throwable e) {
 				e.printStackTrace();
 				LOG.error(e.getMessage(), e);
+				failed = true;
+			}
+			if (incremental && !failed && !matcher.isLimitReached()) {
+				List<SearchResult> res = matcher.getRequestResults();
+				apiResults.put(api, new ArrayList<>(res.subList(start, res.size())));
+			}
+		}
+		if (incremental && !matcher.isCancelled()) {
+			incrementalPhrase = phrase;
+			incrementalResults = apiResults;
+		}
+	}
+
+	private boolean isPhraseExtended(SearchPhrase previous, SearchPhrase phrase) {
+		if (previous == null || previous.getSettings() != phrase.getSettings()
+				|| previous.hasMoreThanOneUnknownSearchWord() || phrase.hasMoreThanOneUnknownSearchWord()) {
+			return false;
+		}
+		List<SearchWord> prevWords = previous.getWords();
+		List<SearchWord> words = phrase.getWords();
+		if (prevWords.size() != words.size()) {
+			return false;
+		}
+		for (int i = 0; i < words.size(); i++) {
+			if (prevWords.get(i).getResult() != words.get(i).getResult()) {
+				return false;
+			}
+		}
+		String prevWord = previous.getFirstUnknownSearchWord();
+		String word = phrase.getFirstUnknownSearchWord();
+		return prevWord.length() > 0 && word.length() > prevWord.length() && word.startsWith(prevWord);
+	}
+
+	private void refineResults(SearchBaseAPI api, SearchPhrase phrase, List<SearchResult> cached,
+							   SearchResultMatcher matcher) {
+		NameStringMatcher nm = phrase.getFirstUnknownNameStringMatcher();
+		// cached results could be still shown, so they are copied (parents shared by several results only once)
+		Map<SearchResult, SearchResult> copies = new IdentityHashMap<>();
+		for (SearchResult sr : cached) {
+			if (matcher.isCancelled()) {
+				return;
+			}
+			// results of sub search (i.e. streets of matched city) are matched by parent
+			boolean match = false;
+			for (SearchResult r = sr; r != null && !match; r = r.parentSearchResult) {
+				match = api.isRefinedResultMatched(r, nm);
+			}
+			if (match) {
+				matcher.publishRefinedResult(copyRefinedResult(phrase, sr, matcher, copies));
 			}
 		}
 	}
 
+	private SearchResult copyRefinedResult(SearchPhrase phrase, SearchResult sr, SearchResultMatcher matcher,
+										   Map<SearchResult, SearchResult> copies) {
+		SearchResult c = copies.get(sr);
+		if (c == null) {
+			c = sr.copy(phrase);
+			if (sr.parentSearchResult != null) {
+				c.parentSearchResult = copyRefinedResult(phrase, sr.parentSearchResult, matcher, copies);
+			}
+			// matched words and alternate name are set as search and publish set them for new phrase
+			if (c.localeName != null) {
+				phrase.countUnknownWordsMatchMainResult(c);
+			}
+			matcher.updateAlternateName(c);
+			copies.put(sr, c);
+		}
+		return c;
+	}
+
 	private void preparePhrase(final SearchPhrase phrase) {
 		if (debugMode) {
 			LOG.info("Preparing search phrase <" + phrase + ">");
@@ -655,6 +807,12 @@ public class SearchUICore {
 		private SearchPhrase phrase;
 		private List<MapObject> exportedObjects;
 		private List<City> exportedCities;
+		private ExecutorService regionExecutor;
+		private SearchResultMatcher parentMatcher;
+		private volatile boolean limitReached;
+		// ordinal of object counted by API limit which following results belong to (region matchers only)
+		private int limitOrdinal;
+		private List<Integer> resultLimitOrdinals;
 
 		public SearchResultMatcher(ResultMatcher<SearchResult> matcher, SearchPhrase phrase, int request,
 								   AtomicInteger requestNumber, int totalLimit) {
@@ -665,6 +823,72 @@ public class SearchUICore {
 			this.totalLimit = totalLimit;
 		}
 
+		/**
+		 * Executor to search region files in parallel, null if files are searched sequentially.
+		 */
+		public ExecutorService getRegionExecutor() {
+			return regionExecutor;
+		}
+
+		public void setRegionExecutor(ExecutorService regionExecutor) {
+			this.regionExecutor = regionExecutor;
+		}
+
+		/**
+		 * Creates matcher which collects results of one region file searched on region executor.
+		 * Collected results are published by {@link #publishRegionResults(List)}.
+		 */
+		public SearchResultMatcher createRegionMatcher() {
+			SearchResultMatcher rm = new SearchResultMatcher(null, phrase, request, requestNumber, -1);
+			rm.parentSearchResult = parentSearchResult;
+			rm.parentMatcher = this;
+			rm.resultLimitOrdinals = new ArrayList<>();
+			return rm;
+		}
+
+		/**
+		 * Marks following results with ordinal of object counted by API limit (see SearchCoreFactory.LimitCounter).
+		 */
+		public void setLimitOrdinal(int limitOrdinal) {
+			this.limitOrdinal = limitOrdinal;
+		}
+
+		/**
+		 * @return ordinal of object counted by API limit which collected result of region matcher belongs to
+		 */
+		public int getResultLimitOrdinal(int resultIndex) {
+			return resultLimitOrdinals == null ? 0 : resultLimitOrdinals.get(resultIndex);
+		}
+
+		public void publishRegionResults(List<SearchResult> regionResults) {
+			for (SearchResult sr : regionResults) {
+				if (isCancelled()) {
+					break;
+				}
+				// parent search result is already assigned by region matcher
+				publishResult(sr);
+			}
+		}
+
+		/**
+		 * Marks results as truncated by limit, so they couldn't be refined for longer phrase.
+		 */
+		public void setLimitReached() {
+			limitReached = true;
+			if (parentMatcher != null) {
+				parentMatcher.setLimitReached();
+			}
+		}
+
+		public boolean isLimitReached() {
+			return limitReached;
+		}
+
+		public boolean publishRefinedResult(SearchResult sr) {
+			// parent search result is kept from previous search
+			return publishResult(sr);
+		}
+
 		public SearchResult setParentSearchResult(SearchResult parentSearchResult) {
 			SearchResult prev = this.parentSearchResult;
 			this.parentSearchResult = parentSearchResult;
@@ -733,6 +957,12 @@ public class SearchUICore {
 
 		@Override
 		public boolean publish(SearchResult object) {
+			updateAlternateName(object);
+			object.parentSearchResult = parentSearchResult;
+			return publishResult(object);
+		}
+
+		private void updateAlternateName(SearchResult object) {
 			if (phrase != null && object.otherNames != null && !phrase.getFirstUnknownNameStringMatcher().matches(object.localeName)) {
 				for (String s : object.otherNames) {
 					if (phrase.getFirstUnknownNameStringMatcher().matches(s)) {
@@ -753,11 +983,18 @@ public class SearchUICore {
 				object.localeName = object.alternateName;
 				object.alternateName = null;
 			}
-			object.parentSearchResult = parentSearchResult;
+		}
+
+		private boolean publishResult(SearchResult object) {
 			if (matcher == null || matcher.publish(object)) {
 				count++;
 				if (totalLimit == -1 || count < totalLimit) {
 					requestResults.add(object);
+					if (resultLimitOrdinals != null) {
+						resultLimitOrdinals.add(limitOrdinal);
+					}
+				} else {
+					limitReached = true;
 				}
 				return true;
 			}
@@ -767,7 +1004,8 @@ public class SearchUICore {
 		@Override
 		public boolean isCancelled() {
 			boolean cancelled = request != requestNumber.get();
-			return cancelled || (matcher != null && matcher.isCancelled());
+			return cancelled || (matcher != null && matcher.isCancelled())
+					|| (parentMatcher != null && parentMatcher.isCancelled());
 		}
 
 		public List<MapObject> getExportedObjects() {
@@ -779,6 +1017,12 @@ public class SearchUICore {
 		}
 
 		public void exportObject(SearchPhrase phrase, MapObject object) {
+			if (parentMatcher != null) {
+				synchronized (parentMatcher) {
+					parentMatcher.exportObject(phrase, object);
+				}
+				return;
+			}
 			double maxDistance = phrase.getSettings().getExportSettings().getMaxDistance();
 			if (maxDistance > 0) {
 				double distance = MapUtils.getDistance(phrase.getSettings().getOriginalLocation(), object.getLocation());
@@ -793,6 +1037,12 @@ public class SearchUICore {
 		}
 
 		public void exportCity(SearchPhrase phrase, City city) {
+			if (parentMatcher != null) {
+				synchronized (parentMatcher) {
+					parentMatcher.exportCity(phrase, city);
+				}
+				return;
+			}
 			double maxDistance = phrase.getSettings().getExportSettings().getMaxDistance();
 			if (maxDistance > 0) {
 				double distance = MapUtils.getDistance(phrase.getSettings().getOriginalLocation(), city.getLocation());
@@ -5,6 +5,8 @@ import net.osmand.CollatorStringMatcher;
 import net.osmand.CollatorStringMatcher.StringMatcherMode;
 import net.osmand.ResultMatcher;
 import net.osmand.binary.BinaryMapAddressReaderAdapter;
+import net.osmand.binary.CachedNameIndexes;
+import net.osmand.binary.CachedNameIndexes.FileNameIndex;
 import net.osmand.binary.BinaryMapIndexReader;
 import net.osmand.binary.BinaryMapIndexReader.SearchPoiTypeFilter;
 import net.osmand.binary.BinaryMapIndexReader.SearchRequest;
@@ -48,7 +50,11 @@ import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
 import java.util.Set;
-import java.util.TreeSet;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 
 public class SearchCoreFactory {
@@ -84,9 +90,66 @@ public class SearchCoreFactory {
 	protected static final double SEARCH_AMENITY_BY_NAME_CITY_PRIORITY_DISTANCE = 0.001;
 	protected static final double SEARCH_AMENITY_BY_NAME_TOWN_PRIORITY_DISTANCE = 0.005;
 
+	/**
+	 * Search of one region file, called concurrently for different files when search runs in parallel.
+	 */
+	protected interface RegionSearch {
+
+		/**
+		 * @param poiIds ids of POI published before (see {@link #getPoiId(Amenity)}), POI with these ids
+		 * shouldn't be published again. Ids of published POI should be added.
+		 * @param limit counter of objects limited by API (counts objects of all files in sequential search
+		 * and objects of this file in parallel search)
+		 */
+		void search(BinaryMapIndexReader r, SearchResultMatcher resultMatcher, Set<String> poiIds, LimitCounter limit)
+				throws IOException;
+	}
+
+	/**
+	 * Counts objects found by API which limits number of objects in all files. Result published for counted
+	 * object should be marked with its ordinal ({@link SearchResultMatcher#setLimitOrdinal(int)}), so results of
+	 * files searched in parallel are limited in order of files the same way as in sequential search.
+	 */
+	protected static class LimitCounter {
+		private final int limit;
+		private int count;
+
+		public LimitCounter(int limit) {
+			this.limit = limit;
+		}
+
+		/**
+		 * @return ordinal of counted object
+		 */
+		public int next() {
+			return count++;
+		}
+
+		public void add(int objects) {
+			count += objects;
+		}
+
+		public boolean accepts(int ordinal) {
+			return ordinal <= limit;
+		}
+
+		public boolean isLimitReached() {
+			return count > limit;
+		}
+
+		public int getCount() {
+			return count;
+		}
+	}
+
+	protected static String getPoiId(Amenity object) {
+		return object.getType().getKeyName() + "_" + object.getId();
+	}
+
 	public static abstract class SearchBaseAPI implements SearchCoreAPI {
 
 		private ObjectType[] searchTypes;
+		private CachedNameIndexes nameIndexes;
 
 		protected SearchBaseAPI(ObjectType... searchTypes) {
 			if (searchTypes == null) {
@@ -115,11 +178,40 @@ public class SearchCoreFactory {
 			}
 		}
 
+		/**
+		 * @param previous phrase which results are cached
+		 * @param phrase phrase which extends unknown word of previous phrase
+		 * @return true if results of the phrase could be found by filtering results of previous phrase
+		 * with {@link #isRefinedResultMatched(SearchResult, NameStringMatcher)}
+		 */
+		public boolean isIncrementalSearchAvailable(SearchPhrase previous, SearchPhrase phrase) {
+			return false;
+		}
+
+		/**
+		 * Checks cached result with matcher of extended phrase, should match the same names as search does.
+		 */
+		public boolean isRefinedResultMatched(SearchResult sr, NameStringMatcher nm) {
+			return nm.matches(sr.localeName) || nm.matches(sr.otherNames)
+					|| (sr.alternateName != null && nm.matches(sr.alternateName));
+		}
+
 		@Override
 		public boolean search(SearchPhrase phrase, SearchResultMatcher resultMatcher) throws IOException {
 			return true;
 		}
 
+		public void setNameIndexes(CachedNameIndexes nameIndexes) {
+			this.nameIndexes = nameIndexes;
+		}
+
+		/**
+		 * @return sidecar name index of the file if it is already built
+		 */
+		protected FileNameIndex getNameIndex(BinaryMapIndexReader r) throws IOException {
+			return nameIndexes == null ? null : nameIndexes.getNameIndex(r, false);
+		}
+
 		@Override
 		public int getSearchPriority(SearchPhrase p) {
 			return 1;
@@ -216,6 +308,122 @@ public class SearchCoreFactory {
 
 		}
 
+		protected void searchRegions(SearchPhrase phrase, SearchResultMatcher resultMatcher,
+									 Iterator<BinaryMapIndexReader> regions, RegionSearch search) throws IOException {
+			searchRegions(phrase, resultMatcher, regions, Integer.MAX_VALUE, search);
+		}
+
+		/**
+		 * Runs region search for each file. If result matcher has region executor, files are searched
+		 * in parallel with own region matchers and collected results are published in order of files,
+		 * so POI found in several files are published from the same file as in sequential search.
+		 * Each file counts own objects by limit, results over the limit are dropped when they're merged in order
+		 * of files, so published results don't depend on scheduling.
+		 */
+		protected void searchRegions(SearchPhrase phrase, SearchResultMatcher resultMatcher,
+									 Iterator<BinaryMapIndexReader> regions, int limit, final RegionSearch search)
+				throws IOException {
+			ExecutorService executor = resultMatcher.getRegionExecutor();
+			Set<String> publishedPois = new HashSet<>();
+			if (executor == null) {
+				LimitCounter counter = new LimitCounter(limit);
+				while (regions.hasNext() && !resultMatcher.isCancelled()) {
+					BinaryMapIndexReader r = regions.next();
+					search.search(r, resultMatcher, publishedPois, counter);
+					if (counter.isLimitReached()) {
+						resultMatcher.setLimitReached();
+					}
+					resultMatcher.apiSearchRegionFinished(this, r, phrase);
+				}
+				return;
+			}
+			List<BinaryMapIndexReader> files = new ArrayList<>();
+			List<SearchResultMatcher> regionMatchers = new ArrayList<>();
+			List<LimitCounter> counters = new ArrayList<>();
+			List<Future<Void>> tasks = new ArrayList<>();
+			final AtomicBoolean aborted = new AtomicBoolean();
+			while (regions.hasNext()) {
+				final BinaryMapIndexReader r = regions.next();
+				final SearchResultMatcher rm = resultMatcher.createRegionMatcher();
+				final LimitCounter counter = new LimitCounter(limit);
+				files.add(r);
+				regionMatchers.add(rm);
+				counters.add(counter);
+				tasks.add(executor.submit(new Callable<Void>() {
+					@Override
+					public Void call() throws Exception {
+						if (!aborted.get() && !rm.isCancelled()) {
+							search.search(r, rm, new HashSet<String>(), counter);
+						}
+						return null;
+					}
+				}));
+			}
+			LimitCounter merged = new LimitCounter(limit);
+			int i = 0;
+			try {
+				for (; i < tasks.size(); i++) {
+					tasks.get(i).get();
+					if (resultMatcher.isCancelled()) {
+						break;
+					}
+					SearchResultMatcher rm = regionMatchers.get(i);
+					List<SearchResult> results = rm.getRequestResults();
+					List<SearchResult> toPublish = new ArrayList<>(results.size());
+					int offset = merged.getCount();
+					for (int k = 0; k < results.size(); k++) {
+						SearchResult sr = results.get(k);
+						if (!merged.accepts(offset + rm.getResultLimitOrdinal(k))) {
+							continue;
+						}
+						if (sr.object instanceof Amenity && !publishedPois.add(getPoiId((Amenity) sr.object))) {
+							continue;
+						}
+						toPublish.add(sr);
+					}
+					merged.add(counters.get(i).getCount());
+					if (merged.isLimitReached()) {
+						resultMatcher.setLimitReached();
+					}
+					resultMatcher.publishRegionResults(toPublish);
+					resultMatcher.apiSearchRegionFinished(this, files.get(i), phrase);
+				}
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			} catch (ExecutionException e) {
+				Throwable cause = e.getCause();
+				if (cause instanceof IOException) {
+					throw (IOException) cause;
+				} else if (cause instanceof RuntimeException) {
+					throw (RuntimeException) cause;
+				}
+				throw new IllegalStateException(cause);
+			} finally {
+				// readers are not thread safe, so don't leave running tasks behind
+				aborted.set(true);
+				for (int j = i; j < tasks.size(); j++) {
+					waitTaskFinished(tasks.get(j));
+				}
+			}
+		}
+
+		private void waitTaskFinished(Future<Void> task) {
+			boolean interrupted = false;
+			while (true) {
+				try {
+					task.get();
+					break;
+				} catch (InterruptedException e) {
+					interrupted = true;
+				} catch (ExecutionException e) {
+					break;
+				}
+			}
+			if (interrupted) {
+				Thread.currentThread().interrupt();
+			}
+		}
+
 		@Override
 		public String toString() {
 			return getClass().getSimpleName();
@@ -314,6 +522,12 @@ public class SearchCoreFactory {
 			return phrase.getNextRadiusSearch(DEFAULT_ADDRESS_BBOX_RADIUS);
 		}
 
+		@Override
+		public boolean isIncrementalSearchAvailable(SearchPhrase previous, SearchPhrase phrase) {
+			// cities are filtered from memory, but search by name is skipped for short words
+			return isSearchByNameAvailable(previous);
+		}
+
 		@Override
 		public boolean search(final SearchPhrase phrase, final SearchResultMatcher resultMatcher) throws IOException {
 			if (!phrase.isUnknownSearchWordPresent() && !phrase.isEmptyQueryAllowed()) {
@@ -376,164 +590,177 @@ public class SearchCoreFactory {
 						subSearchApiOrPublish(phrase, resultMatcher, res, cityApi);
 					}
 					if (limit++ > LIMIT * phrase.getRadiusLevel()) {
+						resultMatcher.setLimitReached();
 						break;
 					}
 				}
 			}
 		}
 
+		private boolean isSearchByNameAvailable(SearchPhrase phrase) {
+			return phrase.getRadiusLevel() > 1 || phrase.getUnknownWordToSearch().length() > 3 ||
+					phrase.hasMoreThanOneUnknownSearchWord()|| phrase.isSearchTypeAllowed(ObjectType.POSTCODE, true);
+		}
+
 		private void searchByName(final SearchPhrase phrase, final SearchResultMatcher resultMatcher)
 				throws IOException {
-			if (phrase.getRadiusLevel() > 1 || phrase.getUnknownWordToSearch().length() > 3 ||
-					phrase.hasMoreThanOneUnknownSearchWord()|| phrase.isSearchTypeAllowed(ObjectType.POSTCODE, true)) {
+			if (isSearchByNameAvailable(phrase)) {
 				final boolean locSpecified = phrase.getLastTokenLocation() != null;
-				LatLon loc = phrase.getLastTokenLocation();
-				final List<SearchResult> immediateResults = new ArrayList<>();
+				final LatLon loc = phrase.getLastTokenLocation();
 				final QuadRect streetBbox = phrase.getRadiusBBoxToSearch(DEFAULT_ADDRESS_BBOX_RADIUS);
 				final QuadRect postcodeBbox = phrase.getRadiusBBoxToSearch(DEFAULT_ADDRESS_BBOX_RADIUS * 5);
 				final QuadRect villagesBbox = phrase.getRadiusBBoxToSearch(DEFAULT_ADDRESS_BBOX_RADIUS * 3);
 				final QuadRect cityBbox = phrase.getRadiusBBoxToSearch(DEFAULT_ADDRESS_BBOX_RADIUS * 5); // covered by separate search before
 				final int priority = phrase.isNoSelectedType() ?
 						SEARCH_ADDRESS_BY_NAME_PRIORITY : SEARCH_ADDRESS_BY_NAME_PRIORITY_RADIUS2;
-				final BinaryMapIndexReader[] currentFile = new BinaryMapIndexReader[1];
-
-				ResultMatcher<MapObject> rm = new ResultMatcher<MapObject>() {
-					int limit = 0;
+				Iterator<BinaryMapIndexReader> offlineIterator = phrase.getRadiusOfflineIndexes(DEFAULT_ADDRESS_BBOX_RADIUS * 5,
+						SearchPhraseDataType.ADDRESS);
+				final String wordToSearch = phrase.getUnknownWordToSearch();
+				if (wordToSearch.length() == 0) {
+					return;
+				}
+				searchRegions(phrase, resultMatcher, offlineIterator, LIMIT * phrase.getRadiusLevel(), new RegionSearch() {
 					@Override
-					public boolean publish(MapObject object) {
-						if (isCancelled()) {
-							return false;
-						}
-						SearchResult sr = new SearchResult(phrase);
-						sr.object = object;
-						sr.file = currentFile[0];
-						sr.localeName = object.getName(phrase.getSettings().getLang(), phrase.getSettings().isTransliterate());
-						sr.otherNames = object.getAllNames(true);
-						sr.localeRelatedObjectName = sr.file.getRegionName();
-						sr.relatedObject = sr.file;
-						sr.location = object.getLocation();
-						sr.priorityDistance = 1;
-						sr.priority = priority;
-						int y = MapUtils.get31TileNumberY(object.getLocation().getLatitude());
-						int x = MapUtils.get31TileNumberX(object.getLocation().getLongitude());
-						List<City> closestCities = null;
-						if (object instanceof Street) {
-							if ((locSpecified && !streetBbox.contains(x, y, x, y))
-									|| !phrase.isSearchTypeAllowed(ObjectType.STREET)) {
-								return false;
-							}
-							if (object.getName().startsWith("<")) {
-								return false;
-							}
-
-							if (!phrase.getUnknownWordToSearchBuildingNameMatcher().matches(stripBraces(sr.localeName))) {
-								sr.priorityDistance = 5;
-							}
-							sr.objectType = ObjectType.STREET;
-							sr.localeRelatedObjectName = ((Street)object).getCity().getName(phrase.getSettings().getLang(), phrase.getSettings().isTransliterate());
-							sr.relatedObject = ((Street)object).getCity();
-						} else if (object instanceof City) {
-							CityType type = ((City)object).getType();
-							if (type == CityType.CITY || type == CityType.TOWN) {
-								if (phrase.isNoSelectedType()) {
-									// ignore city/town
+					public void search(final BinaryMapIndexReader r, final SearchResultMatcher regionMatcher,
+							Set<String> poiIds, final LimitCounter limit) throws IOException {
+						final List<SearchResult> immediateResults = new ArrayList<>();
+						final List<Integer> immediateOrdinals = new ArrayList<>();
+						ResultMatcher<MapObject> rm = new ResultMatcher<MapObject>() {
+							@Override
+							public boolean publish(MapObject object) {
+								if (isCancelled()) {
 									return false;
 								}
-								if ((locSpecified && !cityBbox.contains(x, y, x, y))
-										|| !phrase.isSearchTypeAllowed(ObjectType.CITY)) {
+								SearchResult sr = new SearchResult(phrase);
+								sr.object = object;
+								sr.file = r;
+								sr.localeName = object.getName(phrase.getSettings().getLang(), phrase.getSettings().isTransliterate());
+								sr.otherNames = object.getAllNames(true);
+								sr.localeRelatedObjectName = sr.file.getRegionName();
+								sr.relatedObject = sr.file;
+								sr.location = object.getLocation();
+								sr.priorityDistance = 1;
+								sr.priority = priority;
+								int y = MapUtils.get31TileNumberY(object.getLocation().getLatitude());
+								int x = MapUtils.get31TileNumberX(object.getLocation().getLongitude());
+								List<City> closestCities = null;
+								if (object instanceof Street) {
+									if ((locSpecified && !streetBbox.contains(x, y, x, y))
+											|| !phrase.isSearchTypeAllowed(ObjectType.STREET)) {
+										return false;
+									}
+									if (object.getName().startsWith("<")) {
+										return false;
+									}
+
+									if (!phrase.getUnknownWordToSearchBuildingNameMatcher().matches(stripBraces(sr.localeName))) {
+										sr.priorityDistance = 5;
+									}
+									sr.objectType = ObjectType.STREET;
+									sr.localeRelatedObjectName = ((Street)object).getCity().getName(phrase.getSettings().getLang(), phrase.getSettings().isTransliterate());
+									sr.relatedObject = ((Street)object).getCity();
+								} else if (object instanceof City) {
+									CityType type = ((City)object).getType();
+									if (type == CityType.CITY || type == CityType.TOWN) {
+										if (phrase.isNoSelectedType()) {
+											// ignore city/town
+											return false;
+										}
+										if ((locSpecified && !cityBbox.contains(x, y, x, y))
+												|| !phrase.isSearchTypeAllowed(ObjectType.CITY)) {
+											return false;
+										}
+										sr.objectType = ObjectType.CITY;
+										sr.priorityDistance = 0.1;
+									} else if (((City)object).isPostcode()) {
+										if ((locSpecified && !postcodeBbox.contains(x, y, x, y))
+												|| !phrase.isSearchTypeAllowed(ObjectType.POSTCODE)) {
+											return false;
+										}
+										sr.objectType = ObjectType.POSTCODE;
+										sr.priorityDistance = 0;
+									} else {
+										if ((locSpecified && !villagesBbox.contains(x, y, x, y))
+												|| !phrase.isSearchTypeAllowed(ObjectType.VILLAGE)) {
+											return false;
+										}
+										City c = null;
+										if (closestCities == null) {
+											closestCities = townCitiesQR.queryInBox(villagesBbox, new ArrayList<City>());
+										}
+										double minDist = -1;
+										double pDist = -1;
+										for (City s : closestCities) {
+											double ll = MapUtils.getDistance(s.getLocation(), object.getLocation());
+											double pd = s.getType() == CityType.CITY ? ll : ll * 10;
+											if(minDist == -1 || pd < pDist) {
+												c = s;
+												minDist = ll;
+												pDist = pd ;
+											}
+										}
+										if (c != null) {
+											sr.localeRelatedObjectName = c.getName(phrase.getSettings().getLang(), phrase.getSettings().isTransliterate());
+											sr.relatedObject = c;
+											sr.distRelatedObjectName = minDist;
+										}
+										sr.objectType = ObjectType.VILLAGE;
+									}
+								} else {
 									return false;
 								}
-								sr.objectType = ObjectType.CITY;
-								sr.priorityDistance = 0.1;
-							} else if (((City)object).isPostcode()) {
-								if ((locSpecified && !postcodeBbox.contains(x, y, x, y))
-										|| !phrase.isSearchTypeAllowed(ObjectType.POSTCODE)) {
-									return false;
+								immediateOrdinals.add(limit.next());
+								immediateResults.add(sr);
+								return false;
+							}
+
+							@Override
+							public boolean isCancelled() {
+								return limit.isLimitReached() || regionMatcher.isCancelled();
+							}
+						};
+
+						ResultMatcher<MapObject> rawDataCollector = null;
+						if (phrase.getSettings().isExportObjects()) {
+							rawDataCollector = new ResultMatcher<MapObject>() {
+								@Override
+								public boolean publish(MapObject object) {
+									regionMatcher.exportObject(phrase, object);
+									return true;
 								}
-								sr.objectType = ObjectType.POSTCODE;
-								sr.priorityDistance = 0;
-							} else {
-								if ((locSpecified && !villagesBbox.contains(x, y, x, y))
-										|| !phrase.isSearchTypeAllowed(ObjectType.VILLAGE)) {
+
+								@Override
+								public boolean isCancelled() {
 									return false;
 								}
-								City c = null;
-								if (closestCities == null) {
-									closestCities = townCitiesQR.queryInBox(villagesBbox, new ArrayList<City>());
-								}
-								double minDist = -1;
-								double pDist = -1;
-								for (City s : closestCities) {
-									double ll = MapUtils.getDistance(s.getLocation(), object.getLocation());
-									double pd = s.getType() == CityType.CITY ? ll : ll * 10;
-									if(minDist == -1 || pd < pDist) {
-										c = s;
-										minDist = ll;
-										pDist = pd ;
-									}
-								}
-								if (c != null) {
-									sr.localeRelatedObjectName = c.getName(phrase.getSettings().getLang(), phrase.getSettings().isTransliterate());
-									sr.relatedObject = c;
-									sr.distRelatedObjectName = minDist;
-								}
-								sr.objectType = ObjectType.VILLAGE;
-							}
-						} else {
-							return false;
-						}
-						limit ++;
-						immediateResults.add(sr);
-						return false;
-					}
-
-					@Override
-					public boolean isCancelled() {
-						return limit > LIMIT * phrase.getRadiusLevel() ||
-								resultMatcher.isCancelled();
-					}
-				};
-
-				ResultMatcher<MapObject> rawDataCollector = null;
-				if (phrase.getSettings().isExportObjects()) {
-					rawDataCollector = new ResultMatcher<MapObject>() {
-						@Override
-						public boolean publish(MapObject object) {
-							resultMatcher.exportObject(phrase, object);
-							return true;
+							};
 						}
 
-						@Override
-						public boolean isCancelled() {
-							return false;
+						SearchRequest<MapObject> req = BinaryMapIndexReader.buildAddressByNameRequest(rm, rawDataCollector,
+								wordToSearch.toLowerCase(), phrase.isMainUnknownSearchWordComplete()
+										? StringMatcherMode.CHECK_EQUALS_FROM_SPACE
+										: StringMatcherMode.CHECK_STARTS_FROM_SPACE);
+						if (locSpecified) {
+							req.setBBoxRadius(loc.getLatitude(), loc.getLongitude(),
+									phrase.getRadiusSearch(DEFAULT_ADDRESS_BBOX_RADIUS * 5));
 						}
-					};
-				}
-
-				Iterator<BinaryMapIndexReader> offlineIterator = phrase.getRadiusOfflineIndexes(DEFAULT_ADDRESS_BBOX_RADIUS * 5,
-						SearchPhraseDataType.ADDRESS);
-				String wordToSearch = phrase.getUnknownWordToSearch();
-				while (offlineIterator.hasNext() && wordToSearch.length() > 0) {
-					BinaryMapIndexReader r = offlineIterator.next();
-					currentFile[0] = r;
-					immediateResults.clear();
-					SearchRequest<MapObject> req = BinaryMapIndexReader.buildAddressByNameRequest(rm, rawDataCollector, wordToSearch.toLowerCase(),
-							phrase.isMainUnknownSearchWordComplete() ? StringMatcherMode.CHECK_EQUALS_FROM_SPACE
-									: StringMatcherMode.CHECK_STARTS_FROM_SPACE);
-					if (locSpecified) {
-						req.setBBoxRadius(loc.getLatitude(), loc.getLongitude(),
-								phrase.getRadiusSearch(DEFAULT_ADDRESS_BBOX_RADIUS * 5));
-					}
-					r.searchAddressDataByName(req);
-					for (SearchResult res : immediateResults) {
-						if (res.objectType == ObjectType.STREET) {
-							subSearchApiOrPublish(phrase, resultMatcher, res, streetsApi);
+						FileNameIndex nameIndex = getNameIndex(r);
+						if (nameIndex != null) {
+							r.searchAddressDataByNameIndex(req, nameIndex);
 						} else {
-							subSearchApiOrPublish(phrase, resultMatcher, res, cityApi);
+							r.searchAddressDataByName(req);
+						}
+						for (int i = 0; i < immediateResults.size(); i++) {
+							SearchResult res = immediateResults.get(i);
+							regionMatcher.setLimitOrdinal(immediateOrdinals.get(i));
+							if (res.objectType == ObjectType.STREET) {
+								subSearchApiOrPublish(phrase, regionMatcher, res, streetsApi);
+							} else {
+								subSearchApiOrPublish(phrase, regionMatcher, res, cityApi);
+							}
 						}
 					}
-					resultMatcher.apiSearchRegionFinished(this, r, phrase);
-				}
+				});
 			}
 		}
 	}
@@ -560,84 +787,85 @@ public class SearchCoreFactory {
 			// Take into account POI [bar] - 'Hospital 512'
 			// BEFORE: it was searching exact match of whole phrase.getUnknownSearchPhrase() [ Check feedback ] 
 
-			final BinaryMapIndexReader[] currentFile = new BinaryMapIndexReader[1];
 			Iterator<BinaryMapIndexReader> offlineIterator = phrase.getRadiusOfflineIndexes(BBOX_RADIUS,
 					SearchPhraseDataType.POI);
-			String searchWord = phrase.getUnknownWordToSearch();
+			final String searchWord = phrase.getUnknownWordToSearch();
 			final NameStringMatcher nm = phrase.getMainUnknownNameStringMatcher();
-			QuadRect bbox = phrase.getRadiusBBoxToSearch(BBOX_RADIUS_INSIDE);
-			final Set<String> ids = new HashSet<String>();
-
-			ResultMatcher<Amenity> rawDataCollector = null;
-			if (phrase.getSettings().isExportObjects()) {
-				rawDataCollector = new ResultMatcher<Amenity>() {
-					@Override
-					public boolean publish(Amenity object) {
-						resultMatcher.exportObject(phrase, object);
-						return true;
-					}
-
-					@Override
-					public boolean isCancelled() {
-						return false;
-					}
-				};
-			}
-			SearchRequest<Amenity> req = BinaryMapIndexReader.buildSearchPoiRequest((int) bbox.centerX(),
-					(int) bbox.centerY(), searchWord, (int) bbox.left, (int) bbox.right, (int) bbox.top,
-					(int) bbox.bottom, new ResultMatcher<Amenity>() {
-						int limit = 0;
-
-						@Override
-						public boolean publish(Amenity object) {
-							if (limit++ > LIMIT) {
-								return false;
-							}
-							String poiID = object.getType().getKeyName() + "_" + object.getId();
-							if (ids.contains(poiID)) {
-								return false;
+			final QuadRect bbox = phrase.getRadiusBBoxToSearch(BBOX_RADIUS_INSIDE);
+			searchRegions(phrase, resultMatcher, offlineIterator, LIMIT, new RegionSearch() {
+				@Override
+				public void search(final BinaryMapIndexReader r, final SearchResultMatcher regionMatcher,
+						final Set<String> ids, final LimitCounter limit) throws IOException {
+					ResultMatcher<Amenity> rawDataCollector = null;
+					if (phrase.getSettings().isExportObjects()) {
+						rawDataCollector = new ResultMatcher<Amenity>() {
+							@Override
+							public boolean publish(Amenity object) {
+								regionMatcher.exportObject(phrase, object);
+								return true;
 							}
-							SearchResult sr = new SearchResult(phrase);
-							sr.otherNames = object.getAllNames(true);
-							sr.localeName = object.getName(phrase.getSettings().getLang(),
-									phrase.getSettings().isTransliterate());
-							if (!nm.matches(sr.localeName) && !nm.matches(sr.otherNames)
-									&& !nm.matches(object.getAdditionalInfo().values())) {
+
+							@Override
+							public boolean isCancelled() {
 								return false;
 							}
-							sr.object = object;
-							sr.preferredZoom = 17;
-							sr.file = currentFile[0];
-							sr.location = object.getLocation();
-							if (object.getSubType().equals("city") || object.getSubType().equals("country")) {
-								sr.priorityDistance = SEARCH_AMENITY_BY_NAME_CITY_PRIORITY_DISTANCE;
-								sr.preferredZoom = object.getSubType().equals("country") ? 7 : 13;
-							} else if (object.getSubType().equals("town")) {
-								sr.priorityDistance = SEARCH_AMENITY_BY_NAME_TOWN_PRIORITY_DISTANCE;
-							} else {
-								sr.priorityDistance = 1;
-							}
-							sr.priority = SEARCH_AMENITY_BY_NAME_PRIORITY;
-							phrase.countUnknownWordsMatchMainResult(sr);
-							sr.objectType = ObjectType.POI;
-							resultMatcher.publish(sr);
-							ids.add(poiID);
-							return false;
-						}
-
-						@Override
-						public boolean isCancelled() {
-							return resultMatcher.isCancelled() && (limit < LIMIT);
-						}
-					}, rawDataCollector);
+						};
+					}
+					SearchRequest<Amenity> req = BinaryMapIndexReader.buildSearchPoiRequest((int) bbox.centerX(),
+							(int) bbox.centerY(), searchWord, (int) bbox.left, (int) bbox.right, (int) bbox.top,
+							(int) bbox.bottom, new ResultMatcher<Amenity>() {
 
-			while (offlineIterator.hasNext()) {
-				BinaryMapIndexReader r = offlineIterator.next();
-				currentFile[0] = r;
-				r.searchPoiByName(req);
+								@Override
+								public boolean publish(Amenity object) {
+									int ordinal = limit.next();
+									if (!limit.accepts(ordinal)) {
+										return false;
+									}
+									String poiID = getPoiId(object);
+									if (ids.contains(poiID)) {
+										return false;
+									}
+									SearchResult sr = new SearchResult(phrase);
+									sr.otherNames = object.getAllNames(true);
+									sr.localeName = object.getName(phrase.getSettings().getLang(),
+											phrase.getSettings().isTransliterate());
+									if (!matchesName(nm, sr, object)) {
+										return false;
+									}
+									ids.add(poiID);
+									sr.object = object;
+									sr.preferredZoom = 17;
+									sr.file = r;
+									sr.location = object.getLocation();
+									if (object.getSubType().equals("city") || object.getSubType().equals("country")) {
+										sr.priorityDistance = SEARCH_AMENITY_BY_NAME_CITY_PRIORITY_DISTANCE;
+										sr.preferredZoom = object.getSubType().equals("country") ? 7 : 13;
+									} else if (object.getSubType().equals("town")) {
+										sr.priorityDistance = SEARCH_AMENITY_BY_NAME_TOWN_PRIORITY_DISTANCE;
+									} else {
+										sr.priorityDistance = 1;
+									}
+									sr.priority = SEARCH_AMENITY_BY_NAME_PRIORITY;
+									phrase.countUnknownWordsMatchMainResult(sr);
+									sr.objectType = ObjectType.POI;
+									regionMatcher.setLimitOrdinal(ordinal);
+									regionMatcher.publish(sr);
+									return false;
+								}
 
-				resultMatcher.apiSearchRegionFinished(this, r, phrase);
-			}
+								@Override
+								public boolean isCancelled() {
+									return regionMatcher.isCancelled() || limit.isLimitReached();
+								}
+							}, rawDataCollector);
+					FileNameIndex nameIndex = getNameIndex(r);
+					if (nameIndex != null) {
+						r.searchPoiByNameIndex(req, nameIndex);
+					} else {
+						r.searchPoiByName(req);
+					}
+				}
+			});
 			return true;
 		}
 
@@ -661,6 +889,25 @@ public class SearchCoreFactory {
 			return super.isSearchMoreAvailable(phrase) && getSearchPriority(phrase) != -1;
 		}
 
+		@Override
+		public boolean isIncrementalSearchAvailable(SearchPhrase previous, SearchPhrase phrase) {
+			// names starting with longer word are subset of names found for previous word
+			return true;
+		}
+
+		@Override
+		public boolean isRefinedResultMatched(SearchResult sr, NameStringMatcher nm) {
+			if (sr.object instanceof Amenity) {
+				return matchesName(nm, sr, (Amenity) sr.object);
+			}
+			return super.isRefinedResultMatched(sr, nm);
+		}
+
+		private static boolean matchesName(NameStringMatcher nm, SearchResult sr, Amenity object) {
+			return nm.matches(sr.localeName) || nm.matches(sr.otherNames)
+					|| nm.matches(object.getAdditionalInfo().values());
+		}
+
 		@Override
 		public int getMinimalSearchRadius(SearchPhrase phrase) {
 			return phrase.getRadiusSearch(BBOX_RADIUS);
@@ -964,7 +1211,7 @@ public class SearchCoreFactory {
 			SearchPoiTypeFilter poiTypeFilter = null;
 			String nameFilter = null;
 			int countExtraWords = 0;
-			Set<String> poiAdditionals = new LinkedHashSet<>();
+			final Set<String> poiAdditionals = new LinkedHashSet<>();
 			if (phrase.isLastWord(ObjectType.POI_TYPE)) {
 				Object obj = phrase.getLastSelectedWord().getResult().object;
 				if (obj instanceof AbstractPoiType) {
@@ -1015,20 +1262,25 @@ public class SearchCoreFactory {
 						radius = BBOX_RADIUS_NEAREST;
 					}
 				}
-				QuadRect bbox = phrase.getRadiusBBoxToSearch(radius);
+				final QuadRect bbox = phrase.getRadiusBBoxToSearch(radius);
 				List<BinaryMapIndexReader> offlineIndexes = phrase.getOfflineIndexes();
-				Set<String> searchedPois = new TreeSet<>();
-				for (BinaryMapIndexReader r : offlineIndexes) {
-					ResultMatcher<Amenity> rm = getResultMatcher(phrase, poiTypeFilter, resultMatcher, nameFilter, r,
-							searchedPois, poiAdditionals, countExtraWords);
-					if (poiTypeFilter instanceof CustomSearchPoiFilter) {
-						rm = ((CustomSearchPoiFilter) poiTypeFilter).wrapResultMatcher(rm);
+				final SearchPoiTypeFilter filter = poiTypeFilter;
+				final String nmFilter = nameFilter;
+				final int extraWords = countExtraWords;
+				searchRegions(phrase, resultMatcher, offlineIndexes.iterator(), new RegionSearch() {
+					@Override
+					public void search(BinaryMapIndexReader r, SearchResultMatcher regionMatcher, Set<String> searchedPois,
+							LimitCounter limit) throws IOException {
+						ResultMatcher<Amenity> rm = getResultMatcher(phrase, filter, regionMatcher, nmFilter, r,
+								searchedPois, poiAdditionals, extraWords);
+						if (filter instanceof CustomSearchPoiFilter) {
+							rm = ((CustomSearchPoiFilter) filter).wrapResultMatcher(rm);
+						}
+						SearchRequest<Amenity> req = BinaryMapIndexReader.buildSearchPoiRequest((int) bbox.left,
+								(int) bbox.right, (int) bbox.top, (int) bbox.bottom, -1, filter, rm);
+						r.searchPoi(req);
 					}
-					SearchRequest<Amenity> req = BinaryMapIndexReader.buildSearchPoiRequest((int) bbox.left,
-							(int) bbox.right, (int) bbox.top, (int) bbox.bottom, -1, poiTypeFilter, rm);
-					r.searchPoi(req);
-					resultMatcher.apiSearchRegionFinished(this, r, phrase);
-				}
+				});
 			}
 			return true;
 		}
@@ -1040,7 +1292,8 @@ public class SearchCoreFactory {
 														final Collection<String> poiAdditionals, final int countExtraWords) {
 
 
-			final NameStringMatcher ns = nameFilter == null ? null : new NameStringMatcher(nameFilter, StringMatcherMode.CHECK_STARTS_FROM_SPACE);
+			final NameStringMatcher ns = nameFilter == null ? null : new NameStringMatcher(nameFilter,
+					StringMatcherMode.CHECK_STARTS_FROM_SPACE, phrase.getSettings().getNameKeyCache());
 			return new ResultMatcher<Amenity>() {
 
 				@Override
@@ -1049,7 +1302,7 @@ public class SearchCoreFactory {
 						resultMatcher.exportObject(phrase, object);
 					}
 					SearchResult res = new SearchResult(phrase);
-					String poiID = object.getType().getKeyName() + "_" + object.getId();
+					String poiID = getPoiId(object);
 					if (!searchedPois.add(poiID)) {
 						return false;
 					}
@@ -1216,6 +1469,7 @@ public class SearchCoreFactory {
 					res.objectType = ObjectType.STREET;
 					subSearchApiOrPublish(phrase, resultMatcher, res, streetsAPI, pub);
 					if (limit++ > LIMIT) {
+						resultMatcher.setLimitReached();
 						break;
 					}
 
@@ -1236,7 +1490,8 @@ public class SearchCoreFactory {
 	}
 
 	public static class SearchBuildingAndIntersectionsByStreetAPI extends SearchBaseAPI {
-		Street cacheBuilding;
+		// guarded by this, buildings of street are loaded and sorted once
+		private Street cacheBuilding;
 
 		public SearchBuildingAndIntersectionsByStreetAPI() {
 			super(ObjectType.HOUSE, ObjectType.STREET_INTERSECTION);
@@ -1247,6 +1502,44 @@ public class SearchCoreFactory {
 			return false;
 		}
 
+		/**
+		 * Loads and sorts buildings of street once, returns copy as street could be searched concurrently.
+		 */
+		private synchronized List<Building> loadBuildings(Street s, BinaryMapIndexReader file,
+				final SearchResultMatcher resultMatcher) throws IOException {
+			if (cacheBuilding != s) {
+				SearchRequest<Building> sr = BinaryMapIndexReader
+						.buildAddressRequest(new ResultMatcher<Building>() {
+
+							@Override
+							public boolean publish(Building object) {
+								return true;
+							}
+
+							@Override
+							public boolean isCancelled() {
+								return resultMatcher.isCancelled();
+							}
+						});
+
+				file.preloadBuildings(s, sr);
+				Collections.sort(s.getBuildings(), new Comparator<Building>() {
+
+					@Override
+					public int compare(Building o1, Building o2) {
+						int i1 = Algorithms.extractFirstIntegerNumber(o1.getName());
+						int i2 = Algorithms.extractFirstIntegerNumber(o2.getName());
+						if (i1 == i2) {
+							return 0;
+						}
+						return Algorithms.compare(i1, i2);
+					}
+				});
+				cacheBuilding = s;
+			}
+			return new ArrayList<>(s.getBuildings());
+		}
+
 		@Override
 		public boolean search(SearchPhrase phrase, final SearchResultMatcher resultMatcher) throws IOException {
 			Street s = null;
@@ -1276,40 +1569,12 @@ public class SearchCoreFactory {
 			if (s != null) {
 				BinaryMapIndexReader file = phrase.getLastSelectedWord().getResult().file;
 
-				if (cacheBuilding != s) {
-					cacheBuilding = s;
-					SearchRequest<Building> sr = BinaryMapIndexReader
-							.buildAddressRequest(new ResultMatcher<Building>() {
-
-								@Override
-								public boolean publish(Building object) {
-									return true;
-								}
-
-								@Override
-								public boolean isCancelled() {
-									return resultMatcher.isCancelled();
-								}
-							});
-
-					file.preloadBuildings(s, sr);
-					Collections.sort(s.getBuildings(), new Comparator<Building>() {
-
-						@Override
-						public int compare(Building o1, Building o2) {
-							int i1 = Algorithms.extractFirstIntegerNumber(o1.getName());
-							int i2 = Algorithms.extractFirstIntegerNumber(o2.getName());
-							if (i1 == i2) {
-								return 0;
-							}
-							return Algorithms.compare(i1, i2);
-						}
-					});
-				}
+				List<Building> buildings = loadBuildings(s, file, resultMatcher);
 				String lw = phrase.getUnknownWordToSearchBuilding();
 				NameStringMatcher buildingMatch = phrase.getUnknownWordToSearchBuildingNameMatcher();
-				NameStringMatcher startMatch = new NameStringMatcher(lw, StringMatcherMode.CHECK_ONLY_STARTS_WITH);
-				for (Building b : s.getBuildings()) {
+				NameStringMatcher startMatch = new NameStringMatcher(lw, StringMatcherMode.CHECK_ONLY_STARTS_WITH,
+						phrase.getSettings().getNameKeyCache());
+				for (Building b : buildings) {
 					SearchResult res = new SearchResult(phrase);
 					boolean interpolation = b.belongsToInterpolation(lw);
 					if ((!buildingMatch.matches(b.getName()) && !interpolation)
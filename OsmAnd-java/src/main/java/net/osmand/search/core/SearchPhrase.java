@@ -1,6 +1,7 @@
 package net.osmand.search.core;
 
 import net.osmand.Collator;
+import net.osmand.CollationKeyCache;
 import net.osmand.CollatorStringMatcher;import net.osmand.OsmAndCollator;
 import net.osmand.CollatorStringMatcher.StringMatcherMode;
 import net.osmand.StringMatcher;
@@ -269,7 +270,8 @@ public class SearchPhrase {
 	}
 	
 	
-	private void calcMainUnknownWordToSearch() {
+	// lazy fields are initialized under lock as phrase is shared by parallel region searches
+	private synchronized void calcMainUnknownWordToSearch() {
 		if (mainUnknownWordToSearch != null) {
 			return;
 		}
@@ -304,7 +306,7 @@ public class SearchPhrase {
 	}
 	
 
-	public boolean isMainUnknownSearchWordComplete() {
+	public synchronized boolean isMainUnknownSearchWordComplete() {
 		// return lastUnknownSearchWordComplete || otherUnknownWords.size() > 0 || unknownSearchWordPoiType != null;
 		return mainUnknownSearchWordComplete;
 	}
@@ -524,7 +526,7 @@ public class SearchPhrase {
 		return null;
 	}
 
-	public NameStringMatcher getMainUnknownNameStringMatcher() {
+	public synchronized NameStringMatcher getMainUnknownNameStringMatcher() {
 		calcMainUnknownWordToSearch();
 		if (mainUnknownNameStringMatcher == null) {
 			mainUnknownNameStringMatcher = getNameStringMatcher(mainUnknownWordToSearch, mainUnknownSearchWordComplete);
@@ -532,14 +534,14 @@ public class SearchPhrase {
 		return mainUnknownNameStringMatcher;
 	}
 	
-	public NameStringMatcher getFirstUnknownNameStringMatcher() {
+	public synchronized NameStringMatcher getFirstUnknownNameStringMatcher() {
 		if (firstUnknownNameStringMatcher == null) {
 			firstUnknownNameStringMatcher = getNameStringMatcher(firstUnknownSearchWord, isFirstUnknownSearchWordComplete());
 		}
 		return firstUnknownNameStringMatcher;
 	}
 	
-	public NameStringMatcher getUnknownNameStringMatcher(int i) {
+	public synchronized NameStringMatcher getUnknownNameStringMatcher(int i) {
 		while (unknownWordsMatcher.size() <= i) {
 			int ind = unknownWordsMatcher.size();
 			boolean completeMatch = ind < otherUnknownWords.size() - 1 || isLastUnknownSearchWordComplete();
@@ -553,7 +555,7 @@ public class SearchPhrase {
 		return new NameStringMatcher(word, 
 				(complete ?  
 					StringMatcherMode.CHECK_EQUALS_FROM_SPACE : 
-					StringMatcherMode.CHECK_STARTS_FROM_SPACE));
+					StringMatcherMode.CHECK_STARTS_FROM_SPACE), settings.getNameKeyCache());
 	}
 	
 	public boolean hasObjectType(ObjectType p) {
@@ -733,7 +735,11 @@ public class SearchPhrase {
 		private CollatorStringMatcher sm;
 
 		public NameStringMatcher(String namePart, StringMatcherMode mode) {
-			sm = new CollatorStringMatcher(namePart, mode);
+			this(namePart, mode, null);
+		}
+
+		public NameStringMatcher(String namePart, StringMatcherMode mode, CollationKeyCache keyCache) {
+			sm = new CollatorStringMatcher(namePart, mode, keyCache);
 		}
 		
 		public boolean matches(Collection<String> map) {
@@ -874,7 +880,7 @@ public class SearchPhrase {
 		return len;
 	}
 
-	public String getUnknownWordToSearch() {
+	public synchronized String getUnknownWordToSearch() {
 		calcMainUnknownWordToSearch();
 		return mainUnknownWordToSearch;
 	}
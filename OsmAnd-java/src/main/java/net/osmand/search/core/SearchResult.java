@@ -47,6 +47,29 @@ public class SearchResult {
 	}
 	private static final double MAX_TYPE_WEIGHT = 10;
 
+	/**
+	 * Copies found object for another phrase. Matched words and alternate name are not copied,
+	 * they depend on the phrase (see {@link SearchPhrase#countUnknownWordsMatchMainResult(SearchResult)}).
+	 */
+	public SearchResult copy(SearchPhrase sp) {
+		SearchResult r = new SearchResult(sp);
+		r.parentSearchResult = parentSearchResult;
+		r.wordsSpan = wordsSpan;
+		r.object = object;
+		r.objectType = objectType;
+		r.file = file;
+		r.priority = priority;
+		r.priorityDistance = priorityDistance;
+		r.location = location;
+		r.preferredZoom = preferredZoom;
+		r.localeName = localeName;
+		r.otherNames = otherNames;
+		r.localeRelatedObjectName = localeRelatedObjectName;
+		r.relatedObject = relatedObject;
+		r.distRelatedObjectName = distRelatedObjectName;
+		return r;
+	}
+
 	// maximum corresponds to the top entry
 	public double getUnknownPhraseMatchWeight() {
 		// if result is a complete match in the search we prioritize it higher
@@ -1,5 +1,6 @@
 package net.osmand.search.core;
 
+import net.osmand.CollationKeyCache;
 import net.osmand.binary.BinaryMapIndexReader;
 import net.osmand.data.LatLon;
 
@@ -24,6 +25,7 @@ public class SearchSettings {
 	private boolean emptyQueryAllowed;
 	private boolean sortByName;
 	private SearchExportSettings exportSettings; // = new SearchExportSettings(true, true, -1);
+	private CollationKeyCache nameKeyCache;
 
 	public SearchSettings(SearchSettings s) {
 		if(s != null) {
@@ -37,6 +39,7 @@ public class SearchSettings {
 			this.emptyQueryAllowed = s.emptyQueryAllowed;
 			this.sortByName = s.sortByName;
 			this.exportSettings = s.exportSettings;
+			this.nameKeyCache = s.nameKeyCache;
 		}
 	}
 	
@@ -147,6 +150,17 @@ public class SearchSettings {
 		return s;
 	}
 
+	public CollationKeyCache getNameKeyCache() {
+		return nameKeyCache;
+	}
+
+	// name matchers compare cached primary keys of names instead of collator calls
+	public SearchSettings setNameKeyCache(CollationKeyCache nameKeyCache) {
+		SearchSettings s = new SearchSettings(this);
+		s.nameKeyCache = nameKeyCache;
+		return s;
+	}
+
 	public boolean isExportObjects() {
 		return exportSettings != null;
 	}
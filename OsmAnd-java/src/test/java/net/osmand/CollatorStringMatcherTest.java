@@ -0,0 +1,90 @@
+package net.osmand;
+
+import java.text.Collator;
+import java.util.Locale;
+
+import net.osmand.CollatorStringMatcher.StringMatcherMode;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class CollatorStringMatcherTest {
+
+	private static final String[] NAMES = { "Café Müller", "Auhofstraße 12", "Bäckerei Schmidt", "MAIN STREET",
+			"Saint-Étienne", "Ivanovskaya ulitsa", "Kościuszki", "Saint-Denis", "ﬁsh bar", "İstanbul", "Łódź",
+			"Øresund", "Ærø", "Ｔｏｋｙｏ Ｔｏｗｅｒ", "" };
+
+	private static final String[] QUERIES = { "cafe", "müller", "mull", "auhofstrasse", "schmidt", "street", "main",
+			"etienne", "saint", "ulitsa", "kosciuszki", "ci", "x", "saint denis", "saintdenis", "fish", "istanbul",
+			"lodz", "oresund", "aero", "tower", "" };
+
+	@Test
+	public void testNameKey() {
+		CollationKeyCache cache = new CollationKeyCache();
+		Assert.assertEquals(cache.createKey("cafe muller").key, cache.createKey("Café Müller").key);
+		Assert.assertEquals(cache.createKey("auhofstrasse").key, cache.createKey("Auhofstraße").key);
+		// punctuation and spaces are ignorable, but substrings are compared by chars of name as collator does
+		CollationKeyCache.NameKey k = cache.createKey("Saint-Denis");
+		Assert.assertEquals(cache.createKey("saintdenis").key, k.key);
+		Assert.assertTrue(k.regionEquals(0, 11, cache.createKey("saint denis").key));
+		Assert.assertTrue(!k.regionEquals(0, 10, cache.createKey("saintdenis").key));
+	}
+
+	@Test
+	public void testKeysMatchCollator() {
+		CollationKeyCache cache = new CollationKeyCache();
+		for (StringMatcherMode mode : StringMatcherMode.values()) {
+			for (String q : QUERIES) {
+				CollatorStringMatcher cm = new CollatorStringMatcher(q, mode);
+				CollatorStringMatcher km = new CollatorStringMatcher(q, mode, cache);
+				for (String n : NAMES) {
+					Assert.assertEquals(mode + " '" + q + "' in '" + n + "'", cm.matches(n), km.matches(n));
+				}
+			}
+		}
+		Assert.assertEquals(NAMES.length, cache.size());
+		Assert.assertEquals(NAMES.length, cache.getMisses());
+	}
+
+	@Test
+	public void testKeysDontFoldMoreThanCollator() {
+		CollationKeyCache cache = new CollationKeyCache();
+		assertMatches(false, "ﬁsh bar", "fish", StringMatcherMode.CHECK_STARTS_FROM_SPACE, cache);
+		assertMatches(false, "İstanbul", "istanbul", StringMatcherMode.CHECK_STARTS_FROM_SPACE, cache);
+		assertMatches(true, "Saint-Denis", "saint denis", StringMatcherMode.CHECK_STARTS_FROM_SPACE, cache);
+		assertMatches(true, "Saint-Denis", "saint denis", StringMatcherMode.CHECK_CONTAINS, cache);
+		assertMatches(true, "Saint-Denis", "saintdenis", StringMatcherMode.CHECK_CONTAINS, cache);
+	}
+
+	@Test
+	public void testCollatorWithContractions() {
+		Assert.assertTrue(new CollationKeyCache(0, Collator.getInstance(Locale.ENGLISH)).isSupported());
+		Locale def = Locale.getDefault();
+		try {
+			// "aa" is primary equal to "å" in danish, but not char by char
+			Locale.setDefault(new Locale("da"));
+			CollationKeyCache cache = new CollationKeyCache();
+			Assert.assertFalse(cache.isSupported());
+			assertMatches(true, "Aalborg", "ålborg", StringMatcherMode.CHECK_EQUALS, cache);
+			assertMatches(false, "Aalborg", "alborg", StringMatcherMode.CHECK_EQUALS, cache);
+			for (StringMatcherMode mode : StringMatcherMode.values()) {
+				for (String q : QUERIES) {
+					CollatorStringMatcher cm = new CollatorStringMatcher(q, mode);
+					CollatorStringMatcher km = new CollatorStringMatcher(q, mode, cache);
+					for (String n : NAMES) {
+						Assert.assertEquals(mode + " '" + q + "' in '" + n + "'", cm.matches(n), km.matches(n));
+					}
+				}
+			}
+			Assert.assertEquals(0, cache.size());
+		} finally {
+			Locale.setDefault(def);
+		}
+	}
+
+	private static void assertMatches(boolean expected, String name, String part, StringMatcherMode mode,
+			CollationKeyCache cache) {
+		Assert.assertEquals(expected, new CollatorStringMatcher(part, mode).matches(name));
+		Assert.assertEquals(expected, new CollatorStringMatcher(part, mode, cache).matches(name));
+	}
+}
@@ -0,0 +1,201 @@
+package net.osmand;
+
+import java.io.ByteArrayInputStream;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.List;
+
+import net.osmand.GPXUtilities.GPXFile;
+import net.osmand.GPXUtilities.GPXStreamReader;
+import net.osmand.GPXUtilities.GPXStreamReader.GPXStreamListener;
+import net.osmand.GPXUtilities.GPXStreamReader.PointsBatch;
+import net.osmand.GPXUtilities.GPXTrackAnalysis;
+import net.osmand.GPXUtilities.Metadata;
+import net.osmand.GPXUtilities.WptPt;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class GPXStreamReaderTest {
+
+	private static void trkpt(StringBuilder b, int i) {
+		b.append("<trkpt lat=\"").append(52 + i * 0.0005).append("\" lon=\"").append(4 + (i % 7) * 0.0003)
+				.append("\">");
+		b.append("<ele>").append(10 + (i * 13) % 40).append("</ele>");
+		b.append("<time>2020-05-01T10:").append(10 + i / 60).append(':').append(10 + i % 50).append("Z</time>");
+		if (i % 3 == 0) {
+			b.append("<extensions><speed>").append(1.5 + i % 4).append("</speed></extensions>");
+		}
+		b.append("</trkpt>\n");
+	}
+
+	private static String gpx() {
+		StringBuilder b = new StringBuilder();
+		b.append("<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n<gpx version=\"1.1\" creator=\"test\">\n");
+		b.append("<metadata><name>Walk</name><author><name>me</name></author><desc>d</desc></metadata>\n");
+		b.append("<wpt lat=\"52.1\" lon=\"4.1\"><name>A</name><type>cafe</type>");
+		b.append("<extensions><color>#ff0000</color></extensions></wpt>\n");
+		b.append("<wpt lat=\"52.2\" lon=\"4.2\"><name>B</name></wpt>\n");
+		b.append("<rte><name>r</name><rtept lat=\"50\" lon=\"3\"/></rte>\n");
+		b.append("<trk><name>first</name><trkseg>\n");
+		for (int i = 0; i < 20; i++) {
+			trkpt(b, i);
+		}
+		b.append("</trkseg><trkseg>\n");
+		for (int i = 20; i < 50; i++) {
+			trkpt(b, i);
+		}
+		b.append("</trkseg></trk>\n<trk><name>second</name>\n");
+		for (int i = 50; i < 55; i++) {
+			trkpt(b, i);
+		}
+		b.append("</trk>\n<trk><trkseg>");
+		trkpt(b, 60);
+		b.append("</trkseg><trkseg></trkseg></trk>\n</gpx>");
+		return b.toString();
+	}
+
+	// route point extensions of route and waypoint, loaded as additional track
+	private static String gpxWithRoutePoints() {
+		StringBuilder b = new StringBuilder();
+		b.append("<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n<gpx version=\"1.1\" creator=\"test\">\n");
+		b.append("<wpt lat=\"52.1\" lon=\"4.1\"><name>A</name><extensions><RoutePointExtension>");
+		b.append("<rpt lat=\"52.3\" lon=\"4.3\"/></RoutePointExtension></extensions></wpt>\n");
+		b.append("<rte><name>r</name><rtept lat=\"50\" lon=\"3\"/><extensions><RoutePointExtension>\n");
+		for (int i = 0; i < 10; i++) {
+			b.append("<rpt lat=\"").append(52 + i * 0.001).append("\" lon=\"4.2\"><ele>5</ele></rpt>\n");
+		}
+		b.append("</RoutePointExtension></extensions></rte>\n");
+		b.append("<trk><name>first</name><trkseg>\n");
+		for (int i = 0; i < 20; i++) {
+			trkpt(b, i);
+		}
+		b.append("</trkseg></trk>\n</gpx>");
+		return b.toString();
+	}
+
+	private static InputStream stream() throws Exception {
+		return stream(gpx());
+	}
+
+	private static InputStream stream(String gpx) throws Exception {
+		return new ByteArrayInputStream(gpx.getBytes("UTF-8"));
+	}
+
+	@Test
+	public void testAnalysis() throws Exception {
+		checkAnalysis(gpx());
+	}
+
+	@Test
+	public void testAnalysisWithRoutePoints() throws Exception {
+		GPXTrackAnalysis a = checkAnalysis(gpxWithRoutePoints());
+		Assert.assertEquals(31, a.points);
+		Assert.assertEquals(2, a.totalTracks);
+
+		GPXStreamReader reader = new GPXStreamReader(stream(gpxWithRoutePoints()));
+		final List<WptPt> wpts = new ArrayList<>();
+		reader.setListener(new GPXStreamListener() {
+
+			@Override
+			public void onMetadata(Metadata m) {
+			}
+
+			@Override
+			public void onWptPoint(WptPt point) {
+				wpts.add(point);
+			}
+		});
+		List<Integer> sizes = new ArrayList<>();
+		List<Integer> tracks = new ArrayList<>();
+		try {
+			PointsBatch batch = new PointsBatch(16);
+			while (reader.readPoints(batch) > 0) {
+				sizes.add(batch.size);
+				tracks.add(batch.trackIndex);
+			}
+		} finally {
+			reader.close();
+		}
+		Assert.assertEquals("[16, 4, 11]", sizes.toString());
+		Assert.assertEquals("[0, 0, 1]", tracks.toString());
+		Assert.assertEquals("0", wpts.get(0).getExtensionsToRead().get("offset"));
+	}
+
+	private static GPXTrackAnalysis checkAnalysis(String gpx) throws Exception {
+		GPXFile file = GPXUtilities.loadGPXFile(stream(gpx));
+		Assert.assertNull(file.error);
+		GPXTrackAnalysis expected = file.getAnalysis(0);
+		GPXStreamReader reader = new GPXStreamReader(stream(gpx));
+		GPXTrackAnalysis a;
+		try {
+			a = reader.getAnalysis(0);
+		} finally {
+			reader.close();
+		}
+		Assert.assertEquals(expected.points, a.points);
+		Assert.assertEquals(expected.totalTracks, a.totalTracks);
+		Assert.assertEquals(expected.wptPoints, a.wptPoints);
+		Assert.assertEquals(expected.wptCategoryNames, a.wptCategoryNames);
+		Assert.assertEquals(expected.totalDistance, a.totalDistance, 0);
+		Assert.assertEquals(expected.timeSpan, a.timeSpan);
+		Assert.assertEquals(expected.timeMoving, a.timeMoving);
+		Assert.assertEquals(expected.diffElevationUp, a.diffElevationUp, 0);
+		Assert.assertEquals(expected.diffElevationDown, a.diffElevationDown, 0);
+		Assert.assertEquals(expected.avgElevation, a.avgElevation, 0);
+		Assert.assertEquals(expected.maxSpeed, a.maxSpeed, 0);
+		Assert.assertEquals(expected.avgSpeed, a.avgSpeed, 0);
+		Assert.assertEquals(expected.hasElevationData, a.hasElevationData);
+		Assert.assertEquals(expected.left, a.left, 0);
+		Assert.assertEquals(expected.top, a.top, 0);
+		Assert.assertEquals(expected.locationEnd.time, a.locationEnd.time);
+		Assert.assertTrue(a.elevationData.isEmpty());
+		return a;
+	}
+
+	@Test
+	public void testBatches() throws Exception {
+		GPXStreamReader reader = new GPXStreamReader(stream());
+		final List<Metadata> metadata = new ArrayList<>();
+		final List<WptPt> wpts = new ArrayList<>();
+		reader.setListener(new GPXStreamListener() {
+
+			@Override
+			public void onMetadata(Metadata m) {
+				metadata.add(m);
+			}
+
+			@Override
+			public void onWptPoint(WptPt point) {
+				wpts.add(point);
+			}
+		});
+		List<Integer> sizes = new ArrayList<>();
+		List<Integer> segments = new ArrayList<>();
+		try {
+			PointsBatch batch = new PointsBatch(8);
+			while (reader.readPoints(batch) > 0) {
+				sizes.add(batch.size);
+				segments.add(batch.segmentIndex);
+				if (batch.segmentIndex == 0 && sizes.size() == 1) {
+					Assert.assertEquals(52, batch.lat[0], 1e-9);
+					Assert.assertEquals(1.5, batch.speed[0], 1e-9);
+					Assert.assertEquals(0, batch.speed[1], 1e-9);
+				}
+			}
+		} finally {
+			reader.close();
+		}
+		Assert.assertEquals("[8, 8, 4, 8, 8, 8, 6, 5, 1]", sizes.toString());
+		Assert.assertEquals("[0, 0, 0, 1, 1, 1, 1, 2, 3]", segments.toString());
+		Assert.assertEquals(5, reader.getSegmentsCount());
+		Assert.assertEquals("test", reader.getCreator());
+		Assert.assertEquals(1, metadata.size());
+		Assert.assertEquals("Walk", metadata.get(0).name);
+		Assert.assertEquals("me", metadata.get(0).author.name);
+		Assert.assertEquals("d", metadata.get(0).desc);
+		Assert.assertEquals(2, wpts.size());
+		Assert.assertEquals("cafe", wpts.get(0).category);
+		Assert.assertEquals("#ff0000", wpts.get(0).getExtensionsToRead().get("color"));
+	}
+}
@@ -0,0 +1,175 @@
+package net.osmand;
+
+import java.util.List;
+
+import net.osmand.GPXUtilities.GPXFile;
+import net.osmand.GPXUtilities.GPXTrackAnalysis;
+import net.osmand.GPXUtilities.Track;
+import net.osmand.GPXUtilities.TrkSegment;
+import net.osmand.GPXUtilities.TrkSegmentColumns;
+import net.osmand.GPXUtilities.WptPt;
+import net.osmand.data.QuadRect;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class TrkSegmentColumnsTest {
+
+	private static TrkSegment segment() {
+		TrkSegment segment = new TrkSegment();
+		for (int i = 0; i < 300; i++) {
+			// values with float precision as parsed from gpx
+			float ele = i % 17 == 0 ? Float.NaN : 100 + (i * 7) % 30;
+			WptPt p = new WptPt(52 + i * 0.0004, 4 + (i % 11) * 0.0002, 1500000000000L + i * 3000L, ele,
+					i % 5 == 0 ? 0 : 1.25f + i % 3, Double.NaN);
+			if (i % 3 == 0) {
+				p.getExtensionsToWrite().put("speed", String.valueOf(p.speed));
+			}
+			segment.points.add(p);
+		}
+		WptPt named = segment.points.get(10);
+		named.name = "stop";
+		named.getExtensionsToWrite().put("color", "#ff0000");
+		return segment;
+	}
+
+	private static void assertEquals(GPXTrackAnalysis expected, GPXTrackAnalysis a) {
+		Assert.assertEquals(expected.points, a.points);
+		Assert.assertEquals(expected.totalDistance, a.totalDistance, 0);
+		Assert.assertEquals(expected.timeSpan, a.timeSpan);
+		Assert.assertEquals(expected.timeMoving, a.timeMoving);
+		Assert.assertEquals(expected.diffElevationUp, a.diffElevationUp, 0);
+		Assert.assertEquals(expected.diffElevationDown, a.diffElevationDown, 0);
+		Assert.assertEquals(expected.maxSpeed, a.maxSpeed, 0);
+		Assert.assertEquals(expected.avgSpeed, a.avgSpeed, 0);
+		Assert.assertEquals(expected.elevationData.size(), a.elevationData.size());
+		Assert.assertEquals(expected.locationEnd.time, a.locationEnd.time);
+	}
+
+	@Test
+	public void testPackedAnalysis() {
+		TrkSegment segment = segment();
+		GPXTrackAnalysis expected = GPXTrackAnalysis.segment(0, segment);
+		List<GPXTrackAnalysis> expectedSplit = segment.splitByDistance(500, false);
+		segment.pack();
+		Assert.assertTrue(segment.isPacked());
+		Assert.assertTrue(segment.points.isEmpty());
+		Assert.assertEquals(300, segment.getPointsCount());
+		assertEquals(expected, GPXTrackAnalysis.segment(0, segment));
+		List<GPXTrackAnalysis> split = segment.splitByDistance(500, false);
+		Assert.assertEquals(expectedSplit.size(), split.size());
+		for (int i = 0; i < split.size(); i++) {
+			assertEquals(expectedSplit.get(i), split.get(i));
+		}
+	}
+
+	@Test
+	public void testAttributes() {
+		TrkSegment segment = segment();
+		segment.pack();
+		TrkSegmentColumns columns = segment.getColumns();
+		Assert.assertTrue(columns.hasAttributes(10));
+		// single speed extension is restored from speed column
+		Assert.assertFalse(columns.hasAttributes(3));
+		WptPt p = columns.getPoint(10, new WptPt());
+		Assert.assertEquals("stop", p.name);
+		Assert.assertEquals("#ff0000", p.getExtensionsToRead().get("color"));
+		columns.getPoint(11, p);
+		Assert.assertNull(p.name);
+		Assert.assertTrue(p.getExtensionsToRead().isEmpty());
+
+		LocationsHolder holder = new LocationsHolder(columns);
+		Assert.assertEquals(300, holder.getSize());
+		Assert.assertEquals(52.004, holder.getLatitude(10), 1e-9);
+
+		segment.unpack();
+		Assert.assertFalse(segment.isPacked());
+		Assert.assertEquals(300, segment.points.size());
+		Assert.assertEquals("stop", segment.points.get(10).name);
+		Assert.assertEquals(1500000000000L + 299 * 3000L, segment.points.get(299).time);
+		Assert.assertEquals(String.valueOf(segment.points.get(3).speed),
+				segment.points.get(3).getExtensionsToRead().get("speed"));
+		Assert.assertTrue(segment.points.get(4).getExtensionsToRead().isEmpty());
+	}
+
+	// two tracks, second one has empty segment
+	private static GPXFile gpxFile(boolean packed) {
+		GPXFile file = new GPXFile("test");
+		Track first = new Track();
+		first.segments.add(segment());
+		file.tracks.add(first);
+		Track second = new Track();
+		TrkSegment last = new TrkSegment();
+		for (int i = 0; i < 5; i++) {
+			last.points.add(new WptPt(51 + i * 0.001, 3.5, 1600000000000L + i * 1000L, 10, 0, Double.NaN));
+		}
+		second.segments.add(last);
+		second.segments.add(new TrkSegment());
+		file.tracks.add(second);
+		if (packed) {
+			for (Track t : file.tracks) {
+				for (TrkSegment s : t.segments) {
+					s.pack();
+				}
+			}
+		}
+		return file;
+	}
+
+	private static void assertPointEquals(WptPt expected, WptPt p) {
+		Assert.assertEquals(expected.lat, p.lat, 0);
+		Assert.assertEquals(expected.lon, p.lon, 0);
+		Assert.assertEquals(expected.time, p.time);
+		Assert.assertEquals(expected.firstPoint, p.firstPoint);
+		Assert.assertEquals(expected.lastPoint, p.lastPoint);
+	}
+
+	@Test
+	public void testPackedGpxFile() {
+		GPXFile expected = gpxFile(false);
+		GPXFile file = gpxFile(true);
+		Assert.assertTrue(file.getNonEmptyTrkSegment().isPacked());
+		Assert.assertTrue(!file.isEmpty());
+		Assert.assertEquals(expected.getNonEmptySegmentsCount(), file.getNonEmptySegmentsCount());
+		Assert.assertEquals(2, file.getNonEmptySegmentsCount());
+		QuadRect er = expected.getRect();
+		QuadRect r = file.getRect();
+		Assert.assertEquals(er.left, r.left, 0);
+		Assert.assertEquals(er.right, r.right, 0);
+		Assert.assertEquals(er.top, r.top, 0);
+		Assert.assertEquals(er.bottom, r.bottom, 0);
+		assertPointEquals(expected.findPointToShow(), file.findPointToShow());
+		// last segment of last track is empty
+		Assert.assertNull(file.getLastPoint());
+		file.tracks.get(1).segments.remove(1);
+		expected.tracks.get(1).segments.remove(1);
+		assertPointEquals(expected.getLastPoint(), file.getLastPoint());
+
+		List<TrkSegment> expectedSegments = expected.proccessPoints();
+		List<TrkSegment> segments = file.proccessPoints();
+		Assert.assertEquals(expectedSegments.size(), segments.size());
+		for (int i = 0; i < segments.size(); i++) {
+			Assert.assertEquals(expectedSegments.get(i).points.size(), segments.get(i).points.size());
+			assertPointEquals(expectedSegments.get(i).points.get(3), segments.get(i).points.get(3));
+		}
+
+		TrkSegment expectedGeneral = expected.getGeneralSegment();
+		TrkSegment general = file.getGeneralSegment();
+		Assert.assertTrue(general.isPacked());
+		Assert.assertEquals(305, general.getPointsCount());
+		for (int i : new int[] { 0, 1, 299, 300, 304 }) {
+			assertPointEquals(expectedGeneral.points.get(i), general.getPoint(i));
+		}
+		GPXTrackAnalysis ea = expected.getAnalysis(0);
+		GPXTrackAnalysis a = file.getAnalysis(0);
+		Assert.assertEquals(ea.totalTracks, a.totalTracks);
+		Assert.assertEquals(ea.totalDistance, a.totalDistance, 0);
+
+		GPXFile empty = new GPXFile("test");
+		empty.tracks.add(new Track());
+		TrkSegment s = new TrkSegment();
+		s.pack();
+		empty.tracks.get(0).segments.add(s);
+		Assert.assertTrue(empty.isEmpty());
+	}
+}
@@ -0,0 +1,147 @@
+package net.osmand.binary;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+public class BinaryMapIndexReaderPoolTest {
+
+	private File file;
+	private BinaryMapIndexReader mainReader;
+	private ExecutorService executor;
+
+	@Before
+	public void setUp() throws IOException {
+		file = File.createTempFile("test", ".obf");
+		// pool doesn't parse the file, so main reader is not initialized
+		mainReader = new BinaryMapIndexReader(new RandomAccessFile(file, "r"), file, false);
+		executor = Executors.newFixedThreadPool(8);
+	}
+
+	@After
+	public void tearDown() throws IOException {
+		executor.shutdownNow();
+		mainReader.close();
+		file.delete();
+	}
+
+	@Test
+	public void testConcurrentAcquireRelease() throws Exception {
+		final BinaryMapIndexReaderPool pool = new BinaryMapIndexReaderPool(mainReader, 3);
+		final AtomicInteger inUse = new AtomicInteger();
+		final AtomicInteger maxInUse = new AtomicInteger();
+		List<Future<Void>> futures = new ArrayList<Future<Void>>();
+		for (int t = 0; t < 8; t++) {
+			futures.add(executor.submit(new Callable<Void>() {
+				@Override
+				public Void call() throws Exception {
+					for (int i = 0; i < 200; i++) {
+						BinaryMapIndexReader reader = pool.acquire();
+						Assert.assertNotSame(mainReader, reader);
+						int n = inUse.incrementAndGet();
+						if (n > maxInUse.get()) {
+							maxInUse.set(n);
+						}
+						Thread.yield();
+						inUse.decrementAndGet();
+						pool.release(reader);
+					}
+					return null;
+				}
+			}));
+		}
+		for (Future<Void> f : futures) {
+			f.get(30, TimeUnit.SECONDS);
+		}
+		Assert.assertTrue(maxInUse.get() <= 3);
+		Assert.assertTrue(pool.getCreatedReaders() <= 3);
+		pool.close();
+		Assert.assertEquals(0, pool.getCreatedReaders());
+	}
+
+	@Test
+	public void testCloseWakesWaiters() throws Exception {
+		final BinaryMapIndexReaderPool pool = new BinaryMapIndexReaderPool(mainReader, 2);
+		BinaryMapIndexReader r1 = pool.acquire();
+		BinaryMapIndexReader r2 = pool.acquire();
+		final CountDownLatch started = new CountDownLatch(5);
+		List<Future<Boolean>> waiters = new ArrayList<Future<Boolean>>();
+		for (int t = 0; t < 5; t++) {
+			waiters.add(executor.submit(new Callable<Boolean>() {
+				@Override
+				public Boolean call() {
+					started.countDown();
+					try {
+						pool.acquire();
+						return false;
+					} catch (IOException e) {
+						return true;
+					}
+				}
+			}));
+		}
+		started.await();
+		Thread.sleep(100);
+		pool.close();
+		for (Future<Boolean> f : waiters) {
+			Assert.assertTrue("Waiter should fail after close", f.get(10, TimeUnit.SECONDS));
+		}
+		// readers released after close are dropped, no new readers are created
+		pool.release(r1);
+		pool.release(r2);
+		Assert.assertEquals(0, pool.getCreatedReaders());
+		try {
+			pool.acquire();
+			Assert.fail();
+		} catch (IOException e) {
+			// expected
+		}
+		Assert.assertEquals(0, pool.getCreatedReaders());
+	}
+
+	@Test
+	public void testCloseWhileReleasing() throws Exception {
+		final BinaryMapIndexReaderPool pool = new BinaryMapIndexReaderPool(mainReader, 2);
+		final AtomicInteger acquired = new AtomicInteger();
+		List<Future<Void>> futures = new ArrayList<Future<Void>>();
+		for (int t = 0; t < 6; t++) {
+			futures.add(executor.submit(new Callable<Void>() {
+				@Override
+				public Void call() {
+					try {
+						while (true) {
+							BinaryMapIndexReader reader = pool.acquire();
+							acquired.incrementAndGet();
+							Thread.yield();
+							pool.release(reader);
+						}
+					} catch (IOException e) {
+						return null;
+					}
+				}
+			}));
+		}
+		while (acquired.get() < 100) {
+			Thread.sleep(5);
+		}
+		pool.close();
+		for (Future<Void> f : futures) {
+			f.get(10, TimeUnit.SECONDS);
+		}
+		Assert.assertEquals(0, pool.getCreatedReaders());
+	}
+}
@@ -0,0 +1,215 @@
+package net.osmand.binary;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import net.osmand.binary.CachedAddressIndexes.FileAddressIndex;
+import net.osmand.binary.CachedAddressIndexes.RegionAddressIndex;
+import net.osmand.binary.CachedAddressIndexes.RegionIndexBuilder;
+import net.osmand.data.Building;
+import net.osmand.data.Building.BuildingInterpolation;
+import net.osmand.data.City;
+import net.osmand.data.City.CityType;
+import net.osmand.data.LatLon;
+import net.osmand.data.MapObject;
+import net.osmand.data.Street;
+import net.osmand.util.MapUtils;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class CachedAddressIndexesTest {
+
+	private static LatLon tile24(double lat, double lon) {
+		return new LatLon(MapUtils.getLatitudeFromTile(24, (int) MapUtils.getTileNumberY(24, lat)),
+				MapUtils.getLongitudeFromTile(24, (int) MapUtils.getTileNumberX(24, lon)));
+	}
+
+	private static Street street(City c, long id, String name, double lat, double lon, int offset) {
+		Street s = new Street(c);
+		s.setId(id);
+		s.setName(name);
+		s.setLocation(tile24(lat, lon));
+		s.setFileOffset(offset);
+		c.registerStreet(s);
+		return s;
+	}
+
+	private static Building building(Street s, String name, String postcode, double lat, double lon) {
+		Building b = new Building();
+		b.setName(name);
+		b.setPostcode(postcode);
+		b.setLocation(tile24(lat, lon));
+		s.addBuilding(b);
+		return b;
+	}
+
+	private static RegionAddressIndex buildIndex() {
+		City city = new City(CityType.CITY);
+		city.setId(1L);
+		city.setName("Minsk");
+		city.setEnName("Minsk");
+		city.setName("ru", "Минск");
+		city.setLocation(MapUtils.get31LatitudeY(MapUtils.get31TileNumberY(53.9)),
+				MapUtils.get31LongitudeX(MapUtils.get31TileNumberX(27.56)));
+		city.setFileOffset(100);
+		Street main = street(city, 10, "Praspiekt Niezaliežnasci", 53.9, 27.56, 1000);
+		building(main, "44", "220030", 53.8965, 27.5401);
+		Building range = building(main, "46", "220031", 53.8967, 27.5405);
+		range.setName2("52");
+		range.setLatLon2(tile24(53.8971, 27.5412));
+		range.setInterpolationType(BuildingInterpolation.EVEN);
+		Street cross = new Street(city);
+		cross.setName("Kalvaryjskaja");
+		cross.setLocation(tile24(53.901, 27.53));
+		main.addIntersectedStreet(cross);
+		street(city, 11, "Kalvaryjskaja vulica", 53.905, 27.52, 2000);
+
+		City postcode = City.createPostcode("220030");
+		postcode.setLocation(MapUtils.get31LatitudeY(MapUtils.get31TileNumberY(53.9)),
+				MapUtils.get31LongitudeX(MapUtils.get31TileNumberX(27.54)));
+		postcode.setFileOffset(300);
+		Street pmain = street(postcode, 10, "Praspiekt Niezaliežnasci", 53.9, 27.56, 3000);
+		// all buildings are stored, postcode city streets filter them on load
+		building(pmain, "44", "220030", 53.8965, 27.5401);
+		building(pmain, "46", "220031", 53.8967, 27.5405);
+
+		RegionIndexBuilder builder = new RegionIndexBuilder();
+		builder.addCity(city, BinaryMapAddressReaderAdapter.CITY_TOWN_TYPE);
+		builder.addCity(postcode, BinaryMapAddressReaderAdapter.POSTCODES_TYPE);
+		return builder.build();
+	}
+
+	private static void checkIndex(RegionAddressIndex index) {
+		Assert.assertEquals(2, index.getCitiesCount());
+		Assert.assertEquals(3, index.getStreetsCount());
+		List<City> cities = index.getCities(BinaryMapAddressReaderAdapter.CITY_TOWN_TYPE);
+		Assert.assertEquals(1, cities.size());
+		City city = cities.get(0);
+		Assert.assertEquals("Минск", city.getName("ru"));
+		Assert.assertEquals(CityType.CITY, city.getType());
+		Assert.assertEquals(53.9, city.getLocation().getLatitude(), 1e-6);
+
+		Assert.assertTrue(index.loadStreets(city, null));
+		Assert.assertEquals(2, city.getStreets().size());
+		Street main = city.getStreets().get(0);
+		Assert.assertEquals(1000, main.getFileOffset());
+		Assert.assertTrue(index.loadBuildings(main, null));
+		Assert.assertEquals(2, main.getBuildings().size());
+		Building range = main.getBuildings().get(1);
+		Assert.assertEquals("52", range.getName2());
+		Assert.assertEquals(BuildingInterpolation.EVEN, range.getInterpolationType());
+		Assert.assertEquals(tile24(53.8971, 27.5412), range.getLatLon2());
+		Assert.assertEquals(1, main.getIntersectedStreets().size());
+
+		City postcode = index.getCities(BinaryMapAddressReaderAdapter.POSTCODES_TYPE).get(0);
+		Assert.assertTrue(postcode.isPostcode());
+		index.loadStreets(postcode, null);
+		Street pmain = postcode.getStreets().get(0);
+		index.loadBuildings(pmain, null);
+		Assert.assertEquals(1, pmain.getBuildings().size());
+		Assert.assertEquals("44", pmain.getBuildings().get(0).getName());
+
+		City unknown = new City(CityType.TOWN);
+		unknown.setFileOffset(555);
+		Assert.assertFalse(index.loadStreets(unknown, null));
+
+		List<MapObject> byName = index.searchByName("kalvar", null);
+		Assert.assertEquals(1, byName.size());
+		Assert.assertEquals("Minsk", ((Street) byName.get(0)).getCity().getName());
+		// word start and normalized query
+		Assert.assertEquals(2, index.searchByName("niezaliez", null).size());
+		Assert.assertEquals(1, index.searchByName("МИН", null).size());
+		Assert.assertEquals(0, index.searchByName("alvar", null).size());
+
+		List<Street> near = index.findStreets(53.8966, 27.5403, 100);
+		Assert.assertEquals(2, near.size());
+		Assert.assertEquals("Praspiekt Niezaliežnasci", near.get(0).getName());
+		Assert.assertEquals(0, index.findStreets(53.95, 27.7, 100).size());
+	}
+
+	@Test
+	public void testRegionIndex() {
+		checkIndex(buildIndex());
+	}
+
+	@Test
+	public void testSearchByNameKeys() {
+		City city = new City(CityType.CITY);
+		city.setId(2L);
+		city.setName("Paris");
+		city.setLocation(48.86, 2.35);
+		city.setFileOffset(100);
+		street(city, 20, "Rue Saint-Denis", 48.86, 2.35, 1000);
+		street(city, 21, "Quai de l'Œuf", 48.85, 2.34, 2000);
+		street(city, 22, "Große Straße", 48.85, 2.33, 3000);
+		RegionIndexBuilder builder = new RegionIndexBuilder();
+		builder.addCity(city, BinaryMapAddressReaderAdapter.CITY_TOWN_TYPE);
+		RegionAddressIndex index = builder.build();
+		// word starts after punctuation, query punctuation and spaces are ignored as by collator
+		Assert.assertEquals(1, index.searchByName("denis", null).size());
+		Assert.assertEquals(1, index.searchByName("SAINT DEN", null).size());
+		Assert.assertEquals(1, index.searchByName("saint-d", null).size());
+		Assert.assertEquals(0, index.searchByName("enis", null).size());
+		Assert.assertEquals(1, index.searchByName("l'oe", null).size());
+		Assert.assertEquals(1, index.searchByName("strasse", null).size());
+		Assert.assertEquals(0, index.searchByName("-", null).size());
+	}
+
+	@Test
+	public void testReadWrite() throws Exception {
+		File f = File.createTempFile("test", CachedAddressIndexes.FILE_EXT);
+		try {
+			CachedAddressIndexes indexes = new CachedAddressIndexes(null);
+			indexes.writeToFile(new FileAddressIndex(10, 20, new RegionAddressIndex[] { buildIndex() }, false), f);
+			FileAddressIndex read = indexes.readFromFile(f);
+			Assert.assertEquals(10, read.fileSize);
+			Assert.assertEquals(20, read.dateCreated);
+			Assert.assertTrue(read.isComplete());
+			checkIndex(read.regions[0]);
+		} finally {
+			f.delete();
+		}
+	}
+
+	@Test
+	public void testConcurrentWrites() throws Exception {
+		File dir = File.createTempFile("test", "");
+		dir.delete();
+		dir.mkdir();
+		final File f = new File(dir, "test" + CachedAddressIndexes.FILE_EXT);
+		final CachedAddressIndexes indexes = new CachedAddressIndexes(dir);
+		final FileAddressIndex index = new FileAddressIndex(10, 20, new RegionAddressIndex[] { buildIndex() }, false);
+		ExecutorService executor = Executors.newFixedThreadPool(4);
+		try {
+			List<Future<Void>> writes = new ArrayList<Future<Void>>();
+			for (int i = 0; i < 8; i++) {
+				writes.add(executor.submit(new Callable<Void>() {
+					@Override
+					public Void call() throws Exception {
+						indexes.writeToFile(index, f);
+						return null;
+					}
+				}));
+			}
+			for (Future<Void> w : writes) {
+				w.get();
+			}
+			FileAddressIndex read = indexes.readFromFile(f);
+			checkIndex(read.regions[0]);
+			// temporary files are renamed
+			Assert.assertArrayEquals(new String[] { f.getName() }, dir.list());
+		} finally {
+			executor.shutdownNow();
+			for (File fl : dir.listFiles()) {
+				fl.delete();
+			}
+			dir.delete();
+		}
+	}
+}
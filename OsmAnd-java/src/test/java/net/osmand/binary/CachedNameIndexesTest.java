@@ -0,0 +1,224 @@
+package net.osmand.binary;
+
+import gnu.trove.list.array.TIntArrayList;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.RandomAccessFile;
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.zip.GZIPInputStream;
+
+import net.osmand.CollatorStringMatcher;
+import net.osmand.CollatorStringMatcher.StringMatcherMode;
+import net.osmand.binary.BinaryMapIndexReader.SearchRequest;
+import net.osmand.binary.CachedNameIndexes.FileNameIndex;
+import net.osmand.binary.CachedNameIndexes.NameTable;
+import net.osmand.binary.CachedNameIndexes.NameTableBuilder;
+
+import net.osmand.data.Amenity;
+import net.osmand.util.Algorithms;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class CachedNameIndexesTest {
+
+	// letters which are not decomposed to base letter and marks
+	private static final String[] NAMES = { "Auhofstraße 12", "Øresund Bridge", "Łódź Kaliska", "Ærø Kirke",
+			"Saint-Denis", "Café \"Ørsted\"", "Karl-Marx-Straße", "İstanbul" };
+
+	private static final String[] QUERIES = { "strasse", "straße", "STRASSE 12", "oresund", "øresund", "lodz",
+			"łódź", "aero", "ærø", "saint denis", "saint-denis", "saintdenis", "orsted", "ørsted", "marx strasse",
+			"istanbul", "kir", "ø", "ß" };
+
+	private static final String SEARCH_RESOURCES_PATH = "src/test/resources/search/";
+
+	private static NameTable buildPoiTable() {
+		NameTableBuilder builder = new NameTableBuilder(CachedNameIndexes.POI_REF_SIZE);
+		builder.add("Café Müller", 0, 100, 1, 1);
+		builder.add("Cafe Muller", 0, 100, 1, 1);
+		builder.add("Müllerstraße Apotheke", 0, 200, 2, 2);
+		builder.add("Bäckerei Schmidt", 1, 300, 3, 3);
+		builder.add("Schmidt", 1, 400, 4, 4);
+		builder.add("", 1, 500, 5, 5);
+		return builder.build();
+	}
+
+	private static TIntArrayList boxes(NameTable table, String query) {
+		TIntArrayList refs = table.findRefs(CachedNameIndexes.getNameKey(query));
+		TIntArrayList res = new TIntArrayList();
+		for (int i = 0; i < refs.size(); i++) {
+			res.add(table.getRef(refs.get(i), 1));
+		}
+		res.sort();
+		return res;
+	}
+
+	@Test
+	public void testContainsQueries() {
+		NameTable table = buildPoiTable();
+		// equal normalized names share one entry and same box is referenced once
+		Assert.assertEquals(4, table.size());
+		Assert.assertEquals(new TIntArrayList(new int[] { 100, 200 }), boxes(table, "MULLER"));
+		Assert.assertEquals(new TIntArrayList(new int[] { 300, 400 }), boxes(table, "schmi"));
+		Assert.assertEquals(new TIntArrayList(new int[] { 200 }), boxes(table, "straße apo"));
+		Assert.assertEquals(new TIntArrayList(new int[] { 100 }), boxes(table, "fé"));
+		Assert.assertEquals(0, boxes(table, "mullerx").size());
+		// trigrams are present but not in one place
+		Assert.assertEquals(0, boxes(table, "cafe schmidt").size());
+	}
+
+	@Test
+	public void testCollatorMatchesAreFound() {
+		NameTableBuilder builder = new NameTableBuilder(CachedNameIndexes.POI_REF_SIZE);
+		for (int i = 0; i < NAMES.length; i++) {
+			builder.add(NAMES[i], 0, i * 100, i, i);
+		}
+		NameTable table = builder.build();
+		for (String q : QUERIES) {
+			// same matcher as search poi by name uses
+			CollatorStringMatcher matcher = new CollatorStringMatcher(q.toLowerCase(),
+					StringMatcherMode.CHECK_STARTS_FROM_SPACE);
+			TIntArrayList found = boxes(table, q);
+			for (int i = 0; i < NAMES.length; i++) {
+				if (matcher.matches(NAMES[i])) {
+					Assert.assertTrue("'" + q + "' in '" + NAMES[i] + "'", found.contains(i * 100));
+				}
+			}
+		}
+		Assert.assertTrue(boxes(table, "strasse").contains(0));
+		Assert.assertTrue(boxes(table, "saint denis").contains(400));
+	}
+
+	@Test
+	public void testPoiByNameIndexMatchesPoiByName() throws Exception {
+		File[] files = new File(SEARCH_RESOURCES_PATH).listFiles();
+		if (files == null) {
+			return;
+		}
+		for (File gz : files) {
+			if (!gz.getName().endsWith(".obf.gz")) {
+				continue;
+			}
+			File obf = File.createTempFile("test", ".obf");
+			GZIPInputStream gzin = new GZIPInputStream(new FileInputStream(gz));
+			FileOutputStream fous = new FileOutputStream(obf);
+			Algorithms.streamCopy(gzin, fous);
+			fous.close();
+			gzin.close();
+			BinaryMapIndexReader reader = new BinaryMapIndexReader(new RandomAccessFile(obf, "r"), obf);
+			try {
+				FileNameIndex index = new CachedNameIndexes(obf.getParentFile()).buildNameIndex(reader);
+				for (String q : getQueries(reader)) {
+					Assert.assertEquals(gz.getName() + " '" + q + "'", searchPoiByName(reader, q, null),
+							searchPoiByName(reader, q, index));
+				}
+			} finally {
+				reader.close();
+				obf.delete();
+			}
+		}
+	}
+
+	// words (and their starts) of poi names having letters which are not decomposed
+	private static Set<String> getQueries(BinaryMapIndexReader reader) throws Exception {
+		SearchRequest<Amenity> req = BinaryMapIndexReader.buildSearchPoiRequest(0, Integer.MAX_VALUE, 0,
+				Integer.MAX_VALUE, -1, BinaryMapIndexReader.ACCEPT_ALL_POI_TYPE_FILTER, null);
+		Set<String> queries = new LinkedHashSet<String>();
+		for (String q : QUERIES) {
+			queries.add(q);
+		}
+		for (Amenity a : reader.searchPoi(req)) {
+			for (String name : a.getAllNames(true)) {
+				for (String w : name.split(" ")) {
+					if (w.matches(".*[ßøØłŁæÆ].*")) {
+						queries.add(w);
+						queries.add(w.substring(0, Math.min(3, w.length())));
+					}
+				}
+			}
+		}
+		return queries;
+	}
+
+	private static List<String> searchPoiByName(BinaryMapIndexReader reader, String query, FileNameIndex index)
+			throws Exception {
+		SearchRequest<Amenity> req = BinaryMapIndexReader.buildSearchPoiRequest(0, 0, query, 0, Integer.MAX_VALUE, 0,
+				Integer.MAX_VALUE, null);
+		List<Amenity> res = index == null ? reader.searchPoiByName(req) : reader.searchPoiByNameIndex(req, index);
+		Set<String> ids = new TreeSet<String>();
+		for (Amenity a : res) {
+			ids.add(a.getType().getKeyName() + "_" + a.getId());
+		}
+		return new ArrayList<String>(ids);
+	}
+
+	@Test
+	public void testReadWrite() throws Exception {
+		NameTable poi = buildPoiTable();
+		NameTableBuilder addressBuilder = new NameTableBuilder(CachedNameIndexes.ADDRESS_REF_SIZE);
+		addressBuilder.add("Main Street", 0, 2, 1000, 900, 1, 12345);
+		NameTable address = addressBuilder.build();
+		File f = File.createTempFile("test", CachedNameIndexes.FILE_EXT);
+		try {
+			CachedNameIndexes indexes = new CachedNameIndexes(null);
+			indexes.writeToFile(new FileNameIndex(10, 20, poi, address), f);
+			FileNameIndex read = indexes.readFromFile(f);
+			Assert.assertEquals(10, read.fileSize);
+			Assert.assertEquals(20, read.dateCreated);
+			Assert.assertEquals(poi.size(), read.getPoiNames().size());
+			Assert.assertEquals(boxes(poi, "muller"), boxes(read.getPoiNames(), "muller"));
+			TIntArrayList refs = read.getAddressNames().findRefs(CachedNameIndexes.getNameKey("street"));
+			Assert.assertEquals(1, refs.size());
+			Assert.assertEquals(12345, read.getAddressNames().getRef(refs.get(0), 5));
+		} finally {
+			f.delete();
+		}
+	}
+
+	@Test
+	public void testConcurrentWrites() throws Exception {
+		File dir = File.createTempFile("test", "");
+		dir.delete();
+		dir.mkdir();
+		final File f = new File(dir, "test" + CachedNameIndexes.FILE_EXT);
+		final CachedNameIndexes indexes = new CachedNameIndexes(dir);
+		final FileNameIndex index = new FileNameIndex(10, 20, buildPoiTable(),
+				new NameTableBuilder(CachedNameIndexes.ADDRESS_REF_SIZE).build());
+		ExecutorService executor = Executors.newFixedThreadPool(4);
+		try {
+			List<Future<Void>> writes = new ArrayList<Future<Void>>();
+			for (int i = 0; i < 8; i++) {
+				writes.add(executor.submit(new Callable<Void>() {
+					@Override
+					public Void call() throws Exception {
+						indexes.writeToFile(index, f);
+						return null;
+					}
+				}));
+			}
+			for (Future<Void> w : writes) {
+				w.get();
+			}
+			FileNameIndex read = indexes.readFromFile(f);
+			Assert.assertEquals(boxes(index.getPoiNames(), "muller"), boxes(read.getPoiNames(), "muller"));
+			// temporary files are renamed
+			Assert.assertArrayEquals(new String[] { f.getName() }, dir.list());
+		} finally {
+			executor.shutdownNow();
+			for (File fl : dir.listFiles()) {
+				fl.delete();
+			}
+			dir.delete();
+		}
+	}
+}
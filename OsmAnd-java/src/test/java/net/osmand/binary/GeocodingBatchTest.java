@@ -0,0 +1,102 @@
+package net.osmand.binary;
+
+import java.io.File;
+import java.io.InputStreamReader;
+import java.io.RandomAccessFile;
+import java.io.Reader;
+import java.util.ArrayList;
+import java.util.List;
+
+import net.osmand.ResultMatcher;
+import net.osmand.binary.GeocodingBatch.GeocodingPointResult;
+import net.osmand.binary.GeocodingUtilities.AddressCache;
+import net.osmand.binary.GeocodingUtilities.GeocodingResult;
+import net.osmand.data.LatLon;
+import net.osmand.router.RoutePlannerFrontEnd;
+import net.osmand.router.RoutePlannerFrontEnd.RouteCalculationMode;
+import net.osmand.router.RoutingConfiguration;
+import net.osmand.router.RoutingContext;
+import net.osmand.router.TestEntry;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+
+/**
+ * Geocodes start and end points of routing tests by {@link GeocodingBatch} in parallel with a small address cache and
+ * compares results with single point search without cache.
+ */
+public class GeocodingBatchTest {
+
+	private static List<LatLon> loadPoints() throws Exception {
+		Reader reader = new InputStreamReader(GeocodingBatchTest.class.getResourceAsStream("/test_routing.json"));
+		Gson gson = new GsonBuilder().setPrettyPrinting().create();
+		TestEntry[] testEntries = gson.fromJson(reader, TestEntry[].class);
+		reader.close();
+		List<LatLon> points = new ArrayList<LatLon>();
+		for (TestEntry te : testEntries) {
+			if (te.isIgnore() || te.getParams().containsKey("map")) {
+				continue;
+			}
+			points.add(te.getStartPoint());
+			points.add(te.getEndPoint());
+		}
+		return points;
+	}
+
+	private static List<String> toStrings(List<GeocodingResult> results) {
+		List<String> res = new ArrayList<String>();
+		for (GeocodingResult r : results) {
+			res.add(r.toString());
+		}
+		return res;
+	}
+
+	@Test
+	public void testBatchMatchesSinglePointSearch() throws Exception {
+		String fl = "src/test/resources/Routing_test.obf";
+		final BinaryMapIndexReader[] readers = { new BinaryMapIndexReader(new RandomAccessFile(fl, "r"), new File(fl)) };
+		try {
+			List<LatLon> points = loadPoints();
+			RoutingConfiguration config = RoutingConfiguration.getDefault().build("geocoding",
+					RoutingConfiguration.DEFAULT_MEMORY_LIMIT * 3);
+			List<List<String>> expected = new ArrayList<List<String>>();
+			GeocodingUtilities gu = new GeocodingUtilities();
+			for (LatLon p : points) {
+				RoutingContext ctx = new RoutePlannerFrontEnd().buildRoutingContext(config, null, readers,
+						RouteCalculationMode.NORMAL);
+				List<GeocodingResult> roads = gu.reverseGeocodingSearch(ctx, p.getLatitude(), p.getLongitude(), false);
+				expected.add(toStrings(gu.justifyReverseGeocodingResults(roads, readers, null)));
+			}
+
+			// small cache to evict searches while other threads use them
+			GeocodingBatch batch = new GeocodingBatch(config, readers, new AddressCache(4));
+			batch.setPartitionSize(2);
+			final List<List<String>> actual = new ArrayList<List<String>>();
+			for (int i = 0; i < points.size(); i++) {
+				actual.add(null);
+			}
+			int processed = batch.geocode(points, 4, new ResultMatcher<GeocodingPointResult>() {
+				@Override
+				public boolean publish(GeocodingPointResult object) {
+					actual.set(object.index, toStrings(object.results));
+					return true;
+				}
+
+				@Override
+				public boolean isCancelled() {
+					return false;
+				}
+			});
+			Assert.assertEquals(points.size(), processed);
+			Assert.assertTrue(batch.getAddressCache().size() <= 4);
+			for (int i = 0; i < points.size(); i++) {
+				Assert.assertEquals("Point " + points.get(i), expected.get(i), actual.get(i));
+			}
+		} finally {
+			readers[0].close();
+		}
+	}
+}
@@ -0,0 +1,215 @@
+package net.osmand.binary;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import net.osmand.Location;
+import net.osmand.binary.BinaryMapIndexReader.SearchRequest;
+import net.osmand.binary.PoiAlongRouteSearch.ChunkIndex;
+import net.osmand.binary.PoiAlongRouteSearch.PublishedPoi;
+import net.osmand.binary.PoiAlongRouteSearch.RoutePoi;
+import net.osmand.data.Amenity;
+import net.osmand.data.LatLon;
+import net.osmand.osm.PoiCategory;
+import net.osmand.util.MapUtils;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * Matches POI to a staircase route by chunks the way {@link PoiAlongRouteSearch#search} does and compares
+ * result with projection on the whole route.
+ */
+public class PoiAlongRouteSearchTest {
+
+	private static final double RADIUS = 150;
+	private static final double CHUNK_LENGTH = 2000;
+	private static final int ZOOM = SearchRequest.ZOOM_TO_SEARCH_POI;
+
+	// alternating north and east legs of ~550 m, so chunk boundaries fall next to turns
+	private static List<Location> createRoute() {
+		List<Location> route = new ArrayList<Location>();
+		double lat = 50, lon = 10;
+		for (int i = 0; i < 40; i++) {
+			for (int k = 0; k < 5; k++) {
+				route.add(new Location("", lat, lon));
+				if (i % 2 == 0) {
+					lat += 0.001;
+				} else {
+					lon += 0.0015;
+				}
+			}
+		}
+		route.add(new Location("", lat, lon));
+		return route;
+	}
+
+	private static List<Amenity> createPois(List<Location> route) {
+		Random rnd = new Random(7);
+		List<Amenity> pois = new ArrayList<Amenity>();
+		for (int i = 0; i < 3000; i++) {
+			Location l = route.get(rnd.nextInt(route.size()));
+			Amenity a = new Amenity();
+			a.setId((long) i);
+			a.setLocation(l.getLatitude() + (rnd.nextDouble() - 0.5) * 0.004,
+					l.getLongitude() + (rnd.nextDouble() - 0.5) * 0.006);
+			pois.add(a);
+		}
+		return pois;
+	}
+
+	private static int nearestSegment(List<Location> route, LatLon l) {
+		double minDist = RADIUS + 0.1;
+		int segment = -1;
+		for (int i = 1; i < route.size(); i++) {
+			Location a = route.get(i - 1);
+			Location b = route.get(i);
+			LatLon pr = MapUtils.getProjection(l.getLatitude(), l.getLongitude(), a.getLatitude(), a.getLongitude(),
+					b.getLatitude(), b.getLongitude());
+			double d = MapUtils.getDistance(pr, l);
+			if (d < minDist) {
+				minDist = d;
+				segment = i;
+			}
+		}
+		return segment;
+	}
+
+	// chunk loop of PoiAlongRouteSearch.search with POI of chunk tiles instead of the file search
+	private static List<String> matchByChunks(PoiAlongRouteSearch search, List<Location> route, List<Amenity> pois) {
+		List<String> published = new ArrayList<String>();
+		PublishedPoi publishedPoi = new PublishedPoi();
+		int prevStart = 1;
+		int start = 1;
+		int end = search.getChunkEnd(start);
+		while (start < route.size()) {
+			int nextEnd = end + 1 < route.size() ? search.getChunkEnd(end + 1) : end;
+			ChunkIndex index = search.indexChunk(start, end, prevStart, nextEnd);
+			List<RoutePoi> chunk = new ArrayList<RoutePoi>();
+			for (Amenity a : pois) {
+				long x = (long) MapUtils.getTileNumberX(ZOOM, a.getLocation().getLongitude());
+				long y = (long) MapUtils.getTileNumberY(ZOOM, a.getLocation().getLatitude());
+				if (!index.tiles.containsKey((x << ZOOM) + y) || publishedPoi.contains(a)) {
+					continue;
+				}
+				RoutePoi p = search.matchRoute(index, a);
+				if (p != null) {
+					publishedPoi.add(a);
+					chunk.add(p);
+				}
+			}
+			Collections.sort(chunk, new Comparator<RoutePoi>() {
+				@Override
+				public int compare(RoutePoi o1, RoutePoi o2) {
+					return Double.compare(o1.routeDistance, o2.routeDistance);
+				}
+			});
+			for (RoutePoi p : chunk) {
+				published.add(p.amenity.getId() + " " + route.indexOf(p.amenity.getRoutePoint().pointB) + " "
+						+ p.routeDistance);
+			}
+			prevStart = start;
+			start = end + 1;
+			end = nextEnd;
+		}
+		return published;
+	}
+
+	@Test
+	public void testPoiProjectedOnNearestSegment() {
+		List<Location> route = createRoute();
+		List<Amenity> pois = createPois(route);
+		PoiAlongRouteSearch search = new PoiAlongRouteSearch(route, RADIUS, null);
+		search.setChunkLength(CHUNK_LENGTH);
+		List<String> published = matchByChunks(search, route, pois);
+
+		int expectedCount = 0;
+		int boundaryPois = 0;
+		double lastDistance = 0;
+		List<Long> ids = new ArrayList<Long>();
+		for (String s : published) {
+			String[] p = s.split(" ");
+			ids.add(Long.parseLong(p[0]));
+			double distance = Double.parseDouble(p[2]);
+			Assert.assertTrue("Published out of route order: " + s, distance >= lastDistance);
+			lastDistance = distance;
+		}
+		for (Amenity a : pois) {
+			int segment = nearestSegment(route, a.getLocation());
+			if (segment == -1) {
+				Assert.assertTrue("Poi too far from route " + a.getId(), !ids.contains(a.getId()));
+				continue;
+			}
+			expectedCount++;
+			int ind = ids.indexOf(a.getId());
+			Assert.assertTrue("Poi not found " + a.getId(), ind != -1);
+			Assert.assertEquals("Segment of poi " + a.getId(), segment,
+					Integer.parseInt(published.get(ind).split(" ")[1]));
+			int chunkStart = 1;
+			while (search.getChunkEnd(chunkStart) < segment) {
+				chunkStart = search.getChunkEnd(chunkStart) + 1;
+			}
+			int chunkEnd = search.getChunkEnd(chunkStart);
+			if (segment - chunkStart < 3 || chunkEnd - segment < 3) {
+				boundaryPois++;
+			}
+		}
+		Assert.assertEquals(expectedCount, published.size());
+		Assert.assertTrue(boundaryPois > 0);
+	}
+
+	@Test
+	public void testConcurrentMatching() throws Exception {
+		final List<Location> route = createRoute();
+		final List<Amenity> pois = createPois(route);
+		final PoiAlongRouteSearch search = new PoiAlongRouteSearch(route, RADIUS, null);
+		search.setChunkLength(CHUNK_LENGTH);
+		List<String> expected = matchByChunks(search, route, pois);
+		ExecutorService executor = Executors.newFixedThreadPool(4);
+		try {
+			List<Future<List<String>>> futures = new ArrayList<Future<List<String>>>();
+			for (int i = 0; i < 8; i++) {
+				futures.add(executor.submit(new Callable<List<String>>() {
+					@Override
+					public List<String> call() {
+						return matchByChunks(search, route, pois);
+					}
+				}));
+			}
+			for (Future<List<String>> f : futures) {
+				Assert.assertEquals(expected, f.get());
+			}
+		} finally {
+			executor.shutdownNow();
+		}
+	}
+
+	@Test
+	public void testPoiWithoutIdPublishedOnce() {
+		PoiCategory category = new PoiCategory(null, "sustenance", 0);
+		PublishedPoi publishedPoi = new PublishedPoi();
+		Amenity a = new Amenity();
+		a.setLocation(50, 10);
+		a.setType(category);
+		a.setSubType("cafe");
+		Assert.assertFalse(publishedPoi.contains(a));
+		publishedPoi.add(a);
+		// the same poi decoded again by the next chunk
+		Amenity same = a.copy(category, "cafe");
+		Assert.assertTrue(publishedPoi.contains(same));
+		Assert.assertFalse(publishedPoi.contains(a.copy(category, "restaurant")));
+		Amenity other = a.copy(category, "cafe");
+		other.setLocation(50.0001, 10);
+		Assert.assertFalse(publishedPoi.contains(other));
+		Amenity withId = a.copy(category, "cafe");
+		withId.setId(1L);
+		Assert.assertFalse(publishedPoi.contains(withId));
+	}
+}
@@ -0,0 +1,256 @@
+package net.osmand.binary;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.zip.GZIPInputStream;
+
+import net.osmand.binary.BinaryMapIndexReader.SearchPoiTypeFilter;
+import net.osmand.binary.BinaryMapIndexReader.SearchRequest;
+import net.osmand.binary.BinaryMapPoiReaderAdapter.PoiRegion;
+import net.osmand.data.Amenity;
+import net.osmand.osm.PoiCategory;
+import net.osmand.util.Algorithms;
+import net.osmand.util.MapUtils;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * Compares poi search served by {@link PoiTileCache} with search reading the file on search test maps.
+ */
+public class PoiTileCacheTest {
+
+	private static final String SEARCH_RESOURCES_PATH = "src/test/resources/search/";
+
+	private static final int TX = 8000;
+	private static final int TY = 5000;
+	private static final int SHIFT = 31 - PoiTileCache.TILE_ZOOM;
+
+	// poi in tile order, but the first one is stored later in file
+	private static final int[][] POI = { { TX, 2000 }, { TX + 1, 1000 } };
+
+	// reader decoding POI of tiles without reading the file
+	private static class TestReader extends BinaryMapIndexReader {
+		final PoiRegion region = new PoiRegion();
+		final AtomicInteger loads = new AtomicInteger();
+		final PoiCategory category = new PoiCategory(null, "sustenance", 0);
+		int decodeTime;
+
+		TestReader(File file) throws IOException {
+			super(new RandomAccessFile(file, "r"), file, false);
+			region.typeCategories = new PoiCategory[] { category };
+			region.typeSubtypes = new String[] { "cafe" };
+		}
+
+		@Override
+		List<Amenity> readPoiTile(PoiRegion poiIndex, int left31, int right31, int top31, int bottom31,
+				Map<Amenity, int[]> typeIds, Map<Amenity, Integer> filePointers) throws IOException {
+			loads.incrementAndGet();
+			try {
+				Thread.sleep(decodeTime);
+			} catch (InterruptedException e) {
+				throw new IOException(e);
+			}
+			List<Amenity> res = new ArrayList<Amenity>();
+			for (int[] p : POI) {
+				int x31 = (p[0] << SHIFT) + (1 << (SHIFT - 1));
+				int y31 = (TY << SHIFT) + (1 << (SHIFT - 1));
+				if (x31 >= left31 && x31 <= right31 && y31 >= top31 && y31 <= bottom31) {
+					Amenity a = new Amenity();
+					a.setId((long) p[1]);
+					a.setLocation(MapUtils.get31LatitudeY(y31), MapUtils.get31LongitudeX(x31));
+					a.setType(category);
+					a.setSubType("cafe");
+					a.setAdditionalInfo("opening_hours", "24/7");
+					typeIds.put(a, new int[] { 0 });
+					filePointers.put(a, p[1]);
+					res.add(a);
+				}
+			}
+			return res;
+		}
+	}
+
+	private static List<Amenity> searchTiles(PoiTileCache cache, TestReader reader, int zoom) throws IOException {
+		SearchRequest<Amenity> req = BinaryMapIndexReader.buildSearchPoiRequest(TX << SHIFT, ((TX + 2) << SHIFT) - 1,
+				TY << SHIFT, ((TY + 1) << SHIFT) - 1, zoom, null, null);
+		cache.searchPoi(reader, reader.region, req);
+		return req.getSearchResults();
+	}
+
+	private static class TypesFilter implements SearchPoiTypeFilter {
+		final Set<String> subtypes;
+		final PoiCategory category;
+
+		TypesFilter(Set<String> subtypes, PoiCategory category) {
+			this.subtypes = subtypes;
+			this.category = category;
+		}
+
+		@Override
+		public boolean accept(PoiCategory type, String subcategory) {
+			return (category == null || category == type) && (subtypes == null || subtypes.contains(subcategory));
+		}
+
+		@Override
+		public boolean isEmpty() {
+			return false;
+		}
+	}
+
+	private static List<String> searchPoi(BinaryMapIndexReader reader, int x31, int y31, int zoom,
+			SearchPoiTypeFilter filter) throws Exception {
+		int d = 1 << 17;
+		SearchRequest<Amenity> req = BinaryMapIndexReader.buildSearchPoiRequest(x31 - d, x31 + d, y31 - d, y31 + d,
+				zoom, filter, null);
+		List<String> res = new ArrayList<String>();
+		for (Amenity a : reader.searchPoi(req)) {
+			res.add(a.getId() + " " + a.getType().getKeyName() + " " + a.getSubType());
+		}
+		Collections.sort(res);
+		return res;
+	}
+
+	@Test
+	public void testCachedSearchMatchesFileSearch() throws Exception {
+		File[] files = new File(SEARCH_RESOURCES_PATH).listFiles();
+		if (files == null) {
+			return;
+		}
+		for (File gz : files) {
+			if (!gz.getName().endsWith(".obf.gz")) {
+				continue;
+			}
+			File obf = File.createTempFile("test", ".obf");
+			GZIPInputStream gzin = new GZIPInputStream(new FileInputStream(gz));
+			FileOutputStream fous = new FileOutputStream(obf);
+			Algorithms.streamCopy(gzin, fous);
+			fous.close();
+			gzin.close();
+			BinaryMapIndexReader reader = new BinaryMapIndexReader(new RandomAccessFile(obf, "r"), obf);
+			try {
+				SearchRequest<Amenity> all = BinaryMapIndexReader.buildSearchPoiRequest(0, Integer.MAX_VALUE, 0,
+						Integer.MAX_VALUE, -1, BinaryMapIndexReader.ACCEPT_ALL_POI_TYPE_FILTER, null);
+				List<Amenity> amenities = reader.searchPoi(all);
+				if (amenities.isEmpty()) {
+					continue;
+				}
+				// secondary subtypes of poi with several types and category of one of them
+				Set<String> secondary = new LinkedHashSet<String>();
+				for (Amenity a : amenities) {
+					String[] st = a.getSubType().split(";");
+					for (int i = 1; i < st.length; i++) {
+						secondary.add(st[i]);
+					}
+				}
+				List<SearchPoiTypeFilter> filters = new ArrayList<SearchPoiTypeFilter>();
+				filters.add(BinaryMapIndexReader.ACCEPT_ALL_POI_TYPE_FILTER);
+				filters.add(new TypesFilter(null, amenities.get(0).getType()));
+				if (!secondary.isEmpty()) {
+					filters.add(new TypesFilter(secondary, null));
+				}
+				for (int k = 0; k < amenities.size(); k += Math.max(1, amenities.size() / 10)) {
+					Amenity a = amenities.get(k);
+					int x31 = MapUtils.get31TileNumberX(a.getLocation().getLongitude());
+					int y31 = MapUtils.get31TileNumberY(a.getLocation().getLatitude());
+					for (SearchPoiTypeFilter filter : filters) {
+						for (int zoom : new int[] { -1, 12, 15 }) {
+							reader.setPoiTileCache(null);
+							List<String> expected = searchPoi(reader, x31, y31, zoom, filter);
+							reader.setPoiTileCache(new PoiTileCache());
+							Assert.assertEquals(gz.getName() + " zoom " + zoom, expected,
+									searchPoi(reader, x31, y31, zoom, filter));
+						}
+					}
+				}
+			} finally {
+				reader.close();
+				obf.delete();
+			}
+		}
+	}
+
+	@Test
+	public void testDensityFilterInFileOrder() throws Exception {
+		File file = File.createTempFile("test", ".obf");
+		TestReader reader = new TestReader(file);
+		try {
+			// both poi are in one cell of density filter, so poi read first from file is kept
+			List<Amenity> res = searchTiles(new PoiTileCache(), reader, 10);
+			Assert.assertEquals(1, res.size());
+			Assert.assertEquals(1000L, res.get(0).getId().longValue());
+			Assert.assertEquals(2, searchTiles(new PoiTileCache(), reader, -1).size());
+		} finally {
+			reader.close();
+			file.delete();
+		}
+	}
+
+	@Test
+	public void testConcurrentRequestsDecodeTileOnce() throws Exception {
+		File file = File.createTempFile("test", ".obf");
+		final TestReader reader = new TestReader(file);
+		reader.decodeTime = 100;
+		ExecutorService executor = Executors.newFixedThreadPool(4);
+		try {
+			final PoiTileCache cache = new PoiTileCache();
+			List<Future<List<Amenity>>> futures = new ArrayList<Future<List<Amenity>>>();
+			for (int i = 0; i < 4; i++) {
+				futures.add(executor.submit(new Callable<List<Amenity>>() {
+					@Override
+					public List<Amenity> call() throws Exception {
+						return searchTiles(cache, reader, -1);
+					}
+				}));
+			}
+			for (Future<List<Amenity>> f : futures) {
+				Assert.assertEquals(2, f.get().size());
+			}
+			Assert.assertEquals(2, reader.loads.get());
+			Assert.assertEquals(2, cache.getTilesCount());
+		} finally {
+			executor.shutdownNow();
+			reader.close();
+			file.delete();
+		}
+	}
+
+	@Test
+	public void testReturnedPoiShareMapsUntilChanged() throws Exception {
+		File file = File.createTempFile("test", ".obf");
+		TestReader reader = new TestReader(file);
+		try {
+			PoiTileCache cache = new PoiTileCache();
+			Amenity first = searchTiles(cache, reader, -1).get(0);
+			Amenity second = searchTiles(cache, reader, -1).get(0);
+			Assert.assertNotSame(first, second);
+			Assert.assertSame(first.getAdditionalInfo(), second.getAdditionalInfo());
+			first.setAdditionalInfo("opening_hours", "Mo-Fr 08:00-18:00");
+			first.setName("de", "Kaffee");
+			Assert.assertEquals("24/7", second.getOpeningHours());
+			Assert.assertEquals("24/7", second.getAdditionalInfo("opening_hours"));
+			Assert.assertTrue(second.getNamesMap(false).isEmpty());
+			Amenity third = searchTiles(cache, reader, -1).get(0);
+			Assert.assertEquals("24/7", third.getAdditionalInfo("opening_hours"));
+			Assert.assertTrue(third.getNamesMap(false).isEmpty());
+			Assert.assertEquals(2, reader.loads.get());
+		} finally {
+			reader.close();
+			file.delete();
+		}
+	}
+}
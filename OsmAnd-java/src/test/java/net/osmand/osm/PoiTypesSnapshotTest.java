@@ -0,0 +1,109 @@
+package net.osmand.osm;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class PoiTypesSnapshotTest {
+
+	private static final String XML = "<?xml version='1.0' encoding='utf-8'?>\n"
+			+ "<poi_types>\n"
+			+ "<poi_category name=\"shop\" top=\"true\">\n"
+			+ "  <poi_filter name=\"shop_food\">\n"
+			+ "    <poi_type name=\"bakery\" tag=\"shop\" value=\"bakery\"/>\n"
+			+ "    <poi_type name=\"butcher\" tag=\"shop\" value=\"butcher\"/>\n"
+			+ "  </poi_filter>\n"
+			+ "  <poi_type name=\"kiosk\" tag=\"shop\" value=\"kiosk\">\n"
+			+ "    <poi_additional name=\"opening_hours\" tag=\"opening_hours\" type=\"text\"/>\n"
+			+ "  </poi_type>\n"
+			+ "  <poi_type name=\"shop_old\" deprecated_of=\"kiosk\"/>\n"
+			+ "</poi_category>\n"
+			+ "<poi_category name=\"user_defined_other\">\n"
+			+ "  <poi_reference name=\"bakery\"/>\n"
+			+ "</poi_category>\n"
+			+ "</poi_types>\n";
+
+	private static void checkTypes(MapPoiTypes types) {
+		PoiCategory shop = types.getPoiCategoryByName("shop");
+		Assert.assertTrue(shop.isTopVisible());
+		Assert.assertEquals(3, shop.getPoiTypes().size());
+		Assert.assertEquals("shop_food", shop.getPoiFilters().get(0).getKeyName());
+		PoiType kiosk = types.getPoiTypeByKey("kiosk");
+		Assert.assertEquals("shop", kiosk.getOsmTag());
+		Assert.assertEquals(1, kiosk.getPoiAdditionals().size());
+		Assert.assertNotNull(types.getTextPoiAdditionalByKey("opening_hours"));
+		Assert.assertEquals("kiosk", types.replaceDeprecatedSubtype(shop, "shop_old"));
+		PoiType ref = types.getOtherPoiCategory().getPoiTypeByKeyName("bakery");
+		Assert.assertSame(types.getPoiTypeByKey("bakery"), ref.getReferenceType());
+	}
+
+	@Test
+	public void testSnapshot() throws Exception {
+		byte[] xml = XML.getBytes("UTF-8");
+		MapPoiTypes parsed = new MapPoiTypes(null);
+		parsed.initFromInputStream(new ByteArrayInputStream(xml));
+		checkTypes(parsed);
+
+		File f = File.createTempFile("poi_types", ".snapshot");
+		try {
+			f.delete();
+			Assert.assertFalse(PoiTypesSnapshot.isValid(f, xml.length, 1000, "1.0"));
+			PoiTypesSnapshot.write(xml, 1000, "1.0", f);
+			Assert.assertTrue(PoiTypesSnapshot.isValid(f, xml.length, 1000, "1.0"));
+			Assert.assertFalse(PoiTypesSnapshot.isValid(f, xml.length + 1, 1000, "1.0"));
+			Assert.assertFalse(PoiTypesSnapshot.isValid(f, xml.length, 2000, "1.0"));
+			Assert.assertFalse(PoiTypesSnapshot.isValid(f, xml.length, 1000, "1.1"));
+			MapPoiTypes snapshot = new MapPoiTypes(null);
+			snapshot.initFromSnapshot(new FileInputStream(f));
+			Assert.assertTrue(snapshot.isInit());
+			checkTypes(snapshot);
+		} finally {
+			f.delete();
+		}
+	}
+
+	private static void writeFile(File f, byte[] bytes, long modified) throws Exception {
+		FileOutputStream out = new FileOutputStream(f);
+		out.write(bytes);
+		out.close();
+		Assert.assertTrue(f.setLastModified(modified));
+	}
+
+	@Test
+	public void testInitDoesNotReadXmlWithValidSnapshot() throws Exception {
+		byte[] xml = XML.getBytes("UTF-8");
+		File res = File.createTempFile("poi_types", ".xml");
+		File f = File.createTempFile("poi_types", ".snapshot");
+		try {
+			long modified = 1000000000L * 1000;
+			writeFile(res, xml, modified);
+			f.delete();
+			MapPoiTypes parsed = new MapPoiTypes(null);
+			parsed.init(res.getAbsolutePath(), f, "1.0");
+			checkTypes(parsed);
+			Assert.assertTrue(f.exists());
+
+			// xml of the same size and time isn't read (it can't be parsed), types are read from snapshot
+			byte[] broken = new byte[xml.length];
+			writeFile(res, broken, modified);
+			MapPoiTypes snapshot = new MapPoiTypes(null);
+			snapshot.init(res.getAbsolutePath(), f, "1.0");
+			checkTypes(snapshot);
+
+			// snapshot of another app version isn't used, xml is parsed and snapshot is rewritten
+			writeFile(res, xml, modified);
+			MapPoiTypes updated = new MapPoiTypes(null);
+			updated.init(res.getAbsolutePath(), f, "1.1");
+			checkTypes(updated);
+			Assert.assertTrue(PoiTypesSnapshot.isValid(f, xml.length, modified, "1.1"));
+			Assert.assertFalse(PoiTypesSnapshot.isValid(f, xml.length, modified, "1.0"));
+		} finally {
+			res.delete();
+			f.delete();
+		}
+	}
+}
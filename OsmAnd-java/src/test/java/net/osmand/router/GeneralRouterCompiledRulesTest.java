@@ -0,0 +1,96 @@
+package net.osmand.router;
+
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Random;
+
+import net.osmand.binary.BinaryMapRouteReaderAdapter.RouteRegion;
+import net.osmand.router.GeneralRouter.GeneralRouterProfile;
+import net.osmand.router.GeneralRouter.RouteAttributeContext;
+import net.osmand.router.GeneralRouter.RouteAttributeEvalRule;
+import net.osmand.router.GeneralRouter.RouteDataObjectAttribute;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class GeneralRouterCompiledRulesTest {
+
+	private static final String[][] TAGS = { { "highway", "motorway" }, { "highway", "primary" },
+			{ "highway", "residential" }, { "highway", "track" }, { "maxspeed", "50" }, { "maxspeed", "90" },
+			{ "maxspeed", "30 mph" }, { "access", "no" }, { "access", "private" }, { "oneway", "yes" },
+			{ "junction", "roundabout" }, { "surface", "gravel" }, { "tracktype", "grade3" }, { "maxheight", "3.5" },
+			{ "name", null } };
+
+	@Test
+	public void testCompiledRulesMatchInterpretedRules() {
+		GeneralRouter parent = new GeneralRouter(GeneralRouterProfile.CAR, new LinkedHashMap<String, String>());
+		RouteAttributeContext speed = parent.getObjContext(RouteDataObjectAttribute.ROAD_SPEED);
+		RouteAttributeEvalRule r = speed.registerNewRule("$maxspeed", "speed");
+		r.registerAndTagValueCondition("maxspeed", null, false);
+		r.registerAndTagValueCondition("highway", "track", true);
+		r = speed.registerNewRule("10", "speed");
+		r.registerAndTagValueCondition("highway", "track", false);
+		r.registerAndTagValueCondition("surface", "gravel", false);
+		r = speed.registerNewRule(":max_track_speed", "speed");
+		r.registerAndTagValueCondition("highway", "track", false);
+		r = speed.registerNewRule("120", "speed");
+		r.registerAndTagValueCondition("highway", "motorway", false);
+		r = speed.registerNewRule("50", "speed");
+		r.registerAndTagValueCondition("highway", null, false);
+
+		RouteAttributeContext access = parent.getObjContext(RouteDataObjectAttribute.ACCESS);
+		r = access.registerNewRule("-1", "");
+		r.registerAndTagValueCondition("access", "no", false);
+		r = access.registerNewRule("-1", "");
+		r.registerAndTagValueCondition("access", "private", false);
+		r.registerAndParamCondition("allow_private", true);
+		r = access.registerNewRule("-1", "");
+		r.registerAndTagValueCondition("maxheight", null, false);
+		r.registerGreatCondition(":height", "$maxheight", "length");
+		r = access.registerNewRule("1", "");
+		r.registerAndTagValueCondition("highway", null, false);
+
+		RouteAttributeContext oneway = parent.getObjContext(RouteDataObjectAttribute.ONEWAY);
+		r = oneway.registerNewRule("1", "");
+		r.registerAndTagValueCondition("oneway", "yes", false);
+		r = oneway.registerNewRule("1", "");
+		r.registerAndTagValueCondition("junction", "roundabout", false);
+		r.registerAndTagValueCondition("oneway", null, true);
+		r = oneway.registerNewRule("0", "");
+
+		Map<String, String> params = new LinkedHashMap<String, String>();
+		params.put("height", "4");
+		params.put("max_track_speed", "20");
+		GeneralRouter router = parent.build(params);
+
+		RouteRegion region = new RouteRegion();
+		for (int i = 0; i < TAGS.length; i++) {
+			region.initRouteEncodingRule(i, TAGS[i][0], TAGS[i][1]);
+		}
+		Random rnd = new Random(7);
+		try {
+			checkRandomRoads(router, region, rnd);
+		} finally {
+			GeneralRouter.USE_COMPILED_RULES = true;
+		}
+	}
+
+	private void checkRandomRoads(GeneralRouter router, RouteRegion region, Random rnd) {
+		for (int k = 0; k < 2000; k++) {
+			int[] types = new int[rnd.nextInt(5)];
+			for (int i = 0; i < types.length; i++) {
+				types[i] = rnd.nextInt(TAGS.length);
+			}
+			for (RouteDataObjectAttribute attr : new RouteDataObjectAttribute[] { RouteDataObjectAttribute.ROAD_SPEED,
+					RouteDataObjectAttribute.ACCESS, RouteDataObjectAttribute.ONEWAY }) {
+				RouteAttributeContext ctx = router.getObjContext(attr);
+				GeneralRouter.USE_COMPILED_RULES = false;
+				float expected = ctx.evaluateFloat(region, types, Float.NaN);
+				GeneralRouter.USE_COMPILED_RULES = true;
+				float actual = ctx.evaluateFloat(region, types, Float.NaN);
+				Assert.assertEquals(attr + " " + Arrays.toString(types), expected, actual, 0);
+			}
+		}
+	}
+}
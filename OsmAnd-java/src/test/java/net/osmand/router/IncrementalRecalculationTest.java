@@ -0,0 +1,73 @@
+package net.osmand.router;
+
+import java.io.IOException;
+import java.util.List;
+
+import net.osmand.binary.BinaryMapIndexReader;
+import net.osmand.data.LatLon;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.Parameterized;
+
+/**
+ * Recalculates routes of {@link RouteTestingTest} from a point off the route using reverse graph of
+ * previous calculation and compares them with cold recalculation.
+ */
+@RunWith(Parameterized.class)
+public class IncrementalRecalculationTest {
+	// about 100 m to the north-east, so recalculation starts off the previous route
+	private static final double OFF_ROUTE_SHIFT = 0.0007;
+
+	private TestEntry te;
+
+	public IncrementalRecalculationTest(String name, TestEntry te) {
+		this.te = te;
+	}
+
+	@Parameterized.Parameters(name = "{index}: {0}")
+	public static Iterable<Object[]> data() throws IOException {
+		// reverse graph is kept only for routes without intermediate points
+		return RouteTestEntries.load(false, true);
+	}
+
+	private RoutingContext buildContext(RoutePlannerFrontEnd fe, BinaryMapIndexReader[] readers, boolean incremental) {
+		RoutingConfiguration config = RouteTestEntries.buildConfiguration(te);
+		config.incrementalRecalculation = incremental;
+		RoutingContext ctx = RouteTestEntries.buildContext(fe, config, readers);
+		ctx.calculationProgress = new RouteCalculationProgress();
+		return ctx;
+	}
+
+	@Test
+	public void testRecalculationFromFrontier() throws Exception {
+		BinaryMapIndexReader[] readers = RouteTestEntries.openReaders(te);
+		try {
+			RoutePlannerFrontEnd fe = new RoutePlannerFrontEnd();
+			RoutingContext ctx = buildContext(fe, readers, true);
+			List<RouteSegmentResult> route = fe.searchRoute(ctx, te.getStartPoint(), te.getEndPoint(), null);
+			Assert.assertNotNull(route);
+			Assert.assertNotNull(ctx.reverseSearchFrontier);
+			Assert.assertEquals(0, ctx.calculationProgress.frontierRecalculations);
+			LatLon middle = route.get(route.size() / 2).getStartPoint();
+			LatLon offRoute = new LatLon(middle.getLatitude() + OFF_ROUTE_SHIFT, middle.getLongitude() + OFF_ROUTE_SHIFT);
+
+			List<RouteSegmentResult> incremental = fe.searchRoute(ctx, offRoute, te.getEndPoint(), null);
+			Assert.assertEquals("Route should be recalculated from kept reverse frontier", 1,
+					ctx.calculationProgress.frontierRecalculations);
+			RoutingContext coldCtx = buildContext(fe, readers, false);
+			List<RouteSegmentResult> cold = fe.searchRoute(coldCtx, offRoute, te.getEndPoint(), null);
+			Assert.assertEquals(0, coldCtx.calculationProgress.frontierRecalculations);
+
+			Assert.assertNotNull(incremental);
+			Assert.assertNotNull(cold);
+			float expectedTime = RouteTestEntries.routeTime(cold);
+			Assert.assertEquals(expectedTime, RouteTestEntries.routeTime(incremental), Math.max(expectedTime * 0.01f, 1f));
+			Assert.assertEquals(cold.get(cold.size() - 1).getObject().getId(),
+					incremental.get(incremental.size() - 1).getObject().getId());
+		} finally {
+			RouteTestEntries.closeReaders(readers);
+		}
+	}
+}
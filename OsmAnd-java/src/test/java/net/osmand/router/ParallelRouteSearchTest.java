@@ -0,0 +1,55 @@
+package net.osmand.router;
+
+import java.io.IOException;
+import java.util.List;
+
+import net.osmand.binary.BinaryMapIndexReader;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.Parameterized;
+
+/**
+ * Runs routing tests of {@link RouteTestingTest} with sequential and parallel bidirectional search and compares results.
+ */
+@RunWith(Parameterized.class)
+public class ParallelRouteSearchTest {
+	private TestEntry te;
+
+	public ParallelRouteSearchTest(String name, TestEntry te) {
+		this.te = te;
+	}
+
+	@Parameterized.Parameters(name = "{index}: {0}")
+	public static Iterable<Object[]> data() throws IOException {
+		return RouteTestEntries.load(true, true);
+	}
+
+	private List<RouteSegmentResult> searchRoute(boolean parallel) throws Exception {
+		BinaryMapIndexReader[] readers = RouteTestEntries.openReaders(te);
+		try {
+			RoutePlannerFrontEnd fe = new RoutePlannerFrontEnd();
+			RoutingConfiguration config = RouteTestEntries.buildConfiguration(te);
+			config.parallelBidirectionalSearch = parallel;
+			RoutingContext ctx = RouteTestEntries.buildContext(fe, config, readers);
+			return fe.searchRoute(ctx, te.getStartPoint(), te.getEndPoint(), te.getTransitPoint());
+		} finally {
+			RouteTestEntries.closeReaders(readers);
+		}
+	}
+
+	@Test
+	public void testParallelSearch() throws Exception {
+		List<RouteSegmentResult> sequential = searchRoute(false);
+		Assert.assertNotNull(sequential);
+		float expectedTime = RouteTestEntries.routeTime(sequential);
+		for (int k = 0; k < 3; k++) {
+			List<RouteSegmentResult> parallel = searchRoute(true);
+			Assert.assertNotNull(parallel);
+			// directions could meet at another point, but route should be as fast as sequential one
+			Assert.assertEquals(expectedTime, RouteTestEntries.routeTime(parallel), Math.max(expectedTime * 0.01f, 1f));
+			RouteTestEntries.checkExpectedSegments(te, parallel);
+		}
+	}
+}
@@ -0,0 +1,57 @@
+package net.osmand.router;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+import net.osmand.binary.BinaryMapRouteReaderAdapter.RouteRegion;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class RouteEvalCacheTest {
+
+	private static float value(int attr, int regionInd, int[] types, boolean extra) {
+		float v = attr * 1000 + regionInd * 100 + (extra ? 50 : 0);
+		for (int t : types) {
+			v += t;
+		}
+		return v;
+	}
+
+	@Test
+	public void testConcurrentAccess() throws Exception {
+		final RouteEvalCache cache = new RouteEvalCache();
+		final RouteRegion[] regions = { new RouteRegion(), new RouteRegion() };
+		final AtomicInteger errors = new AtomicInteger();
+		Thread[] threads = new Thread[4];
+		for (int t = 0; t < threads.length; t++) {
+			threads[t] = new Thread(new Runnable() {
+				@Override
+				public void run() {
+					for (int k = 0; k < 20000; k++) {
+						int attr = k % 3;
+						int reg = (k / 3) % 2;
+						int[] types = { k % 500, (k % 500) + 1 };
+						boolean extra = k % 7 == 0;
+						float v = cache.get(attr, regions[reg], types, extra);
+						float expected = value(attr, reg, types, extra);
+						if (Float.isNaN(v)) {
+							cache.put(attr, regions[reg], types, extra, expected);
+						} else if (v != expected) {
+							errors.incrementAndGet();
+						}
+					}
+				}
+			});
+			threads[t].start();
+		}
+		for (Thread t : threads) {
+			t.join();
+		}
+		Assert.assertEquals(0, errors.get());
+		Assert.assertEquals(80000, cache.getHits() + cache.getMisses());
+		Assert.assertTrue(cache.getHits() > 0);
+		int[] types = { 1, 2 };
+		Assert.assertEquals(value(1, 0, types, false), cache.get(1, regions[0], types, false), 0);
+		Assert.assertTrue(Float.isNaN(cache.get(1, regions[0], new int[] { 1, 2, 3 }, false)));
+	}
+}
@@ -0,0 +1,118 @@
+package net.osmand.router;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.List;
+
+import net.osmand.binary.BinaryMapIndexReader;
+import net.osmand.data.LatLon;
+import net.osmand.router.BinaryRoutePlanner.FinalRouteSegment;
+import net.osmand.router.BinaryRoutePlanner.RouteSegmentPoint;
+import net.osmand.router.RouteMatrixCalculator.RouteMatrix;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.Parameterized;
+
+/**
+ * Checks one-to-many search and route matrix against point-to-point search (routes of {@link RouteTestingTest}).
+ */
+@RunWith(Parameterized.class)
+public class RouteOneToManyTest {
+	private TestEntry te;
+
+	public RouteOneToManyTest(String name, TestEntry te) {
+		this.te = te;
+	}
+
+	@Parameterized.Parameters(name = "{index}: {0}")
+	public static Iterable<Object[]> data() throws IOException {
+		// one-to-many search uses only main map and doesn't support transit points
+		return RouteTestEntries.load(false, false);
+	}
+
+	private static RouteSegmentPoint findPoint(RoutePlannerFrontEnd fe, RoutingContext ctx, LatLon l) throws IOException {
+		RouteSegmentPoint p = fe.findRouteSegment(l.getLatitude(), l.getLongitude(), ctx, null);
+		Assert.assertNotNull(p);
+		return p;
+	}
+
+	private static FinalRouteSegment searchRoute(BinaryRoutePlanner planner, RoutePlannerFrontEnd fe, RoutingContext ctx,
+			LatLon start, LatLon end) throws Exception {
+		RouteSegmentPoint s = findPoint(fe, ctx, start);
+		RouteSegmentPoint e = findPoint(fe, ctx, end);
+		ctx.initStartAndTargetPoints(s, e);
+		return planner.searchRouteInternal(ctx, s, e, null);
+	}
+
+	@Test
+	public void testPlannerReuse() throws Exception {
+		BinaryMapIndexReader[] readers = RouteTestEntries.openReaders(te);
+		try {
+			RoutePlannerFrontEnd fe = new RoutePlannerFrontEnd();
+			RoutingConfiguration config = RouteTestEntries.buildConfiguration(te);
+			LatLon start = te.getStartPoint();
+			LatLon end = te.getEndPoint();
+
+			FinalRouteSegment expected = searchRoute(new BinaryRoutePlanner(), fe,
+					fe.buildRoutingContext(config, null, readers), start, end);
+			Assert.assertNotNull(expected);
+
+			BinaryRoutePlanner planner = new BinaryRoutePlanner();
+			RoutingContext ctx = fe.buildRoutingContext(config, null, readers);
+			RouteSegmentPoint s = findPoint(fe, ctx, start);
+			RouteSegmentPoint[] targets = { findPoint(fe, ctx, end) };
+			ctx.startX = ctx.targetX = s.preciseX;
+			ctx.startY = ctx.targetY = s.preciseY;
+			FinalRouteSegment[] res = planner.searchRouteOneToMany(ctx, s, targets,
+					RouteMatrixCalculator.DEFAULT_DETOUR_FACTOR);
+			Assert.assertNotNull(res[0]);
+
+			FinalRouteSegment afterOneToMany = searchRoute(planner, fe, fe.buildRoutingContext(config, null, readers),
+					start, end);
+			Assert.assertNotNull(afterOneToMany);
+			Assert.assertEquals(expected.distanceFromStart, afterOneToMany.distanceFromStart, 0);
+			Assert.assertEquals(expected.getRoad().getId(), afterOneToMany.getRoad().getId());
+		} finally {
+			RouteTestEntries.closeReaders(readers);
+		}
+	}
+
+	@Test
+	public void testMatrixMatchesPointToPointSearch() throws Exception {
+		BinaryMapIndexReader[] readers = RouteTestEntries.openReaders(te);
+		try {
+			RoutePlannerFrontEnd fe = new RoutePlannerFrontEnd();
+			RoutingConfiguration config = RouteTestEntries.buildConfiguration(te);
+			LatLon start = te.getStartPoint();
+			LatLon end = te.getEndPoint();
+			// there are no roads around the last point, so its row and column are not reachable
+			List<LatLon> points = Arrays.asList(start, end, new LatLon(0, 0));
+			RouteMatrix matrix = new RouteMatrixCalculator(config, readers).calculate(points, 2);
+
+			LatLon[][] pairs = { { start, end }, { end, start } };
+			int[][] cells = { { 0, 1 }, { 1, 0 } };
+			for (int k = 0; k < pairs.length; k++) {
+				FinalRouteSegment expected = searchRoute(new BinaryRoutePlanner(), fe,
+						fe.buildRoutingContext(config, null, readers), pairs[k][0], pairs[k][1]);
+				float cell = matrix.time[cells[k][0]][cells[k][1]];
+				if (expected == null) {
+					Assert.assertTrue(Float.isInfinite(cell));
+					continue;
+				}
+				// matrix is calculated without heuristic, so it can't be slower than A* route
+				Assert.assertEquals(expected.distanceFromStart, cell, Math.max(expected.distanceFromStart * 0.01f, 1f));
+				Assert.assertTrue(matrix.distance[cells[k][0]][cells[k][1]] > 0);
+			}
+			Assert.assertEquals(0, matrix.time[0][0], 0);
+			Assert.assertEquals(0, matrix.time[1][1], 0);
+			for (int i = 0; i < points.size(); i++) {
+				Assert.assertTrue(Float.isInfinite(matrix.time[i][2]) || i == 2);
+				Assert.assertTrue(Float.isInfinite(matrix.time[2][i]));
+			}
+		} finally {
+			RouteTestEntries.closeReaders(readers);
+		}
+	}
+}
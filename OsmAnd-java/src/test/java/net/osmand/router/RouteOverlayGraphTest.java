@@ -0,0 +1,183 @@
+package net.osmand.router;
+
+import java.io.File;
+import java.io.RandomAccessFile;
+import java.util.Arrays;
+import java.util.Random;
+
+import net.osmand.binary.BinaryMapIndexReader;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class RouteOverlayGraphTest {
+
+	private static final int SIZE = 20;
+
+	private static RouteOverlayGraph buildGridGraph(Random rnd, float[][] w, int step, long[] dates) {
+		int n = SIZE * SIZE;
+		int[] x = new int[n];
+		int[] y = new int[n];
+		for (float[] row : w) {
+			Arrays.fill(row, Float.POSITIVE_INFINITY);
+		}
+		RouteOverlayBuilder builder = new RouteOverlayBuilder(null, "car", true);
+		for (int i = 0; i < n; i++) {
+			x[i] = (i % SIZE) * step;
+			y[i] = (i / SIZE) * step;
+		}
+		builder.initNodes(x, y);
+		for (int i = 0; i < n; i++) {
+			int[] neighbours = { i % SIZE < SIZE - 1 ? i + 1 : -1, i / SIZE < SIZE - 1 ? i + SIZE : -1 };
+			for (int j : neighbours) {
+				if (j < 0) {
+					continue;
+				}
+				float t = 1 + rnd.nextInt(20);
+				// some roads are one way
+				int oneway = rnd.nextInt(6);
+				if (oneway != 1) {
+					builder.addEdge(i, j, t, t * 10, -1);
+					w[i][j] = t;
+				}
+				if (oneway != 2) {
+					builder.addEdge(j, i, t, t * 10, -1);
+					w[j][i] = t;
+				}
+			}
+		}
+		return builder.contractGraph(dates);
+	}
+
+	@Test
+	public void testOverlayRoutesAreShortest() throws Exception {
+		Random rnd = new Random(3);
+		int n = SIZE * SIZE;
+		float[][] w = new float[n][n];
+		RouteOverlayGraph graph = buildGridGraph(rnd, w, 1000, new long[] { 1 });
+		File tmp = File.createTempFile("route", RouteOverlayGraph.OVERLAY_EXT);
+		try {
+			graph.writeToFile(tmp);
+			graph = RouteOverlayGraph.readFromFile(tmp);
+		} finally {
+			tmp.delete();
+		}
+		Assert.assertTrue(graph.isUpToDate(new long[] { 1 }));
+		for (int q = 0; q < 200; q++) {
+			int s = rnd.nextInt(n);
+			int e = rnd.nextInt(n);
+			float expected = dijkstra(w, s, e);
+			RouteOverlayGraph.OverlayRoute route = new RouteOverlayGraph.OverlayRoute();
+			boolean found = graph.findRoute(s, e, route);
+			Assert.assertEquals(expected != Float.POSITIVE_INFINITY, found);
+			if (!found) {
+				continue;
+			}
+			Assert.assertEquals(expected, route.time, 1e-3);
+			Assert.assertEquals(expected * 10, route.distance, 1e-2);
+			// unpacked route goes along original edges
+			float time = 0;
+			int prev = s;
+			for (int i = 1; i < route.pointsX.size(); i++) {
+				int node = route.pointsY.get(i) / 1000 * SIZE + route.pointsX.get(i) / 1000;
+				time += w[prev][node];
+				prev = node;
+			}
+			Assert.assertEquals(e, prev);
+			Assert.assertEquals(expected, time, 1e-3);
+		}
+	}
+
+	@Test
+	public void testNearestNode() {
+		Random rnd = new Random(5);
+		int n = SIZE * SIZE;
+		// grid step is about 3 cells of nearest node index
+		RouteOverlayGraph graph = buildGridGraph(rnd, new float[n][n], 400000, new long[] { 1 });
+		int extent = SIZE * 400000;
+		for (int q = 0; q < 2000; q++) {
+			int px = rnd.nextInt(3 * extent) - extent / 2;
+			int py = rnd.nextInt(3 * extent) - extent / 2;
+			px = Math.max(px, 0);
+			py = Math.max(py, 0);
+			int expected = -1;
+			double minDist = Double.POSITIVE_INFINITY;
+			for (int i = 0; i < n; i++) {
+				if (graph.fwdStart[i] == graph.fwdStart[i + 1] && graph.bwdStart[i] == graph.bwdStart[i + 1]) {
+					continue;
+				}
+				double dx = graph.getNodeX(i) - (double) px;
+				double dy = graph.getNodeY(i) - (double) py;
+				if (dx * dx + dy * dy < minDist) {
+					minDist = dx * dx + dy * dy;
+					expected = i;
+				}
+			}
+			int node = graph.findNearestNode(px, py);
+			double dx = graph.getNodeX(node) - (double) px;
+			double dy = graph.getNodeY(node) - (double) py;
+			Assert.assertEquals("Query " + px + " " + py + " expected node " + expected, minDist, dx * dx + dy * dy, 0);
+		}
+	}
+
+	@Test
+	public void testLoadOverlay() throws Exception {
+		Random rnd = new Random(7);
+		int n = SIZE * SIZE;
+		File dir = File.createTempFile("overlay", "");
+		dir.delete();
+		dir.mkdirs();
+		File obf = new File(dir, "Test.obf");
+		File car = RouteOverlayGraph.getOverlayFile(obf, "car");
+		File bicycle = RouteOverlayGraph.getOverlayFile(obf, "bicycle");
+		RandomAccessFile raf = new RandomAccessFile(obf, "rw");
+		try {
+			BinaryMapIndexReader reader = new BinaryMapIndexReader(raf, obf, false);
+			Assert.assertNull(RouteOverlayGraph.loadOverlay(reader, "car"));
+			// obf date of not initialized reader is 0
+			buildGridGraph(rnd, new float[n][n], 1000, new long[] { reader.getDateCreated() }).writeToFile(car);
+			RouteOverlayGraph graph = RouteOverlayGraph.loadOverlay(reader, "car");
+			Assert.assertNotNull(graph);
+			Assert.assertSame(graph, RouteOverlayGraph.loadOverlay(reader, "car"));
+			// overlay of other profile
+			buildGridGraph(rnd, new float[n][n], 1000, new long[] { reader.getDateCreated() }).writeToFile(bicycle);
+			Assert.assertNull(RouteOverlayGraph.loadOverlay(reader, "bicycle"));
+			// overlay of other obf version
+			buildGridGraph(rnd, new float[n][n], 1000, new long[] { reader.getDateCreated() + 1 }).writeToFile(car);
+			car.setLastModified(car.lastModified() + 2000);
+			Assert.assertNull(RouteOverlayGraph.loadOverlay(reader, "car"));
+		} finally {
+			raf.close();
+			car.delete();
+			bicycle.delete();
+			obf.delete();
+			dir.delete();
+		}
+	}
+
+	private static float dijkstra(float[][] w, int s, int e) {
+		int n = w.length;
+		float[] d = new float[n];
+		boolean[] done = new boolean[n];
+		Arrays.fill(d, Float.POSITIVE_INFINITY);
+		d[s] = 0;
+		for (int k = 0; k < n; k++) {
+			int u = -1;
+			for (int i = 0; i < n; i++) {
+				if (!done[i] && (u < 0 || d[i] < d[u])) {
+					u = i;
+				}
+			}
+			if (d[u] == Float.POSITIVE_INFINITY) {
+				break;
+			}
+			done[u] = true;
+			for (int v = 0; v < n; v++) {
+				if (d[u] + w[u][v] < d[v]) {
+					d[v] = d[u] + w[u][v];
+				}
+			}
+		}
+		return d[e];
+	}
+}
@@ -0,0 +1,89 @@
+package net.osmand.router;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import net.osmand.router.BinaryRoutePlanner.RouteSegment;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class RouteSegmentQueueTest {
+
+	private static RouteSegment segment(float distanceFromStart, float distanceToEnd) {
+		RouteSegment s = new RouteSegment(null, 0);
+		s.distanceFromStart = distanceFromStart;
+		s.distanceToEnd = distanceToEnd;
+		return s;
+	}
+
+	@Test
+	public void testPollOrder() {
+		Random rnd = new Random(13);
+		RouteSegmentQueue queue = new RouteSegmentQueue(1.5f, 4);
+		float[] expected = new float[5000];
+		for (int i = 0; i < expected.length; i++) {
+			RouteSegment s = segment(rnd.nextFloat() * 1000, rnd.nextFloat() * 1000);
+			expected[i] = queue.priority(s);
+			queue.add(s);
+		}
+		Arrays.sort(expected);
+		Assert.assertEquals(expected.length, queue.size());
+		for (int i = 0; i < expected.length; i++) {
+			Assert.assertEquals(expected[i], queue.peekPriority(), 0);
+			RouteSegment s = queue.poll();
+			Assert.assertEquals(expected[i], queue.priority(s), 0);
+		}
+		Assert.assertTrue(queue.isEmpty());
+		Assert.assertNull(queue.poll());
+	}
+
+	@Test
+	public void testDecreaseKey() {
+		RouteSegmentQueue queue = new RouteSegmentQueue(1);
+		RouteSegment worse = segment(50, 10);
+		RouteSegment better = segment(20, 10);
+		RouteSegment other = segment(40, 0);
+		Assert.assertTrue(queue.add(worse, 7));
+		Assert.assertTrue(queue.add(other, 8));
+		Assert.assertTrue(queue.add(better, 7));
+		Assert.assertFalse(queue.add(segment(35, 10), 7));
+		Assert.assertEquals(2, queue.size());
+		Assert.assertEquals(1, queue.getDecreasedKeys());
+		Assert.assertEquals(1, queue.getSkippedDuplicates());
+		Assert.assertSame(better, queue.poll());
+		Assert.assertSame(other, queue.poll());
+		// key could be added again after segment was polled
+		Assert.assertTrue(queue.add(worse, 7));
+		Assert.assertSame(worse, queue.poll());
+	}
+
+	@Test
+	public void testRandomKeys() {
+		Random rnd = new Random(5);
+		RouteSegmentQueue queue = new RouteSegmentQueue(1);
+		float[] best = new float[300];
+		Arrays.fill(best, Float.MAX_VALUE);
+		for (int i = 0; i < 20000; i++) {
+			int key = rnd.nextInt(best.length);
+			RouteSegment s = segment(rnd.nextFloat() * 1000, 0);
+			queue.add(s, key);
+			best[key] = Math.min(best[key], queue.priority(s));
+		}
+		float prev = -1;
+		int polled = 0;
+		while (!queue.isEmpty()) {
+			float p = queue.priority(queue.poll());
+			Assert.assertTrue(p >= prev);
+			prev = p;
+			polled++;
+		}
+		int keys = 0;
+		for (float b : best) {
+			if (b != Float.MAX_VALUE) {
+				keys++;
+			}
+		}
+		Assert.assertEquals(keys, polled);
+	}
+}
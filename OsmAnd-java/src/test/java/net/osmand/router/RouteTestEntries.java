@@ -0,0 +1,104 @@
+package net.osmand.router;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.RandomAccessFile;
+import java.io.Reader;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.Set;
+import java.util.TreeSet;
+
+import net.osmand.binary.BinaryMapIndexReader;
+
+import org.junit.Assert;
+
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+
+/**
+ * Routes of test_routing.json with maps and routing context setup shared by routing tests.
+ */
+public class RouteTestEntries {
+
+	private static final String RESOURCES_PATH = "src/test/resources/";
+	private static final String ROUTING_MAP = RESOURCES_PATH + "Routing_test.obf";
+
+	/**
+	 * @param transitPoints include routes with intermediate points
+	 * @param otherMaps include routes which use another map together with Routing_test.obf
+	 * @return parameters of parameterized test (test name and entry)
+	 */
+	public static List<Object[]> load(boolean transitPoints, boolean otherMaps) throws IOException {
+		Reader reader = new InputStreamReader(RouteTestEntries.class.getResourceAsStream("/test_routing.json"));
+		Gson gson = new GsonBuilder().setPrettyPrinting().create();
+		TestEntry[] testEntries = gson.fromJson(reader, TestEntry[].class);
+		reader.close();
+		List<Object[]> entries = new ArrayList<Object[]>();
+		for (TestEntry te : testEntries) {
+			if (te.isIgnore() || (!transitPoints && !te.getTransitPoint().isEmpty())
+					|| (!otherMaps && te.getParams().containsKey("map"))) {
+				continue;
+			}
+			entries.add(new Object[] { te.getTestName(), te });
+		}
+		return entries;
+	}
+
+	public static BinaryMapIndexReader[] openReaders(TestEntry te) throws IOException {
+		if (te.getParams().containsKey("map")) {
+			String fl = RESOURCES_PATH + te.getParams().get("map");
+			return new BinaryMapIndexReader[] { new BinaryMapIndexReader(new RandomAccessFile(fl, "r"), new File(fl)),
+					new BinaryMapIndexReader(new RandomAccessFile(ROUTING_MAP, "r"), new File(ROUTING_MAP)) };
+		}
+		return new BinaryMapIndexReader[] {
+				new BinaryMapIndexReader(new RandomAccessFile(ROUTING_MAP, "r"), new File(ROUTING_MAP)) };
+	}
+
+	public static void closeReaders(BinaryMapIndexReader[] readers) throws IOException {
+		for (BinaryMapIndexReader r : readers) {
+			r.close();
+		}
+	}
+
+	public static RoutingConfiguration buildConfiguration(TestEntry te) {
+		Map<String, String> params = te.getParams();
+		return RoutingConfiguration.getDefault().build(params.containsKey("vehicle") ? params.get("vehicle") : "car",
+				RoutingConfiguration.DEFAULT_MEMORY_LIMIT * 3, params);
+	}
+
+	public static RoutingContext buildContext(RoutePlannerFrontEnd fe, RoutingConfiguration config,
+			BinaryMapIndexReader[] readers) {
+		RoutingContext ctx = fe.buildRoutingContext(config, null, readers,
+				RoutePlannerFrontEnd.RouteCalculationMode.NORMAL);
+		ctx.leftSideNavigation = false;
+		return ctx;
+	}
+
+	public static float routeTime(List<RouteSegmentResult> route) {
+		float time = 0;
+		for (RouteSegmentResult r : route) {
+			time += r.getSegmentTime();
+		}
+		return time;
+	}
+
+	public static void checkExpectedSegments(TestEntry te, List<RouteSegmentResult> route) {
+		Set<Long> reachedSegments = new TreeSet<Long>();
+		for (RouteSegmentResult r : route) {
+			reachedSegments.add(r.getObject().getId() >> (RouteResultPreparation.SHIFT_ID));
+		}
+		for (Entry<Long, String> es : te.getExpectedResults().entrySet()) {
+			if (es.getValue().equals("false")) {
+				Assert.assertTrue("Expected segment " + (es.getKey()) + " was wrongly reached in route segments "
+						+ reachedSegments.toString(), !reachedSegments.contains(es.getKey()));
+			} else {
+				Assert.assertTrue("Expected segment " + (es.getKey()) + " weren't reached in route segments "
+						+ reachedSegments.toString(), reachedSegments.contains(es.getKey()));
+			}
+		}
+	}
+}
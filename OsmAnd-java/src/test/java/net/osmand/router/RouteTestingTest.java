@@ -1,30 +1,16 @@
 package net.osmand.router;
 
-import java.io.File;
 import java.io.IOException;
-import java.io.InputStreamReader;
-import java.io.RandomAccessFile;
-import java.io.Reader;
-import java.util.ArrayList;
-import java.util.Iterator;
 import java.util.List;
-import java.util.Map;
-import java.util.Map.Entry;
-import java.util.Set;
-import java.util.TreeSet;
 
 import net.osmand.binary.BinaryMapIndexReader;
 
-import net.osmand.data.LatLon;
 import org.junit.Assert;
 import org.junit.BeforeClass;
 import org.junit.Test;
 import org.junit.runner.RunWith;
 import org.junit.runners.Parameterized;
 
-import com.google.gson.Gson;
-import com.google.gson.GsonBuilder;
-
 @RunWith(Parameterized.class)
 public class RouteTestingTest {
 	private TestEntry te;
@@ -41,48 +27,16 @@ public class RouteTestingTest {
 
 	@Parameterized.Parameters(name = "{index}: {0}")
 	public static Iterable<Object[]> data() throws IOException {
-		String fileName = "/test_routing.json";
-		Reader reader = new InputStreamReader(RouteTestingTest.class.getResourceAsStream(fileName));
-		Gson gson = new GsonBuilder().setPrettyPrinting().create();
-		TestEntry[] testEntries = gson.fromJson(reader, TestEntry[].class);
-		ArrayList<Object[]> arrayList = new ArrayList<>();
-		for (TestEntry te : testEntries) {
-			if (te.isIgnore()) {
-				continue;
-			}
-			arrayList.add(new Object[]{te.getTestName(), te});
-		}
-		reader.close();
-		return arrayList;
-
+		return RouteTestEntries.load(true, true);
 	}
 
 	@Test
 	public void testRouting() throws Exception {
-		String fl = "src/test/resources/Routing_test.obf";
-		RandomAccessFile raf = new RandomAccessFile(fl, "r");
 		RoutePlannerFrontEnd fe = new RoutePlannerFrontEnd();
-
-		BinaryMapIndexReader[] binaryMapIndexReaders;// = { new BinaryMapIndexReader(raf, new File(fl)) };
-		RoutingConfiguration.Builder builder = RoutingConfiguration.getDefault();
-		Map<String, String> params = te.getParams();
-		if (params.containsKey("map")) {
-			String fl1 = "src/test/resources/" + params.get("map");
-			RandomAccessFile raf1 = new RandomAccessFile(fl1, "r");
-			binaryMapIndexReaders = new BinaryMapIndexReader[]{
-					new BinaryMapIndexReader(raf1, new File(fl1)),
-					new BinaryMapIndexReader(raf, new File(fl))
-			};
-		} else {
-			binaryMapIndexReaders = new BinaryMapIndexReader[]{new BinaryMapIndexReader(raf, new File(fl))};
-		}
-		RoutingConfiguration config = builder.build(params.containsKey("vehicle") ? params.get("vehicle") : "car",
-				RoutingConfiguration.DEFAULT_MEMORY_LIMIT * 3, params);
-		RoutingContext ctx = fe.buildRoutingContext(config, null, binaryMapIndexReaders,
-				RoutePlannerFrontEnd.RouteCalculationMode.NORMAL);
-		ctx.leftSideNavigation = false;
+		BinaryMapIndexReader[] binaryMapIndexReaders = RouteTestEntries.openReaders(te);
+		RoutingContext ctx = RouteTestEntries.buildContext(fe, RouteTestEntries.buildConfiguration(te),
+				binaryMapIndexReaders);
 		List<RouteSegmentResult> routeSegments = fe.searchRoute(ctx, te.getStartPoint(), te.getEndPoint(), te.getTransitPoint());
-		Set<Long> reachedSegments = new TreeSet<Long>();
 		Assert.assertNotNull(routeSegments);
 		int prevSegment = -1;
 		for (int i = 0; i <= routeSegments.size(); i++) {
@@ -94,23 +48,8 @@ public class RouteTestingTest {
 				}
 				prevSegment = i;
 			}
-			if (i < routeSegments.size()) {
-				reachedSegments.add(routeSegments.get(i).getObject().getId() >> (RouteResultPreparation.SHIFT_ID));
-			}
 		}
-		Map<Long, String> expectedResults = te.getExpectedResults();
-		Iterator<Entry<Long, String>> it = expectedResults.entrySet().iterator();
-		while (it.hasNext()) {
-			Entry<Long, String> es = it.next();
-			if (es.getValue().equals("false")) {
-				Assert.assertTrue("Expected segment " + (es.getKey()) + " was wrongly reached in route segments "
-						+ reachedSegments.toString(), !reachedSegments.contains(es.getKey()));
-			} else {
-				Assert.assertTrue("Expected segment " + (es.getKey()) + " weren't reached in route segments "
-						+ reachedSegments.toString(), reachedSegments.contains(es.getKey()));
-			}
-		}
-
+		RouteTestEntries.checkExpectedSegments(te, routeSegments);
 	}
 
 }
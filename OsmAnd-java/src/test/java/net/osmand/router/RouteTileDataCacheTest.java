@@ -0,0 +1,148 @@
+package net.osmand.router;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import net.osmand.binary.BinaryMapIndexReader;
+import net.osmand.binary.BinaryMapRouteReaderAdapter.RouteRegion;
+import net.osmand.binary.BinaryMapRouteReaderAdapter.RouteSubregion;
+import net.osmand.binary.RouteDataObject;
+import net.osmand.router.RoutePlannerFrontEnd.RouteCalculationMode;
+import net.osmand.router.RoutingContext.RoutingSubregionTile;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+public class RouteTileDataCacheTest {
+
+	private static final int OBJECTS_PER_TILE = 10;
+
+	private File file;
+	private RouteRegion region;
+	private List<RouteSubregion> subregions;
+	private AtomicInteger loads;
+	private List<BinaryMapIndexReader> readers;
+
+	@Before
+	public void setUp() throws IOException {
+		file = File.createTempFile("test", ".obf");
+		region = new RouteRegion();
+		subregions = new ArrayList<RouteSubregion>();
+		for (int i = 0; i < 5; i++) {
+			RouteSubregion s = new RouteSubregion(region);
+			s.filePointer = 100 * (i + 1);
+			subregions.add(s);
+		}
+		loads = new AtomicInteger();
+		readers = new ArrayList<BinaryMapIndexReader>();
+	}
+
+	@After
+	public void tearDown() throws IOException {
+		for (BinaryMapIndexReader r : readers) {
+			r.close();
+		}
+		file.delete();
+	}
+
+	// reader of the test file which decodes tiles without reading the file
+	private BinaryMapIndexReader newReader() throws IOException {
+		BinaryMapIndexReader r = new BinaryMapIndexReader(new RandomAccessFile(file, "r"), file, false) {
+			@Override
+			public List<RouteDataObject> loadRouteIndexData(RouteSubregion rs) {
+				loads.incrementAndGet();
+				List<RouteDataObject> res = new ArrayList<RouteDataObject>();
+				for (int i = 0; i < OBJECTS_PER_TILE; i++) {
+					RouteDataObject o = new RouteDataObject(region);
+					o.id = rs.filePointer + i;
+					o.pointsX = new int[2];
+					o.pointsY = new int[2];
+					res.add(o);
+				}
+				return res;
+			}
+		};
+		readers.add(r);
+		return r;
+	}
+
+	private long tileSize() throws IOException {
+		RouteTileDataCache cache = new RouteTileDataCache(0);
+		cache.loadRouteIndexData(newReader(), subregions.get(0));
+		return cache.getSize();
+	}
+
+	@Test
+	public void testSizeBound() throws IOException {
+		long tileSize = tileSize();
+		RouteTileDataCache cache = new RouteTileDataCache(tileSize * 3);
+		BinaryMapIndexReader reader = newReader();
+		for (RouteSubregion s : subregions) {
+			cache.loadRouteIndexData(reader, s);
+			Assert.assertTrue(cache.getSize() <= cache.getMaxSize());
+		}
+		Assert.assertTrue(cache.getLoadedTiles() < subregions.size());
+		Assert.assertEquals(subregions.size() - cache.getLoadedTiles(), cache.getEvictedTiles());
+		Assert.assertEquals(cache.getLoadedTiles() * tileSize, cache.getSize());
+	}
+
+	@Test
+	public void testEvictionOrder() throws IOException {
+		long tileSize = tileSize();
+		// 3 tiles fit, eviction leaves 2 of them
+		RouteTileDataCache cache = new RouteTileDataCache(tileSize * 3);
+		BinaryMapIndexReader reader = newReader();
+		cache.loadRouteIndexData(reader, subregions.get(0));
+		cache.loadRouteIndexData(reader, subregions.get(1));
+		cache.loadRouteIndexData(reader, subregions.get(2));
+		// tile 0 becomes the most recently used
+		cache.loadRouteIndexData(reader, subregions.get(0));
+		loads.set(0);
+		cache.loadRouteIndexData(reader, subregions.get(3));
+		Assert.assertEquals(2, cache.getEvictedTiles());
+		Assert.assertEquals(2, cache.getLoadedTiles());
+
+		// tiles 1 and 2 were least recently used
+		cache.loadRouteIndexData(reader, subregions.get(0));
+		cache.loadRouteIndexData(reader, subregions.get(3));
+		Assert.assertEquals(1, loads.get());
+		cache.loadRouteIndexData(reader, subregions.get(1));
+		Assert.assertEquals(2, loads.get());
+	}
+
+	@Test
+	public void testContextsShareLoadedTiles() throws IOException {
+		RouteTileDataCache cache = new RouteTileDataCache(0);
+		// contexts use different reader instances of the same file
+		RoutingContext[] contexts = new RoutingContext[2];
+		for (int i = 0; i < contexts.length; i++) {
+			BinaryMapIndexReader reader = newReader();
+			contexts[i] = new RoutingContext(null, null, new BinaryMapIndexReader[] { reader },
+					RouteCalculationMode.NORMAL);
+			contexts[i].reverseMap.put(region, reader);
+			contexts[i].tileDataCache = cache;
+		}
+		loads.set(0);
+		List<List<RouteDataObject>> loaded = new ArrayList<List<RouteDataObject>>();
+		for (RoutingContext ctx : contexts) {
+			for (RouteSubregion s : subregions) {
+				List<RouteDataObject> objects = new ArrayList<RouteDataObject>();
+				ctx.loadSubregionTile(new RoutingSubregionTile(new RouteSubregion(s)), false, objects, null);
+				Assert.assertEquals(OBJECTS_PER_TILE, objects.size());
+				loaded.add(objects);
+			}
+		}
+		Assert.assertEquals(subregions.size(), loads.get());
+		Assert.assertEquals(subregions.size(), cache.getMisses());
+		Assert.assertEquals(subregions.size(), cache.getHits());
+		for (int i = 0; i < subregions.size(); i++) {
+			Assert.assertSame(loaded.get(i).get(0), loaded.get(i + subregions.size()).get(0));
+		}
+	}
+}
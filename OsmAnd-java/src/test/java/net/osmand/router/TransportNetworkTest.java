@@ -0,0 +1,99 @@
+package net.osmand.router;
+
+import gnu.trove.list.array.TIntArrayList;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+
+import net.osmand.binary.BinaryMapIndexReader;
+import net.osmand.data.LatLon;
+import net.osmand.data.TransportRoute;
+import net.osmand.data.TransportSchedule;
+import net.osmand.data.TransportStop;
+import net.osmand.osm.edit.Node;
+import net.osmand.osm.edit.Way;
+import net.osmand.router.TransportRoutePlanner.TransportRouteSegment;
+import net.osmand.util.MapUtils;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class TransportNetworkTest {
+
+	private static TransportStop stop(long id, String name, double lat, double lon) {
+		TransportStop s = new TransportStop();
+		s.setId(id);
+		s.setName(name);
+		s.setLocation(BinaryMapIndexReader.TRANSPORT_STOP_ZOOM, (int) MapUtils.getTileNumberX(24, lon),
+				(int) MapUtils.getTileNumberY(24, lat));
+		return s;
+	}
+
+	private static TransportNetwork buildNetwork() {
+		List<TransportStop> stops = new ArrayList<TransportStop>();
+		stops.add(stop(1, "A", 52.37, 4.89));
+		stops.add(stop(2, "B", 52.38, 4.90));
+		stops.add(stop(3, "C", 52.50, 5.10));
+		TransportRoute route = new TransportRoute();
+		route.setId(100L);
+		route.setRef("5");
+		route.setType("bus");
+		route.setName("nl", "Lijn 5");
+		route.setForwardStops(stops);
+		Way w = new Way(-1);
+		w.addNode(new Node(52.37, 4.89, -1));
+		w.addNode(new Node(52.50, 5.10, -1));
+		List<Way> ways = new ArrayList<Way>();
+		ways.add(w);
+		route.setForwardWays(ways);
+		route.setSchedule(new TransportSchedule(new TIntArrayList(new int[] { 4320, 60 }),
+				new TIntArrayList(new int[] { 12, 30 }), new TIntArrayList()));
+		for (TransportStop s : stops) {
+			s.addRoute(route);
+		}
+		return new TransportNetwork(new String[] { "test.obf" }, new long[] { 1 }, new long[] { 2 },
+				stops.toArray(new TransportStop[3]), new TransportRoute[] { route }, new int[] { 0, 1, 2, 3 },
+				new int[] { 0, 0, 0 }, new int[] { 0, 1, 2 });
+	}
+
+	private static void checkNetwork(TransportNetwork network) {
+		Assert.assertEquals(3, network.getStopsCount());
+		TransportStop b = network.getStop(1);
+		Assert.assertEquals("B", b.getName());
+		TransportRoute route = b.getRoutes().get(0);
+		Assert.assertSame(b, route.getForwardStops().get(1));
+		Assert.assertEquals("Lijn 5", route.getName("nl"));
+		Assert.assertEquals(2, route.getForwardWays().get(0).getNodes().size());
+		Assert.assertEquals(30, route.getSchedule().avgStopIntervals.get(1));
+
+		int x = MapUtils.get31TileNumberX(4.895);
+		int y = MapUtils.get31TileNumberY(52.375);
+		int d = 1 << 20;
+		TIntArrayList res = network.searchStops(x - d, y - d, x + d, y + d, new TIntArrayList());
+		Assert.assertEquals(2, res.size());
+		Assert.assertEquals(0, network.searchStops(x + d, y + d, x + 2 * d, y + 2 * d, new TIntArrayList()).size());
+	}
+
+	@Test
+	public void testNetwork() throws Exception {
+		TransportNetwork network = buildNetwork();
+		checkNetwork(network);
+		TransportRoutingContext ctx = new TransportRoutingContext(new TransportRoutingConfiguration(null, null), null,
+				network);
+		List<TransportRouteSegment> segments = ctx.getTransportStops(new LatLon(52.375, 4.895));
+		Assert.assertEquals(2, segments.size());
+	}
+
+	@Test
+	public void testReadWrite() throws Exception {
+		File f = File.createTempFile("transport", ".network");
+		try {
+			buildNetwork().writeToFile(f);
+			TransportNetwork read = TransportNetwork.readFromFile(f);
+			checkNetwork(read);
+		} finally {
+			f.delete();
+		}
+	}
+}
@@ -0,0 +1,192 @@
+package net.osmand.router;
+
+import gnu.trove.list.array.TIntArrayList;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import net.osmand.binary.BinaryMapIndexReader;
+import net.osmand.data.LatLon;
+import net.osmand.data.TransportRoute;
+import net.osmand.data.TransportStop;
+import net.osmand.router.GeneralRouter.GeneralRouterProfile;
+import net.osmand.router.TransportRoutePlanner.TransportRouteSegment;
+import net.osmand.util.MapUtils;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class TransportRaptorPlannerTest {
+
+	private static final LatLon START = new LatLon(52.0, 4.0);
+	private static final LatLon END = new LatLon(52.0, 4.3);
+
+	private static long ids = 1;
+
+	private static TransportRoute route(long id, List<TransportStop> allStops, double... latLons) {
+		TransportRoute r = new TransportRoute();
+		r.setId(id);
+		r.setRef(String.valueOf(id));
+		r.setType("test_route");
+		List<TransportStop> stops = new ArrayList<TransportStop>();
+		for (int i = 0; i < latLons.length; i += 2) {
+			TransportStop s = new TransportStop();
+			s.setId(ids++);
+			s.setName("s" + s.getId());
+			s.setLocation(BinaryMapIndexReader.TRANSPORT_STOP_ZOOM, (int) MapUtils.getTileNumberX(24, latLons[i + 1]),
+					(int) MapUtils.getTileNumberY(24, latLons[i]));
+			s.addRoute(r);
+			stops.add(s);
+		}
+		r.setForwardStops(stops);
+		allStops.addAll(stops);
+		return r;
+	}
+
+	private static TransportNetwork buildNetwork() {
+		List<TransportStop> stops = new ArrayList<TransportStop>();
+		List<TransportRoute> routes = new ArrayList<TransportRoute>();
+		// fast direct route with long walk to the first stop
+		routes.add(route(10, stops, 52.0, 4.012, 52.0, 4.299));
+		// slow direct route (detour) with short walk
+		routes.add(route(20, stops, 52.0, 4.0005, 52.1, 4.15, 52.0, 4.2985));
+		// two routes with change
+		routes.add(route(30, stops, 52.0, 4.002, 52.0, 4.15));
+		routes.add(route(40, stops, 52.001, 4.1505, 52.0, 4.298));
+		TransportRoute[] routesArray = routes.toArray(new TransportRoute[routes.size()]);
+		TransportStop[] stopsArray = stops.toArray(new TransportStop[stops.size()]);
+		// network expects stops sorted by tile
+		Arrays.sort(stopsArray, new Comparator<TransportStop>() {
+			@Override
+			public int compare(TransportStop o1, TransportStop o2) {
+				int shift = 31 - TransportNetwork.GRID_ZOOM;
+				int c = Integer.compare(o1.x31 >>> shift, o2.x31 >>> shift);
+				return c != 0 ? c : Integer.compare(o1.y31 >>> shift, o2.y31 >>> shift);
+			}
+		});
+		int[] start = new int[stopsArray.length + 1];
+		TIntArrayList stopRoutes = new TIntArrayList();
+		TIntArrayList stopIndex = new TIntArrayList();
+		for (int i = 0; i < stopsArray.length; i++) {
+			start[i] = stopRoutes.size();
+			TransportRoute r = stopsArray[i].getRoutes().get(0);
+			stopRoutes.add(routes.indexOf(r));
+			stopIndex.add(r.getForwardStops().indexOf(stopsArray[i]));
+		}
+		start[stopsArray.length] = stopRoutes.size();
+		return new TransportNetwork(new String[0], new long[0], new long[0], stopsArray, routesArray, start,
+				stopRoutes.toArray(), stopIndex.toArray());
+	}
+
+	// minimal public transport router without rules, so speed of any route type is default speed
+	private static TransportRoutingConfiguration config(boolean multiCriteria) {
+		Map<String, String> attributes = new LinkedHashMap<String, String>();
+		attributes.put("minDefaultSpeed", "3.6");
+		attributes.put("maxDefaultSpeed", "40");
+		attributes.put("walkRadius", "1500");
+		attributes.put("walkChangeRadius", "300");
+		attributes.put("delayForAlternativesRoutes", "1200");
+		attributes.put("maxNumberOfChanges", "3");
+		attributes.put("useRaptor", "true");
+		attributes.put("multiCriteria", String.valueOf(multiCriteria));
+		GeneralRouter router = new GeneralRouter(GeneralRouterProfile.PUBLIC_TRANSPORT, attributes);
+		TransportRoutingConfiguration cfg = new TransportRoutingConfiguration(router, new HashMap<String, String>());
+		cfg.stopTime = 30;
+		cfg.changeTime = 180;
+		cfg.boardingTime = 180;
+		cfg.useSchedule = false;
+		return cfg;
+	}
+
+	private static List<TransportRouteResult> route(TransportNetwork network, boolean multiCriteria) throws Exception {
+		return route(network, config(multiCriteria));
+	}
+
+	private static List<TransportRouteResult> route(TransportNetwork network, TransportRoutingConfiguration cfg)
+			throws Exception {
+		TransportRoutingContext ctx = new TransportRoutingContext(cfg, null, network);
+		return new TransportRoutePlanner().buildRoute(ctx, START, END);
+	}
+
+	private static boolean hasRoute(List<TransportRouteResult> res, long... routeIds) {
+		for (TransportRouteResult r : res) {
+			if (r.getSegments().size() == routeIds.length) {
+				boolean eq = true;
+				for (int i = 0; i < routeIds.length; i++) {
+					eq &= r.getSegments().get(i).route.getId() == routeIds[i];
+				}
+				if (eq) {
+					return true;
+				}
+			}
+		}
+		return false;
+	}
+
+	@Test
+	public void testRounds() throws Exception {
+		TransportNetwork network = buildNetwork();
+		List<TransportRouteResult> res = route(network, false);
+		Assert.assertFalse(res.isEmpty());
+		Assert.assertFalse(hasRoute(res, 20));
+		for (int i = 1; i < res.size(); i++) {
+			// alternative with more changes is faster
+			Assert.assertTrue(res.get(i).getChanges() < res.get(i - 1).getChanges());
+		}
+	}
+
+	@Test
+	public void testPareto() throws Exception {
+		TransportNetwork network = buildNetwork();
+		List<TransportRouteResult> fastest = route(network, false);
+		List<TransportRouteResult> res = route(network, true);
+		// slower direct route with less walking is pareto optimal
+		Assert.assertTrue(hasRoute(res, 20));
+		Assert.assertTrue(hasRoute(res, 10));
+		Assert.assertEquals(fastest.get(0).getRouteTime(), res.get(0).getRouteTime(), 1e-6);
+		for (TransportRouteResult r : res) {
+			Assert.assertTrue(r.getChanges() <= 1);
+		}
+	}
+
+	@Test
+	public void testLabelsLimit() throws Exception {
+		TransportNetwork network = buildNetwork();
+		List<TransportRouteResult> pareto = route(network, true);
+		for (int maxLabels = 1; maxLabels <= 3; maxLabels++) {
+			TransportRoutingConfiguration cfg = config(true);
+			cfg.maxLabelsPerStop = maxLabels;
+			List<TransportRouteResult> res = route(network, cfg);
+			// fastest label is never dropped
+			Assert.assertEquals(pareto.get(0).getRouteTime(), res.get(0).getRouteTime(), 1e-6);
+			Assert.assertTrue(res.size() <= pareto.size());
+		}
+	}
+
+	@Test
+	public void testPatternsOfRoutesAndTrips() throws Exception {
+		List<TransportStop> stops = new ArrayList<TransportStop>();
+		TransportRoute r1 = route(1, stops, 52.0, 4.0, 52.0, 4.1);
+		// id which collided with route 1 when route id and trip start were packed in one long
+		TransportRoute r2 = route(1 + (1L << 44), stops, 52.0, 4.0, 52.0, 4.1);
+		TransportRaptorPlanner.PatternNetwork net = new TransportRaptorPlanner.PatternNetwork(config(false));
+		int p1 = net.register(new TransportRouteSegment(r1, 1));
+		int p2 = net.register(new TransportRouteSegment(r2, 1));
+		Assert.assertNotEquals(p1, p2);
+		Assert.assertSame(r2, net.getRoute(p2));
+		Assert.assertEquals(p1, net.register(new TransportRouteSegment(r1, 1)));
+		Assert.assertEquals(p1 - 1, net.register(new TransportRouteSegment(r1, 0)));
+		Assert.assertEquals(2, net.patternsCount());
+		// trips of one route are separate patterns
+		r1.getOrCreateSchedule();
+		net.register(new TransportRouteSegment(r1, 0, 100));
+		net.register(new TransportRouteSegment(r1, 0, 200));
+		net.register(new TransportRouteSegment(r1, 0, 100));
+		Assert.assertEquals(4, net.patternsCount());
+	}
+}
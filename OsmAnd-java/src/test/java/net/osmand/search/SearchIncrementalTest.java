@@ -0,0 +1,225 @@
+package net.osmand.search;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import net.osmand.binary.BinaryMapIndexReader;
+import net.osmand.data.Amenity;
+import net.osmand.search.SearchUICore.SearchResultComparator;
+import net.osmand.search.SearchUICore.SearchResultMatcher;
+import net.osmand.search.core.ObjectType;
+import net.osmand.search.core.SearchCoreFactory.SearchAmenityByNameAPI;
+import net.osmand.search.core.SearchCoreFactory.SearchBaseAPI;
+import net.osmand.search.core.SearchPhrase;
+import net.osmand.search.core.SearchResult;
+import net.osmand.search.core.SearchSettings;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class SearchIncrementalTest {
+
+	private static final String[] NAMES = { "Cafe Central", "Café Sacher", "Cabinet", "Central Park", "Canal" };
+
+	private static class NamesAPI extends SearchBaseAPI {
+		int searches;
+		int limit = -1;
+
+		NamesAPI() {
+			super(ObjectType.POI);
+		}
+
+		@Override
+		public int getSearchPriority(SearchPhrase p) {
+			return 1;
+		}
+
+		@Override
+		public boolean isIncrementalSearchAvailable(SearchPhrase previous, SearchPhrase phrase) {
+			return true;
+		}
+
+		@Override
+		public boolean search(SearchPhrase phrase, SearchResultMatcher resultMatcher) throws IOException {
+			searches++;
+			int count = 0;
+			for (String name : NAMES) {
+				if (phrase.getFirstUnknownNameStringMatcher().matches(name)) {
+					if (limit != -1 && count++ >= limit) {
+						resultMatcher.setLimitReached();
+						break;
+					}
+					SearchResult sr = new SearchResult(phrase);
+					sr.objectType = ObjectType.POI;
+					sr.localeName = name;
+					resultMatcher.publish(sr);
+				}
+			}
+			return true;
+		}
+	}
+
+	private static class AmenityNamesAPI extends SearchAmenityByNameAPI {
+		final List<Amenity> amenities = new ArrayList<>();
+		final List<Double> priorities = new ArrayList<>();
+		int searches;
+
+		void addAmenity(String name, String tag, String value) {
+			addAmenity(name, tag, value, 0);
+		}
+
+		void addAmenity(String name, String tag, String value, double priority) {
+			Amenity a = new Amenity();
+			a.setName(name);
+			if (tag != null) {
+				a.setAdditionalInfo(tag, value);
+			}
+			amenities.add(a);
+			priorities.add(priority);
+		}
+
+		@Override
+		public int getSearchPriority(SearchPhrase p) {
+			return 1;
+		}
+
+		@Override
+		public boolean search(SearchPhrase phrase, SearchResultMatcher resultMatcher) throws IOException {
+			searches++;
+			SearchPhrase.NameStringMatcher nm = phrase.getMainUnknownNameStringMatcher();
+			for (int i = 0; i < amenities.size(); i++) {
+				Amenity a = amenities.get(i);
+				// poi are matched by names and additional info as search by name does
+				if (nm.matches(a.getName()) || nm.matches(a.getAdditionalInfo().values())) {
+					SearchResult sr = new SearchResult(phrase);
+					sr.objectType = ObjectType.POI;
+					sr.localeName = a.getName();
+					sr.otherNames = a.getAllNames(true);
+					sr.object = a;
+					sr.priority = priorities.get(i);
+					phrase.countUnknownWordsMatchMainResult(sr);
+					resultMatcher.publish(sr);
+				}
+			}
+			return true;
+		}
+	}
+
+	private static List<String> search(SearchUICore core, SearchSettings s, String text) {
+		List<String> names = new ArrayList<>();
+		for (SearchResult sr : searchResults(core, s, text, false)) {
+			names.add(sr.localeName);
+		}
+		return names;
+	}
+
+	private static List<SearchResult> searchResults(SearchUICore core, SearchSettings s, String text, boolean sort) {
+		SearchPhrase phrase = SearchPhrase.emptyPhrase(s).generateNewPhrase(text, s);
+		SearchResultMatcher matcher = new SearchResultMatcher(null, phrase, 1, new AtomicInteger(1), -1);
+		core.searchInternal(phrase, matcher);
+		List<SearchResult> res = new ArrayList<>(matcher.getRequestResults());
+		for (SearchResult sr : res) {
+			Assert.assertSame(phrase, sr.requiredSearchPhrase);
+		}
+		if (sort) {
+			Collections.sort(res, new SearchResultComparator(phrase));
+		}
+		return res;
+	}
+
+	private static String describe(List<SearchResult> res) {
+		StringBuilder b = new StringBuilder();
+		for (SearchResult sr : res) {
+			b.append(sr.localeName).append(" (").append(sr.alternateName).append(", ")
+					.append(sr.getFoundWordCount()).append(", ").append(sr.getUnknownPhraseMatchWeight()).append("); ");
+		}
+		return b.toString();
+	}
+
+	@Test
+	public void testExtendedWordRefinesResults() {
+		SearchSettings s = new SearchSettings(new ArrayList<BinaryMapIndexReader>());
+		SearchUICore core = new SearchUICore(null, "en", false);
+		NamesAPI api = new NamesAPI();
+		core.registerAPI(api);
+		core.setIncrementalSearch(true);
+
+		Assert.assertEquals(4, search(core, s, "ca").size());
+		Assert.assertEquals(1, api.searches);
+		List<String> res = search(core, s, "caf");
+		Assert.assertEquals(2, res.size());
+		Assert.assertEquals("Cafe Central", res.get(0));
+		// second unknown word is searched again (test api matches only first word)
+		Assert.assertEquals(2, search(core, s, "cafe c").size());
+		Assert.assertEquals(2, api.searches);
+		// shorter word is searched again
+		Assert.assertEquals(4, search(core, s, "ca").size());
+		Assert.assertEquals(3, api.searches);
+		Assert.assertEquals(2, search(core, s, "cafe").size());
+		Assert.assertEquals(3, api.searches);
+	}
+
+	@Test
+	public void testTruncatedResultsSearchedAgain() {
+		SearchSettings s = new SearchSettings(new ArrayList<BinaryMapIndexReader>());
+		SearchUICore core = new SearchUICore(null, "en", false);
+		NamesAPI api = new NamesAPI();
+		api.limit = 2;
+		core.registerAPI(api);
+		core.setIncrementalSearch(true);
+
+		Assert.assertEquals(2, search(core, s, "ca").size());
+		Assert.assertEquals(1, search(core, s, "cab").size());
+		Assert.assertEquals(2, api.searches);
+	}
+
+	@Test
+	public void testPoiRefinedByAdditionalInfo() {
+		SearchSettings s = new SearchSettings(new ArrayList<BinaryMapIndexReader>());
+		SearchUICore core = new SearchUICore(null, "en", false);
+		AmenityNamesAPI api = new AmenityNamesAPI();
+		api.addAmenity("Central", "brand", "Cafeteria Chain");
+		api.addAmenity("Canal Shop", null, null);
+		api.addAmenity("Bakery", "description", "Cakes");
+		core.registerAPI(api);
+		core.setIncrementalSearch(true);
+
+		Assert.assertEquals(3, search(core, s, "ca").size());
+		List<String> res = search(core, s, "cafe");
+		Assert.assertEquals(1, api.searches);
+		Assert.assertEquals(1, res.size());
+		Assert.assertEquals("Central", res.get(0));
+	}
+
+	@Test
+	public void testRefinedOrderMatchesColdSearch() {
+		SearchSettings s = new SearchSettings(new ArrayList<BinaryMapIndexReader>());
+		AmenityNamesAPI api = new AmenityNamesAPI();
+		// canal is closer, but after refinement it's matched only by brand
+		api.addAmenity("Canal", "brand", "Cafeteria Chain", 1);
+		api.addAmenity("Cafe", null, null, 2);
+		api.addAmenity("Cabinet", null, null, 0);
+
+		SearchUICore cold = new SearchUICore(null, "en", false);
+		cold.registerAPI(api);
+		List<SearchResult> expected = searchResults(cold, s, "caf", true);
+		Assert.assertEquals("Cafe", expected.get(0).localeName);
+
+		SearchUICore core = new SearchUICore(null, "en", false);
+		core.registerAPI(api);
+		core.setIncrementalSearch(true);
+		List<SearchResult> previous = searchResults(core, s, "ca", true);
+		Assert.assertEquals("Cabinet", previous.get(0).localeName);
+		String previousOrder = describe(previous);
+		int searches = api.searches;
+		List<SearchResult> refined = searchResults(core, s, "caf", true);
+		Assert.assertEquals(searches, api.searches);
+		Assert.assertEquals(describe(expected), describe(refined));
+		// results of previous search are not changed
+		Assert.assertEquals(previousOrder, describe(previous));
+		Assert.assertNotSame(previous.get(1).requiredSearchPhrase, refined.get(0).requiredSearchPhrase);
+	}
+}
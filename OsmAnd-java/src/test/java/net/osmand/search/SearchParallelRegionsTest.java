@@ -0,0 +1,144 @@
+package net.osmand.search;
+
+import net.osmand.ResultMatcher;
+import net.osmand.binary.BinaryMapIndexReader;
+import net.osmand.osm.MapPoiTypes;
+import net.osmand.search.SearchUICore.SearchResultMatcher;
+import net.osmand.search.core.SearchPhrase;
+import net.osmand.search.core.SearchResult;
+import net.osmand.search.core.SearchSettings;
+import net.osmand.util.Algorithms;
+
+import org.json.JSONArray;
+import org.json.JSONObject;
+import org.junit.Assert;
+import org.junit.Assume;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.Parameterized;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.zip.GZIPInputStream;
+
+/**
+ * Runs phrases of {@link SearchUICoreTest} against several region files sequentially and in parallel
+ * and checks that results are the same and published in the same order from the same files.
+ */
+@RunWith(Parameterized.class)
+public class SearchParallelRegionsTest {
+
+	private static final String SEARCH_RESOURCES_PATH = "src/test/resources/search/";
+	private static final int REGIONS = 3;
+
+	private File testFile;
+
+	public SearchParallelRegionsTest(String name, File file) {
+		this.testFile = file;
+	}
+
+	@BeforeClass
+	public static void setUp() {
+		SearchUICoreTest.defaultSetup();
+	}
+
+	@Parameterized.Parameters(name = "{index}: {0}")
+	public static Iterable<Object[]> data() throws IOException {
+		final File[] files = new File(SEARCH_RESOURCES_PATH).listFiles();
+		ArrayList<Object[]> arrayList = new ArrayList<>();
+		if (files != null) {
+			for (File file : files) {
+				String fileName = file.getName();
+				if (fileName.endsWith(".json")) {
+					String name = fileName.substring(0, fileName.length() - ".json".length());
+					arrayList.add(new Object[] { name, file });
+				}
+			}
+		}
+		return arrayList;
+	}
+
+	private static List<String> search(SearchUICore core, SearchPhrase phrase, List<BinaryMapIndexReader> readers,
+									   ExecutorService executor) {
+		ResultMatcher<SearchResult> rm = new ResultMatcher<SearchResult>() {
+			@Override
+			public boolean publish(SearchResult object) {
+				return true;
+			}
+
+			@Override
+			public boolean isCancelled() {
+				return false;
+			}
+		};
+		SearchResultMatcher matcher = new SearchResultMatcher(rm, phrase, 1, new AtomicInteger(1), -1);
+		matcher.setRegionExecutor(executor);
+		core.searchInternal(phrase, matcher);
+		List<String> res = new ArrayList<>();
+		for (SearchResult r : matcher.getRequestResults()) {
+			res.add(r.objectType + " " + r.toString().trim() + " #" + readers.indexOf(r.file));
+		}
+		return res;
+	}
+
+	@Test
+	public void testParallelSearch() throws Exception {
+		File obfZipFile = new File(testFile.getParentFile(), testFile.getName().replace(".json", ".obf.gz"));
+		JSONObject sourceJson = new JSONObject(Algorithms.getFileAsString(testFile));
+		JSONObject settingsJson = sourceJson.getJSONObject("settings");
+		Assume.assumeTrue("Test doesn't use map data", settingsJson.optBoolean("useData", true));
+		Assume.assumeTrue("Map data is missing: " + obfZipFile, obfZipFile.exists());
+		List<String> phrases = new ArrayList<>();
+		if (sourceJson.has("phrase")) {
+			phrases.add(sourceJson.getString("phrase"));
+		}
+		JSONArray phrasesJson = sourceJson.optJSONArray("phrases");
+		if (phrasesJson != null) {
+			for (int i = 0; i < phrasesJson.length(); i++) {
+				phrases.add(phrasesJson.getString(i));
+			}
+		}
+		File obfFile = new File(testFile.getParentFile(), testFile.getName().replace(".json", "_parallel.obf"));
+		GZIPInputStream gzin = new GZIPInputStream(new FileInputStream(obfZipFile));
+		FileOutputStream fous = new FileOutputStream(obfFile);
+		Algorithms.streamCopy(gzin, fous);
+		fous.close();
+		gzin.close();
+
+		// same data in several files, so the same objects are found in every region
+		List<BinaryMapIndexReader> readers = new ArrayList<>();
+		ExecutorService executor = Executors.newFixedThreadPool(REGIONS);
+		try {
+			for (int i = 0; i < REGIONS; i++) {
+				readers.add(new BinaryMapIndexReader(new RandomAccessFile(obfFile.getPath(), "r"), obfFile));
+			}
+			SearchSettings s = SearchSettings.parseJSON(settingsJson);
+			s.setOfflineIndexes(readers);
+			SearchUICore core = new SearchUICore(MapPoiTypes.getDefault(), "en", false);
+			core.init();
+			SearchPhrase emptyPhrase = SearchPhrase.emptyPhrase(s);
+			for (String text : phrases) {
+				List<String> sequential = search(core, emptyPhrase.generateNewPhrase(text, s), readers, null);
+				for (int k = 0; k < 3; k++) {
+					List<String> parallel = search(core, emptyPhrase.generateNewPhrase(text, s), readers, executor);
+					Assert.assertEquals("Phrase: " + text, sequential, parallel);
+				}
+			}
+		} finally {
+			executor.shutdownNow();
+			for (BinaryMapIndexReader r : readers) {
+				r.close();
+			}
+			obfFile.delete();
+		}
+	}
+}
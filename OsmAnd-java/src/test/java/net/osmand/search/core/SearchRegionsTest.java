@@ -0,0 +1,171 @@
+package net.osmand.search.core;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import net.osmand.ResultMatcher;
+import net.osmand.binary.BinaryMapIndexReader;
+import net.osmand.search.SearchUICore.SearchResultMatcher;
+import net.osmand.search.core.SearchCoreFactory.LimitCounter;
+import net.osmand.search.core.SearchCoreFactory.RegionSearch;
+import net.osmand.search.core.SearchCoreFactory.SearchBaseAPI;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class SearchRegionsTest {
+
+	private static final int REGIONS = 12;
+
+	private static class TestAPI extends SearchBaseAPI {
+		TestAPI() {
+			super(ObjectType.POI);
+		}
+
+		void searchAll(SearchResultMatcher matcher, final AtomicInteger searched) throws IOException {
+			searchAll(matcher, searched, Integer.MAX_VALUE);
+		}
+
+		void searchAll(SearchResultMatcher matcher, final AtomicInteger searched, int limit) throws IOException {
+			List<BinaryMapIndexReader> files = new ArrayList<>(Collections.nCopies(REGIONS, (BinaryMapIndexReader) null));
+			final List<SearchResultMatcher> regionMatchers = ((TestResultMatcher) matcher).regionMatchers;
+			final AtomicInteger sequentialRegion = new AtomicInteger();
+			searchRegions(null, matcher, files.iterator(), limit, new RegionSearch() {
+				@Override
+				public void search(BinaryMapIndexReader r, SearchResultMatcher resultMatcher, Set<String> poiIds,
+						LimitCounter limit) throws IOException {
+					int ind = regionMatchers.indexOf(resultMatcher);
+					if (ind == -1) {
+						// main matcher is used for all files in sequential search
+						ind = sequentialRegion.getAndIncrement();
+					}
+					searched.incrementAndGet();
+					try {
+						// first regions finish last
+						Thread.sleep((REGIONS - ind) * 5);
+					} catch (InterruptedException e) {
+						throw new IOException(e);
+					}
+					for (int i = 0; i < 3 && !limit.isLimitReached(); i++) {
+						int ordinal = limit.next();
+						if (!limit.accepts(ordinal)) {
+							continue;
+						}
+						SearchResult sr = new SearchResult(null);
+						sr.objectType = ObjectType.POI;
+						sr.priority = ind * 10 + i;
+						resultMatcher.setLimitOrdinal(ordinal);
+						resultMatcher.publish(sr);
+					}
+				}
+			});
+		}
+	}
+
+	private static class TestResultMatcher extends SearchResultMatcher {
+		// region matchers are created in order of files
+		final List<SearchResultMatcher> regionMatchers = Collections.synchronizedList(new ArrayList<SearchResultMatcher>());
+
+		TestResultMatcher(ResultMatcher<SearchResult> matcher) {
+			super(matcher, null, 1, new AtomicInteger(1), -1);
+		}
+
+		@Override
+		public SearchResultMatcher createRegionMatcher() {
+			SearchResultMatcher rm = super.createRegionMatcher();
+			regionMatchers.add(rm);
+			return rm;
+		}
+	}
+
+	private static class CollectingMatcher implements ResultMatcher<SearchResult> {
+		final List<Integer> priorities = Collections.synchronizedList(new ArrayList<Integer>());
+		volatile boolean cancelled;
+		int cancelAfter = -1;
+
+		@Override
+		public boolean publish(SearchResult object) {
+			if (object.objectType == ObjectType.POI) {
+				priorities.add((int) object.priority);
+				if (priorities.size() == cancelAfter) {
+					cancelled = true;
+				}
+			}
+			return true;
+		}
+
+		@Override
+		public boolean isCancelled() {
+			return cancelled;
+		}
+	}
+
+	@Test
+	public void testParallelResultsPublishedInFileOrder() throws Exception {
+		ExecutorService executor = Executors.newFixedThreadPool(4);
+		try {
+			CollectingMatcher collector = new CollectingMatcher();
+			SearchResultMatcher matcher = new TestResultMatcher(collector);
+			matcher.setRegionExecutor(executor);
+			AtomicInteger searched = new AtomicInteger();
+			new TestAPI().searchAll(matcher, searched);
+			Assert.assertEquals(REGIONS, searched.get());
+			Assert.assertEquals(REGIONS * 3, collector.priorities.size());
+			for (int i = 0; i < collector.priorities.size(); i++) {
+				Assert.assertEquals((i / 3) * 10 + i % 3, collector.priorities.get(i).intValue());
+			}
+			Assert.assertEquals(REGIONS * 3, matcher.getRequestResults().size());
+		} finally {
+			executor.shutdownNow();
+		}
+	}
+
+	@Test
+	public void testParallelSearchCancelled() throws Exception {
+		ExecutorService executor = Executors.newFixedThreadPool(2);
+		try {
+			CollectingMatcher collector = new CollectingMatcher();
+			collector.cancelAfter = 4;
+			SearchResultMatcher matcher = new TestResultMatcher(collector);
+			matcher.setRegionExecutor(executor);
+			AtomicInteger searched = new AtomicInteger();
+			new TestAPI().searchAll(matcher, searched);
+			// results after cancellation are not published and not started regions are skipped
+			Assert.assertEquals(4, collector.priorities.size());
+			Assert.assertTrue(searched.get() < REGIONS);
+		} finally {
+			executor.shutdownNow();
+		}
+	}
+
+	@Test
+	public void testParallelLimitMatchesSequential() throws Exception {
+		ExecutorService executor = Executors.newFixedThreadPool(4);
+		try {
+			for (int limit : new int[] { 0, 4, 10, REGIONS * 3 - 1, REGIONS * 3 }) {
+				CollectingMatcher sequential = new CollectingMatcher();
+				SearchResultMatcher sequentialMatcher = new TestResultMatcher(sequential);
+				new TestAPI().searchAll(sequentialMatcher, new AtomicInteger(), limit);
+
+				CollectingMatcher parallel = new CollectingMatcher();
+				SearchResultMatcher parallelMatcher = new TestResultMatcher(parallel);
+				parallelMatcher.setRegionExecutor(executor);
+				new TestAPI().searchAll(parallelMatcher, new AtomicInteger(), limit);
+
+				// objects with ordinals 0..limit are published
+				Assert.assertEquals(Math.min(limit + 1, REGIONS * 3), sequential.priorities.size());
+				Assert.assertEquals(sequential.priorities, parallel.priorities);
+				Assert.assertEquals(limit < REGIONS * 3, sequentialMatcher.isLimitReached());
+				Assert.assertEquals(sequentialMatcher.isLimitReached(), parallelMatcher.isLimitReached());
+			}
+		} finally {
+			executor.shutdownNow();
+		}
+	}
+}